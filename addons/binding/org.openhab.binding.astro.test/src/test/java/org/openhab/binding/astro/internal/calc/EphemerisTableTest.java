@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.astro.internal.calc;
+
+import static org.junit.Assert.*;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.openhab.binding.astro.internal.model.Moon;
+import org.openhab.binding.astro.internal.model.Position;
+import org.openhab.binding.astro.internal.model.Sun;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the positions interpolated from the daily tables with the exactly calculated
+ * positions, on several days including the end of daylight saving time and at several
+ * locations. The benchmark only runs with the system property openhab.benchmark=true.
+ *
+ * @author agent - Initial contribution
+ */
+public class EphemerisTableTest {
+	private final Logger logger = LoggerFactory.getLogger(EphemerisTableTest.class);
+
+	private static final TimeZone TIME_ZONE = TimeZone.getTimeZone("Europe/Vienna");
+	private static final double[][] LOCATIONS = { { 48.2, 16.37 }, { -33.87, 151.21 }, { 64.13, -21.9 },
+			{ -0.22, -78.51 } };
+	private static final int DAYS = 4;
+	private static final int INTERVAL_MINUTES = 7;
+	private static final int UPDATES = 20000;
+
+	private static final double MAX_POSITION_ERROR = 0.01;
+	private static final double MAX_ILLUMINATION_ERROR = 0.01;
+	private static final double MAX_DISTANCE_ERROR = 1;
+
+	@Test
+	public void sunPositionIsInterpolated() {
+		SunCalc sunCalc = new SunCalc();
+		Sun sun = new Sun();
+		Sun exactSun = new Sun();
+		double maxError = 0;
+		for (double[] location : LOCATIONS) {
+			Calendar calendar = getStart();
+			for (int i = 0; i < DAYS * 24 * 60 / INTERVAL_MINUTES; i++) {
+				sunCalc.setPositionalInfo(calendar, location[0], location[1], sun);
+				sunCalc.setExactPositionalInfo(calendar, location[0], location[1], exactSun);
+				maxError = Math.max(maxError, getError(sun.getPosition(), exactSun.getPosition()));
+				calendar.add(Calendar.MINUTE, INTERVAL_MINUTES);
+			}
+		}
+		logger.info("Maximum error of the interpolated sun position: {} degrees", maxError);
+		assertTrue(maxError < MAX_POSITION_ERROR);
+	}
+
+	@Test
+	public void moonPositionIsInterpolated() {
+		MoonCalc moonCalc = new MoonCalc();
+		Moon moon = new Moon();
+		Moon exactMoon = new Moon();
+		double maxError = 0;
+		for (double[] location : LOCATIONS) {
+			Calendar calendar = getStart();
+			for (int i = 0; i < DAYS * 24 * 60 / INTERVAL_MINUTES; i++) {
+				moonCalc.setPositionalInfo(calendar, location[0], location[1], moon);
+				moonCalc.setExactPositionalInfo(calendar, location[0], location[1], exactMoon);
+				maxError = Math.max(maxError, getError(moon.getPosition(), exactMoon.getPosition()));
+				assertEquals(exactMoon.getPhase().getIllumination(), moon.getPhase().getIllumination(),
+						MAX_ILLUMINATION_ERROR);
+				assertEquals(exactMoon.getPhase().getAge(), moon.getPhase().getAge());
+				assertEquals(exactMoon.getDistance().getKilometer(), moon.getDistance().getKilometer(),
+						MAX_DISTANCE_ERROR);
+				assertEquals(exactMoon.getZodiac().getSign(), moon.getZodiac().getSign());
+				calendar.add(Calendar.MINUTE, INTERVAL_MINUTES);
+			}
+		}
+		logger.info("Maximum error of the interpolated moon position: {} degrees", maxError);
+		assertTrue(maxError < MAX_POSITION_ERROR);
+	}
+
+	@Test
+	public void positionalUpdatesBenchmark() {
+		Assume.assumeTrue(Boolean.getBoolean("openhab.benchmark"));
+
+		SunCalc sunCalc = new SunCalc();
+		MoonCalc moonCalc = new MoonCalc();
+		Sun sun = new Sun();
+		Moon moon = new Moon();
+		double[] location = LOCATIONS[0];
+
+		// warm up both paths
+		updatePositions(sunCalc, moonCalc, sun, moon, location, true);
+		updatePositions(sunCalc, moonCalc, sun, moon, location, false);
+
+		long exactTime = updatePositions(sunCalc, moonCalc, sun, moon, location, true);
+		long tableTime = updatePositions(sunCalc, moonCalc, sun, moon, location, false);
+		logger.info("Positional update of sun and moon: {} µs exact, {} µs interpolated", exactTime / 1000.0
+				/ UPDATES, tableTime / 1000.0 / UPDATES);
+	}
+
+	/**
+	 * Updates the positions every few seconds and returns the elapsed nanoseconds.
+	 */
+	private long updatePositions(SunCalc sunCalc, MoonCalc moonCalc, Sun sun, Moon moon, double[] location,
+			boolean exact) {
+		Calendar calendar = getStart();
+		long start = System.nanoTime();
+		for (int i = 0; i < UPDATES; i++) {
+			calendar.add(Calendar.SECOND, 4);
+			if (exact) {
+				sunCalc.setExactPositionalInfo(calendar, location[0], location[1], sun);
+				moonCalc.setExactPositionalInfo(calendar, location[0], location[1], moon);
+			} else {
+				sunCalc.setPositionalInfo(calendar, location[0], location[1], sun);
+				moonCalc.setPositionalInfo(calendar, location[0], location[1], moon);
+			}
+		}
+		return System.nanoTime() - start;
+	}
+
+	private Calendar getStart() {
+		Calendar calendar = Calendar.getInstance(TIME_ZONE);
+		calendar.clear();
+		calendar.set(2016, Calendar.OCTOBER, 29);
+		return calendar;
+	}
+
+	/**
+	 * Returns the larger error of elevation and azimuth, the azimuth is only compared off the zenith.
+	 */
+	private double getError(Position position, Position exactPosition) {
+		double error = Math.abs(position.getElevation() - exactPosition.getElevation());
+		if (Math.abs(exactPosition.getElevation()) < 80) {
+			double azimuthError = Math.abs(position.getAzimuth() - exactPosition.getAzimuth()) % 360;
+			error = Math.max(error, Math.min(azimuthError, 360 - azimuthError));
+		}
+		return error;
+	}
+}
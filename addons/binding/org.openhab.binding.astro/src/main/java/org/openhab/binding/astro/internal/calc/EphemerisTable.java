@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.astro.internal.calc;
+
+import java.util.Calendar;
+
+import org.openhab.binding.astro.internal.util.DateTimeUtils;
+
+/**
+ * Holds values of a planet which change slowly during a day, calculated once for
+ * every hour of the day. The values in between are interpolated linearly.
+ *
+ * @author agent - Initial contribution
+ */
+public class EphemerisTable {
+	private static final double JD_ONE_HOUR_FRACTION = 1.0 / 24;
+	private static final double TWO_PI = 2 * Math.PI;
+
+	/**
+	 * Calculates the values of the table at a julian date.
+	 */
+	public interface Ephemeris {
+		double[] calculate(double julianDate);
+	}
+
+	private final double start;
+	private final double end;
+	private final double[][] values;
+
+	/**
+	 * Calculates the table for the day of the calendar. The values of the angle columns are stored
+	 * continuously, the interpolated values of these columns have to be normalized to 0 - 2 PI.
+	 */
+	public EphemerisTable(Calendar calendar, Ephemeris ephemeris, int... angleColumns) {
+		Calendar midnight = DateTimeUtils.truncateToMidnight(calendar);
+		start = DateTimeUtils.dateToJulianDate(midnight);
+		midnight.add(Calendar.DAY_OF_MONTH, 1);
+		end = DateTimeUtils.dateToJulianDate(midnight);
+
+		// days may have 25 hours when daylight saving time ends
+		int samples = (int) Math.ceil((end - start) / JD_ONE_HOUR_FRACTION) + 1;
+		values = new double[samples][];
+		for (int i = 0; i < samples; i++) {
+			values[i] = ephemeris.calculate(start + i * JD_ONE_HOUR_FRACTION);
+			if (i > 0) {
+				for (int column : angleColumns) {
+					double previous = values[i - 1][column];
+					values[i][column] -= TWO_PI * Math.round((values[i][column] - previous) / TWO_PI);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns true, if the julian date is on the day of the table.
+	 */
+	public boolean isOnDay(double julianDate) {
+		return julianDate >= start && julianDate < end;
+	}
+
+	/**
+	 * Returns the interpolated value of a column at a julian date on the day of the table.
+	 */
+	public double get(double julianDate, int column) {
+		double hours = (julianDate - start) / JD_ONE_HOUR_FRACTION;
+		int index = Math.max(0, Math.min((int) hours, values.length - 2));
+		double fraction = hours - index;
+		double value = values[index][column];
+		return value + (values[index + 1][column] - value) * fraction;
+	}
+}
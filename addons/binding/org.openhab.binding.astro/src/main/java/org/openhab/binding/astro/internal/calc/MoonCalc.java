@@ -44,6 +44,16 @@ public class MoonCalc {
 	protected static final int ECLIPSE_MODE_TOTAL = 1;
 	protected static final int ECLIPSE_MODE_RING = 2;
 
+	private static final int RIGHT_ASCENSION = 0;
+	private static final int DECLINATION = 1;
+	private static final int PARALLAX_DISTANCE = 2;
+	private static final int LONGITUDE = 3;
+	private static final int ILLUMINATION = 4;
+	private static final int DISTANCE = 5;
+	private static final int AGE = 6;
+
+	private EphemerisTable positionTable;
+
 	/**
 	 * Calculates all moon data at the specified coordinates
 	 */
@@ -100,28 +110,77 @@ public class MoonCalc {
 	}
 
 	/**
-	 * Calculates the moon illumination and distance.
+	 * Calculates the moon illumination and distance. The geocentric values are interpolated from a
+	 * table of the day, the observer position is applied to them exactly.
 	 */
 	public void setPositionalInfo(Calendar calendar, double latitude, double longitude, Moon moon) {
-        double julianDate = DateTimeUtils.dateToJulianDate(calendar);
-		setMoonPhase(calendar, moon);
-        setAzimuthElevationZodiac(julianDate, latitude, longitude, moon);
+		double julianDate = DateTimeUtils.dateToJulianDate(calendar);
+		EphemerisTable table = positionTable;
+		if (table == null || !table.isOnDay(julianDate)) {
+			final double age = getAge(calendar);
+			table = new EphemerisTable(calendar, new EphemerisTable.Ephemeris() {
+				@Override
+				public double[] calculate(double jd) {
+					return getEphemeris(jd, age);
+				}
+			}, RIGHT_ASCENSION, LONGITUDE);
+			positionTable = table;
+		}
+		double[] ephemeris = new double[AGE + 1];
+		for (int column = 0; column < ephemeris.length; column++) {
+			ephemeris[column] = table.get(julianDate, column);
+		}
+		setPositionalInfo(calendar, julianDate, latitude, longitude, ephemeris, moon);
+	}
+
+	/**
+	 * Calculates the moon illumination and distance without a table.
+	 */
+	protected void setExactPositionalInfo(Calendar calendar, double latitude, double longitude, Moon moon) {
+		double julianDate = DateTimeUtils.dateToJulianDate(calendar);
+		setPositionalInfo(calendar, julianDate, latitude, longitude, getEphemeris(julianDate, getAge(calendar)),
+				moon);
+	}
+
+	private void setPositionalInfo(Calendar calendar, double julianDate, double latitude, double longitude,
+			double[] ephemeris, Moon moon) {
+		setMoonPhase(calendar, ephemeris[AGE], ephemeris[ILLUMINATION], moon);
+		setAzimuthElevationZodiac(julianDate, latitude, longitude, ephemeris, moon);
 
 		MoonDistance distance = moon.getDistance();
 		distance.setDate(Calendar.getInstance());
-		distance.setKilometer(getDistance(julianDate));
+		distance.setKilometer(ephemeris[DISTANCE]);
+	}
+
+	/**
+	 * Calculates the values of the moon which do not depend on the observer position.
+	 */
+	private double[] getEphemeris(double julianDate, double age) {
+		double[] ephemeris = new double[AGE + 1];
+		double[] geocentric = getGeocentricPosition(julianDate);
+		System.arraycopy(geocentric, 0, ephemeris, 0, geocentric.length);
+		ephemeris[ILLUMINATION] = getIllumination(julianDate);
+		ephemeris[DISTANCE] = getDistance(julianDate);
+		ephemeris[AGE] = age;
+		return ephemeris;
 	}
 
 	/**
-	 * Calculates the age and the current phase.
+	 * Calculates the age of the moon at the end of the day.
 	 */
-	private void setMoonPhase(Calendar calendar, Moon moon) {
-	    MoonPhase phase = moon.getPhase();
-	    double julianDateEndOfDay = DateTimeUtils.endOfDayDateToJulianDate(calendar);
+	private double getAge(Calendar calendar) {
+		double julianDateEndOfDay = DateTimeUtils.endOfDayDateToJulianDate(calendar);
 		double parentNewMoon = getPreviousPhase(calendar, julianDateEndOfDay, NEW_MOON);
-		double age = Math.abs(parentNewMoon - julianDateEndOfDay);
+		return Math.abs(parentNewMoon - julianDateEndOfDay);
+	}
+
+	/**
+	 * Sets the age and the current phase.
+	 */
+	private void setMoonPhase(Calendar calendar, double age, double illuminationPercent, Moon moon) {
+		MoonPhase phase = moon.getPhase();
 		phase.setAge((int) age);
-        phase.setIllumination(getIllumination(DateTimeUtils.dateToJulianDate(calendar)));
+		phase.setIllumination(illuminationPercent);
 
 		int illumination = (int) phase.getIllumination();
 		boolean isWaxing = age < (29.530588853 / 2);
@@ -636,15 +695,9 @@ public class MoonCalc {
 	}
 
 	/**
-	 * Sets the azimuth, elevation and zodiac in the moon object.
+	 * Calculates the geocentric right ascension, declination, distance and ecliptic longitude.
 	 */
-	private void setAzimuthElevationZodiac(double julianDate, double latitude, double longitude, Moon moon) {
-		double lat = latitude * SunCalc.DEG2RAD;
-		double lon = longitude * SunCalc.DEG2RAD;
-
-		double gmst = toGMST(julianDate);
-		double lmst = toLMST(gmst, lon) * 15. * SunCalc.DEG2RAD;
-
+	private double[] getGeocentricPosition(double julianDate) {
 		double d = julianDate - 2447891.5;
 		double anomalyMean = 360 * SunCalc.DEG2RAD / 365.242191 * d + 4.87650757829735 - 4.935239984568769;
 		double nu = anomalyMean + 360.0 * SunCalc.DEG2RAD / Math.PI * 0.016713 * Math.sin(anomalyMean);
@@ -676,7 +729,22 @@ public class MoonCalc {
 
 		double distance = (1 - 0.00301401) / (1 + 0.054900 * Math.cos(mMoon2 + ec)) * 384401;
 
-		double raDecTopo[] = geoEqu2TopoEqu(raDec, distance, lat, lmst);
+		return new double[] { raDec[0], raDec[1], distance, moonLon };
+	}
+
+	/**
+	 * Sets the azimuth, elevation and zodiac in the moon object.
+	 */
+	private void setAzimuthElevationZodiac(double julianDate, double latitude, double longitude, double[] ephemeris,
+			Moon moon) {
+		double lat = latitude * SunCalc.DEG2RAD;
+		double lon = longitude * SunCalc.DEG2RAD;
+
+		double gmst = toGMST(julianDate);
+		double lmst = toLMST(gmst, lon) * 15. * SunCalc.DEG2RAD;
+
+		double raDec[] = { ephemeris[RIGHT_ASCENSION], ephemeris[DECLINATION] };
+		double raDecTopo[] = geoEqu2TopoEqu(raDec, ephemeris[PARALLAX_DISTANCE], lat, lmst);
 		double azAlt[] = equ2AzAlt(raDecTopo[0], raDecTopo[1], lat, lmst);
 
 		Position position = moon.getPosition();
@@ -684,6 +752,7 @@ public class MoonCalc {
 		position.setElevation(azAlt[1] * SunCalc.RAD2DEG + refraction(azAlt[1]));
 
 		// zodiac
+		double moonLon = mod2Pi(ephemeris[LONGITUDE]);
 		double idxd = Math.floor(moonLon * SunCalc.RAD2DEG / 30);
 		int idx = 0;
 		if (idxd < 0) {
@@ -0,0 +1,217 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.internal.handler;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.smarthome.config.core.Configuration;
+import org.eclipse.smarthome.core.thing.Bridge;
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.eclipse.smarthome.core.thing.ThingStatus;
+import org.eclipse.smarthome.core.thing.ThingStatusDetail;
+import org.eclipse.smarthome.core.thing.ThingUID;
+import org.eclipse.smarthome.core.thing.binding.builder.BridgeBuilder;
+import org.eclipse.smarthome.core.types.RefreshType;
+import org.eclipse.smarthome.core.types.State;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.binding.max.MaxBinding;
+import org.openhab.binding.max.internal.device.Device;
+import org.openhab.binding.max.test.MaxCubeSimulator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Refreshes a {@link MaxCubeBridgeHandler} connected to a {@link MaxCubeSimulator}
+ * and counts the notifications of its device status listeners. Once the devices
+ * have been added, listeners are only notified for changed devices.
+ *
+ * @author agent
+ */
+public class MaxCubeBridgeHandlerTest {
+
+    private final Logger logger = LoggerFactory.getLogger(MaxCubeBridgeHandlerTest.class);
+
+    private static final int REFRESHES = 20;
+
+    /** the L reply of a refresh is read with the next one */
+    private static final int REFRESHES_PER_CHANGE = 3;
+
+    private MaxCubeSimulator simulator;
+    private TestHandler handler;
+    private CountingListener listener;
+
+    @Before
+    public void setUp() throws IOException {
+        simulator = new MaxCubeSimulator(2, 4, 2);
+        simulator.start();
+
+        Configuration configuration = new Configuration();
+        configuration.put(MaxBinding.PROPERTY_IP_ADDRESS, simulator.getIpAddress());
+        configuration.put("port", new BigDecimal(simulator.getPort()));
+        // refreshed by the test only, apart from the initial refresh
+        configuration.put("refreshInterval", new BigDecimal(3600));
+        configuration.put("exclusive", true);
+        configuration.put("maxRequestsPerConnection", BigDecimal.ZERO);
+        Bridge bridge = BridgeBuilder.create(MaxBinding.CUBEBRIDGE_THING_TYPE,
+                new ThingUID(MaxBinding.CUBEBRIDGE_THING_TYPE, "test")).withConfiguration(configuration).build();
+
+        handler = new TestHandler(bridge);
+        listener = new CountingListener();
+        handler.registerDeviceStatusListener(listener);
+        handler.initialize();
+        handler.awaitOnline();
+
+        for (int i = 0; i < REFRESHES && listener.added < simulator.getDeviceCount(); i++) {
+            refresh();
+        }
+        assertEquals(simulator.getDeviceCount(), listener.added);
+        assertEquals(simulator.getDeviceCount(), listener.getTotalChanges());
+        listener.changes.clear();
+    }
+
+    @After
+    public void tearDown() {
+        handler.dispose();
+        simulator.stop();
+    }
+
+    @Test
+    public void unchangedDevicesAreNotNotified() {
+        for (int i = 0; i < REFRESHES; i++) {
+            refresh();
+        }
+
+        logger.info("{} notifications for {} devices in {} refreshes", listener.getTotalChanges(),
+                simulator.getDeviceCount(), REFRESHES);
+        assertEquals(0, listener.getTotalChanges());
+    }
+
+    @Test
+    public void changedDeviceIsNotifiedOnce() {
+        String rfAddress = simulator.getThermostatAddresses().get(0);
+        simulator.toggleDevice(0);
+        for (int i = 0; i < REFRESHES_PER_CHANGE; i++) {
+            refresh();
+        }
+
+        assertEquals(1, listener.getChanges(rfAddress));
+        assertEquals(1, listener.getTotalChanges());
+    }
+
+    @Test
+    public void newListenerDoesNotNotifyOtherListeners() {
+        CountingListener other = new CountingListener();
+        handler.registerDeviceStatusListener(other);
+        for (int i = 0; i < REFRESHES; i++) {
+            refresh();
+        }
+
+        assertEquals(0, listener.getTotalChanges());
+    }
+
+    private void refresh() {
+        handler.handleCommand(new ChannelUID(handler.getThing().getUID(), MaxBinding.CHANNEL_DUTY_CYCLE),
+                RefreshType.REFRESH);
+    }
+
+    /**
+     * bridge handler which neither publishes states nor updates the thing, as no
+     * callback is available without the framework
+     */
+    private static class TestHandler extends MaxCubeBridgeHandler {
+        private ThingStatus status;
+
+        TestHandler(Bridge bridge) {
+            super(bridge);
+        }
+
+        @Override
+        protected void updateState(ChannelUID channelUID, State state) {
+        }
+
+        @Override
+        protected synchronized void updateStatus(ThingStatus status, ThingStatusDetail statusDetail,
+                String description) {
+            this.status = status;
+            notifyAll();
+        }
+
+        @Override
+        protected void updateProperties(Map<String, String> properties) {
+        }
+
+        @Override
+        protected void updateConfiguration(Configuration configuration) {
+        }
+
+        /**
+         * waits for the initial refresh, which connects to the cube
+         */
+        synchronized void awaitOnline() {
+            long end = System.currentTimeMillis() + 10000;
+            while (status != ThingStatus.ONLINE && System.currentTimeMillis() < end) {
+                try {
+                    wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            assertEquals(ThingStatus.ONLINE, status);
+        }
+    }
+
+    /**
+     * counts the state notifications per RF address
+     */
+    private static class CountingListener implements DeviceStatusListener {
+        private final Map<String, Integer> changes = new HashMap<String, Integer>();
+        private int added;
+
+        @Override
+        public void onDeviceStateChanged(ThingUID bridge, Device device) {
+            String rfAddress = device.getRFAddress().toUpperCase();
+            Integer count = changes.get(rfAddress);
+            changes.put(rfAddress, count == null ? 1 : count + 1);
+        }
+
+        @Override
+        public void onDeviceRemoved(MaxCubeBridgeHandler bridge, Device device) {
+        }
+
+        @Override
+        public void onDeviceAdded(Bridge bridge, Device device) {
+            added++;
+        }
+
+        @Override
+        public void onDeviceConfigUpdate(Bridge bridge, Device device) {
+        }
+
+        int getChanges(String rfAddress) {
+            Integer count = changes.get(rfAddress.toUpperCase());
+            return count == null ? 0 : count;
+        }
+
+        int getTotalChanges() {
+            int total = 0;
+            for (int count : changes.values()) {
+                total += count;
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.internal.handler;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.smarthome.config.core.Configuration;
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.eclipse.smarthome.core.thing.Thing;
+import org.eclipse.smarthome.core.thing.ThingStatus;
+import org.eclipse.smarthome.core.thing.ThingStatusDetail;
+import org.eclipse.smarthome.core.thing.ThingUID;
+import org.eclipse.smarthome.core.thing.binding.builder.ThingBuilder;
+import org.eclipse.smarthome.core.types.State;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.binding.max.MaxBinding;
+import org.openhab.binding.max.internal.device.Device;
+import org.openhab.binding.max.internal.device.DeviceConfiguration;
+import org.openhab.binding.max.internal.message.C_Message;
+import org.openhab.binding.max.internal.message.L_Message;
+
+/**
+ * Tests that the {@link MaxDevicesHandler} only updates the states of changed
+ * channels, unless a full refresh is pending.
+ *
+ * @author agent - Initial contribution
+ */
+public class MaxDevicesHandlerTest {
+
+    private final String configData = "C:0b0da3,0gsNowIBEABLRVEwNTQ0MjQyLCQ9CQcYAzAM/wBIYViRSP1ZFE0gTSBNIEUgRSBFIEUgRSBFIEhhWJFQ/VkVUSBRIFEgRSBFIEUgRSBFIEUgSFBYWkj+WRRNIE0gTSBFIEUgRSBFIEUgRSBIUFhaSP5ZFE0gTSBNIEUgRSBFIEUgRSBFIEhQWFpI/lkUTSBNIE0gRSBFIEUgRSBFIEUgSFBYWkj+WRRNIE0gTSBFIEUgRSBFIEUgRSBIUFhaSP5ZFE0gTSBNIEUgRSBFIEUgRSBFIA==";
+
+    /** thermostat 0b0da3 in manual mode, valve 32%, setpoint 20.0 */
+    private final String rawData = "L:CwsNowASASAoANwA";
+
+    /** same as {@link #rawData} with the valve at 64% */
+    private final String rawDataValveChanged = "L:CwsNowASAUAoANwA";
+
+    private static final String[] THERMOSTAT_CHANNELS = { MaxBinding.CHANNEL_LOCKED, MaxBinding.CHANNEL_SETTEMP,
+            MaxBinding.CHANNEL_MODE, MaxBinding.CHANNEL_BATTERY, MaxBinding.CHANNEL_VALVE };
+
+    private List<DeviceConfiguration> configurations;
+    private List<Device> devices;
+    private Device device;
+    private CountingHandler handler;
+
+    @Before
+    public void setUp() {
+        configurations = new ArrayList<DeviceConfiguration>();
+        configurations.add(DeviceConfiguration.create(new C_Message(configData)));
+        devices = new ArrayList<Device>();
+        new L_Message(rawData).updateDevices(devices, configurations);
+        device = devices.get(0);
+
+        Configuration configuration = new Configuration();
+        configuration.put(MaxBinding.PROPERTY_SERIAL_NUMBER, device.getSerialNumber());
+        Thing thing = ThingBuilder.create(MaxBinding.HEATINGTHERMOSTAT_THING_TYPE,
+                new ThingUID(MaxBinding.HEATINGTHERMOSTAT_THING_TYPE, "test")).withConfiguration(configuration)
+                .build();
+        handler = new CountingHandler(thing);
+        handler.initialize();
+    }
+
+    @Test
+    public void allChannelsAreUpdatedInitially() {
+        assertTrue(handler.isForceRefresh());
+        handler.onDeviceStateChanged(null, device);
+
+        for (String channel : THERMOSTAT_CHANNELS) {
+            assertEquals(channel, 1, handler.getUpdates(channel));
+        }
+        assertFalse(handler.isForceRefresh());
+    }
+
+    @Test
+    public void onlyChangedChannelsAreUpdated() {
+        handler.onDeviceStateChanged(null, device);
+        device.setUpdated(false);
+        handler.updates.clear();
+
+        new L_Message(rawDataValveChanged).updateDevices(devices, configurations);
+        handler.onDeviceStateChanged(null, device);
+
+        assertEquals(1, handler.getUpdates(MaxBinding.CHANNEL_VALVE));
+        assertEquals(1, handler.getTotalUpdates());
+    }
+
+    @Test
+    public void unchangedDeviceIsNotUpdated() {
+        handler.onDeviceStateChanged(null, device);
+        device.setUpdated(false);
+        handler.updates.clear();
+
+        for (int i = 0; i < 10; i++) {
+            new L_Message(rawData).updateDevices(devices, configurations);
+            handler.onDeviceStateChanged(null, device);
+        }
+
+        assertEquals(0, handler.getTotalUpdates());
+    }
+
+    @Test
+    public void forcedRefreshUpdatesUnchangedDevice() {
+        handler.onDeviceStateChanged(null, device);
+        device.setUpdated(false);
+        handler.updates.clear();
+
+        handler.setForceRefresh();
+        new L_Message(rawData).updateDevices(devices, configurations);
+        assertFalse(device.isUpdated());
+        handler.onDeviceStateChanged(null, device);
+
+        for (String channel : THERMOSTAT_CHANNELS) {
+            assertEquals(channel, 1, handler.getUpdates(channel));
+        }
+    }
+
+    /**
+     * handler counting the state updates per channel instead of publishing them
+     */
+    private static class CountingHandler extends MaxDevicesHandler {
+        private final Map<String, Integer> updates = new HashMap<String, Integer>();
+
+        CountingHandler(Thing thing) {
+            super(thing);
+        }
+
+        @Override
+        protected void updateState(ChannelUID channelUID, State state) {
+            Integer count = updates.get(channelUID.getId());
+            updates.put(channelUID.getId(), count == null ? 1 : count + 1);
+        }
+
+        @Override
+        protected void updateStatus(ThingStatus status, ThingStatusDetail statusDetail, String description) {
+            // no callback available without the framework
+        }
+
+        int getUpdates(String channelId) {
+            Integer count = updates.get(channelId);
+            return count == null ? 0 : count;
+        }
+
+        int getTotalUpdates() {
+            int total = 0;
+            for (int count : updates.values()) {
+                total += count;
+            }
+            return total;
+        }
+    }
+}
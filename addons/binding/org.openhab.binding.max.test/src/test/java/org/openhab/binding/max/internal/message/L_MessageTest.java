@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.internal.message;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.binding.max.MaxBinding;
+import org.openhab.binding.max.internal.device.Device;
+import org.openhab.binding.max.internal.device.DeviceConfiguration;
+
+/**
+ * Tests cases for {@link L_Message} change tracking of devices.
+ *
+ * @author agent - Initial contribution
+ */
+public class L_MessageTest {
+
+    private final String configData = "C:0b0da3,0gsNowIBEABLRVEwNTQ0MjQyLCQ9CQcYAzAM/wBIYViRSP1ZFE0gTSBNIEUgRSBFIEUgRSBFIEhhWJFQ/VkVUSBRIFEgRSBFIEUgRSBFIEUgSFBYWkj+WRRNIE0gTSBFIEUgRSBFIEUgRSBIUFhaSP5ZFE0gTSBNIEUgRSBFIEUgRSBFIEhQWFpI/lkUTSBNIE0gRSBFIEUgRSBFIEUgSFBYWkj+WRRNIE0gTSBFIEUgRSBFIEUgRSBIUFhaSP5ZFE0gTSBNIEUgRSBFIEUgRSBFIA==";
+
+    /** thermostat 0b0da3 in manual mode, valve 32%, setpoint 20.0 */
+    private final String rawData = "L:CwsNowASASAoANwA";
+
+    /** same as {@link #rawData} with the valve at 64% */
+    private final String rawDataValveChanged = "L:CwsNowASAUAoANwA";
+
+    private List<DeviceConfiguration> configurations;
+    private List<Device> devices;
+
+    @Before
+    public void Before() {
+        configurations = new ArrayList<DeviceConfiguration>();
+        configurations.add(DeviceConfiguration.create(new C_Message(configData)));
+        devices = new ArrayList<Device>();
+    }
+
+    @Test
+    public void newDeviceIsUpdatedTest() {
+        new L_Message(rawData).updateDevices(devices, configurations);
+
+        assertEquals(1, devices.size());
+        assertTrue(devices.get(0).isUpdated());
+    }
+
+    @Test
+    public void unchangedRefreshTest() {
+        new L_Message(rawData).updateDevices(devices, configurations);
+        Device device = devices.get(0);
+        device.setUpdated(false);
+
+        for (int i = 0; i < 10; i++) {
+            new L_Message(rawData).updateDevices(devices, configurations);
+            assertFalse(device.isUpdated());
+            assertTrue(device.getChangedChannels().isEmpty());
+        }
+    }
+
+    @Test
+    public void changedChannelsTest() {
+        new L_Message(rawData).updateDevices(devices, configurations);
+        Device device = devices.get(0);
+        device.setUpdated(false);
+
+        new L_Message(rawDataValveChanged).updateDevices(devices, configurations);
+
+        assertTrue(device.isUpdated());
+        assertEquals(Collections.singleton(MaxBinding.CHANNEL_VALVE), device.getChangedChannels());
+
+        device.setUpdated(false);
+        assertTrue(device.getChangedChannels().isEmpty());
+    }
+}
@@ -0,0 +1,438 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.net.util.Base64;
+import org.openhab.binding.max.internal.Utils;
+import org.openhab.binding.max.internal.device.DeviceType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link MaxCubeSimulator} is a local TCP server emulating the LAN protocol of a MAX! Cube.
+ * It answers with H, M, C and L messages on connect and supports the l:, c:, f:, s: and q: commands.
+ * Rooms, heating thermostats and shutter contacts are generated from the configured counts, each
+ * room holding a share of the devices.
+ *
+ * Response latency and a duty cycle limit can be injected to validate the behavior of the binding
+ * against slow or busy cubes. The duty cycle increases with every s: command and decays over time;
+ * once the limit is reached commands are answered as discarded.
+ *
+ * Due to the single byte counters of the M message at most 127 rooms and 127 devices are supported.
+ *
+ * @author agent - Initial contribution
+ */
+public class MaxCubeSimulator {
+
+    private final Logger logger = LoggerFactory.getLogger(MaxCubeSimulator.class);
+
+    public static final String CUBE_SERIAL = "KEQ0000000";
+    public static final String CUBE_RF_ADDRESS = "0b0000";
+
+    private static final int MAX_COUNT = 127;
+    private static final int FREE_MEMORY_SLOTS = 50;
+    private static final String NTP_SERVERS = "ntp.homematic.com,ntp.homematic.com";
+
+    private final List<SimulatedDevice> devices = new ArrayList<SimulatedDevice>();
+    private final int rooms;
+
+    private volatile long responseLatency = 0;
+    private volatile int dutyCycleLimit = 100;
+    private volatile int dutyCyclePerCommand = 1;
+    private volatile long dutyCycleDecayInterval = 36000;
+
+    private int dutyCycle = 0;
+    private long dutyCycleUpdated = System.currentTimeMillis();
+    private int commandCount = 0;
+    private int discardedCount = 0;
+
+    private ServerSocket serverSocket;
+    private Thread acceptThread;
+    private volatile Socket clientSocket;
+    private volatile boolean running;
+
+    /**
+     * Creates a new simulated cube.
+     *
+     * @param rooms the number of rooms, at least 1
+     * @param thermostats the number of heating thermostats
+     * @param shutterContacts the number of shutter contacts
+     */
+    public MaxCubeSimulator(int rooms, int thermostats, int shutterContacts) {
+        if (rooms < 1 || rooms > MAX_COUNT || thermostats + shutterContacts > MAX_COUNT) {
+            throw new IllegalArgumentException("Unsupported number of rooms or devices");
+        }
+        this.rooms = rooms;
+        int address = 1;
+        for (int i = 0; i < thermostats; i++) {
+            devices.add(new SimulatedDevice(DeviceType.HeatingThermostat, address++, (i % rooms) + 1));
+        }
+        for (int i = 0; i < shutterContacts; i++) {
+            devices.add(new SimulatedDevice(DeviceType.ShutterContact, address++, (i % rooms) + 1));
+        }
+    }
+
+    /**
+     * Starts listening on an ephemeral port of the loopback interface.
+     *
+     * @throws IOException
+     */
+    public synchronized void start() throws IOException {
+        serverSocket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+        running = true;
+        acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        }, "MAX! Cube simulator");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        logger.debug("MAX! Cube simulator started on port {} with {} devices", getPort(), devices.size());
+    }
+
+    /**
+     * Stops the simulator and closes the open connection.
+     */
+    public synchronized void stop() {
+        running = false;
+        closeQuietly(clientSocket);
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            // ignore
+        }
+        if (acceptThread != null) {
+            try {
+                acceptThread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            acceptThread = null;
+        }
+    }
+
+    public String getIpAddress() {
+        return "127.0.0.1";
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getDeviceCount() {
+        return devices.size();
+    }
+
+    /**
+     * @return the RF addresses of all simulated heating thermostats
+     */
+    public List<String> getThermostatAddresses() {
+        List<String> addresses = new ArrayList<String>();
+        for (SimulatedDevice device : devices) {
+            if (device.type == DeviceType.HeatingThermostat) {
+                addresses.add(device.rfAddress);
+            }
+        }
+        return addresses;
+    }
+
+    /**
+     * @param responseLatency the delay in milliseconds before each response is sent
+     */
+    public void setResponseLatency(long responseLatency) {
+        this.responseLatency = responseLatency;
+    }
+
+    /**
+     * @param dutyCycleLimit the duty cycle in percent from which on commands are discarded
+     * @param dutyCyclePerCommand the duty cycle in percent added by every command
+     * @param dutyCycleDecayInterval the time in milliseconds in which the duty cycle decreases by one percent
+     */
+    public synchronized void setDutyCycle(int dutyCycleLimit, int dutyCyclePerCommand, long dutyCycleDecayInterval) {
+        this.dutyCycleLimit = dutyCycleLimit;
+        this.dutyCyclePerCommand = dutyCyclePerCommand;
+        this.dutyCycleDecayInterval = dutyCycleDecayInterval;
+    }
+
+    public synchronized int getCommandCount() {
+        return commandCount;
+    }
+
+    public synchronized int getDiscardedCount() {
+        return discardedCount;
+    }
+
+    /**
+     * Changes the state of the given shutter contact or the valve position of the given thermostat, as a
+     * real device would report it with the next L message.
+     *
+     * @param index the index of the device in creation order
+     */
+    public synchronized void toggleDevice(int index) {
+        SimulatedDevice device = devices.get(index);
+        if (device.type == DeviceType.ShutterContact) {
+            device.open = !device.open;
+        } else {
+            device.valvePosition = (device.valvePosition + 10) % 100;
+        }
+    }
+
+    private void acceptConnections() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                clientSocket = socket;
+                handleConnection(socket);
+            } catch (SocketException e) {
+                // closed by stop()
+            } catch (IOException e) {
+                logger.debug("MAX! Cube simulator connection failed: {}", e.getMessage());
+            } finally {
+                closeQuietly(clientSocket);
+                clientSocket = null;
+            }
+        }
+    }
+
+    private void handleConnection(Socket socket) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+        OutputStreamWriter writer = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+
+        StringBuilder greeting = new StringBuilder();
+        synchronized (this) {
+            greeting.append(getHMessage());
+            greeting.append(getMMessage());
+            for (SimulatedDevice device : devices) {
+                greeting.append(getCMessage(device));
+            }
+            greeting.append(getLMessage());
+        }
+        respond(writer, greeting.toString());
+
+        String line;
+        while (running && (line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.startsWith("l:")) {
+                respond(writer, getLMessage());
+            } else if (line.startsWith("s:")) {
+                respond(writer, processSCommand(line.substring(2)));
+            } else if (line.startsWith("c:")) {
+                SimulatedDevice device = findDevice(line.substring(2));
+                if (device != null) {
+                    respond(writer, getCMessage(device));
+                }
+            } else if (line.startsWith("f:")) {
+                respond(writer, "F:" + NTP_SERVERS + "\r\n");
+            } else if (line.startsWith("q:")) {
+                return;
+            } else if (!line.isEmpty()) {
+                logger.debug("MAX! Cube simulator ignores unsupported command '{}'", line);
+            }
+        }
+    }
+
+    private void respond(OutputStreamWriter writer, String response) throws IOException {
+        if (responseLatency > 0) {
+            try {
+                Thread.sleep(responseLatency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        writer.write(response);
+        writer.flush();
+    }
+
+    private synchronized String processSCommand(String payload) {
+        commandCount++;
+        long now = System.currentTimeMillis();
+        if (dutyCycleDecayInterval > 0) {
+            int decay = (int) ((now - dutyCycleUpdated) / dutyCycleDecayInterval);
+            if (decay > 0) {
+                dutyCycle = Math.max(0, dutyCycle - decay);
+                dutyCycleUpdated = now;
+            }
+        }
+
+        boolean discarded = dutyCycle >= dutyCycleLimit;
+        if (discarded) {
+            discardedCount++;
+        } else {
+            dutyCycle = Math.min(100, dutyCycle + dutyCyclePerCommand);
+            byte[] bytes = Base64.decodeBase64(payload.getBytes());
+            if (bytes.length >= 11) {
+                String rfAddress = Utils.toHex(bytes[6] & 0xFF, bytes[7] & 0xFF, bytes[8] & 0xFF);
+                SimulatedDevice device = findDevice(rfAddress);
+                if (device != null && device.type == DeviceType.HeatingThermostat) {
+                    device.mode = (bytes[10] >> 6) & 0x03;
+                    if (device.mode != 0) {
+                        device.setpoint = bytes[10] & 0x3F;
+                    }
+                }
+            }
+        }
+        return "S:" + Utils.toHex(dutyCycle) + "," + (discarded ? "1" : "0") + ","
+                + Utils.toHex(discarded ? 0 : FREE_MEMORY_SLOTS) + "\r\n";
+    }
+
+    private synchronized SimulatedDevice findDevice(String rfAddress) {
+        for (SimulatedDevice device : devices) {
+            if (device.rfAddress.equalsIgnoreCase(rfAddress.trim())) {
+                return device;
+            }
+        }
+        return null;
+    }
+
+    private String getHMessage() {
+        return "H:" + CUBE_SERIAL + "," + CUBE_RF_ADDRESS + ",0113,00000000,477719c0," + Utils.toHex(dutyCycle) + ","
+                + Utils.toHex(FREE_MEMORY_SLOTS) + ",100a0f,0c1e,03,0000\r\n";
+    }
+
+    private String getMMessage() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(0x56);
+        bytes.write(0x02);
+        bytes.write(rooms);
+        for (int room = 1; room <= rooms; room++) {
+            byte[] name = toBytes("Room " + room);
+            bytes.write(room);
+            bytes.write(name.length);
+            bytes.write(name, 0, name.length);
+            String roomAddress = firstAddressInRoom(room);
+            bytes.write(Utils.hexStringToByteArray(roomAddress), 0, 3);
+        }
+        bytes.write(devices.size());
+        for (SimulatedDevice device : devices) {
+            byte[] name = toBytes(device.type + " " + device.rfAddress);
+            bytes.write(device.type.getValue());
+            bytes.write(Utils.hexStringToByteArray(device.rfAddress), 0, 3);
+            bytes.write(toBytes(device.serialNumber), 0, 10);
+            bytes.write(name.length);
+            bytes.write(name, 0, name.length);
+            bytes.write(device.roomId);
+        }
+        bytes.write(0x01);
+        return "M:00,01," + Base64.encodeBase64StringUnChunked(bytes.toByteArray()) + "\r\n";
+    }
+
+    private String firstAddressInRoom(int room) {
+        for (SimulatedDevice device : devices) {
+            if (device.roomId == room) {
+                return device.rfAddress;
+            }
+        }
+        return "000000";
+    }
+
+    private String getCMessage(SimulatedDevice device) {
+        // heating thermostats carry configuration and week program, shutter contacts the header only
+        int length = device.type == DeviceType.HeatingThermostat ? 211 : 18;
+        byte[] data = new byte[length];
+        data[0] = (byte) (length - 1);
+        System.arraycopy(Utils.hexStringToByteArray(device.rfAddress), 0, data, 1, 3);
+        data[4] = (byte) device.type.getValue();
+        data[5] = (byte) device.roomId;
+        data[6] = 0x10;
+        System.arraycopy(toBytes(device.serialNumber), 0, data, 8, 10);
+        if (device.type == DeviceType.HeatingThermostat) {
+            byte[] config = new byte[] { 0x2B, 0x22, 0x3D, 0x09, 0x07, 0x18, 0x03, 0x3B, 0x47, (byte) 0xFF, 0x00 };
+            System.arraycopy(config, 0, data, 18, config.length);
+            for (int i = 18 + config.length; i < length - 1; i += 2) {
+                data[i] = 0x40;
+                data[i + 1] = 0x49;
+            }
+        }
+        return "C:" + device.rfAddress + "," + Base64.encodeBase64StringUnChunked(data) + "\r\n";
+    }
+
+    private synchronized String getLMessage() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (SimulatedDevice device : devices) {
+            byte[] address = Utils.hexStringToByteArray(device.rfAddress);
+            if (device.type == DeviceType.HeatingThermostat) {
+                bytes.write(11);
+                bytes.write(address, 0, 3);
+                bytes.write(0x00);
+                bytes.write(0x12);
+                bytes.write(device.mode & 0x03);
+                bytes.write(device.valvePosition);
+                bytes.write(device.setpoint);
+                bytes.write(device.actualTemperature >> 8);
+                bytes.write(device.actualTemperature & 0xFF);
+                bytes.write(0x00);
+            } else {
+                bytes.write(6);
+                bytes.write(address, 0, 3);
+                bytes.write(0x00);
+                bytes.write(0x12);
+                bytes.write(device.open ? 0x12 : 0x10);
+            }
+        }
+        return "L:" + Base64.encodeBase64StringUnChunked(bytes.toByteArray()) + "\r\n";
+    }
+
+    private static byte[] toBytes(String value) {
+        try {
+            return value.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            if (socket != null) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * State of a single simulated device.
+     */
+    private static class SimulatedDevice {
+        private final DeviceType type;
+        private final String rfAddress;
+        private final String serialNumber;
+        private final int roomId;
+
+        private int mode = 1;
+        private int valvePosition = 0;
+        private int setpoint = 40;
+        private int actualTemperature = 205;
+        private boolean open = false;
+
+        SimulatedDevice(DeviceType type, int address, int roomId) {
+            this.type = type;
+            this.rfAddress = Utils.toHex(0x0C, (address >> 8) & 0xFF, address & 0xFF);
+            this.serialNumber = String.format("KEQ%07d", address);
+            this.roomId = roomId;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.max.test;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openhab.binding.max.internal.command.CubeCommand;
+import org.openhab.binding.max.internal.command.L_Command;
+import org.openhab.binding.max.internal.command.S_Command;
+import org.openhab.binding.max.internal.device.Device;
+import org.openhab.binding.max.internal.device.DeviceConfiguration;
+import org.openhab.binding.max.internal.device.ThermostatModeType;
+import org.openhab.binding.max.internal.message.C_Message;
+import org.openhab.binding.max.internal.message.L_Message;
+import org.openhab.binding.max.internal.message.M_Message;
+import org.openhab.binding.max.internal.message.Message;
+import org.openhab.binding.max.internal.message.MessageProcessor;
+import org.openhab.binding.max.internal.message.S_Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Integration tests of the MAX! protocol handling against the {@link MaxCubeSimulator}.
+ * Refresh and command timings are logged for growing numbers of devices.
+ *
+ * @author agent - Initial contribution
+ */
+public class MaxCubeSimulatorTest {
+
+    private final Logger logger = LoggerFactory.getLogger(MaxCubeSimulatorTest.class);
+
+    private static final int NETWORK_TIMEOUT = 10000;
+    private static final int REFRESH_COUNT = 20;
+
+    private MaxCubeSimulator simulator;
+    private Socket socket;
+    private BufferedReader reader;
+    private OutputStreamWriter writer;
+
+    private final MessageProcessor messageProcessor = new MessageProcessor();
+    private final List<DeviceConfiguration> configurations = new ArrayList<DeviceConfiguration>();
+    private final List<Device> devices = new ArrayList<Device>();
+
+    @After
+    public void after() throws IOException {
+        if (socket != null) {
+            socket.close();
+        }
+        if (simulator != null) {
+            simulator.stop();
+        }
+    }
+
+    @Test
+    public void connectTest() throws Exception {
+        startSimulator(4, 6, 3);
+
+        assertEquals(9, configurations.size());
+        assertEquals(9, devices.size());
+    }
+
+    @Test
+    public void refreshTimeTest() throws Exception {
+        for (int count : new int[] { 10, 50, 120 }) {
+            startSimulator(Math.max(1, count / 5), count * 2 / 3, count - count * 2 / 3);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < REFRESH_COUNT; i++) {
+                send(new L_Command());
+            }
+            long duration = (System.nanoTime() - start) / REFRESH_COUNT;
+
+            assertEquals(count, devices.size());
+            logger.info("MAX! refresh of {} devices took {} us", count, duration / 1000);
+            after();
+            devices.clear();
+            configurations.clear();
+        }
+    }
+
+    @Test
+    public void changedDevicesTest() throws Exception {
+        startSimulator(2, 5, 5);
+        for (Device device : devices) {
+            device.setUpdated(false);
+        }
+
+        simulator.toggleDevice(0);
+        simulator.toggleDevice(7);
+        send(new L_Command());
+
+        int updated = 0;
+        for (Device device : devices) {
+            if (device.isUpdated()) {
+                updated++;
+            }
+        }
+        assertEquals(2, updated);
+    }
+
+    @Test
+    public void commandLatencyTest() throws Exception {
+        startSimulator(1, 10, 0);
+        String rfAddress = simulator.getThermostatAddresses().get(0);
+
+        for (long latency : new long[] { 0, 20, 100 }) {
+            simulator.setResponseLatency(latency);
+            long start = System.nanoTime();
+            S_Message message = (S_Message) send(new S_Command(rfAddress, 1, ThermostatModeType.MANUAL, 21.5));
+            long duration = (System.nanoTime() - start) / 1000000;
+
+            assertNotNull(message);
+            assertFalse(message.isCommandDiscarded());
+            assertTrue(duration >= latency);
+            logger.info("MAX! command with {} ms injected latency took {} ms", latency, duration);
+        }
+    }
+
+    @Test
+    public void dutyCycleLimitTest() throws Exception {
+        startSimulator(1, 2, 0);
+        simulator.setDutyCycle(10, 4, 0);
+        String rfAddress = simulator.getThermostatAddresses().get(0);
+
+        int discarded = 0;
+        for (int i = 0; i < 5; i++) {
+            S_Message message = (S_Message) send(new S_Command(rfAddress, 1, ThermostatModeType.MANUAL, 20));
+            if (message.isCommandDiscarded()) {
+                discarded++;
+            }
+        }
+        assertEquals(2, discarded);
+        assertEquals(2, simulator.getDiscardedCount());
+        assertEquals(5, simulator.getCommandCount());
+    }
+
+    private void startSimulator(int rooms, int thermostats, int shutterContacts) throws Exception {
+        simulator = new MaxCubeSimulator(rooms, thermostats, shutterContacts);
+        simulator.start();
+        socket = new Socket(simulator.getIpAddress(), simulator.getPort());
+        socket.setSoTimeout(NETWORK_TIMEOUT);
+        reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+        writer = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+        readUntil("L:");
+    }
+
+    private Message send(CubeCommand command) throws Exception {
+        writer.write(command.getCommandString());
+        if (!command.getCommandString().endsWith("\n")) {
+            writer.write("\r\n");
+        }
+        writer.flush();
+        return readUntil(command.getReturnStrings());
+    }
+
+    private Message readUntil(String terminator) throws Exception {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            messageProcessor.addReceivedLine(line);
+            if (messageProcessor.isMessageAvailable()) {
+                Message message = messageProcessor.pull();
+                process(message);
+                if (line.startsWith(terminator)) {
+                    return message;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void process(Message message) {
+        if (message instanceof M_Message) {
+            assertNotNull(((M_Message) message).devices);
+        } else if (message instanceof C_Message) {
+            configurations.add(DeviceConfiguration.create(message));
+        } else if (message instanceof L_Message) {
+            ((L_Message) message).updateDevices(devices, configurations);
+        }
+    }
+}
@@ -8,12 +8,16 @@
  */
 package org.openhab.binding.max.internal.device;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.smarthome.core.library.types.OnOffType;
 import org.eclipse.smarthome.core.library.types.OpenClosedType;
+import org.openhab.binding.max.MaxBinding;
 import org.openhab.binding.max.internal.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,7 +39,11 @@ public abstract class Device {
     private String roomName = "";
     private String name = "";
 
+    /**
+     * change tracking, written by the bridge refresh and read by the thing handlers, guarded by this device
+     */
     private boolean updated;
+    private final Set<String> changedChannels = new HashSet<String>();
     private boolean batteryLow;
 
     private boolean initialized;
@@ -238,7 +246,7 @@ public abstract class Device {
 
     private final void setBatteryLow(boolean batteryLow) {
         if (this.batteryLow != batteryLow) {
-            this.updated = true;
+            setUpdated(MaxBinding.CHANNEL_BATTERY);
         }
         this.batteryLow = batteryLow;
     }
@@ -273,28 +281,28 @@ public abstract class Device {
 
     private void setLinkStatusError(boolean linkStatusError) {
         if (this.linkStatusError != linkStatusError) {
-            this.updated = true;
+            setUpdated(true);
         }
         this.linkStatusError = linkStatusError;
     }
 
     private void setPanelLocked(boolean panelLocked) {
         if (this.panelLocked != panelLocked) {
-            this.updated = true;
+            setUpdated(MaxBinding.CHANNEL_LOCKED);
         }
         this.panelLocked = panelLocked;
     }
 
     private void setGatewayKnown(boolean gatewayKnown) {
         if (this.gatewayKnown != gatewayKnown) {
-            this.updated = true;
+            setUpdated(true);
         }
         this.gatewayKnown = gatewayKnown;
     }
 
     private void setDstSettingActive(boolean dstSettingsActive) {
         if (this.dstSettingsActive != dstSettingsActive) {
-            this.updated = true;
+            setUpdated(true);
         }
         this.dstSettingsActive = dstSettingsActive;
     }
@@ -305,14 +313,14 @@ public abstract class Device {
 
     private void setValid(boolean valid) {
         if (this.valid != valid) {
-            this.updated = true;
+            setUpdated(true);
         }
         this.valid = valid;
     }
 
     private void setError(boolean error) {
         if (this.error != error) {
-            this.updated = true;
+            setUpdated(true);
         }
         this.error = error;
 
@@ -324,24 +332,47 @@ public abstract class Device {
 
     private void setInitialized(boolean initialized) {
         if (this.initialized != initialized) {
-            this.updated = true;
+            setUpdated(true);
         }
         this.initialized = initialized;
     }
 
     private void setAnswer(boolean answer) {
         if (this.answer != answer) {
-            this.updated = true;
+            setUpdated(true);
         }
         this.answer = answer;
     }
 
-    public boolean isUpdated() {
+    public synchronized boolean isUpdated() {
         return updated;
     }
 
-    public void setUpdated(boolean updated) {
+    public synchronized void setUpdated(boolean updated) {
         this.updated = updated;
+        if (!updated) {
+            changedChannels.clear();
+        }
+    }
+
+    /**
+     * Marks the device as updated because the value published on the given channel has changed.
+     *
+     * @param channelId the id of the channel whose value has changed
+     */
+    protected synchronized void setUpdated(String channelId) {
+        this.updated = true;
+        changedChannels.add(channelId);
+    }
+
+    /**
+     * Returns the ids of the channels whose values changed since the device was last marked as not updated.
+     * The set may be empty for an updated device in case only internal status flags have changed.
+     *
+     * @return the ids of the changed channels
+     */
+    public synchronized Set<String> getChangedChannels() {
+        return Collections.unmodifiableSet(new HashSet<String>(changedChannels));
     }
 
     public boolean isInitialized() {
@@ -9,6 +9,7 @@
 package org.openhab.binding.max.internal.device;
 
 import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.openhab.binding.max.MaxBinding;
 
 /**
  * MAX! EcoSwitch.
@@ -40,6 +41,9 @@ public class EcoSwitch extends ShutterContact {
     }
 
     public void setEcoMode(OnOffType ecoMode) {
+        if (this.ecoMode != ecoMode) {
+            setUpdated(MaxBinding.CHANNEL_SWITCH_STATE);
+        }
         this.ecoMode = ecoMode;
     }
 }
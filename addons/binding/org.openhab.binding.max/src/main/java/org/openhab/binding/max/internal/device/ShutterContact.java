@@ -9,6 +9,7 @@
 package org.openhab.binding.max.internal.device;
 
 import org.eclipse.smarthome.core.library.types.OpenClosedType;
+import org.openhab.binding.max.MaxBinding;
 
 /**
  * MAX! Shutter contact device.
@@ -27,7 +28,7 @@ public class ShutterContact extends Device {
 
     public void setShutterState(OpenClosedType shutterState) {
         if (this.shutterState != shutterState)
-            setUpdated(true);
+            setUpdated(MaxBinding.CHANNEL_CONTACT_STATE);
         this.shutterState = shutterState;
     }
 
@@ -23,6 +23,8 @@ public interface DeviceStatusListener {
 
     /**
      * This method is called whenever the state of the given device has changed.
+     * The ids of the channels whose values changed are available through
+     * {@link Device#getChangedChannels()} for the duration of this call.
      *
      * @param bridge
      *            The MAX! Cube bridge the changed device is connected to.
@@ -356,7 +356,9 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
     }
 
     /**
-     * initiates read data from the MAX! Cube bridge
+     * initiates read data from the MAX! Cube bridge. Listeners are only notified
+     * for devices which are new or have changed since the previous refresh, or
+     * if they have a full refresh pending.
      */
     private void refreshData() {
 
@@ -366,7 +368,11 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
                 previousOnline = true;
                 for (Device di : devices) {
                     if (lastActiveDevices != null && lastActiveDevices.contains(di.getSerialNumber())) {
+                        boolean updated = di.isUpdated();
                         for (DeviceStatusListener deviceStatusListener : deviceStatusListeners) {
+                            if (!updated && !isRefreshPending(deviceStatusListener)) {
+                                continue;
+                            }
                             try {
                                 deviceStatusListener.onDeviceStateChanged(getThing().getUID(), di);
                             } catch (Exception e) {
@@ -388,6 +394,7 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
                             lastActiveDevices.add(di.getSerialNumber());
                         }
                     }
+                    di.setUpdated(false);
                 }
             } else if (previousOnline) {
                 onConnectionLost();
@@ -398,6 +405,14 @@ public class MaxCubeBridgeHandler extends BaseBridgeHandler {
         }
     }
 
+    /**
+     * @return true if the listener publishes all states with the next notification, even for an unchanged device
+     */
+    private static boolean isRefreshPending(DeviceStatusListener deviceStatusListener) {
+        return deviceStatusListener instanceof MaxDevicesHandler
+                && ((MaxDevicesHandler) deviceStatusListener).isForceRefresh();
+    }
+
     public void onConnectionLost() {
         logger.debug("Bridge connection lost. Updating thing status to OFFLINE.");
         previousOnline = false;
@@ -17,6 +17,7 @@ import java.util.Calendar;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -62,7 +63,7 @@ public class MaxDevicesHandler extends BaseThingHandler implements DeviceStatusL
 
     private String maxDeviceSerial;
     private String rfAddress;
-    private boolean forceRefresh = true;
+    private volatile boolean forceRefresh = true;
     private boolean propertiesSet = false;
     private boolean configSet = false;
 
@@ -73,6 +74,7 @@ public class MaxDevicesHandler extends BaseThingHandler implements DeviceStatusL
     private int refreshActualRate = 0;
     private boolean refreshingActuals = false;
     private ScheduledFuture<?> refreshActualsJob;
+    private ScheduledFuture<?> refreshActualsCheckJob;
     private DecimalType originalSetTemp;
     private ThermostatModeType originalMode;
     private Runnable refreshActualsRestoreRunnable = new Runnable() {
@@ -81,6 +83,20 @@ public class MaxDevicesHandler extends BaseThingHandler implements DeviceStatusL
             refreshActualsRestore();
         }
     };
+    private Runnable refreshActualsCheckRunnable = new Runnable() {
+        @Override
+        public void run() {
+            MaxCubeBridgeHandler maxCubeBridge = getMaxCubeBridgeHandler();
+            if (maxCubeBridge == null || maxDeviceSerial == null) {
+                return;
+            }
+            Device device = maxCubeBridge.getDevice(maxDeviceSerial);
+            if (device != null && (device.getType() == DeviceType.HeatingThermostat
+                    || device.getType() == DeviceType.HeatingThermostatPlus)) {
+                refreshActualCheck((HeatingThermostat) device);
+            }
+        }
+    };
 
     public MaxDevicesHandler(Thing thing) {
         super(thing);
@@ -116,6 +132,12 @@ public class MaxDevicesHandler extends BaseThingHandler implements DeviceStatusL
             configSet = false;
             forceRefresh = true;
             getMaxCubeBridgeHandler();
+            // the bridge only notifies on changes, hence check for outdated actuals independently
+            if (refreshActualRate >= REFRESH_ACTUAL_MIN_RATE
+                    && (refreshActualsCheckJob == null || refreshActualsCheckJob.isCancelled())) {
+                refreshActualsCheckJob = scheduler.scheduleWithFixedDelay(refreshActualsCheckRunnable, 1, 1,
+                        TimeUnit.MINUTES);
+            }
         } catch (Exception e) {
             logger.debug("Exception occurred during initialize : {}", e.getMessage(), e);
             updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR, e.getMessage());
@@ -137,6 +159,10 @@ public class MaxDevicesHandler extends BaseThingHandler implements DeviceStatusL
             refreshActualsJob.cancel(true);
             refreshActualsJob = null;
         }
+        if (refreshActualsCheckJob != null && !refreshActualsCheckJob.isCancelled()) {
+            refreshActualsCheckJob.cancel(true);
+            refreshActualsCheckJob = null;
+        }
         if (bridgeHandler != null) {
             logger.trace("Clear MAX! device {} {} from bridge.", getThing().getUID(), maxDeviceSerial);
             bridgeHandler.clearDeviceList();
@@ -354,6 +380,11 @@ public class MaxDevicesHandler extends BaseThingHandler implements DeviceStatusL
         if (command instanceof RefreshType) {
             forceRefresh = true;
             maxCubeBridge.handleCommand(channelUID, command);
+            // unchanged devices are not notified by the bridge, hence publish the current state directly
+            Device device = maxCubeBridge.getDevice(maxDeviceSerial);
+            if (device != null && forceRefresh) {
+                onDeviceStateChanged(getThing().getBridgeUID(), device);
+            }
             return;
         }
         if (maxDeviceSerial == null) {
@@ -395,44 +426,64 @@ public class MaxDevicesHandler extends BaseThingHandler implements DeviceStatusL
                 refreshActualCheck((HeatingThermostat) device);
             }
             if (device.isUpdated() || forceRefresh) {
-                logger.debug("Updating states of {} {} ({}) id: {}", device.getType(), device.getName(),
-                        device.getSerialNumber(), getThing().getUID());
+                // reset first, a refresh requested meanwhile is applied with the next notification
+                boolean refreshAll = forceRefresh;
+                forceRefresh = false;
+                Set<String> changedChannels = device.getChangedChannels();
+                logger.debug("Updating states of {} {} ({}) id: {}, changed: {}", device.getType(), device.getName(),
+                        device.getSerialNumber(), getThing().getUID(), refreshAll ? "all" : changedChannels);
                 switch (device.getType()) {
                     case WallMountedThermostat:
                     case HeatingThermostat:
                     case HeatingThermostatPlus:
-                        updateState(new ChannelUID(getThing().getUID(), CHANNEL_LOCKED),
-                                ((HeatingThermostat) device).isPanelLocked() ? OpenClosedType.CLOSED
-                                        : OpenClosedType.OPEN);
-                        updateState(new ChannelUID(getThing().getUID(), CHANNEL_SETTEMP),
-                                ((HeatingThermostat) device).getTemperatureSetpoint());
-                        updateState(new ChannelUID(getThing().getUID(), CHANNEL_MODE),
-                                ((HeatingThermostat) device).getModeString());
-                        updateState(new ChannelUID(getThing().getUID(), CHANNEL_BATTERY),
-                                ((HeatingThermostat) device).getBatteryLow());
-                        updateState(new ChannelUID(getThing().getUID(), CHANNEL_VALVE),
-                                ((HeatingThermostat) device).getValvePosition());
-                        DecimalType actualTemp = ((HeatingThermostat) device).getTemperatureActual();
-                        if (!actualTemp.equals(DecimalType.ZERO)) {
-                            updateState(new ChannelUID(getThing().getUID(), CHANNEL_ACTUALTEMP), actualTemp);
+                        if (refreshAll || changedChannels.contains(CHANNEL_LOCKED)) {
+                            updateState(new ChannelUID(getThing().getUID(), CHANNEL_LOCKED),
+                                    ((HeatingThermostat) device).isPanelLocked() ? OpenClosedType.CLOSED
+                                            : OpenClosedType.OPEN);
+                        }
+                        if (refreshAll || changedChannels.contains(CHANNEL_SETTEMP)) {
+                            updateState(new ChannelUID(getThing().getUID(), CHANNEL_SETTEMP),
+                                    ((HeatingThermostat) device).getTemperatureSetpoint());
+                        }
+                        if (refreshAll || changedChannels.contains(CHANNEL_MODE)) {
+                            updateState(new ChannelUID(getThing().getUID(), CHANNEL_MODE),
+                                    ((HeatingThermostat) device).getModeString());
+                        }
+                        if (refreshAll || changedChannels.contains(CHANNEL_BATTERY)) {
+                            updateState(new ChannelUID(getThing().getUID(), CHANNEL_BATTERY),
+                                    ((HeatingThermostat) device).getBatteryLow());
+                        }
+                        if (refreshAll || changedChannels.contains(CHANNEL_VALVE)) {
+                            updateState(new ChannelUID(getThing().getUID(), CHANNEL_VALVE),
+                                    ((HeatingThermostat) device).getValvePosition());
+                        }
+                        if (refreshAll || changedChannels.contains(CHANNEL_ACTUALTEMP)) {
+                            DecimalType actualTemp = ((HeatingThermostat) device).getTemperatureActual();
+                            if (!actualTemp.equals(DecimalType.ZERO)) {
+                                updateState(new ChannelUID(getThing().getUID(), CHANNEL_ACTUALTEMP), actualTemp);
+                            }
                         }
                         break;
                     case ShutterContact:
-                        updateState(new ChannelUID(getThing().getUID(), CHANNEL_CONTACT_STATE),
-                                ((ShutterContact) device).getShutterState());
-                        updateState(new ChannelUID(getThing().getUID(), CHANNEL_BATTERY),
-                                ((ShutterContact) device).getBatteryLow());
+                        if (refreshAll || changedChannels.contains(CHANNEL_CONTACT_STATE)) {
+                            updateState(new ChannelUID(getThing().getUID(), CHANNEL_CONTACT_STATE),
+                                    ((ShutterContact) device).getShutterState());
+                        }
+                        if (refreshAll || changedChannels.contains(CHANNEL_BATTERY)) {
+                            updateState(new ChannelUID(getThing().getUID(), CHANNEL_BATTERY),
+                                    ((ShutterContact) device).getBatteryLow());
+                        }
                         break;
                     case EcoSwitch:
-                        updateState(new ChannelUID(getThing().getUID(), CHANNEL_BATTERY),
-                                ((EcoSwitch) device).getBatteryLow());
+                        if (refreshAll || changedChannels.contains(CHANNEL_BATTERY)) {
+                            updateState(new ChannelUID(getThing().getUID(), CHANNEL_BATTERY),
+                                    ((EcoSwitch) device).getBatteryLow());
+                        }
                         break;
                     default:
                         logger.debug("Unhandled Device {}.", device.getType());
                         break;
                 }
-                forceRefresh = false;
-                device.setUpdated(false);
             } else {
                 logger.debug("No changes for {} {} ({}) id: {}", device.getType(), device.getName(),
                         device.getSerialNumber(), getThing().getUID());
@@ -440,7 +491,7 @@ public class MaxDevicesHandler extends BaseThingHandler implements DeviceStatusL
         }
     }
 
-    private void refreshActualCheck(HeatingThermostat device) {
+    private synchronized void refreshActualCheck(HeatingThermostat device) {
         DateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
 
         if (device.getActualTempLastUpdated() == null) {
@@ -533,6 +584,13 @@ public class MaxDevicesHandler extends BaseThingHandler implements DeviceStatusL
         forceRefresh = true;
     }
 
+    /**
+     * @return true if all states are published when the next data is coming
+     */
+    public boolean isForceRefresh() {
+        return forceRefresh;
+    }
+
     /**
      * Set the properties for this device
      *
@@ -35,7 +35,7 @@ public final class S_Message extends Message {
         if (tokens.length == 3) {
             try {
                 dutyCycle = Integer.parseInt(tokens[0], 16);
-                commandDiscarded = tokens[1] == "1";
+                commandDiscarded = "1".equals(tokens[1]);
                 freeMemorySlots = Integer.parseInt(tokens[2], 16);
             } catch (Exception e) {
                 logger.debug("Exception occurred during parsing of S message: {}", e.getMessage(), e);
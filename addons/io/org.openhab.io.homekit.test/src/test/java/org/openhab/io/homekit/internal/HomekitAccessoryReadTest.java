@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.homekit.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.smarthome.core.items.GenericItem;
+import org.eclipse.smarthome.core.items.GroupItem;
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.library.items.NumberItem;
+import org.eclipse.smarthome.core.library.items.StringItem;
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.StringType;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.io.homekit.internal.accessories.GroupedAccessory;
+import org.openhab.io.homekit.internal.accessories.HomekitAccessoryFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.beowulfe.hap.accessories.properties.ThermostatMode;
+import com.beowulfe.hap.accessories.thermostat.BasicThermostat;
+
+/**
+ * Reads the characteristics of a thermostat from several threads, like a
+ * client loading all accessories, and compares it with looking up the items
+ * in the item registry for every read. The benchmark only runs with the
+ * system property openhab.benchmark=true.
+ *
+ * @author agent
+ */
+public class HomekitAccessoryReadTest {
+
+    private final Logger logger = LoggerFactory.getLogger(HomekitAccessoryReadTest.class);
+
+    private static final int ITEMS = 1000;
+    private static final int THREADS = 8;
+    private static final int READS = 2000;
+
+    private List<Item> items;
+    private BasicThermostat thermostat;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        items = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            items.add(new NumberItem("Number" + i));
+        }
+        GroupItem group = new GroupItem("Thermostat1");
+        group.addTag("Thermostat");
+        NumberItem current = new NumberItem("Thermostat1Current");
+        current.addTag("CurrentTemperature");
+        current.setState(new DecimalType(21));
+        NumberItem target = new NumberItem("Thermostat1Target");
+        target.addTag("TargetTemperature");
+        target.setState(new DecimalType(22));
+        StringItem mode = new StringItem("Thermostat1Mode");
+        mode.addTag("homekit:HeatingCoolingMode");
+        mode.setState(new StringType("HeatOn"));
+        List<GenericItem> characteristics = Arrays.asList(current, target, mode);
+        for (GenericItem item : characteristics) {
+            item.addGroupName(group.getName());
+        }
+        items.add(group);
+        items.addAll(characteristics);
+
+        HomekitItemIndex index = new HomekitItemIndex();
+        index.rebuild(items);
+        thermostat = (BasicThermostat) HomekitAccessoryFactory.create(new HomekitTaggedItem(group, index),
+                new HomekitAccessoryUpdater(), new HomekitSettings());
+        for (GenericItem item : characteristics) {
+            ((GroupedAccessory) thermostat).addCharacteristic(new HomekitTaggedItem(item, index));
+        }
+        assertTrue(((GroupedAccessory) thermostat).isComplete());
+
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentReadsMatchItems() throws Exception {
+        assertEquals(readAll(() -> readFromRegistry()), readAll(() -> readFromAccessory()), 0);
+    }
+
+    @Test
+    public void concurrentReadsBenchmark() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("openhab.benchmark"));
+
+        // warm up both paths
+        readAll(() -> readFromRegistry());
+        readAll(() -> readFromAccessory());
+
+        long start = System.nanoTime();
+        double registryResult = readAll(() -> readFromRegistry());
+        long registryTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        double accessoryResult = readAll(() -> readFromAccessory());
+        long accessoryTime = System.nanoTime() - start;
+
+        logger.info("{} threads reading {} characteristics: {} ms looking up the items, {} ms with resolved items",
+                THREADS, THREADS * READS * 3, registryTime / 1000000, accessoryTime / 1000000);
+        assertEquals(registryResult, accessoryResult, 0);
+    }
+
+    private double readAll(Callable<Double> read) throws Exception {
+        List<Future<Double>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            futures.add(executor.submit(() -> {
+                double sum = 0;
+                for (int i = 0; i < READS; i++) {
+                    sum += read.call();
+                }
+                return sum;
+            }));
+        }
+        double sum = 0;
+        for (Future<Double> future : futures) {
+            sum += future.get();
+        }
+        return sum;
+    }
+
+    private double readFromAccessory() throws Exception {
+        double value = thermostat.getCurrentTemperature().get() + thermostat.getTargetTemperature().get();
+        return thermostat.getCurrentMode().get() == ThermostatMode.HEAT ? value : -value;
+    }
+
+    /**
+     * reads like before the items were resolved, the item registry looks up
+     * items by a linear search on a copy of all items
+     */
+    private double readFromRegistry() {
+        double value = ((DecimalType) get("Thermostat1Current").getStateAs(DecimalType.class)).doubleValue()
+                + ((DecimalType) get("Thermostat1Target").getStateAs(DecimalType.class)).doubleValue();
+        return get("Thermostat1Mode").getStateAs(StringType.class).toString().equals("HeatOn") ? value : -value;
+    }
+
+    private Item get(String name) {
+        for (Item item : new ArrayList<>(items)) {
+            if (item.getName().equals(name)) {
+                return item;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.homekit.internal;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.items.ItemRegistry;
+import org.eclipse.smarthome.core.items.ItemRegistryChangeListener;
+import org.eclipse.smarthome.core.library.items.SwitchItem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests that bursts of registry changes are applied to the bridge together
+ * and measures the startup of a bridge with a few hundred accessories.
+ *
+ * @author agent
+ */
+public class HomekitBulkUpdateTest {
+
+    private final Logger logger = LoggerFactory.getLogger(HomekitBulkUpdateTest.class);
+
+    private static final int ITEMS = 300;
+    private static final int CHANGED_ITEMS = 10;
+    private static final long UPDATE_DELAY = 200;
+    private static final long TIMEOUT = 5000;
+
+    private Map<String, Item> items;
+    private List<ItemRegistryChangeListener> listeners;
+    private TestBridge bridge;
+    private HomekitChangeListener changeListener;
+
+    @Before
+    public void setUp() throws Exception {
+        // read by the scheduled update of the listener
+        items = new ConcurrentHashMap<>();
+        listeners = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            SwitchItem item = createLight(i, "Light " + i);
+            items.put(item.getName(), item);
+        }
+        bridge = new TestBridge();
+        changeListener = new HomekitChangeListener(UPDATE_DELAY);
+        changeListener.setSettings(new HomekitSettings());
+    }
+
+    @After
+    public void tearDown() {
+        changeListener.stop();
+    }
+
+    @Test
+    public void startupPublishesAccessoriesOnce() throws Exception {
+        // accessories added to a running bridge
+        TestBridge runningBridge = new TestBridge();
+        HomekitChangeListener runningListener = new HomekitChangeListener(UPDATE_DELAY);
+        runningListener.setSettings(new HomekitSettings());
+        long start = System.nanoTime();
+        runningBridge.getRoot().start();
+        runningListener.setBridge(runningBridge.getRoot());
+        runningListener.setItemRegistry(createItemRegistry());
+        long runningTime = System.nanoTime() - start;
+        runningListener.stop();
+
+        // accessories added before the bridge is started
+        start = System.nanoTime();
+        changeListener.setBridge(bridge.getRoot());
+        changeListener.setItemRegistry(createItemRegistry());
+        bridge.getRoot().start();
+        long time = System.nanoTime() - start;
+
+        assertEquals(ITEMS, runningBridge.getAccessories().size());
+        assertEquals(ITEMS, bridge.getAccessories().size());
+        logger.info("{} accessories: {} publications in {} ms adding to a running bridge, {} in {} ms adding before start",
+                ITEMS, runningBridge.getPublications(), runningTime / 1000000, bridge.getPublications(),
+                time / 1000000);
+        assertEquals(ITEMS, runningBridge.getPublications());
+        assertEquals(0, bridge.getPublications());
+    }
+
+    @Test
+    public void burstOfChangesIsAppliedOnce() throws Exception {
+        startBridge();
+
+        // a reloaded item file updates all of its items, some of them changed
+        for (int i = 0; i < ITEMS; i++) {
+            update(createLight(i, i < CHANGED_ITEMS ? "Changed " + i : "Light " + i));
+        }
+        for (ItemRegistryChangeListener listener : listeners) {
+            listener.allItemsChanged(Collections.emptyList());
+        }
+        assertEquals(0, bridge.getPublications());
+        assertNotNull(bridge.getAccessory("Light 0"));
+
+        awaitAccessory("Changed " + (CHANGED_ITEMS - 1));
+        // each changed accessory is removed and added once
+        assertEquals(2 * CHANGED_ITEMS, bridge.getPublications());
+        assertNull(bridge.getAccessory("Light 0"));
+        assertEquals(ITEMS, bridge.getAccessories().size());
+    }
+
+    @Test
+    public void revertedChangeIsNotPublished() throws Exception {
+        startBridge();
+
+        update(createLight(0, "Changed 0"));
+        update(createLight(0, "Light 0"));
+        update(createLight(1, "Changed 1"));
+
+        awaitAccessory("Changed 1");
+        assertEquals(2, bridge.getPublications());
+        assertNotNull(bridge.getAccessory("Light 0"));
+    }
+
+    @Test
+    public void removedAndRenamedItems() throws Exception {
+        startBridge();
+
+        Item removed = items.remove(createLight(0, "").getName());
+        for (ItemRegistryChangeListener listener : listeners) {
+            listener.removed(removed);
+        }
+        Item oldItem = items.remove(createLight(1, "").getName());
+        SwitchItem renamed = new SwitchItem("RenamedLight");
+        renamed.setLabel("Renamed");
+        renamed.addTag("Lighting");
+        items.put(renamed.getName(), renamed);
+        for (ItemRegistryChangeListener listener : listeners) {
+            listener.updated(oldItem, renamed);
+        }
+
+        awaitAccessory("Renamed");
+        assertEquals(3, bridge.getPublications());
+        assertNull(bridge.getAccessory("Light 0"));
+        assertNull(bridge.getAccessory("Light 1"));
+        assertEquals(ITEMS - 1, bridge.getAccessories().size());
+    }
+
+    private void startBridge() throws Exception {
+        changeListener.setBridge(bridge.getRoot());
+        changeListener.setItemRegistry(createItemRegistry());
+        bridge.getRoot().start();
+        bridge.resetPublications();
+    }
+
+    private void awaitAccessory(String label) throws Exception {
+        long timeout = System.currentTimeMillis() + TIMEOUT;
+        while (bridge.getAccessory(label) == null) {
+            assertTrue("accessory " + label + " not added", System.currentTimeMillis() < timeout);
+            Thread.sleep(10);
+        }
+        // waits for the running update to complete
+        changeListener.applyPendingChanges();
+    }
+
+    private void update(Item item) {
+        Item oldItem = items.put(item.getName(), item);
+        for (ItemRegistryChangeListener listener : listeners) {
+            listener.updated(oldItem, item);
+        }
+    }
+
+    private static SwitchItem createLight(int i, String label) {
+        SwitchItem item = new SwitchItem("Light" + i);
+        item.setLabel(label);
+        item.addTag("Lighting");
+        return item;
+    }
+
+    private ItemRegistry createItemRegistry() {
+        return (ItemRegistry) Proxy.newProxyInstance(HomekitBulkUpdateTest.class.getClassLoader(),
+                new Class<?>[] { ItemRegistry.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "get":
+                            return items.get(args[0]);
+                        case "getAll":
+                        case "getItems":
+                            return new ArrayList<>(items.values());
+                        case "addRegistryChangeListener":
+                            listeners.add((ItemRegistryChangeListener) args[0]);
+                            return null;
+                        case "removeRegistryChangeListener":
+                            listeners.remove(args[0]);
+                            return null;
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
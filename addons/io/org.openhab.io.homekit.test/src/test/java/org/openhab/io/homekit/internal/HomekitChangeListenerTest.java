@@ -0,0 +1,309 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.homekit.internal;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.smarthome.core.events.Event;
+import org.eclipse.smarthome.core.items.GenericItem;
+import org.eclipse.smarthome.core.items.GroupItem;
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.items.ItemRegistry;
+import org.eclipse.smarthome.core.items.ItemRegistryChangeListener;
+import org.eclipse.smarthome.core.library.items.NumberItem;
+import org.eclipse.smarthome.core.library.items.StringItem;
+import org.eclipse.smarthome.core.library.items.SwitchItem;
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.beowulfe.hap.HomekitAccessory;
+import com.beowulfe.hap.accessories.Lightbulb;
+import com.beowulfe.hap.accessories.thermostat.BasicThermostat;
+
+/**
+ * Tests that updates of items only rebuild the HomeKit accessories which have
+ * changed.
+ *
+ * @author agent
+ */
+public class HomekitChangeListenerTest {
+
+    private Map<String, Item> items;
+    private List<ItemRegistryChangeListener> listeners;
+    private TestBridge bridge;
+    private HomekitChangeListener changeListener;
+
+    @Before
+    public void setUp() throws Exception {
+        items = new LinkedHashMap<>();
+        listeners = new ArrayList<>();
+        for (Item item : createItems()) {
+            items.put(item.getName(), item);
+        }
+
+        bridge = new TestBridge();
+        changeListener = new HomekitChangeListener();
+        changeListener.setSettings(new HomekitSettings());
+        changeListener.setBridge(bridge.getRoot());
+        changeListener.setItemRegistry(createItemRegistry());
+        bridge.getRoot().start();
+        bridge.resetPublications();
+    }
+
+    @Test
+    public void accessoriesAreCreated() throws Exception {
+        assertEquals(2, bridge.getAccessories().size());
+        assertNotNull(bridge.getAccessory("Kitchen Light"));
+        assertNotNull(bridge.getAccessory("Thermostat"));
+    }
+
+    @Test
+    public void unrelatedItemEditCausesNoRebuild() throws Exception {
+        update(createNumber("Unrelated", "Other label"));
+
+        assertEquals(0, bridge.getPublications());
+    }
+
+    @Test
+    public void reloadedItemFileCausesNoRebuild() throws Exception {
+        HomekitAccessory light = bridge.getAccessory("Kitchen Light");
+        HomekitAccessory thermostat = bridge.getAccessory("Thermostat");
+
+        // a reloaded item file updates all of its items with new instances
+        for (Item item : createItems()) {
+            update(item);
+        }
+
+        assertEquals(0, bridge.getPublications());
+        assertSame(light, bridge.getAccessory("Kitchen Light"));
+        assertSame(thermostat, bridge.getAccessory("Thermostat"));
+    }
+
+    @Test
+    public void changedItemRebuildsOnlyItsAccessory() throws Exception {
+        HomekitAccessory thermostat = bridge.getAccessory("Thermostat");
+
+        update(createSwitch("KitchenLight", "Kitchen Ceiling", "Lighting"));
+
+        // removed and added
+        assertEquals(2, bridge.getPublications());
+        assertNull(bridge.getAccessory("Kitchen Light"));
+        assertNotNull(bridge.getAccessory("Kitchen Ceiling"));
+        assertSame(thermostat, bridge.getAccessory("Thermostat"));
+    }
+
+    @Test
+    public void untaggedItemIsRemoved() throws Exception {
+        update(createSwitch("KitchenLight", "Kitchen Light"));
+
+        assertEquals(1, bridge.getPublications());
+        assertNull(bridge.getAccessory("Kitchen Light"));
+    }
+
+    @Test
+    public void subscriptionsFollowUpdatedItem() throws Exception {
+        final AtomicInteger changes = new AtomicInteger();
+        Lightbulb light = (Lightbulb) bridge.getAccessory("Kitchen Light");
+        light.subscribeLightbulbPowerState(() -> changes.incrementAndGet());
+
+        SwitchItem updated = createSwitch("KitchenLight", "Kitchen Light", "Lighting");
+        update(updated);
+        updated.setState(OnOffType.ON);
+
+        assertEquals(1, changes.get());
+        assertEquals(0, bridge.getPublications());
+    }
+
+    @Test
+    public void readsFollowUpdatedItem() throws Exception {
+        Lightbulb light = (Lightbulb) bridge.getAccessory("Kitchen Light");
+        BasicThermostat thermostat = (BasicThermostat) bridge.getAccessory("Thermostat");
+
+        SwitchItem updatedLight = createSwitch("KitchenLight", "Kitchen Light", "Lighting");
+        updatedLight.setState(OnOffType.ON);
+        update(updatedLight);
+        Item current = inGroup(createNumber("Thermostat1Current", "Current", "CurrentTemperature"),
+                (GroupItem) items.get("Thermostat1"));
+        ((NumberItem) current).setState(new DecimalType(21));
+        update(current);
+
+        assertEquals(0, bridge.getPublications());
+        assertTrue(light.getLightbulbPowerState().get());
+        assertEquals(21, thermostat.getCurrentTemperature().get(), 0);
+    }
+
+    @Test
+    public void commandsFollowUpdatedItemBeforeChangesAreApplied() throws Exception {
+        BasicThermostat thermostat = (BasicThermostat) bridge.getAccessory("Thermostat");
+        final List<Event> commands = new ArrayList<>();
+        NumberItem target = createNumber("Thermostat1Target", "Target", "TargetTemperature");
+        target.setEventPublisher(event -> commands.add(event));
+        inGroup(target, (GroupItem) items.get("Thermostat1"));
+
+        // the delayed changes are not applied yet, the disposed instance would drop the command
+        Item oldItem = items.put(target.getName(), target);
+        for (ItemRegistryChangeListener listener : listeners) {
+            listener.updated(oldItem, target);
+        }
+        thermostat.setTargetTemperature(21.0);
+
+        assertEquals(1, commands.size());
+    }
+
+    @Test
+    public void removedCharacteristicIsReleased() throws Exception {
+        BasicThermostat thermostat = (BasicThermostat) bridge.getAccessory("Thermostat");
+
+        Item current = items.remove("Thermostat1Current");
+        for (ItemRegistryChangeListener listener : listeners) {
+            listener.removed(current);
+        }
+        ((NumberItem) current).setState(new DecimalType(21));
+
+        assertNull(thermostat.getCurrentTemperature().get());
+        assertNull(bridge.getAccessory("Thermostat"));
+
+        current = inGroup(createNumber("Thermostat1Current", "Current", "CurrentTemperature"),
+                (GroupItem) items.get("Thermostat1"));
+        items.put(current.getName(), current);
+        for (ItemRegistryChangeListener listener : listeners) {
+            listener.added(current);
+        }
+        changeListener.applyPendingChanges();
+        assertNotNull(bridge.getAccessory("Thermostat"));
+    }
+
+    @Test
+    public void allItemsChangedKeepsUnchangedAccessories() throws Exception {
+        HomekitAccessory thermostat = bridge.getAccessory("Thermostat");
+
+        items.clear();
+        for (Item item : createItems()) {
+            if (!item.getName().equals("KitchenLight")) {
+                items.put(item.getName(), item);
+            }
+        }
+        for (ItemRegistryChangeListener listener : listeners) {
+            listener.allItemsChanged(Collections.emptyList());
+        }
+        changeListener.applyPendingChanges();
+
+        assertEquals(1, bridge.getPublications());
+        assertNull(bridge.getAccessory("Kitchen Light"));
+        assertSame(thermostat, bridge.getAccessory("Thermostat"));
+    }
+
+    @Test
+    public void changedGroupFindsItsCharacteristics() throws Exception {
+        GroupItem thermostat = new GroupItem("Thermostat1");
+        thermostat.setLabel("Heating");
+        thermostat.addTag("Thermostat");
+        update(thermostat);
+
+        assertNull(bridge.getAccessory("Thermostat"));
+        assertNotNull(bridge.getAccessory("Heating"));
+    }
+
+    @Test
+    public void membersOfNewRootGroupAreClassifiedAgain() throws Exception {
+        GroupItem group = new GroupItem("Thermostat1");
+        group.setLabel("Thermostat");
+        update(group);
+        // the members have become temperature sensors
+        assertNull(bridge.getAccessory("Thermostat"));
+        assertNotNull(bridge.getAccessory("Current"));
+
+        GroupItem thermostat = new GroupItem("Thermostat1");
+        thermostat.setLabel("Thermostat");
+        thermostat.addTag("Thermostat");
+        update(thermostat);
+        assertNotNull(bridge.getAccessory("Thermostat"));
+        assertNull(bridge.getAccessory("Current"));
+        assertEquals(2, bridge.getAccessories().size());
+    }
+
+    private void update(Item item) {
+        Item oldItem = items.put(item.getName(), item);
+        for (ItemRegistryChangeListener listener : listeners) {
+            listener.updated(oldItem, item);
+        }
+        changeListener.applyPendingChanges();
+    }
+
+    private static List<Item> createItems() {
+        List<Item> items = new ArrayList<>();
+        items.add(createSwitch("KitchenLight", "Kitchen Light", "Lighting"));
+        items.add(createNumber("Unrelated", "Unrelated"));
+        GroupItem thermostat = new GroupItem("Thermostat1");
+        thermostat.setLabel("Thermostat");
+        thermostat.addTag("Thermostat");
+        items.add(thermostat);
+        items.add(inGroup(createNumber("Thermostat1Current", "Current", "CurrentTemperature"), thermostat));
+        items.add(inGroup(createNumber("Thermostat1Target", "Target", "TargetTemperature"), thermostat));
+        StringItem mode = new StringItem("Thermostat1Mode");
+        mode.setLabel("Mode");
+        mode.addTag("homekit:HeatingCoolingMode");
+        items.add(inGroup(mode, thermostat));
+        return items;
+    }
+
+    private static SwitchItem createSwitch(String name, String label, String... tags) {
+        SwitchItem item = new SwitchItem(name);
+        item.setLabel(label);
+        for (String tag : tags) {
+            item.addTag(tag);
+        }
+        return item;
+    }
+
+    private static NumberItem createNumber(String name, String label, String... tags) {
+        NumberItem item = new NumberItem(name);
+        item.setLabel(label);
+        for (String tag : tags) {
+            item.addTag(tag);
+        }
+        return item;
+    }
+
+    private static Item inGroup(GenericItem item, GroupItem group) {
+        item.addGroupName(group.getName());
+        return item;
+    }
+
+    private ItemRegistry createItemRegistry() {
+        return (ItemRegistry) Proxy.newProxyInstance(HomekitChangeListenerTest.class.getClassLoader(),
+                new Class<?>[] { ItemRegistry.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "get":
+                            return items.get(args[0]);
+                        case "getAll":
+                        case "getItems":
+                            return new ArrayList<>(items.values());
+                        case "addRegistryChangeListener":
+                            listeners.add((ItemRegistryChangeListener) args[0]);
+                            return null;
+                        case "removeRegistryChangeListener":
+                            listeners.remove(args[0]);
+                            return null;
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.homekit.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.smarthome.core.items.GroupItem;
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.library.items.NumberItem;
+import org.eclipse.smarthome.core.library.items.SwitchItem;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests the classification of items by the {@link HomekitItemIndex}. The
+ * benchmark, which compares it with looking up the groups of every item in
+ * the registry, only runs with the system property openhab.benchmark=true.
+ *
+ * @author agent
+ */
+public class HomekitItemIndexTest {
+
+    private final Logger logger = LoggerFactory.getLogger(HomekitItemIndexTest.class);
+
+    private static final int GROUPS = 3000;
+
+    private HomekitItemIndex index;
+
+    @Before
+    public void setUp() {
+        index = new HomekitItemIndex();
+    }
+
+    @Test
+    public void membersOfRootGroupsAreCharacteristics() {
+        GroupItem thermostat = new GroupItem("Thermostat1");
+        thermostat.addTag("Thermostat");
+        NumberItem current = new NumberItem("Thermostat1Current");
+        current.addTag("CurrentTemperature");
+        current.addGroupName(thermostat.getName());
+        NumberItem outside = new NumberItem("Outside");
+        outside.addTag("CurrentTemperature");
+        index.rebuild(Arrays.asList(thermostat, current, outside));
+
+        HomekitTaggedItem taggedCurrent = new HomekitTaggedItem(current, index);
+        HomekitTaggedItem taggedOutside = new HomekitTaggedItem(outside, index);
+        assertTrue(taggedCurrent.isCharacteristic());
+        assertFalse(taggedCurrent.isRootDevice());
+        assertTrue(taggedOutside.isRootDevice());
+    }
+
+    @Test
+    public void changedRootGroupReturnsMembers() {
+        GroupItem group = new GroupItem("Group");
+        NumberItem member = new NumberItem("Member");
+        member.addGroupName(group.getName());
+        index.rebuild(Arrays.asList(group, member));
+        assertFalse(index.isMemberOfRootGroup(member));
+
+        GroupItem thermostat = new GroupItem("Group");
+        thermostat.addTag("Thermostat");
+        assertEquals(Collections.singleton("Member"), index.update("Group", thermostat));
+        assertTrue(index.isMemberOfRootGroup(member));
+
+        // unchanged root group
+        assertTrue(index.update("Group", thermostat).isEmpty());
+
+        assertEquals(Collections.singleton("Member"), index.update("Group", null));
+        assertFalse(index.isMemberOfRootGroup(member));
+    }
+
+    @Test
+    public void updatedMembership() {
+        GroupItem thermostat = new GroupItem("Thermostat1");
+        thermostat.addTag("Thermostat");
+        NumberItem member = new NumberItem("Member");
+        member.addGroupName(thermostat.getName());
+        index.rebuild(Arrays.asList(thermostat, member));
+
+        // the member has left the group
+        index.update("Member", new NumberItem("Member"));
+        GroupItem group = new GroupItem("Thermostat1");
+        assertTrue(index.update("Thermostat1", group).isEmpty());
+    }
+
+    @Test
+    public void accessoryIdsAreReleased() {
+        int id = index.getAccessoryId("Light");
+        assertTrue(id > 1);
+        assertEquals(id, index.getAccessoryId("Light"));
+
+        index.rebuild(Collections.emptyList());
+        // a new index does not know the ids of another index
+        assertEquals(id, new HomekitItemIndex().getAccessoryId("Light"));
+
+        index.getAccessoryId("Light");
+        index.update("Light", null);
+        assertEquals(id, index.getAccessoryId("Light"));
+    }
+
+    @Test
+    public void nestedGroupsAreClassified() {
+        // the thermostats and the switches outside of thermostats
+        assertEquals(GROUPS, classifyWithIndex(createNestedGroups()));
+    }
+
+    @Test
+    public void nestedGroupsBenchmark() {
+        Assume.assumeTrue(Boolean.getBoolean("openhab.benchmark"));
+        List<Item> items = createNestedGroups();
+
+        // warm up both paths
+        classifyWithRegistry(items);
+        classifyWithIndex(items);
+
+        long start = System.nanoTime();
+        int registryDevices = classifyWithRegistry(items);
+        long registryTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int indexDevices = classifyWithIndex(items);
+        long indexTime = System.nanoTime() - start;
+
+        logger.info("{} items in {} nested groups: {} ms looking up the groups in the registry, {} ms with the index",
+                items.size(), GROUPS, registryTime / 1000000, indexTime / 1000000);
+        assertEquals(registryDevices, indexDevices);
+    }
+
+    /**
+     * every group is member of the previous group and contains a tagged switch
+     */
+    private List<Item> createNestedGroups() {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < GROUPS; i++) {
+            GroupItem group = new GroupItem("Group" + i);
+            if (i > 0) {
+                group.addGroupName("Group" + (i - 1));
+            }
+            if (i % 2 == 0) {
+                group.addTag("Thermostat");
+            }
+            items.add(group);
+            SwitchItem item = new SwitchItem("Switch" + i);
+            item.addTag("Switchable");
+            item.addGroupName(group.getName());
+            items.add(item);
+        }
+        return items;
+    }
+
+    private int classifyWithIndex(List<Item> items) {
+        HomekitItemIndex index = new HomekitItemIndex();
+        index.rebuild(items);
+        int rootDevices = 0;
+        for (Item item : items) {
+            if (new HomekitTaggedItem(item, index).isRootDevice()) {
+                rootDevices++;
+            }
+        }
+        return rootDevices;
+    }
+
+    /**
+     * classifies the items like before the index, the item registry looks
+     * up items by a linear search
+     */
+    private int classifyWithRegistry(List<Item> items) {
+        int rootDevices = 0;
+        for (Item item : items) {
+            for (String tag : item.getTags()) {
+                if (!isMemberOfRootGroup(item, items) && HomekitDeviceType.valueOfTag(tag) != null) {
+                    rootDevices++;
+                    break;
+                }
+            }
+        }
+        return rootDevices;
+    }
+
+    private boolean isMemberOfRootGroup(Item item, List<Item> items) {
+        for (String groupName : item.getGroupNames()) {
+            for (Item groupItem : items) {
+                if (groupItem.getName().equals(groupName)) {
+                    for (String groupTag : groupItem.getTags()) {
+                        if (HomekitDeviceType.valueOfTag(groupTag) != null) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
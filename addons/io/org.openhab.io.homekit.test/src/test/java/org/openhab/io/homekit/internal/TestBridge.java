@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.homekit.internal;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.beowulfe.hap.HomekitAccessory;
+import com.beowulfe.hap.HomekitAuthInfo;
+import com.beowulfe.hap.HomekitRoot;
+import com.beowulfe.hap.impl.HomekitRegistry;
+import com.beowulfe.hap.impl.HomekitWebHandler;
+import com.beowulfe.hap.impl.http.HomekitClientConnectionFactory;
+import com.beowulfe.hap.impl.jmdns.JmdnsHomekitAdvertiser;
+
+/**
+ * A HomekitRoot without network, which counts how often the accessories of
+ * the bridge are published to the connected clients.
+ *
+ * The bridge resets the connections of all clients whenever an accessory is
+ * added or removed after the bridge has been started, so that the clients
+ * load the accessories again.
+ *
+ * @author agent
+ */
+class TestBridge {
+
+    private final AtomicInteger publications = new AtomicInteger();
+    private final HomekitRoot root;
+
+    TestBridge() throws Exception {
+        HomekitWebHandler webHandler = new HomekitWebHandler() {
+
+            @Override
+            public CompletableFuture<Integer> start(HomekitClientConnectionFactory clientConnectionFactory) {
+                // never completes, so the bridge is not advertised
+                return new CompletableFuture<>();
+            }
+
+            @Override
+            public void stop() {
+            }
+
+            @Override
+            public void resetConnections() {
+                publications.incrementAndGet();
+            }
+        };
+        Constructor<HomekitRoot> constructor = HomekitRoot.class.getDeclaredConstructor(String.class,
+                HomekitWebHandler.class, HomekitAuthInfo.class, JmdnsHomekitAdvertiser.class);
+        constructor.setAccessible(true);
+        root = constructor.newInstance("test", webHandler, null, null);
+    }
+
+    HomekitRoot getRoot() {
+        return root;
+    }
+
+    /**
+     * @return the number of publications after the bridge has been started
+     */
+    int getPublications() {
+        return publications.get();
+    }
+
+    void resetPublications() {
+        publications.set(0);
+    }
+
+    Collection<HomekitAccessory> getAccessories() throws Exception {
+        Method method = HomekitRoot.class.getDeclaredMethod("getRegistry");
+        method.setAccessible(true);
+        return new ArrayList<>(((HomekitRegistry) method.invoke(root)).getAccessories());
+    }
+
+    HomekitAccessory getAccessory(String label) throws Exception {
+        for (HomekitAccessory accessory : getAccessories()) {
+            if (label.equals(accessory.getLabel())) {
+                return accessory;
+            }
+        }
+        return null;
+    }
+}
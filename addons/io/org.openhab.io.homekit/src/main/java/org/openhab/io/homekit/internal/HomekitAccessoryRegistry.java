@@ -9,14 +9,10 @@
 package org.openhab.io.homekit.internal;
 
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.openhab.io.homekit.internal.accessories.GroupedAccessory;
+import org.openhab.io.homekit.internal.accessories.ItemAccessory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,50 +22,108 @@ import com.beowulfe.hap.HomekitRoot;
 /**
  * Stores the created HomekitAccessories. GroupedAccessories are also held here
  * in a pre-created pending state until all required characteristics are found.
+ * The characteristics are kept, so that a grouped accessory which is created
+ * again, e.g. after its group item has changed, finds them.
+ *
+ * The accessories are indexed by their id and group name, so that an updated
+ * item is passed to its accessory without searching all accessories. A
+ * grouped accessory which loses a characteristic is removed from the bridge
+ * until the characteristic is added again.
+ *
+ * The registry is only used by the change listener, so all methods share one
+ * lock and the indexes are plain maps.
  *
  * @author Andy Lintner
  */
 class HomekitAccessoryRegistry {
 
     private HomekitRoot bridge;
-    private final List<HomekitAccessory> createdAccessories = new LinkedList<>();
-    private final Set<Integer> createdIds = new HashSet<>();
-    private final Map<String, GroupedAccessory> pendingGroupedAccessories = new HashMap<>();
-    private final List<HomekitTaggedItem> pendingCharacteristics = new LinkedList<>();
+    private final Map<Integer, HomekitAccessory> createdAccessories = new HashMap<>();
+    private final Map<String, GroupedAccessory> groupedAccessories = new HashMap<>();
+    private final Map<String, HomekitTaggedItem> characteristics = new HashMap<>();
 
     private final Logger logger = LoggerFactory.getLogger(HomekitAccessoryRegistry.class);
 
-    public void remove(HomekitTaggedItem taggedItem) {
-        Iterator<HomekitAccessory> i = createdAccessories.iterator();
-        while (i.hasNext()) {
-            HomekitAccessory accessory = i.next();
-            if (accessory.getId() == taggedItem.getId()) {
+    public synchronized void remove(HomekitTaggedItem taggedItem) {
+        String itemName = taggedItem.getItem().getName();
+        if (taggedItem.isCharacteristic()) {
+            characteristics.remove(itemName);
+            for (String group : taggedItem.getItem().getGroupNames()) {
+                GroupedAccessory accessory = groupedAccessories.get(group);
+                if (accessory != null) {
+                    accessory.removeCharacteristic(taggedItem);
+                    if (!accessory.isComplete() && createdAccessories.remove(accessory.getId()) != null) {
+                        logger.debug("Removed incomplete accessory " + accessory.getId());
+                        if (bridge != null) {
+                            bridge.removeAccessory(accessory);
+                        }
+                    }
+                }
+            }
+        }
+        if (taggedItem.isRootDevice()) {
+            groupedAccessories.remove(itemName);
+            HomekitAccessory accessory = createdAccessories.remove(taggedItem.getId());
+            if (accessory != null) {
                 logger.debug("Removed accessory " + accessory.getId());
-                bridge.removeAccessory(accessory);
-                i.remove();
+                if (bridge != null) {
+                    bridge.removeAccessory(accessory);
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes a new instance of an item to its accessory, if the item has
+     * been updated without changing the accessory.
+     */
+    public synchronized void update(HomekitTaggedItem taggedItem) {
+        String itemName = taggedItem.getItem().getName();
+        if (taggedItem.isRootDevice()) {
+            HomekitAccessory accessory = createdAccessories.get(taggedItem.getId());
+            if (accessory == null) {
+                accessory = groupedAccessories.get(itemName);
+            }
+            if (accessory instanceof ItemAccessory) {
+                ((ItemAccessory) accessory).updateItem(taggedItem);
+            }
+        }
+        if (taggedItem.isCharacteristic()) {
+            characteristics.put(itemName, taggedItem);
+            for (String group : taggedItem.getItem().getGroupNames()) {
+                GroupedAccessory accessory = groupedAccessories.get(group);
+                if (accessory != null) {
+                    accessory.addCharacteristic(taggedItem);
+                }
             }
         }
     }
 
     public synchronized void clear() {
-        while (!createdAccessories.isEmpty()) {
-            bridge.removeAccessory(createdAccessories.remove(0));
+        if (bridge != null) {
+            for (HomekitAccessory accessory : createdAccessories.values()) {
+                bridge.removeAccessory(accessory);
+            }
         }
-        createdIds.clear();
+        createdAccessories.clear();
+        groupedAccessories.clear();
+        characteristics.clear();
     }
 
     public synchronized void setBridge(HomekitRoot bridge) {
         this.bridge = bridge;
-        createdAccessories.forEach(accessory -> bridge.addAccessory(accessory));
+        if (bridge != null) {
+            createdAccessories.values().forEach(accessory -> bridge.addAccessory(accessory));
+        }
     }
 
     public synchronized void addRootDevice(HomekitAccessory accessory) {
         if (accessory instanceof GroupedAccessory) {
             GroupedAccessory groupedAccessory = (GroupedAccessory) accessory;
-            pendingGroupedAccessories.put(groupedAccessory.getGroupName(), groupedAccessory);
-            for (HomekitTaggedItem characteristic : pendingCharacteristics) {
+            groupedAccessories.put(groupedAccessory.getGroupName(), groupedAccessory);
+            for (HomekitTaggedItem characteristic : characteristics.values()) {
                 if (characteristic.getItem().getGroupNames().contains(groupedAccessory.getGroupName())) {
-                    addCharacteristicToGroup(groupedAccessory.getGroupName(), characteristic);
+                    addCharacteristicToGroup(groupedAccessory, characteristic);
                 }
             }
         } else {
@@ -78,29 +132,27 @@ class HomekitAccessoryRegistry {
     }
 
     public synchronized void addCharacteristic(HomekitTaggedItem item) {
+        characteristics.put(item.getItem().getName(), item);
         for (String group : item.getItem().getGroupNames()) {
-            if (pendingGroupedAccessories.containsKey(group)) {
-                addCharacteristicToGroup(group, item);
+            GroupedAccessory accessory = groupedAccessories.get(group);
+            if (accessory != null) {
+                addCharacteristicToGroup(accessory, item);
                 logger.debug("Added " + item.getItem().getName() + " to " + group);
                 return;
             }
         }
-        pendingCharacteristics.add(item);
         logger.debug("Stored " + item.getItem().getName() + " until group is ready");
     }
 
-    private void addCharacteristicToGroup(String group, HomekitTaggedItem item) {
-        GroupedAccessory accessory = pendingGroupedAccessories.get(group);
+    private void addCharacteristicToGroup(GroupedAccessory accessory, HomekitTaggedItem item) {
         accessory.addCharacteristic(item);
-        if (accessory.isComplete()) {
-            pendingGroupedAccessories.remove(group);
+        if (accessory.isComplete() && !createdAccessories.containsKey(accessory.getId())) {
             doAddDevice(accessory);
         }
     }
 
     private void doAddDevice(HomekitAccessory accessory) {
-        createdAccessories.add(accessory);
-        createdIds.add(accessory.getId());
+        createdAccessories.put(accessory.getId(), accessory);
         if (bridge != null) {
             bridge.addAccessory(accessory);
         }
@@ -70,6 +70,26 @@ public class HomekitAccessoryUpdater {
         });
     }
 
+    /**
+     * Moves all subscriptions of an item to a new instance of the item, which
+     * replaced it in the item registry.
+     */
+    public void replaceItem(GenericItem oldItem, GenericItem newItem) {
+        if (oldItem == newItem) {
+            return;
+        }
+        for (ItemKey itemKey : subscriptionsByName.keySet()) {
+            if (itemKey.item == oldItem) {
+                Subscription subscription = subscriptionsByName.remove(itemKey);
+                if (subscription != null) {
+                    oldItem.removeStateChangeListener(subscription);
+                    newItem.addStateChangeListener(subscription);
+                    subscriptionsByName.put(new ItemKey(newItem, itemKey.key), subscription);
+                }
+            }
+        }
+    }
+
     @FunctionalInterface
     private static interface Subscription extends StateChangeListener {
 
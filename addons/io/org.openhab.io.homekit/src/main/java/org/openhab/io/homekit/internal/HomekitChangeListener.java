@@ -9,7 +9,16 @@
 package org.openhab.io.homekit.internal;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
+import org.eclipse.smarthome.core.items.GenericItem;
 import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.items.ItemRegistry;
 import org.eclipse.smarthome.core.items.ItemRegistryChangeListener;
@@ -23,6 +32,17 @@ import com.beowulfe.hap.HomekitRoot;
  * Listens for changes to the item registry. When changes are detected, check
  * for Homekit tags and, if present, add the items to the HomekitAccessoryRegistry.
  *
+ * The tagged items of the created accessories are kept, so that an update of
+ * an item only rebuilds its accessory if the accessory would be different.
+ * Otherwise the accessory keeps running with the new item instance.
+ *
+ * Changes of the registry are collected for a short time and then applied
+ * together, so that a burst of changes, e.g. by a reloaded item file, is
+ * compared with the accessories once and only the resulting differences
+ * reach the bridge. The accessories stop using the instance of a removed or
+ * updated item at once though, as the registry disposes it and commands sent
+ * to it would be lost.
+ *
  * @author Andy Lintner
  */
 public class HomekitChangeListener implements ItemRegistryChangeListener {
@@ -32,11 +52,115 @@ public class HomekitChangeListener implements ItemRegistryChangeListener {
     private Logger logger = LoggerFactory.getLogger(HomekitChangeListener.class);
     private final HomekitAccessoryRegistry accessoryRegistry = new HomekitAccessoryRegistry();
     private HomekitSettings settings;
+    private final Map<String, HomekitTaggedItem> taggedItems = new HashMap<>();
+    private final HomekitItemIndex itemIndex = new HomekitItemIndex();
+
+    private static final long DEFAULT_UPDATE_DELAY = 500;
+    private final long updateDelay;
+    private final ScheduledExecutorService scheduler = ThreadPoolManager.getScheduledPool("homekit");
+    private final Set<String> pendingItemNames = new HashSet<>();
+    private boolean pendingAllItems = false;
+    private ScheduledFuture<?> pendingUpdate;
+
+    public HomekitChangeListener() {
+        this(DEFAULT_UPDATE_DELAY);
+    }
+
+    /**
+     * @param updateDelay the time in milliseconds to collect changes before they are applied
+     */
+    HomekitChangeListener(long updateDelay) {
+        this.updateDelay = updateDelay;
+    }
 
     @Override
     public synchronized void added(Item item) {
-        HomekitTaggedItem taggedItem = new HomekitTaggedItem(item, itemRegistry);
+        pendingItemNames.add(item.getName());
+        scheduleUpdate();
+    }
+
+    @Override
+    public synchronized void allItemsChanged(Collection<String> oldItemNames) {
+        pendingAllItems = true;
+        scheduleUpdate();
+    }
+
+    @Override
+    public synchronized void removed(Item item) {
+        pendingItemNames.add(item.getName());
+        removeItem(item);
+        scheduleUpdate();
+    }
+
+    @Override
+    public synchronized void updated(Item oldElement, Item element) {
+        pendingItemNames.add(oldElement.getName());
+        pendingItemNames.add(element.getName());
+        HomekitTaggedItem oldTaggedItem = taggedItems.get(oldElement.getName());
+        if (oldTaggedItem != null) {
+            HomekitTaggedItem taggedItem = new HomekitTaggedItem(element, itemIndex);
+            if (oldTaggedItem.isSameAccessory(taggedItem)) {
+                keepAccessory(oldTaggedItem, taggedItem);
+            }
+        }
+        scheduleUpdate();
+    }
+
+    /**
+     * Applies the collected changes of the registry to the accessories.
+     */
+    public synchronized void applyPendingChanges() {
+        if (pendingUpdate != null) {
+            pendingUpdate.cancel(false);
+            pendingUpdate = null;
+        }
+        if (itemRegistry == null || (!pendingAllItems && pendingItemNames.isEmpty())) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Map<String, Item> items = new HashMap<>();
+        for (Item item : itemRegistry.getAll()) {
+            items.put(item.getName(), item);
+        }
+        if (pendingAllItems) {
+            itemIndex.rebuild(items.values());
+            applyItems(items.values());
+        } else {
+            // members of groups which became root devices or stopped being root devices are classified again
+            Set<String> itemNames = new HashSet<>(pendingItemNames);
+            for (String itemName : pendingItemNames) {
+                itemNames.addAll(itemIndex.update(itemName, items.get(itemName)));
+            }
+            for (String itemName : itemNames) {
+                Item item = items.get(itemName);
+                HomekitTaggedItem taggedItem = taggedItems.get(itemName);
+                if (item == null) {
+                    if (taggedItem != null) {
+                        removeItem(taggedItem.getItem());
+                    }
+                } else if (taggedItem == null) {
+                    addItem(item);
+                } else {
+                    updateItem(taggedItem.getItem(), item);
+                }
+            }
+        }
+        logger.debug("Applied changes of {} items in {} ms", pendingAllItems ? items.size() : pendingItemNames.size(),
+                System.currentTimeMillis() - start);
+        pendingItemNames.clear();
+        pendingAllItems = false;
+    }
+
+    private void scheduleUpdate() {
+        if (pendingUpdate == null) {
+            pendingUpdate = scheduler.schedule(() -> applyPendingChanges(), updateDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void addItem(Item item) {
+        HomekitTaggedItem taggedItem = new HomekitTaggedItem(item, itemIndex);
         if (taggedItem.isTagged()) {
+            taggedItems.put(item.getName(), taggedItem);
             if (taggedItem.isRootDevice()) {
                 createRootDevice(taggedItem);
             }
@@ -46,27 +170,60 @@ public class HomekitChangeListener implements ItemRegistryChangeListener {
         }
     }
 
-    @Override
-    public void allItemsChanged(Collection<String> oldItemNames) {
-        clearAccessories();
+    private void applyItems(Collection<Item> items) {
+        Map<String, HomekitTaggedItem> previous = new HashMap<>(taggedItems);
+        for (Item item : items) {
+            HomekitTaggedItem taggedItem = previous.remove(item.getName());
+            if (taggedItem == null) {
+                addItem(item);
+            } else {
+                updateItem(taggedItem.getItem(), item);
+            }
+        }
+        for (HomekitTaggedItem taggedItem : previous.values()) {
+            removeItem(taggedItem.getItem());
+        }
     }
 
-    @Override
-    public synchronized void removed(Item item) {
-        HomekitTaggedItem taggedItem = new HomekitTaggedItem(item, itemRegistry);
-        if (taggedItem.isTagged()) {
+    private void removeItem(Item item) {
+        HomekitTaggedItem taggedItem = taggedItems.remove(item.getName());
+        if (taggedItem != null) {
             accessoryRegistry.remove(taggedItem);
         }
     }
 
-    @Override
-    public void updated(Item oldElement, Item element) {
-        removed(oldElement);
-        added(element);
+    private void updateItem(Item oldElement, Item element) {
+        HomekitTaggedItem oldTaggedItem = taggedItems.get(oldElement.getName());
+        HomekitTaggedItem taggedItem = new HomekitTaggedItem(element, itemIndex);
+        if (oldTaggedItem != null && oldTaggedItem.isSameAccessory(taggedItem)) {
+            keepAccessory(oldTaggedItem, taggedItem);
+        } else {
+            removeItem(oldElement);
+            addItem(element);
+        }
+    }
+
+    /**
+     * keeps the accessory, only its item instance has changed
+     */
+    private void keepAccessory(HomekitTaggedItem oldTaggedItem, HomekitTaggedItem taggedItem) {
+        Item element = taggedItem.getItem();
+        if (oldTaggedItem.getItem() == element) {
+            return;
+        }
+        taggedItems.put(element.getName(), taggedItem);
+        if (oldTaggedItem.getItem() instanceof GenericItem && element instanceof GenericItem) {
+            updater.replaceItem((GenericItem) oldTaggedItem.getItem(), (GenericItem) element);
+        }
+        accessoryRegistry.update(taggedItem);
+        logger.debug("Kept homekit accessory of updated item " + element.getName());
     }
 
     public synchronized void clearAccessories() {
         accessoryRegistry.clear();
+        taggedItems.clear();
+        pendingItemNames.clear();
+        pendingAllItems = false;
     }
 
     public synchronized void setBridge(HomekitRoot bridge) {
@@ -76,7 +233,9 @@ public class HomekitChangeListener implements ItemRegistryChangeListener {
     public synchronized void setItemRegistry(ItemRegistry itemRegistry) {
         this.itemRegistry = itemRegistry;
         itemRegistry.addRegistryChangeListener(this);
-        itemRegistry.getAll().forEach(item -> added(item));
+        Collection<Item> items = itemRegistry.getAll();
+        itemIndex.rebuild(items);
+        items.forEach(item -> addItem(item));
     }
 
     public void setUpdater(HomekitAccessoryUpdater updater) {
@@ -87,17 +246,20 @@ public class HomekitChangeListener implements ItemRegistryChangeListener {
         this.settings = settings;
     }
 
-    public void stop() {
+    public synchronized void stop() {
         if (this.itemRegistry != null) {
             this.itemRegistry.removeRegistryChangeListener(this);
         }
+        if (pendingUpdate != null) {
+            pendingUpdate.cancel(false);
+            pendingUpdate = null;
+        }
     }
 
     private void createRootDevice(HomekitTaggedItem taggedItem) {
         try {
             logger.debug("Adding homekit device " + taggedItem.getItem().getName());
-            accessoryRegistry
-                    .addRootDevice(HomekitAccessoryFactory.create(taggedItem, itemRegistry, updater, settings));
+            accessoryRegistry.addRootDevice(HomekitAccessoryFactory.create(taggedItem, updater, settings));
             logger.debug("Added homekit device " + taggedItem.getItem().getName());
         } catch (Exception e) {
             logger.error("Could not add device: " + e.getMessage(), e);
@@ -92,7 +92,8 @@ public class HomekitImpl implements Homekit {
         homekit = new HomekitServer(settings.getNetworkInterface(), settings.getPort());
         bridge = homekit.createBridge(new HomekitAuthInfoImpl(storageService, settings.getPin()), settings.getName(),
                 settings.getManufacturer(), settings.getModel(), settings.getSerialNumber());
-        bridge.start();
+        // add the accessories before the bridge is published, so that they are announced at once
         changeListener.setBridge(bridge);
+        bridge.start();
     }
 }
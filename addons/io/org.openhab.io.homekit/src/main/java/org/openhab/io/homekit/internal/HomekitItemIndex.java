@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.homekit.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.eclipse.smarthome.core.items.Item;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the group memberships of the items and the names of the items tagged
+ * as root devices, so that an item can be classified without looking up its
+ * groups in the item registry. Also assigns the ids of the accessories.
+ *
+ * The index is built once from all items and then updated for every changed
+ * item. It is not thread safe and only used by the {@link HomekitChangeListener}.
+ *
+ * @author agent
+ */
+public class HomekitItemIndex {
+
+    private Logger logger = LoggerFactory.getLogger(HomekitItemIndex.class);
+
+    private final Set<String> rootDeviceNames = new HashSet<>();
+    private final Map<String, Collection<String>> groupNames = new HashMap<>();
+    private final Map<String, Set<String>> memberNames = new HashMap<>();
+    private final Map<Integer, String> accessoryIds = new HashMap<>();
+
+    /**
+     * Replaces the content of the index by the given items.
+     *
+     * @param items all items of the registry
+     */
+    public void rebuild(Collection<Item> items) {
+        Set<String> itemNames = new HashSet<>();
+        rootDeviceNames.clear();
+        groupNames.clear();
+        memberNames.clear();
+        for (Item item : items) {
+            itemNames.add(item.getName());
+            add(item);
+        }
+        accessoryIds.values().retainAll(itemNames);
+    }
+
+    /**
+     * Updates the index for an added, updated or removed item.
+     *
+     * @param itemName the name of the item
+     * @param item the item, or null if it has been removed
+     * @return the names of the members of the item which have to be classified again, because
+     *         the item has become a root device or is no root device any more
+     */
+    public Set<String> update(String itemName, Item item) {
+        boolean wasRootDevice = rootDeviceNames.remove(itemName);
+        Collection<String> oldGroupNames = groupNames.remove(itemName);
+        if (oldGroupNames != null) {
+            for (String groupName : oldGroupNames) {
+                Set<String> members = memberNames.get(groupName);
+                if (members != null) {
+                    members.remove(itemName);
+                    if (members.isEmpty()) {
+                        memberNames.remove(groupName);
+                    }
+                }
+            }
+        }
+        if (item != null) {
+            add(item);
+        } else {
+            accessoryIds.remove(calculateId(itemName), itemName);
+        }
+        if (wasRootDevice != rootDeviceNames.contains(itemName) && memberNames.containsKey(itemName)) {
+            return new HashSet<>(memberNames.get(itemName));
+        }
+        return Collections.emptySet();
+    }
+
+    public void clear() {
+        rootDeviceNames.clear();
+        groupNames.clear();
+        memberNames.clear();
+        accessoryIds.clear();
+    }
+
+    /**
+     * @return true if one of the groups of the item is tagged as a root device
+     */
+    public boolean isMemberOfRootGroup(Item item) {
+        for (String groupName : item.getGroupNames()) {
+            if (rootDeviceNames.contains(groupName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Assigns the id of the accessory of an item.
+     *
+     * @param itemName the name of the item
+     * @return the id, or 0 if the id is already used by another item
+     */
+    public int getAccessoryId(String itemName) {
+        int id = calculateId(itemName);
+        String existing = accessoryIds.putIfAbsent(id, itemName);
+        if (existing != null && !existing.equals(itemName)) {
+            logger.error("Could not create homekit accessory " + itemName + " "
+                    + "because its hash conflicts with " + existing + ". "
+                    + "This is a 1:1,000,000 chance occurrence. Change one of the names and "
+                    + "consider playing the lottery. See "
+                    + "https://github.com/openhab/openhab2/issues/257#issuecomment-125886562");
+            return 0;
+        }
+        return id;
+    }
+
+    private void add(Item item) {
+        String itemName = item.getName();
+        Collection<String> itemGroupNames = new ArrayList<>(item.getGroupNames());
+        groupNames.put(itemName, itemGroupNames);
+        for (String groupName : itemGroupNames) {
+            memberNames.computeIfAbsent(groupName, name -> new HashSet<>()).add(itemName);
+        }
+        for (String tag : item.getTags()) {
+            if (HomekitDeviceType.valueOfTag(tag) != null) {
+                rootDeviceNames.add(itemName);
+                break;
+            }
+        }
+    }
+
+    private static int calculateId(String itemName) {
+        int id = new HashCodeBuilder().append(itemName).hashCode();
+        if (id < 0) {
+            id += Integer.MAX_VALUE;
+        }
+        if (id < 2) {
+            id = 2; // 0 and 1 are reserved
+        }
+        return id;
+    }
+}
@@ -8,15 +8,11 @@
  */
 package org.openhab.io.homekit.internal;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Objects;
 
-import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.eclipse.smarthome.core.items.GroupItem;
 import org.eclipse.smarthome.core.items.Item;
-import org.eclipse.smarthome.core.items.ItemRegistry;
 import org.eclipse.smarthome.core.library.items.DimmerItem;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * Wraps an Item with data derived from supported tags defined.
@@ -25,21 +21,19 @@ import org.slf4j.LoggerFactory;
  */
 public class HomekitTaggedItem {
 
-    private static final Map<Integer, String> CREATED_ACCESSORY_IDS = new ConcurrentHashMap<>();
-
     private HomekitDeviceType homekitDeviceType;
     private HomekitCharacteristicType homekitCharacteristicType;
     private final Item item;
-    private Logger logger = LoggerFactory.getLogger(HomekitTaggedItem.class);
     private final int id;
 
-    public HomekitTaggedItem(Item item, ItemRegistry itemRegistry) {
+    public HomekitTaggedItem(Item item, HomekitItemIndex itemIndex) {
         this.item = item;
+        boolean memberOfRootGroup = itemIndex.isMemberOfRootGroup(item);
         for (String tag : item.getTags()) {
             if (item instanceof DimmerItem) {
                 tag = "Dimmable" + tag;
             }
-            if (!isMemberOfRootGroup(item, itemRegistry)) {
+            if (!memberOfRootGroup) {
                 homekitDeviceType = HomekitDeviceType.valueOfTag(tag);
             }
             if (homekitDeviceType == null) {
@@ -50,7 +44,7 @@ public class HomekitTaggedItem {
             }
         }
         if (homekitDeviceType != null) {
-            this.id = calculateId(item);
+            this.id = itemIndex.getAccessoryId(item.getName());
         } else {
             this.id = 0;
         }
@@ -84,40 +78,28 @@ public class HomekitTaggedItem {
         return id;
     }
 
-    private int calculateId(Item item) {
-        int id = new HashCodeBuilder().append(item.getName()).hashCode();
-        if (id < 0) {
-            id += Integer.MAX_VALUE;
-        }
-        if (id < 2) {
-            id = 2; // 0 and 1 are reserved
-        }
-        if (CREATED_ACCESSORY_IDS.containsKey(id)) {
-            if (!CREATED_ACCESSORY_IDS.get(id).equals(item.getName())) {
-                logger.error("Could not create homekit accessory " + item.getName() + " "
-                        + "because its hash conflicts with " + CREATED_ACCESSORY_IDS.get(id) + ". "
-                        + "This is a 1:1,000,000 chance occurrence. Change one of the names and "
-                        + "consider playing the lottery. See "
-                        + "https://github.com/openhab/openhab2/issues/257#issuecomment-125886562");
-                return 0;
-            }
-        } else {
-            CREATED_ACCESSORY_IDS.put(id, item.getName());
-        }
-        return id;
+    /**
+     * Checks if another tagged item results in the same accessory or
+     * characteristic, so that an update of the item does not require to
+     * rebuild the accessory.
+     *
+     * @param other the tagged item after an update
+     * @return true if the accessory does not change
+     */
+    public boolean isSameAccessory(HomekitTaggedItem other) {
+        Item otherItem = other.getItem();
+        return id == other.id && homekitDeviceType == other.homekitDeviceType
+                && homekitCharacteristicType == other.homekitCharacteristicType
+                && item.getName().equals(otherItem.getName()) && item.getClass() == otherItem.getClass()
+                && Objects.equals(item.getLabel(), otherItem.getLabel())
+                && Objects.equals(item.getGroupNames(), otherItem.getGroupNames())
+                && getBaseItemClass(item) == getBaseItemClass(otherItem);
     }
 
-    private boolean isMemberOfRootGroup(Item item, ItemRegistry itemRegistry) {
-        for (String groupName : item.getGroupNames()) {
-            Item groupItem = itemRegistry.get(groupName);
-            if (groupItem != null) {
-                for (String groupTag : groupItem.getTags()) {
-                    if (HomekitDeviceType.valueOfTag(groupTag) != null) {
-                        return true;
-                    }
-                }
-            }
+    private static Class<?> getBaseItemClass(Item item) {
+        if (item instanceof GroupItem && ((GroupItem) item).getBaseItem() != null) {
+            return ((GroupItem) item).getBaseItem().getClass();
         }
-        return false;
+        return null;
     }
 }
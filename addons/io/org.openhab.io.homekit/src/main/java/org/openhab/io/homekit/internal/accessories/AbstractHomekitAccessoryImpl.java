@@ -11,36 +11,33 @@ package org.openhab.io.homekit.internal.accessories;
 import org.eclipse.smarthome.core.items.GenericItem;
 import org.eclipse.smarthome.core.items.GroupItem;
 import org.eclipse.smarthome.core.items.Item;
-import org.eclipse.smarthome.core.items.ItemRegistry;
 import org.openhab.io.homekit.internal.HomekitAccessoryUpdater;
 import org.openhab.io.homekit.internal.HomekitTaggedItem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.beowulfe.hap.HomekitAccessory;
-
 /**
  * Abstract class for HomekitAccessory implementations, this provides the
  * accessory metadata using information from the underlying Item.
  *
  * @author Andy Lintner
  */
-abstract class AbstractHomekitAccessoryImpl<T extends GenericItem> implements HomekitAccessory {
+abstract class AbstractHomekitAccessoryImpl<T extends GenericItem> implements ItemAccessory {
 
     private final int accessoryId;
     private final String itemName;
     private final String itemLabel;
-    private final ItemRegistry itemRegistry;
+    private volatile GenericItem item;
     private final HomekitAccessoryUpdater updater;
 
     private Logger logger = LoggerFactory.getLogger(AbstractHomekitAccessoryImpl.class);
 
-    public AbstractHomekitAccessoryImpl(HomekitTaggedItem taggedItem, ItemRegistry itemRegistry,
-            HomekitAccessoryUpdater updater, Class<T> expectedItemClass) {
+    public AbstractHomekitAccessoryImpl(HomekitTaggedItem taggedItem, HomekitAccessoryUpdater updater,
+            Class<T> expectedItemClass) {
         this.accessoryId = taggedItem.getId();
         this.itemName = taggedItem.getItem().getName();
         this.itemLabel = taggedItem.getItem().getLabel();
-        this.itemRegistry = itemRegistry;
+        this.item = (GenericItem) taggedItem.getItem();
         this.updater = updater;
         Item baseItem = taggedItem.getItem();
         if (baseItem instanceof GroupItem && ((GroupItem) baseItem).getBaseItem() != null) {
@@ -83,10 +80,6 @@ abstract class AbstractHomekitAccessoryImpl<T extends GenericItem> implements Ho
         // We're not going to support this for now
     }
 
-    protected ItemRegistry getItemRegistry() {
-        return itemRegistry;
-    }
-
     protected String getItemName() {
         return itemName;
     }
@@ -96,6 +89,11 @@ abstract class AbstractHomekitAccessoryImpl<T extends GenericItem> implements Ho
     }
 
     protected GenericItem getItem() {
-        return (GenericItem) getItemRegistry().get(getItemName());
+        return item;
+    }
+
+    @Override
+    public void updateItem(HomekitTaggedItem taggedItem) {
+        this.item = (GenericItem) taggedItem.getItem();
     }
 }
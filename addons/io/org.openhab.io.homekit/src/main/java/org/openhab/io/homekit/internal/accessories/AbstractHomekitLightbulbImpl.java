@@ -12,7 +12,6 @@ import java.util.concurrent.CompletableFuture;
 
 import org.eclipse.smarthome.core.items.GenericItem;
 import org.eclipse.smarthome.core.items.GroupItem;
-import org.eclipse.smarthome.core.items.ItemRegistry;
 import org.eclipse.smarthome.core.library.items.SwitchItem;
 import org.eclipse.smarthome.core.library.types.OnOffType;
 import org.openhab.io.homekit.internal.HomekitAccessoryUpdater;
@@ -29,9 +28,9 @@ import com.beowulfe.hap.accessories.Lightbulb;
 abstract class AbstractHomekitLightbulbImpl<T extends SwitchItem> extends AbstractHomekitAccessoryImpl<T>
         implements Lightbulb {
 
-    public AbstractHomekitLightbulbImpl(HomekitTaggedItem taggedItem, ItemRegistry itemRegistry,
-            HomekitAccessoryUpdater updater, Class<T> expectedItemClass) {
-        super(taggedItem, itemRegistry, updater, expectedItemClass);
+    public AbstractHomekitLightbulbImpl(HomekitTaggedItem taggedItem, HomekitAccessoryUpdater updater,
+            Class<T> expectedItemClass) {
+        super(taggedItem, updater, expectedItemClass);
     }
 
     @Override
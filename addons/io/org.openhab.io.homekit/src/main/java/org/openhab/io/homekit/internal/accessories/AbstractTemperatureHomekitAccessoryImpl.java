@@ -9,7 +9,6 @@
 package org.openhab.io.homekit.internal.accessories;
 
 import org.eclipse.smarthome.core.items.GenericItem;
-import org.eclipse.smarthome.core.items.ItemRegistry;
 import org.openhab.io.homekit.internal.HomekitAccessoryUpdater;
 import org.openhab.io.homekit.internal.HomekitSettings;
 import org.openhab.io.homekit.internal.HomekitTaggedItem;
@@ -22,9 +21,9 @@ abstract class AbstractTemperatureHomekitAccessoryImpl<T extends GenericItem> ex
 
     private final HomekitSettings settings;
 
-    public AbstractTemperatureHomekitAccessoryImpl(HomekitTaggedItem taggedItem, ItemRegistry itemRegistry,
-            HomekitAccessoryUpdater updater, HomekitSettings settings, Class<T> expectedItemClass) {
-        super(taggedItem, itemRegistry, updater, expectedItemClass);
+    public AbstractTemperatureHomekitAccessoryImpl(HomekitTaggedItem taggedItem, HomekitAccessoryUpdater updater,
+            HomekitSettings settings, Class<T> expectedItemClass) {
+        super(taggedItem, updater, expectedItemClass);
         this.settings = settings;
     }
 
@@ -25,5 +25,11 @@ public interface GroupedAccessory extends HomekitAccessory {
 
     public void addCharacteristic(HomekitTaggedItem item);
 
+    /**
+     * Stops using the item of a characteristic, e.g. because it has been
+     * removed from the registry.
+     */
+    public void removeCharacteristic(HomekitTaggedItem item);
+
     public boolean isComplete();
 }
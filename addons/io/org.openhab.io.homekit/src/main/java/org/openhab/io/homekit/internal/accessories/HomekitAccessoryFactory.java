@@ -8,7 +8,6 @@
  */
 package org.openhab.io.homekit.internal.accessories;
 
-import org.eclipse.smarthome.core.items.ItemRegistry;
 import org.openhab.io.homekit.internal.HomekitAccessoryUpdater;
 import org.openhab.io.homekit.internal.HomekitSettings;
 import org.openhab.io.homekit.internal.HomekitTaggedItem;
@@ -22,26 +21,26 @@ import com.beowulfe.hap.HomekitAccessory;
  */
 public class HomekitAccessoryFactory {
 
-    public static HomekitAccessory create(HomekitTaggedItem taggedItem, ItemRegistry itemRegistry,
-            HomekitAccessoryUpdater updater, HomekitSettings settings) throws Exception {
+    public static HomekitAccessory create(HomekitTaggedItem taggedItem, HomekitAccessoryUpdater updater,
+            HomekitSettings settings) throws Exception {
         switch (taggedItem.getDeviceType()) {
             case LIGHTBULB:
-                return new HomekitLightbulbImpl(taggedItem, itemRegistry, updater);
+                return new HomekitLightbulbImpl(taggedItem, updater);
 
             case DIMMABLE_LIGHTBULB:
-                return new HomekitDimmableLightbulbImpl(taggedItem, itemRegistry, updater);
+                return new HomekitDimmableLightbulbImpl(taggedItem, updater);
 
             case THERMOSTAT:
-                return new HomekitThermostatImpl(taggedItem, itemRegistry, updater, settings);
+                return new HomekitThermostatImpl(taggedItem, updater, settings);
 
             case SWITCH:
-                return new HomekitSwitchImpl(taggedItem, itemRegistry, updater);
+                return new HomekitSwitchImpl(taggedItem, updater);
 
             case TEMPERATURE_SENSOR:
-                return new HomekitTemperatureSensorImpl(taggedItem, itemRegistry, updater, settings);
+                return new HomekitTemperatureSensorImpl(taggedItem, updater, settings);
 
             case HUMIDITY_SENSOR:
-                return new HomekitHumiditySensorImpl(taggedItem, itemRegistry, updater);
+                return new HomekitHumiditySensorImpl(taggedItem, updater);
         }
 
         throw new Exception("Unknown homekit type: " + taggedItem.getDeviceType());
@@ -12,7 +12,6 @@ import java.util.concurrent.CompletableFuture;
 
 import org.eclipse.smarthome.core.items.GenericItem;
 import org.eclipse.smarthome.core.items.GroupItem;
-import org.eclipse.smarthome.core.items.ItemRegistry;
 import org.eclipse.smarthome.core.library.items.DimmerItem;
 import org.eclipse.smarthome.core.library.types.PercentType;
 import org.openhab.io.homekit.internal.HomekitAccessoryUpdater;
@@ -28,9 +27,8 @@ import com.beowulfe.hap.accessories.DimmableLightbulb;
  */
 class HomekitDimmableLightbulbImpl extends AbstractHomekitLightbulbImpl<DimmerItem>implements DimmableLightbulb {
 
-    public HomekitDimmableLightbulbImpl(HomekitTaggedItem taggedItem, ItemRegistry itemRegistry,
-            HomekitAccessoryUpdater updater) {
-        super(taggedItem, itemRegistry, updater, DimmerItem.class);
+    public HomekitDimmableLightbulbImpl(HomekitTaggedItem taggedItem, HomekitAccessoryUpdater updater) {
+        super(taggedItem, updater, DimmerItem.class);
     }
 
     @Override
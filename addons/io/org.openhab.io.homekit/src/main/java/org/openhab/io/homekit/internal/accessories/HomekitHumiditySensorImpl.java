@@ -10,7 +10,6 @@ package org.openhab.io.homekit.internal.accessories;
 
 import java.util.concurrent.CompletableFuture;
 
-import org.eclipse.smarthome.core.items.ItemRegistry;
 import org.eclipse.smarthome.core.library.items.NumberItem;
 import org.eclipse.smarthome.core.library.types.DecimalType;
 import org.openhab.io.homekit.internal.HomekitAccessoryUpdater;
@@ -21,9 +20,8 @@ import com.beowulfe.hap.accessories.HumiditySensor;
 
 public class HomekitHumiditySensorImpl extends AbstractHomekitAccessoryImpl<NumberItem>implements HumiditySensor {
 
-    public HomekitHumiditySensorImpl(HomekitTaggedItem taggedItem, ItemRegistry itemRegistry,
-            HomekitAccessoryUpdater updater) {
-        super(taggedItem, itemRegistry, updater, NumberItem.class);
+    public HomekitHumiditySensorImpl(HomekitTaggedItem taggedItem, HomekitAccessoryUpdater updater) {
+        super(taggedItem, updater, NumberItem.class);
     }
 
     @Override
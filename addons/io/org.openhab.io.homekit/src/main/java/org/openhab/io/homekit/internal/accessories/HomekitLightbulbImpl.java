@@ -8,7 +8,6 @@
  */
 package org.openhab.io.homekit.internal.accessories;
 
-import org.eclipse.smarthome.core.items.ItemRegistry;
 import org.eclipse.smarthome.core.library.items.SwitchItem;
 import org.openhab.io.homekit.internal.HomekitAccessoryUpdater;
 import org.openhab.io.homekit.internal.HomekitTaggedItem;
@@ -20,9 +19,8 @@ import org.openhab.io.homekit.internal.HomekitTaggedItem;
  */
 class HomekitLightbulbImpl extends AbstractHomekitLightbulbImpl<SwitchItem> {
 
-    public HomekitLightbulbImpl(HomekitTaggedItem taggedItem, ItemRegistry itemRegistry,
-            HomekitAccessoryUpdater updater) {
-        super(taggedItem, itemRegistry, updater, SwitchItem.class);
+    public HomekitLightbulbImpl(HomekitTaggedItem taggedItem, HomekitAccessoryUpdater updater) {
+        super(taggedItem, updater, SwitchItem.class);
     }
 
 }
@@ -10,7 +10,6 @@ package org.openhab.io.homekit.internal.accessories;
 
 import java.util.concurrent.CompletableFuture;
 
-import org.eclipse.smarthome.core.items.ItemRegistry;
 import org.eclipse.smarthome.core.library.items.NumberItem;
 import org.eclipse.smarthome.core.library.types.DecimalType;
 import org.openhab.io.homekit.internal.HomekitAccessoryUpdater;
@@ -28,9 +27,9 @@ import com.beowulfe.hap.accessories.TemperatureSensor;
 class HomekitTemperatureSensorImpl extends AbstractTemperatureHomekitAccessoryImpl<NumberItem>
         implements TemperatureSensor {
 
-    public HomekitTemperatureSensorImpl(HomekitTaggedItem taggedItem, ItemRegistry itemRegistry,
-            HomekitAccessoryUpdater updater, HomekitSettings settings) {
-        super(taggedItem, itemRegistry, updater, settings, NumberItem.class);
+    public HomekitTemperatureSensorImpl(HomekitTaggedItem taggedItem, HomekitAccessoryUpdater updater,
+            HomekitSettings settings) {
+        super(taggedItem, updater, settings, NumberItem.class);
     }
 
     @Override
@@ -14,7 +14,6 @@ import java.util.concurrent.CompletableFuture;
 import org.eclipse.smarthome.core.items.GenericItem;
 import org.eclipse.smarthome.core.items.GroupItem;
 import org.eclipse.smarthome.core.items.Item;
-import org.eclipse.smarthome.core.items.ItemRegistry;
 import org.eclipse.smarthome.core.library.items.NumberItem;
 import org.eclipse.smarthome.core.library.items.StringItem;
 import org.eclipse.smarthome.core.library.types.DecimalType;
@@ -46,15 +45,15 @@ class HomekitThermostatImpl extends AbstractTemperatureHomekitAccessoryImpl<Grou
 
     private final String groupName;
     private final HomekitSettings settings;
-    private String currentTemperatureItemName;
-    private String heatingCoolingModeItemName;
-    private String targetTemperatureItemName;
+    private volatile GenericItem currentTemperatureItem;
+    private volatile GenericItem heatingCoolingModeItem;
+    private volatile GenericItem targetTemperatureItem;
 
     private Logger logger = LoggerFactory.getLogger(HomekitThermostatImpl.class);
 
-    public HomekitThermostatImpl(HomekitTaggedItem taggedItem, ItemRegistry itemRegistry,
-            HomekitAccessoryUpdater updater, HomekitSettings settings) {
-        super(taggedItem, itemRegistry, updater, settings, GroupItem.class);
+    public HomekitThermostatImpl(HomekitTaggedItem taggedItem, HomekitAccessoryUpdater updater,
+            HomekitSettings settings) {
+        super(taggedItem, updater, settings, GroupItem.class);
         this.groupName = taggedItem.getItem().getName();
         this.settings = settings;
     }
@@ -68,15 +67,15 @@ class HomekitThermostatImpl extends AbstractTemperatureHomekitAccessoryImpl<Grou
     public void addCharacteristic(HomekitTaggedItem item) {
         switch (item.getCharacteristicType()) {
             case CURRENT_TEMPERATURE:
-                currentTemperatureItemName = item.getItem().getName();
+                currentTemperatureItem = getGenericItem(item);
                 break;
 
             case HEATING_COOLING_MODE:
-                heatingCoolingModeItemName = item.getItem().getName();
+                heatingCoolingModeItem = getGenericItem(item);
                 break;
 
             case TARGET_TEMPERATURE:
-                targetTemperatureItemName = item.getItem().getName();
+                targetTemperatureItem = getGenericItem(item);
                 break;
 
             default:
@@ -86,16 +85,33 @@ class HomekitThermostatImpl extends AbstractTemperatureHomekitAccessoryImpl<Grou
         }
     }
 
+    @Override
+    public void removeCharacteristic(HomekitTaggedItem item) {
+        String itemName = item.getItem().getName();
+        if (isItem(currentTemperatureItem, itemName)) {
+            currentTemperatureItem = null;
+        }
+        if (isItem(heatingCoolingModeItem, itemName)) {
+            heatingCoolingModeItem = null;
+        }
+        if (isItem(targetTemperatureItem, itemName)) {
+            targetTemperatureItem = null;
+        }
+    }
+
+    private static boolean isItem(GenericItem item, String itemName) {
+        return item != null && item.getName().equals(itemName);
+    }
+
     @Override
     public boolean isComplete() {
-        return targetTemperatureItemName != null && currentTemperatureItemName != null
-                && heatingCoolingModeItemName != null;
+        return targetTemperatureItem != null && currentTemperatureItem != null && heatingCoolingModeItem != null;
     }
 
     @Override
     public CompletableFuture<ThermostatMode> getCurrentMode() {
-        Item item = getItemRegistry().get(heatingCoolingModeItemName);
-        StringType state = (StringType) item.getStateAs(StringType.class);
+        GenericItem item = heatingCoolingModeItem;
+        StringType state = item != null ? (StringType) item.getStateAs(StringType.class) : null;
         ThermostatMode mode;
         if (state != null) {
             String stringValue = state.toString();
@@ -122,8 +138,8 @@ class HomekitThermostatImpl extends AbstractTemperatureHomekitAccessoryImpl<Grou
 
     @Override
     public CompletableFuture<Double> getCurrentTemperature() {
-        Item item = getItemRegistry().get(currentTemperatureItemName);
-        DecimalType state = (DecimalType) item.getStateAs(DecimalType.class);
+        GenericItem item = currentTemperatureItem;
+        DecimalType state = item != null ? (DecimalType) item.getStateAs(DecimalType.class) : null;
         if (state == null) {
             return CompletableFuture.completedFuture(null);
         }
@@ -137,8 +153,8 @@ class HomekitThermostatImpl extends AbstractTemperatureHomekitAccessoryImpl<Grou
 
     @Override
     public CompletableFuture<Double> getTargetTemperature() {
-        if (targetTemperatureItemName != null) {
-            Item item = getItemRegistry().get(targetTemperatureItemName);
+        GenericItem item = targetTemperatureItem;
+        if (item != null) {
             DecimalType state = (DecimalType) item.getStateAs(DecimalType.class);
             if (state == null) {
                 return CompletableFuture.completedFuture(null);
@@ -169,66 +185,70 @@ class HomekitThermostatImpl extends AbstractTemperatureHomekitAccessoryImpl<Grou
                 modeString = settings.getThermostatOffMode();
                 break;
         }
-        StringItem item = getGenericItem(heatingCoolingModeItemName);
+        StringItem item = (StringItem) heatingCoolingModeItem;
+        if (item == null) {
+            logger.warn("Heating cooling mode item of {} has been removed", groupName);
+            return;
+        }
         item.send(new StringType(modeString));
     }
 
     @Override
     public void setTargetTemperature(Double value) throws Exception {
-        NumberItem item = getGenericItem(targetTemperatureItemName);
+        NumberItem item = (NumberItem) targetTemperatureItem;
+        if (item == null) {
+            logger.warn("Target temperature item of {} has been removed", groupName);
+            return;
+        }
         item.send(new DecimalType(BigDecimal.valueOf(convertFromCelsius(value))));
     }
 
     @Override
     public void subscribeCurrentMode(HomekitCharacteristicChangeCallback callback) {
-        getUpdater().subscribe(getGenericItem(heatingCoolingModeItemName), callback);
+        getUpdater().subscribe(heatingCoolingModeItem, callback);
     }
 
     @Override
     public void subscribeCurrentTemperature(HomekitCharacteristicChangeCallback callback) {
-        getUpdater().subscribe(getGenericItem(currentTemperatureItemName), callback);
+        getUpdater().subscribe(currentTemperatureItem, callback);
     }
 
     @Override
     public void subscribeTargetMode(HomekitCharacteristicChangeCallback callback) {
-        getUpdater().subscribe(getGenericItem(heatingCoolingModeItemName), callback);
+        getUpdater().subscribe(heatingCoolingModeItem, callback);
     }
 
     @Override
     public void subscribeTargetTemperature(HomekitCharacteristicChangeCallback callback) {
-        getUpdater().subscribe(getGenericItem(targetTemperatureItemName), callback);
+        getUpdater().subscribe(targetTemperatureItem, callback);
     }
 
     @Override
     public void unsubscribeCurrentMode() {
-        getUpdater().unsubscribe(getGenericItem(heatingCoolingModeItemName));
+        getUpdater().unsubscribe(heatingCoolingModeItem);
     }
 
     @Override
     public void unsubscribeCurrentTemperature() {
-        getUpdater().unsubscribe(getGenericItem(currentTemperatureItemName));
+        getUpdater().unsubscribe(currentTemperatureItem);
     }
 
     @Override
     public void unsubscribeTargetMode() {
-        getUpdater().unsubscribe(getGenericItem(heatingCoolingModeItemName));
+        getUpdater().unsubscribe(heatingCoolingModeItem);
     }
 
     @Override
     public void unsubscribeTargetTemperature() {
-        getUpdater().unsubscribe(getGenericItem(targetTemperatureItemName));
+        getUpdater().unsubscribe(targetTemperatureItem);
     }
 
-    @SuppressWarnings("unchecked")
-    private <T extends GenericItem> T getGenericItem(String name) {
-        Item item = getItemRegistry().get(name);
-        if (item == null) {
-            return null;
-        }
+    private GenericItem getGenericItem(HomekitTaggedItem taggedItem) {
+        Item item = taggedItem.getItem();
         if (!(item instanceof GenericItem)) {
             throw new RuntimeException("Expected GenericItem, found " + item.getClass().getCanonicalName());
         }
-        return (T) item;
+        return (GenericItem) item;
     }
 
 }
@@ -0,0 +1,25 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.homekit.internal.accessories;
+
+import org.openhab.io.homekit.internal.HomekitTaggedItem;
+
+import com.beowulfe.hap.HomekitAccessory;
+
+/**
+ * An accessory which holds the item it represents, so that reading a
+ * characteristic does not need to look up the item in the registry. The item
+ * is replaced when a new instance of it is added to the registry.
+ *
+ * @author agent
+ */
+public interface ItemAccessory extends HomekitAccessory {
+
+    public void updateItem(HomekitTaggedItem taggedItem);
+}
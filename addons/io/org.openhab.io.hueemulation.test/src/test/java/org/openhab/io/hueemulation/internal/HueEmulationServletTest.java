@@ -0,0 +1,343 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.hueemulation.internal;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.smarthome.config.core.ConfigConstants;
+import org.eclipse.smarthome.core.events.Event;
+import org.eclipse.smarthome.core.events.EventPublisher;
+import org.eclipse.smarthome.core.items.GroupItem;
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.items.ItemNotFoundException;
+import org.eclipse.smarthome.core.items.ItemRegistry;
+import org.eclipse.smarthome.core.items.events.ItemCommandEvent;
+import org.eclipse.smarthome.core.library.items.DimmerItem;
+import org.eclipse.smarthome.core.library.items.NumberItem;
+import org.eclipse.smarthome.core.library.items.SwitchItem;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+/**
+ * Tests the groups of the {@link HueEmulationServlet}. The benchmark, which
+ * compares group actions with setting the state of every light by its own
+ * request, only runs with the system property openhab.benchmark=true.
+ *
+ * @author agent
+ *
+ */
+public class HueEmulationServletTest {
+
+    private final Logger logger = LoggerFactory.getLogger(HueEmulationServletTest.class);
+
+    private static final String USER = "testuser";
+    private static final String GROUP = "Livingroom";
+    private static final int GROUP_SIZE = 50;
+    private static final int ROUNDS = 200;
+
+    private static File userData;
+
+    private Map<String, Item> items;
+    private List<Event> events;
+    private HueEmulationServlet servlet;
+    private int requests;
+    private int registryScans;
+
+    @BeforeClass
+    public static void setUpUserData() throws IOException {
+        // the servlet stores the paired users in the user data folder
+        userData = File.createTempFile("hueemulation", "");
+        userData.delete();
+        userData.mkdirs();
+        System.setProperty(ConfigConstants.USERDATA_DIR_PROG_ARGUMENT, userData.getAbsolutePath());
+    }
+
+    @AfterClass
+    public static void tearDownUserData() throws IOException {
+        System.clearProperty(ConfigConstants.USERDATA_DIR_PROG_ARGUMENT);
+        FileUtils.deleteDirectory(userData);
+    }
+
+    @Before
+    public void setUp() {
+        items = new LinkedHashMap<String, Item>();
+        events = Collections.synchronizedList(new ArrayList<Event>());
+
+        GroupItem group = new GroupItem(GROUP);
+        for (int i = 0; i < GROUP_SIZE; i++) {
+            DimmerItem light = new DimmerItem("Light" + i);
+            light.addTag("Lighting");
+            // the registry sets the group names of the members
+            light.addGroupName(GROUP);
+            group.addMember(light);
+            items.put(light.getName(), light);
+        }
+        // untagged members are no Hue devices
+        SwitchItem untagged = new SwitchItem("Fan");
+        group.addMember(untagged);
+        items.put(untagged.getName(), untagged);
+        // set points are Hue devices, but no members of groups
+        NumberItem setPoint = new NumberItem("Heating");
+        setPoint.addTag("TargetTemperature");
+        group.addMember(setPoint);
+        items.put(setPoint.getName(), setPoint);
+        items.put(group.getName(), group);
+
+        SwitchItem outside = new SwitchItem("Outside");
+        outside.addTag("Switchable");
+        items.put(outside.getName(), outside);
+
+        servlet = new HueEmulationServlet();
+        servlet.setItemRegistry(createItemRegistry());
+        servlet.setEventPublisher(createEventPublisher());
+        servlet.modified(Collections.singletonMap("pairingEnabled", (Object) Boolean.TRUE));
+    }
+
+    @Test
+    public void groupActionCommandsAllTaggedMembers() throws Exception {
+        String response = request("PUT", "/api/" + USER + "/groups/" + GROUP + "/action", "{\"on\":true,\"bri\":255}");
+
+        assertEquals("[{\"success\":{\"/groups/" + GROUP + "/action/on\":true}},"
+                + "{\"success\":{\"/groups/" + GROUP + "/action/bri\":255}}]", response);
+        assertEquals(1, requests);
+        assertEquals(GROUP_SIZE, events.size());
+        for (Event event : events) {
+            ItemCommandEvent commandEvent = (ItemCommandEvent) event;
+            assertTrue(commandEvent.getItemName().startsWith("Light"));
+            assertEquals("100", commandEvent.getItemCommand().toString());
+        }
+    }
+
+    @Test
+    public void allLightsGroup() throws Exception {
+        String response = request("PUT", "/api/" + USER + "/groups/0/action", "{\"on\":false}");
+
+        assertEquals("[{\"success\":{\"/groups/0/action/on\":false}}]", response);
+        // the group members and the tagged switch, but not the set point
+        assertEquals(GROUP_SIZE + 1, events.size());
+        for (Event event : events) {
+            assertEquals("OFF", ((ItemCommandEvent) event).getItemCommand().toString());
+            assertFalse("Heating".equals(((ItemCommandEvent) event).getItemName()));
+        }
+    }
+
+    @Test
+    public void brightnessOfAllLightsGroup() throws Exception {
+        String response = request("PUT", "/api/" + USER + "/groups/0/action", "{\"bri\":255}");
+
+        assertEquals("[{\"success\":{\"/groups/0/action/bri\":255}}]", response);
+        // the switch does not accept a brightness, the set point is no member
+        assertEquals(GROUP_SIZE, events.size());
+        for (Event event : events) {
+            assertFalse("Heating".equals(((ItemCommandEvent) event).getItemName()));
+        }
+    }
+
+    @Test
+    public void groups() throws Exception {
+        JsonObject groups = new Gson().fromJson(request("GET", "/api/" + USER + "/groups", ""), JsonObject.class);
+
+        assertEquals(1, groups.entrySet().size());
+        JsonObject group = groups.getAsJsonObject(GROUP);
+        assertEquals(GROUP, group.get("name").getAsString());
+        assertEquals(GROUP_SIZE, group.getAsJsonArray("lights").size());
+        assertFalse(group.getAsJsonArray("lights").toString().contains("Heating"));
+
+        JsonObject allLights = new Gson().fromJson(request("GET", "/api/" + USER + "/groups/0", ""),
+                JsonObject.class);
+        assertEquals(GROUP_SIZE + 1, allLights.getAsJsonArray("lights").size());
+        assertTrue(request("GET", "/api/" + USER + "/groups/Unknown", "").contains("error"));
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void groupsAreFoundWithoutScanningRegistry() throws Exception {
+        GroupItem house = new GroupItem("House");
+        items.put(house.getName(), house);
+        ((GroupItem) items.get(GROUP)).addGroupName(house.getName());
+        house.addMember(items.get(GROUP));
+        registryScans = 0;
+
+        JsonObject groups = new Gson().fromJson(request("GET", "/api/" + USER + "/groups", ""), JsonObject.class);
+
+        assertEquals(0, registryScans);
+        assertEquals(2, groups.entrySet().size());
+        assertEquals(GROUP_SIZE, groups.getAsJsonObject("House").getAsJsonArray("lights").size());
+    }
+
+    @Test
+    public void unknownGroup() throws Exception {
+        assertTrue(request("PUT", "/api/" + USER + "/groups/Light0/action", "{\"on\":true}").contains("error"));
+        assertTrue(request("PUT", "/api/" + USER + "/groups/Unknown/action", "{\"on\":true}").contains("error"));
+        assertTrue(request("GET", "/api/" + USER + "/groups/" + GROUP + "/action", "").contains("error"));
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void lightState() throws Exception {
+        String response = request("PUT", "/api/" + USER + "/lights/Light0/state", "{\"on\":true}");
+
+        assertEquals("[{\"success\":{\"/lights/Light0/state/on\":true}}]", response);
+        assertEquals(1, events.size());
+        assertEquals("Light0", ((ItemCommandEvent) events.get(0)).getItemName());
+    }
+
+    @Test
+    public void groupActionBenchmark() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("openhab.benchmark"));
+
+        // warm up both paths
+        lightRequests();
+        groupRequest();
+
+        long lightTime = 0;
+        long groupTime = 0;
+        int lightRequests = 0;
+        int groupRequests = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            requests = 0;
+            events.clear();
+            long start = System.nanoTime();
+            lightRequests();
+            lightTime += System.nanoTime() - start;
+            lightRequests += requests;
+            assertEquals(GROUP_SIZE, events.size());
+
+            requests = 0;
+            events.clear();
+            start = System.nanoTime();
+            groupRequest();
+            groupTime += System.nanoTime() - start;
+            groupRequests += requests;
+            assertEquals(GROUP_SIZE, events.size());
+        }
+
+        assertEquals(GROUP_SIZE * ROUNDS, lightRequests);
+        assertEquals(ROUNDS, groupRequests);
+        logger.info("{} lights: {} requests in {} us setting every light, {} request in {} us with the group action",
+                GROUP_SIZE, lightRequests / ROUNDS, lightTime / 1000 / ROUNDS, groupRequests / ROUNDS,
+                groupTime / 1000 / ROUNDS);
+    }
+
+    private void lightRequests() throws Exception {
+        for (int i = 0; i < GROUP_SIZE; i++) {
+            request("PUT", "/api/" + USER + "/lights/Light" + i + "/state", "{\"on\":true,\"bri\":128}");
+        }
+    }
+
+    private void groupRequest() throws Exception {
+        request("PUT", "/api/" + USER + "/groups/" + GROUP + "/action", "{\"on\":true,\"bri\":128}");
+    }
+
+    private String request(final String method, final String uri, final String body)
+            throws ServletException, IOException {
+        requests++;
+        final StringWriter content = new StringWriter();
+        HttpServletRequest req = (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class }, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method m, Object[] args) {
+                        if (m.getName().equals("getMethod")) {
+                            return method;
+                        }
+                        if (m.getName().equals("getRequestURI")) {
+                            return uri;
+                        }
+                        if (m.getName().equals("getRemoteAddr")) {
+                            return "127.0.0.1";
+                        }
+                        if (m.getName().equals("getReader")) {
+                            return new BufferedReader(new StringReader(body));
+                        }
+                        return null;
+                    }
+                });
+        HttpServletResponse resp = (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { HttpServletResponse.class }, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method m, Object[] args) {
+                        if (m.getName().equals("getWriter")) {
+                            return new PrintWriter(content);
+                        }
+                        return null;
+                    }
+                });
+        servlet.service(req, resp);
+        return content.toString();
+    }
+
+    private EventPublisher createEventPublisher() {
+        return (EventPublisher) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { EventPublisher.class }, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("post")) {
+                            events.add((Event) args[0]);
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private ItemRegistry createItemRegistry() {
+        return (ItemRegistry) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { ItemRegistry.class }, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("getItem")) {
+                            Item item = items.get(args[0]);
+                            if (item == null) {
+                                throw new ItemNotFoundException((String) args[0]);
+                            }
+                            return item;
+                        }
+                        if (method.getName().equals("get")) {
+                            return items.get(args[0]);
+                        }
+                        if (method.getName().equals("getItems")) {
+                            registryScans++;
+                            return items.values();
+                        }
+                        return null;
+                    }
+                });
+    }
+}
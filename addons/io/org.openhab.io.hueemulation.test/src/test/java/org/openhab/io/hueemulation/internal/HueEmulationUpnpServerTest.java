@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.hueemulation.internal;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends discovery requests to the {@link HueEmulationUpnpServer} over the
+ * loopback interface and logs the time until the response arrives. The tests
+ * are skipped if the loopback interface does not support multicast.
+ *
+ * @author agent
+ *
+ */
+public class HueEmulationUpnpServerTest {
+
+    private final Logger logger = LoggerFactory.getLogger(HueEmulationUpnpServerTest.class);
+
+    private static final String MULTI_ADDR = "239.255.255.250";
+    private static final String USN = "test-usn";
+    private static final String M_SEARCH = "M-SEARCH * HTTP/1.1\r\n" + "HOST: 239.255.255.250:1900\r\n"
+            + "MAN: \"ssdp:discover\"\r\n" + "MX: 1\r\n" + "ST: urn:schemas-upnp-org:device:basic:1\r\n\r\n";
+
+    private static final int REQUESTS = 50;
+    private static final int STARTUP_TIMEOUT = 5000;
+
+    private InetAddress loopback;
+    private int port;
+    private HueEmulationUpnpServer server;
+    private MulticastSocket client;
+
+    @Before
+    public void setUp() throws IOException {
+        loopback = InetAddress.getByName("127.0.0.1");
+        NetworkInterface loopbackInterface = NetworkInterface.getByInetAddress(loopback);
+        Assume.assumeTrue("loopback interface does not support multicast",
+                loopbackInterface != null && loopbackInterface.supportsMulticast());
+        DatagramSocket free = new DatagramSocket(0);
+        port = free.getLocalPort();
+        free.close();
+
+        server = new HueEmulationUpnpServer("/api/discovery.xml", USN, loopback, port);
+        server.start();
+
+        client = new MulticastSocket();
+        client.setInterface(loopback);
+        client.setLoopbackMode(false);
+        client.setSoTimeout(200);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (client != null) {
+            client.close();
+        }
+        if (server != null) {
+            server.shutdown();
+            server.join(STARTUP_TIMEOUT);
+        }
+    }
+
+    @Test
+    public void answersMulticastSearch() throws IOException {
+        String response = awaitStartup();
+
+        assertTrue(response.startsWith("HTTP/1.1 200 OK"));
+        assertTrue(response.contains("LOCATION: http://127.0.0.1:"));
+        assertTrue(response.contains("/api/discovery.xml"));
+        assertTrue(response.contains("USN: uuid:" + USN + "::"));
+    }
+
+    @Test
+    public void ignoresOtherPackets() throws IOException {
+        awaitStartup();
+
+        send("NOTIFY * HTTP/1.1\r\n\r\n");
+        try {
+            receive();
+            fail("NOTIFY must not be answered");
+        } catch (SocketTimeoutException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void responseLatency() throws IOException {
+        awaitStartup();
+
+        long[] latencies = new long[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            long start = System.nanoTime();
+            send(M_SEARCH);
+            receive();
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        long median = latencies[REQUESTS / 2];
+        long max = latencies[REQUESTS - 1];
+
+        logger.info("{} discovery requests: median {} ms, max {} ms", REQUESTS, median / 1000000.0, max / 1000000.0);
+    }
+
+    @Test
+    public void shutdownStopsWaitingServer() throws Exception {
+        awaitStartup();
+
+        long start = System.nanoTime();
+        server.shutdown();
+        server.join(STARTUP_TIMEOUT);
+        long stop = (System.nanoTime() - start) / 1000000;
+
+        assertFalse(server.isAlive());
+        logger.info("shutdown took {} ms", stop);
+    }
+
+    /**
+     * repeats the search until the server has joined the group
+     *
+     * @return the first response
+     */
+    private String awaitStartup() throws IOException {
+        long timeout = System.currentTimeMillis() + STARTUP_TIMEOUT;
+        while (true) {
+            send(M_SEARCH);
+            try {
+                return receive();
+            } catch (SocketTimeoutException e) {
+                if (System.currentTimeMillis() > timeout) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void send(String data) throws IOException {
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        client.send(new DatagramPacket(bytes, bytes.length, InetAddress.getByName(MULTI_ADDR), port));
+    }
+
+    private String receive() throws IOException {
+        byte[] buf = new byte[1000];
+        DatagramPacket packet = new DatagramPacket(buf, buf.length);
+        client.receive(packet);
+        return new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8);
+    }
+}
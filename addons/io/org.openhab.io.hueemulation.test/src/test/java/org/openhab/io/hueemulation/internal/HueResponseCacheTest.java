@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.hueemulation.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.openhab.io.hueemulation.internal.api.HueDataStore;
+import org.openhab.io.hueemulation.internal.api.HueDevice;
+import org.openhab.io.hueemulation.internal.api.HueState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+
+/**
+ * Tests the {@link HueResponseCache} and compares serving the data store from
+ * the cache with serializing it on every request.
+ *
+ * @author agent
+ *
+ */
+public class HueResponseCacheTest {
+
+    private final Logger logger = LoggerFactory.getLogger(HueResponseCacheTest.class);
+
+    private static final int LIGHTS = 50;
+    private static final long BENCHMARK_DURATION = 1000000000L;
+
+    private final Gson gson = new Gson();
+
+    @Test
+    public void responseIsReusedForSameVersion() {
+        HueResponseCache cache = new HueResponseCache();
+        assertNull(cache.get("lights", 1));
+
+        HueResponseCache.Response response = cache.put("lights", 1, "{}");
+        assertSame(response, cache.get("lights", 1));
+        assertNull(cache.get("datastore", 1));
+        assertNull(cache.get("lights", 2));
+    }
+
+    @Test
+    public void newerVersionReplacesAllResponses() {
+        HueResponseCache cache = new HueResponseCache();
+        cache.put("lights", 1, "{}");
+        cache.put("datastore", 1, "{}");
+        assertEquals(2, cache.size());
+
+        cache.put("lights", 2, "{\"Light\":\"Light\"}");
+        assertEquals(1, cache.size());
+        assertNull(cache.get("datastore", 2));
+        assertEquals("{\"Light\":\"Light\"}", cache.get("lights", 2).getJson());
+    }
+
+    @Test
+    public void outdatedResponseIsNotStored() {
+        HueResponseCache cache = new HueResponseCache();
+        cache.put("lights", 2, "{}");
+
+        // built by a request which read the version before a change
+        HueResponseCache.Response outdated = cache.put("datastore", 1, "{}");
+        assertEquals("{}", outdated.getJson());
+        assertNull(cache.get("datastore", 1));
+        assertNull(cache.get("datastore", 2));
+    }
+
+    @Test
+    public void entityTagChangesWithVersion() {
+        HueResponseCache cache = new HueResponseCache();
+        String etag = cache.put("lights", 1, "{}").getETag();
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+        assertEquals(etag, cache.put("datastore", 1, "{}").getETag());
+        assertFalse(etag.equals(cache.put("lights", 2, "{}").getETag()));
+    }
+
+    @Test
+    public void conditionalRequest() {
+        HueResponseCache cache = new HueResponseCache();
+        HueResponseCache.Response response = cache.put("lights", 1, "{}");
+        String etag = response.getETag();
+
+        assertFalse(response.isNotModified(null));
+        assertFalse(response.isNotModified("\"other\""));
+        assertTrue(response.isNotModified(etag));
+        assertTrue(response.isNotModified("W/" + etag));
+        assertTrue(response.isNotModified("\"other\", " + etag));
+        assertTrue(response.isNotModified("*"));
+
+        HueResponseCache.Response changed = cache.put("lights", 2, "{}");
+        assertFalse(changed.isNotModified(etag));
+    }
+
+    @Test
+    public void unchangedSystemBenchmark() {
+        Map<String, HueDevice> lights = new HashMap<String, HueDevice>();
+        for (int i = 0; i < LIGHTS; i++) {
+            lights.put("Light" + i, new HueDevice(new HueState(true, (short) 200), "Light " + i, "Light" + i));
+        }
+        HueResponseCache cache = new HueResponseCache();
+        long version = 1;
+
+        // the former way of answering every request
+        long serialized = 0;
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < BENCHMARK_DURATION) {
+            HueDataStore ds = new HueDataStore();
+            ds.lights = new HashMap<String, HueDevice>(lights);
+            gson.toJson(ds);
+            serialized++;
+        }
+        long serializedRate = serialized * 1000000000L / (System.nanoTime() - start);
+
+        long cached = 0;
+        start = System.nanoTime();
+        while (System.nanoTime() - start < BENCHMARK_DURATION) {
+            HueResponseCache.Response response = cache.get("datastore", version);
+            if (response == null) {
+                HueDataStore ds = new HueDataStore();
+                ds.lights = new HashMap<String, HueDevice>(lights);
+                response = cache.put("datastore", version, gson.toJson(ds));
+            }
+            assertNotNull(response.getJson());
+            cached++;
+        }
+        long cachedRate = cached * 1000000000L / (System.nanoTime() - start);
+
+        logger.info("data store with {} lights: {} requests/s serializing every request, {} requests/s cached",
+                LIGHTS, serializedRate, cachedRate);
+        assertTrue(cachedRate > serializedRate);
+    }
+}
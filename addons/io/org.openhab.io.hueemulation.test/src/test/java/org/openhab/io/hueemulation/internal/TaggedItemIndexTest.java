@@ -0,0 +1,256 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.hueemulation.internal;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.items.ItemRegistry;
+import org.eclipse.smarthome.core.items.ItemRegistryChangeListener;
+import org.eclipse.smarthome.core.library.items.SwitchItem;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests the {@link TaggedItemIndex} and compares it with scanning all items
+ * of a large registry.
+ *
+ * @author agent
+ *
+ */
+public class TaggedItemIndexTest {
+
+    private final Logger logger = LoggerFactory.getLogger(TaggedItemIndexTest.class);
+
+    private static final String[] TAGS = new String[] { "Switchable", "Lighting", "TargetTemperature" };
+
+    private static final int UNTAGGED_ITEMS = 50000;
+    private static final int TAGGED_ITEMS = 20;
+    private static final int REQUESTS = 200;
+
+    private Map<String, Item> items;
+    private List<ItemRegistryChangeListener> listeners;
+    private ItemRegistry itemRegistry;
+
+    @Before
+    public void setUp() {
+        items = new LinkedHashMap<String, Item>();
+        listeners = new ArrayList<ItemRegistryChangeListener>();
+        itemRegistry = createItemRegistry();
+        add(createItem("Light", "Lighting"));
+        add(createItem("Heating", "TargetTemperature"));
+        add(createItem("Untagged"));
+    }
+
+    @Test
+    public void indexContainsTaggedItems() {
+        TaggedItemIndex index = new TaggedItemIndex(itemRegistry, TAGS);
+        index.start();
+
+        assertEquals(2, index.size());
+        assertNotNull(index.getItem("Light"));
+        assertNotNull(index.getItem("Heating"));
+        assertNull(index.getItem("Untagged"));
+    }
+
+    @Test
+    public void indexFollowsRegistryChanges() {
+        TaggedItemIndex index = new TaggedItemIndex(itemRegistry, TAGS);
+        index.start();
+
+        Item added = createItem("Switch", "Switchable");
+        add(added);
+        assertSame(added, index.getItem("Switch"));
+
+        Item light = items.get("Light");
+        items.remove("Light");
+        for (ItemRegistryChangeListener listener : listeners) {
+            listener.removed(light);
+        }
+        assertNull(index.getItem("Light"));
+
+        // tag removed by an update
+        Item heating = items.get("Heating");
+        Item untaggedHeating = createItem("Heating");
+        items.put("Heating", untaggedHeating);
+        for (ItemRegistryChangeListener listener : listeners) {
+            listener.updated(heating, untaggedHeating);
+        }
+        assertNull(index.getItem("Heating"));
+
+        // tag added by an update
+        Item untagged = items.get("Untagged");
+        Item tagged = createItem("Untagged", "Lighting");
+        items.put("Untagged", tagged);
+        for (ItemRegistryChangeListener listener : listeners) {
+            listener.updated(untagged, tagged);
+        }
+        assertSame(tagged, index.getItem("Untagged"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void indexIsRebuiltWhenAllItemsChanged() {
+        TaggedItemIndex index = new TaggedItemIndex(itemRegistry, TAGS);
+        index.start();
+
+        items.clear();
+        items.put("Other", createItem("Other", "Switchable"));
+        for (ItemRegistryChangeListener listener : listeners) {
+            listener.allItemsChanged(Collections.<String> emptyList());
+        }
+
+        assertEquals(1, index.size());
+        assertNotNull(index.getItem("Other"));
+    }
+
+    @Test
+    public void stopRemovesListener() {
+        TaggedItemIndex index = new TaggedItemIndex(itemRegistry, TAGS);
+        index.start();
+        index.stop();
+
+        assertTrue(listeners.isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void versionFollowsTaggedItems() {
+        TaggedItemIndex index = new TaggedItemIndex(itemRegistry, TAGS);
+        index.start();
+
+        SwitchItem light = (SwitchItem) items.get("Light");
+        long version = index.getVersion();
+        light.setState(OnOffType.ON);
+        assertTrue(index.getVersion() > version);
+
+        // an update without change and a change of an untagged item keep the version
+        version = index.getVersion();
+        light.setState(OnOffType.ON);
+        ((SwitchItem) items.get("Untagged")).setState(OnOffType.ON);
+        assertEquals(version, index.getVersion());
+
+        // metadata change
+        Item relabeled = createItem("Light", "Lighting");
+        items.put("Light", relabeled);
+        for (ItemRegistryChangeListener listener : listeners) {
+            listener.updated(light, relabeled);
+        }
+        assertTrue(index.getVersion() > version);
+
+        // the replaced instance is not tracked anymore
+        version = index.getVersion();
+        light.setState(OnOffType.OFF);
+        assertEquals(version, index.getVersion());
+        ((SwitchItem) relabeled).setState(OnOffType.OFF);
+        assertTrue(index.getVersion() > version);
+
+        // removed item
+        for (ItemRegistryChangeListener listener : listeners) {
+            listener.removed(relabeled);
+        }
+        version = index.getVersion();
+        ((SwitchItem) relabeled).setState(OnOffType.ON);
+        assertEquals(version, index.getVersion());
+    }
+
+    @Test
+    public void largeRegistryBenchmark() {
+        for (int i = 0; i < UNTAGGED_ITEMS; i++) {
+            items.put("Untagged" + i, createItem("Untagged" + i, "Other"));
+        }
+        for (int i = 0; i < TAGGED_ITEMS; i++) {
+            items.put("Light" + i, createItem("Light" + i, "Lighting"));
+        }
+        TaggedItemIndex index = new TaggedItemIndex(itemRegistry, TAGS);
+        index.start();
+
+        long start = System.nanoTime();
+        int scanned = 0;
+        for (int i = 0; i < REQUESTS; i++) {
+            scanned = scan().size();
+        }
+        long scanTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int indexed = 0;
+        for (int i = 0; i < REQUESTS; i++) {
+            indexed = new ArrayList<Item>(index.getItems()).size();
+        }
+        long indexTime = System.nanoTime() - start;
+
+        assertEquals(scanned, indexed);
+        logger.info("{} tagged of {} items: {} us per request scanning the registry, {} us with the index",
+                indexed, items.size(), scanTime / 1000 / REQUESTS, indexTime / 1000 / REQUESTS);
+    }
+
+    /**
+     * the former way of finding the tagged items
+     */
+    private Collection<Item> scan() {
+        Collection<Item> tagged = new ArrayList<Item>();
+        for (Item item : itemRegistry.getItems()) {
+            for (String tag : item.getTags()) {
+                if (tag.equals(TAGS[0]) || tag.equals(TAGS[1]) || tag.equals(TAGS[2])) {
+                    tagged.add(item);
+                    break;
+                }
+            }
+        }
+        return tagged;
+    }
+
+    private void add(Item item) {
+        items.put(item.getName(), item);
+        for (ItemRegistryChangeListener listener : listeners) {
+            listener.added(item);
+        }
+    }
+
+    private static Item createItem(String name, String... tags) {
+        SwitchItem item = new SwitchItem(name);
+        for (String tag : tags) {
+            item.addTag(tag);
+        }
+        return item;
+    }
+
+    private ItemRegistry createItemRegistry() {
+        return (ItemRegistry) Proxy.newProxyInstance(TaggedItemIndexTest.class.getClassLoader(),
+                new Class<?>[] { ItemRegistry.class }, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getItems")) {
+                            return items.values();
+                        }
+                        if (method.getName().equals("addRegistryChangeListener")) {
+                            listeners.add((ItemRegistryChangeListener) args[0]);
+                        }
+                        if (method.getName().equals("removeRegistryChangeListener")) {
+                            listeners.remove(args[0]);
+                        }
+                        return null;
+                    }
+                });
+    }
+}
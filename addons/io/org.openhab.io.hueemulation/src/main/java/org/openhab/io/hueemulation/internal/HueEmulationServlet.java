@@ -14,14 +14,19 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.net.InetAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.regex.Matcher;
@@ -33,9 +38,9 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang.ArrayUtils;
 import org.eclipse.smarthome.config.core.ConfigConstants;
 import org.eclipse.smarthome.core.events.EventPublisher;
+import org.eclipse.smarthome.core.items.GroupItem;
 import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.items.ItemNotFoundException;
 import org.eclipse.smarthome.core.items.ItemRegistry;
@@ -49,6 +54,7 @@ import org.openhab.io.hueemulation.internal.api.HueCreateUser;
 import org.openhab.io.hueemulation.internal.api.HueDataStore;
 import org.openhab.io.hueemulation.internal.api.HueDevice;
 import org.openhab.io.hueemulation.internal.api.HueErrorResponse;
+import org.openhab.io.hueemulation.internal.api.HueGroup;
 import org.openhab.io.hueemulation.internal.api.HueState;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.http.HttpService;
@@ -56,6 +62,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonObject;
 
 /**
  * Emulates A Hue compatible HTTP API server
@@ -68,6 +75,7 @@ public class HueEmulationServlet extends HttpServlet {
     private Logger logger = LoggerFactory.getLogger(HueEmulationServlet.class);
     private static final String CONFIG_PAIRING_ENABLED = "pairingEnabled";
     private static final String PATH = "/api";
+    private static final String METHOD_GET = "GET";
     private static final String METHOD_POST = "POST";
     private static final String METHOD_PUT = "PUT";
     private static final String APPLICATION_XML = "application/xml";
@@ -75,6 +83,13 @@ public class HueEmulationServlet extends HttpServlet {
     private static final String CHARSET = "utf-8";
     private static final String NEW_CLIENT_RESP = "[{\"success\":{\"username\": \"%s\"}}]";
     private static final String STATE_RESP = "[{\"success\":{\"/lights/%s/state/on\":%s}}]";
+    private static final String GROUP_ACTION_ADDRESS = "/groups/%s/action/%s";
+    private static final String ALL_LIGHTS_GROUP = "0";
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String CACHE_KEY_LIGHTS = "lights";
+    private static final String CACHE_KEY_LIGHT = "lights/";
+    private static final String CACHE_KEY_DATA_STORE = "datastore";
     private static final File USER_FILE = new File(
             ConfigConstants.getUserDataFolder() + File.separator + "hueemulation" + File.separator + "usernames");
     private static final File UDN_FILE = new File(
@@ -83,14 +98,21 @@ public class HueEmulationServlet extends HttpServlet {
     private static final String[] SUPPORTED_TAGS = new String[] { "Switchable", "Lighting", "TargetTemperature" };
 
     /**
-     * This parses "/api/{username}/{lights}/{id}/{state}"
+     * Only these devices are members of groups, so that group actions do not change set points
+     */
+    private static final String[] LIGHT_TAGS = new String[] { "Switchable", "Lighting" };
+
+    /**
+     * This parses "/api/{username}/{lights}/{id}/{state}" and "/api/{username}/{groups}/{id}/{action}"
      */
     private static final Pattern PATH_PATTERN = Pattern
-            .compile(PATH + "/([^/]+)(?:(?:/(lights)/?([^/]+)?/?(state)?)?)?");
+            .compile(PATH + "/([^/]+)(?:(?:/(lights|groups)/?([^/]+)?/?(state|action)?)?)?");
 
     private Gson gson = new Gson();
     private HttpService httpService;
     private ItemRegistry itemRegistry;
+    private TaggedItemIndex taggedItems;
+    private HueResponseCache responseCache = new HueResponseCache();
     private EventPublisher eventPublisher;
     private HueEmulationUpnpServer disco;
     private String udn;
@@ -147,9 +169,16 @@ public class HueEmulationServlet extends HttpServlet {
 
     protected void setItemRegistry(ItemRegistry itemRegistry) {
         this.itemRegistry = itemRegistry;
+        this.taggedItems = new TaggedItemIndex(itemRegistry, SUPPORTED_TAGS);
+        this.taggedItems.start();
     }
 
     protected void unsetItemRegistry(ItemRegistry itemRegistry) {
+        if (this.taggedItems != null) {
+            this.taggedItems.stop();
+            this.taggedItems = null;
+        }
+        this.responseCache.clear();
         this.itemRegistry = null;
     }
 
@@ -199,9 +228,11 @@ public class HueEmulationServlet extends HttpServlet {
         Matcher m = PATH_PATTERN.matcher(path);
         if (m.matches()) {
             String userName = m.group(1);
-            boolean lightsReq = m.group(2) != null;
+            boolean lightsReq = "lights".equals(m.group(2));
+            boolean groupsReq = "groups".equals(m.group(2));
             String id = m.group(3);
-            boolean stateReq = m.group(4) != null;
+            boolean stateReq = "state".equals(m.group(4));
+            boolean actionReq = "action".equals(m.group(4));
 
             /**
              * Some devices (Amazon Echo) seem to rely on the bridge to add an unknown user if pairing is on
@@ -214,7 +245,28 @@ public class HueEmulationServlet extends HttpServlet {
                 return;
             }
 
-            if (stateReq) {
+            if (groupsReq) {
+                if (id != null && actionReq) {
+                    /**
+                     * /api/{username}/{groups}/{id}/{action}
+                     */
+                    apiGroupAction(id, req, resp);
+                } else if (id != null && !stateReq) {
+                    /**
+                     * /api/{username}/{groups}/{id}
+                     */
+                    apiGroup(id, req, resp);
+                } else if (id == null) {
+                    /**
+                     * /api/{username}/{groups}
+                     */
+                    apiGroups(req, resp);
+                } else {
+                    apiServerError(req, resp, HueErrorResponse.NOT_AVAILABLE, "Hue resource not available");
+                }
+            } else if (actionReq) {
+                apiServerError(req, resp, HueErrorResponse.NOT_AVAILABLE, "Hue resource not available");
+            } else if (stateReq) {
                 /**
                  * /api/{username}/{lights}/{id}/{state}
                  */
@@ -259,14 +311,7 @@ public class HueEmulationServlet extends HttpServlet {
             Item item = itemRegistry.getItem(id);
             HueState state = gson.fromJson(req.getReader(), HueState.class);
             logger.debug("State " + state);
-            String value;
-            if (state.bri > -1) {
-                value = String.valueOf(Math.round(state.bri / 255.0 * 100));
-            } else {
-                value = state.on ? "ON" : "OFF";
-            }
-            Command command = TypeParser.parseCommand(item.getAcceptedCommandTypes(), value);
-            eventPublisher.post(ItemEventFactory.createCommandEvent(id, command));
+            sendCommand(item, stateToCommand(state), null);
             PrintWriter out = resp.getWriter();
             out.write(String.format(STATE_RESP, id, String.valueOf(state.on)));
             out.close();
@@ -276,6 +321,110 @@ public class HueEmulationServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Hue API call to set the state of all lights of a group. The state is
+     * parsed once and sent to all member items in one pass, the response
+     * covers the whole group.
+     *
+     * The group 0 contains all lights, other ids are the names of group items
+     * with tagged members. Only lights and switches are members of a group.
+     * The response has a success entry for every attribute which has been
+     * applied.
+     *
+     * @param id
+     * @param req
+     * @param resp
+     * @throws IOException
+     */
+    private void apiGroupAction(String id, HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        if (!req.getMethod().equals(METHOD_PUT)) {
+            apiServerError(req, resp, HueErrorResponse.METHOD_NOT_AVAILABLE, "Only PUT allowed for this resource");
+            return;
+        }
+        Collection<Item> members = getGroupMembers(id);
+        if (members == null) {
+            logger.debug("Group not found: " + id);
+            apiServerError(req, resp, HueErrorResponse.NOT_AVAILABLE, "The Hue group could not be found");
+            return;
+        }
+        JsonObject json = gson.fromJson(req.getReader(), JsonObject.class);
+        if (json == null) {
+            json = new JsonObject();
+        }
+        HueState state = gson.fromJson(json, HueState.class);
+        logger.debug("Group {} state {}", id, state);
+        String value = stateToCommand(state);
+        // members with the same command types share the parsed command
+        Map<List<Class<? extends Command>>, Command> commands = new HashMap<List<Class<? extends Command>>, Command>();
+        for (Item item : members) {
+            sendCommand(item, value, commands);
+        }
+
+        // the brightness switches the lights on, but not off
+        List<Map<String, Map<String, Object>>> success = new ArrayList<Map<String, Map<String, Object>>>();
+        if (state.bri > -1) {
+            if (json.has("on") && state.on) {
+                success.add(successEntry(String.format(GROUP_ACTION_ADDRESS, id, "on"), state.on));
+            }
+            success.add(successEntry(String.format(GROUP_ACTION_ADDRESS, id, "bri"), state.bri));
+        } else {
+            success.add(successEntry(String.format(GROUP_ACTION_ADDRESS, id, "on"), state.on));
+        }
+        PrintWriter out = resp.getWriter();
+        out.write(gson.toJson(success));
+        out.close();
+    }
+
+    /**
+     * Hue API call to get a single group
+     *
+     * @param id
+     * @param req
+     * @param resp
+     * @throws IOException
+     */
+    private void apiGroup(String id, HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        if (!req.getMethod().equals(METHOD_GET)) {
+            apiServerError(req, resp, HueErrorResponse.METHOD_NOT_AVAILABLE, "Only GET allowed for this resource");
+            return;
+        }
+        HueGroup group = getGroup(id);
+        if (group == null) {
+            logger.debug("Group not found: " + id);
+            apiServerError(req, resp, HueErrorResponse.NOT_AVAILABLE, "The Hue group could not be found");
+            return;
+        }
+        PrintWriter out = resp.getWriter();
+        out.write(gson.toJson(group));
+        out.close();
+    }
+
+    /**
+     * Hue API call to get a listing of all groups, which are the group items
+     * with lights as members. Only the groups of the tagged lights are
+     * looked at, not all items of the registry.
+     *
+     * @param req
+     * @param resp
+     * @throws IOException
+     */
+    private void apiGroups(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        if (!req.getMethod().equals(METHOD_GET)) {
+            apiServerError(req, resp, HueErrorResponse.METHOD_NOT_AVAILABLE, "Only GET allowed for this resource");
+            return;
+        }
+        Map<String, HueGroup> groups = new HashMap<String, HueGroup>();
+        for (String groupName : getLightGroupNames()) {
+            HueGroup group = getGroup(groupName);
+            if (group != null && !group.lights.isEmpty()) {
+                groups.put(groupName, group);
+            }
+        }
+        PrintWriter out = resp.getWriter();
+        out.write(gson.toJson(groups));
+        out.close();
+    }
+
     /**
      * Hue API call to get the state of a single light
      *
@@ -285,6 +434,17 @@ public class HueEmulationServlet extends HttpServlet {
      * @throws IOException
      */
     private void apiLight(String id, HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        // only the tagged items are tracked by the version of the index
+        long version = taggedItems.getVersion();
+        Item taggedItem = taggedItems.getItem(id);
+        if (taggedItem != null) {
+            HueResponseCache.Response response = responseCache.get(CACHE_KEY_LIGHT + id, version);
+            if (response == null) {
+                response = responseCache.put(CACHE_KEY_LIGHT + id, version, gson.toJson(itemToDevice(taggedItem)));
+            }
+            writeResponse(response, req, resp);
+            return;
+        }
         try {
             Item item = itemRegistry.getItem(id);
             PrintWriter out = resp.getWriter();
@@ -304,9 +464,12 @@ public class HueEmulationServlet extends HttpServlet {
      * @throws IOException
      */
     public void apiLights(HttpServletRequest req, HttpServletResponse resp) throws IOException {
-        PrintWriter out = resp.getWriter();
-        out.write(gson.toJson(getHueDeviceNames()));
-        out.close();
+        long version = taggedItems.getVersion();
+        HueResponseCache.Response response = responseCache.get(CACHE_KEY_LIGHTS, version);
+        if (response == null) {
+            response = responseCache.put(CACHE_KEY_LIGHTS, version, gson.toJson(getHueDeviceNames()));
+        }
+        writeResponse(response, req, resp);
     }
 
     /**
@@ -317,10 +480,35 @@ public class HueEmulationServlet extends HttpServlet {
      * @throws IOException
      */
     public void apiDataStore(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        long version = taggedItems.getVersion();
+        HueResponseCache.Response response = responseCache.get(CACHE_KEY_DATA_STORE, version);
+        if (response == null) {
+            HueDataStore ds = new HueDataStore();
+            ds.lights = getHueDevices();
+            response = responseCache.put(CACHE_KEY_DATA_STORE, version, gson.toJson(ds));
+        }
+        writeResponse(response, req, resp);
+    }
+
+    /**
+     * Writes a cached response, or only the status 304 if the client sent the
+     * entity tag of this response
+     *
+     * @param response
+     * @param req
+     * @param resp
+     * @throws IOException
+     */
+    private void writeResponse(HueResponseCache.Response response, HttpServletRequest req, HttpServletResponse resp)
+            throws IOException {
+        resp.setHeader(HEADER_ETAG, response.getETag());
+        if (response.isNotModified(req.getHeader(HEADER_IF_NONE_MATCH))) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
         PrintWriter out = resp.getWriter();
-        HueDataStore ds = new HueDataStore();
-        ds.lights = getHueDevices();
-        out.write(gson.toJson(ds));
+        out.write(response.getJson());
+        out.close();
     }
 
     /**
@@ -389,6 +577,152 @@ public class HueEmulationServlet extends HttpServlet {
         out.close();
     }
 
+    /**
+     * Converts a Hue state to the value of an item command
+     *
+     * @param state
+     * @return
+     *         the brightness in percent or ON/OFF
+     */
+    private String stateToCommand(HueState state) {
+        if (state.bri > -1) {
+            return String.valueOf(Math.round(state.bri / 255.0 * 100));
+        } else {
+            return state.on ? "ON" : "OFF";
+        }
+    }
+
+    /**
+     * Posts a command event for an item
+     *
+     * @param item
+     * @param value
+     *            the command value
+     * @param commands
+     *            parsed commands by accepted command types, may be null
+     */
+    private void sendCommand(Item item, String value, Map<List<Class<? extends Command>>, Command> commands) {
+        List<Class<? extends Command>> types = item.getAcceptedCommandTypes();
+        Command command = commands == null ? null : commands.get(types);
+        if (command == null) {
+            command = TypeParser.parseCommand(types, value);
+            if (command == null) {
+                logger.debug("Item {} does not accept the command {}", item.getName(), value);
+                return;
+            }
+            if (commands != null) {
+                commands.put(types, command);
+            }
+        }
+        eventPublisher.post(ItemEventFactory.createCommandEvent(item.getName(), command));
+    }
+
+    /**
+     * Returns a success entry of a Hue API response
+     *
+     * @param address
+     * @param value
+     * @return
+     *         Map <"success", Map <address, value>>
+     */
+    private Map<String, Map<String, Object>> successEntry(String address, Object value) {
+        return Collections.singletonMap("success", Collections.singletonMap(address, value));
+    }
+
+    /**
+     * Converts a group to a HueGroup
+     *
+     * @param id
+     *            the group id
+     * @return
+     *         HueGroup or null if there is no such group
+     */
+    private HueGroup getGroup(String id) {
+        Collection<Item> members = getGroupMembers(id);
+        if (members == null) {
+            return null;
+        }
+        List<String> lights = new ArrayList<String>();
+        for (Item member : members) {
+            lights.add(member.getName());
+        }
+        if (ALL_LIGHTS_GROUP.equals(id)) {
+            return new HueGroup("Lightset 0", lights, new HueState(false, (short) 0));
+        }
+        Item group = itemRegistry.get(id);
+        String name = group.getLabel() != null ? group.getLabel() : group.getName();
+        return new HueGroup(name, lights, itemToDevice(group).state);
+    }
+
+    /**
+     * Returns the tagged lights and switches of a group
+     *
+     * @param id
+     *            the group id
+     * @return
+     *         the tagged members or null if there is no such group
+     */
+    private Collection<Item> getGroupMembers(String id) {
+        Collection<Item> candidates;
+        if (ALL_LIGHTS_GROUP.equals(id)) {
+            candidates = getTaggedItems();
+        } else {
+            Item group = itemRegistry.get(id);
+            if (!(group instanceof GroupItem)) {
+                return null;
+            }
+            candidates = ((GroupItem) group).getAllMembers();
+        }
+        Collection<Item> members = new ArrayList<Item>();
+        for (Item member : candidates) {
+            if (taggedItems.getItem(member.getName()) != null && isLight(member)) {
+                members.add(member);
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Returns the names of the groups which contain a tagged light or
+     * switch, directly or as member of a nested group
+     *
+     * @return
+     */
+    private Set<String> getLightGroupNames() {
+        Set<String> groupNames = new HashSet<String>();
+        Deque<String> pending = new ArrayDeque<String>();
+        for (Item item : getTaggedItems()) {
+            if (isLight(item)) {
+                pending.addAll(item.getGroupNames());
+            }
+        }
+        while (!pending.isEmpty()) {
+            String groupName = pending.poll();
+            if (groupNames.add(groupName)) {
+                Item group = itemRegistry.get(groupName);
+                if (group != null) {
+                    pending.addAll(group.getGroupNames());
+                }
+            }
+        }
+        return groupNames;
+    }
+
+    /**
+     * Checks if an item is tagged as light or switch
+     *
+     * @param item
+     * @return
+     */
+    private boolean isLight(Item item) {
+        for (String tag : LIGHT_TAGS) {
+            if (item.hasTag(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Returns a map of all our items that have voice tags.
      *
@@ -451,16 +785,7 @@ public class HueEmulationServlet extends HttpServlet {
      * @return
      */
     private Collection<Item> getTaggedItems() {
-        Collection<Item> items = new LinkedList<Item>();
-        for (Item item : itemRegistry.getItems()) {
-            for (String tag : item.getTags()) {
-                if (ArrayUtils.contains(SUPPORTED_TAGS, tag)) {
-                    items.add(item);
-                    break;
-                }
-            }
-        }
-        return items;
+        return taggedItems.getItems();
     }
 
     /**
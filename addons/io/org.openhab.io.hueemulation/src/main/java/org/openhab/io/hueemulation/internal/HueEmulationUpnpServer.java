@@ -9,15 +9,22 @@
 package org.openhab.io.hueemulation.internal;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.MulticastSocket;
 import java.net.NetworkInterface;
-import java.net.SocketException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
 import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
@@ -26,6 +33,10 @@ import org.slf4j.LoggerFactory;
 /**
  * Advertises a Hue UPNP compatible bridge
  *
+ * The server waits on a selector for discovery packets of a non-blocking
+ * channel, so a M-SEARCH request is answered as soon as it arrives and
+ * {@link #shutdown()} stops the server immediately.
+ *
  * @author Dan Cunningham
  *
  */
@@ -35,10 +46,17 @@ public class HueEmulationUpnpServer extends Thread {
     // jUPNP shares port 1900, but since this is multicast, we can also bind to it
     static final private int UPNP_PORT_RECV = 1900;
     static final private String MULTI_ADDR = "239.255.255.250";
-    private boolean running;
+    // delay before opening the channel again after a network error
+    static final private long RETRY_DELAY = 3000;
+    static final private int BUFFER_SIZE = 1000;
+    private volatile boolean running;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final int port;
+    private volatile Selector selector;
     private String discoPath;
     private String usn;
-    private InetAddress address;
+    private volatile InetAddress address;
+    private final boolean fixedAddress;
 
     private String discoString = "HTTP/1.1 200 OK\r\n" + "CACHE-CONTROL: max-age=100\r\n" + "EXT:\r\n"
             + "LOCATION: %s\r\n" + "SERVER: FreeRTOS/7.4.2 UPnP/1.0 IpBridge/1.10.0\r\n"
@@ -53,9 +71,29 @@ public class HueEmulationUpnpServer extends Thread {
      *            The unique USN id for this server
      */
     public HueEmulationUpnpServer(String discoPath, String usn) {
+        this(discoPath, usn, null, UPNP_PORT_RECV);
+    }
+
+    /**
+     * Server listening on a given interface address and port
+     *
+     * @param discoPath
+     *            The URI path where the discovery xml document can be retrieved
+     * @param usn
+     *            The unique USN id for this server
+     * @param address
+     *            The address of the interface to listen on, or null to use the first IPv4 address of the host
+     * @param port
+     *            The port to listen on
+     */
+    HueEmulationUpnpServer(String discoPath, String usn, InetAddress address, int port) {
+        super("Hue Emulation UPNP Server");
         this.running = true;
         this.discoPath = discoPath;
         this.usn = usn;
+        this.address = address;
+        this.fixedAddress = address != null;
+        this.port = port;
     }
 
     /**
@@ -63,72 +101,108 @@ public class HueEmulationUpnpServer extends Thread {
      */
     public void shutdown() {
         this.running = false;
+        stopped.countDown();
+        Selector selector = this.selector;
+        if (selector != null) {
+            selector.wakeup();
+        }
     }
 
     @Override
     public void run() {
-        MulticastSocket recvSocket = null;
-        // since jupnp shares port 1900, lets use a different port to send UDP packets on just to be safe.
-        DatagramSocket sendSocket = null;
-        byte[] buf = new byte[1000];
-        DatagramPacket recv = new DatagramPacket(buf, buf.length);
         while (running) {
+            DatagramChannel recvChannel = null;
+            // since jupnp shares port 1900, lets use a different port to send UDP packets on just to be safe.
+            DatagramChannel sendChannel = null;
             try {
-                Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
-                while (interfaces.hasMoreElements()) {
-                    NetworkInterface ni = interfaces.nextElement();
-                    Enumeration<InetAddress> addresses = ni.getInetAddresses();
-                    while (addresses.hasMoreElements()) {
-                        InetAddress addr = addresses.nextElement();
-                        if (addr instanceof Inet4Address && !addr.isLoopbackAddress()) {
-                            address = addr;
-                            break;
-                        }
-
-                    }
+                if (!fixedAddress) {
+                    address = findAddress();
+                }
+                if (address == null) {
+                    throw new IOException("No IPv4 address found");
                 }
-                InetSocketAddress socketAddr = new InetSocketAddress(MULTI_ADDR, UPNP_PORT_RECV);
-                recvSocket = new MulticastSocket(UPNP_PORT_RECV);
-                recvSocket.joinGroup(socketAddr, NetworkInterface.getByInetAddress(address));
-                sendSocket = new DatagramSocket();
+                selector = Selector.open();
+                recvChannel = DatagramChannel.open(StandardProtocolFamily.INET);
+                recvChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                recvChannel.bind(new InetSocketAddress(port));
+                recvChannel.join(InetAddress.getByName(MULTI_ADDR), NetworkInterface.getByInetAddress(address));
+                recvChannel.configureBlocking(false);
+                recvChannel.register(selector, SelectionKey.OP_READ);
+                sendChannel = DatagramChannel.open(StandardProtocolFamily.INET);
+                sendChannel.configureBlocking(false);
+
+                ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
                 while (running) {
-                    recvSocket.receive(recv);
-                    if (recv.getLength() > 0) {
-                        String data = new String(recv.getData());
-                        logger.trace("Got SSDP Discovery packet from " + recv.getAddress().getHostAddress() + ":"
-                                + recv.getPort());
-                        if (data.startsWith("M-SEARCH")) {
-                            String msg = String
-                                    .format(discoString,
-                                            "http://" + address.getHostAddress().toString() + ":"
-                                                    + System.getProperty("org.osgi.service.http.port") + discoPath,
-                                            usn);
-                            DatagramPacket response = new DatagramPacket(msg.getBytes(), msg.length(),
-                                    recv.getAddress(), recv.getPort());
-                            try {
-                                logger.trace("Sending to " + recv.getAddress().getHostAddress() + " : " + msg);
-                                sendSocket.send(response);
-                            } catch (IOException e) {
-                                logger.error("Could not send UPNP response", e);
-                            }
+                    selector.select();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        keys.next();
+                        keys.remove();
+                        // read all pending packets
+                        SocketAddress sender;
+                        while (running && (sender = recvChannel.receive(buf)) != null) {
+                            buf.flip();
+                            handlePacket(sendChannel, (InetSocketAddress) sender, buf);
+                            buf.clear();
                         }
                     }
                 }
-            } catch (SocketException e) {
-                logger.error("Socket error with UPNP server", e);
             } catch (IOException e) {
-                logger.error("IO Error with UPNP server", e);
-            } finally {
-                IOUtils.closeQuietly(recvSocket);
-                IOUtils.closeQuietly(sendSocket);
                 if (running) {
-                    try {
-                        Thread.sleep(3000);
-                    } catch (InterruptedException e) {
-                    }
+                    logger.error("IO Error with UPNP server", e);
+                }
+            } finally {
+                IOUtils.closeQuietly(recvChannel);
+                IOUtils.closeQuietly(sendChannel);
+                IOUtils.closeQuietly(selector);
+                selector = null;
+            }
+            if (running) {
+                try {
+                    // returns immediately on shutdown
+                    stopped.await(RETRY_DELAY, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    running = false;
+                }
+            }
+        }
+    }
+
+    private void handlePacket(DatagramChannel sendChannel, InetSocketAddress sender, ByteBuffer packet) {
+        if (!packet.hasRemaining()) {
+            return;
+        }
+        String data = StandardCharsets.UTF_8.decode(packet).toString();
+        logger.trace("Got SSDP Discovery packet from " + sender.getAddress().getHostAddress() + ":" + sender.getPort());
+        if (data.startsWith("M-SEARCH")) {
+            String msg = String.format(discoString, "http://" + address.getHostAddress() + ":"
+                    + System.getProperty("org.osgi.service.http.port") + discoPath, usn);
+            try {
+                logger.trace("Sending to " + sender.getAddress().getHostAddress() + " : " + msg);
+                if (sendChannel.send(ByteBuffer.wrap(msg.getBytes(StandardCharsets.UTF_8)), sender) == 0) {
+                    logger.debug("Dropped UPNP response to {}, send buffer full", sender);
+                }
+            } catch (IOException e) {
+                logger.error("Could not send UPNP response", e);
+            }
+        }
+    }
+
+    private InetAddress findAddress() throws IOException {
+        InetAddress found = null;
+        Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+        while (interfaces.hasMoreElements()) {
+            NetworkInterface ni = interfaces.nextElement();
+            Enumeration<InetAddress> addresses = ni.getInetAddresses();
+            while (addresses.hasMoreElements()) {
+                InetAddress addr = addresses.nextElement();
+                if (addr instanceof Inet4Address && !addr.isLoopbackAddress()) {
+                    found = addr;
+                    break;
                 }
             }
         }
+        return found;
     }
 
     public InetAddress getAddress() {
@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.hueemulation.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the serialized JSON responses of the Hue API, so that polling clients
+ * do not cause the tagged items to be converted and serialized on every
+ * request.
+ *
+ * The responses are stored with the version of the {@link TaggedItemIndex}
+ * they were built from. A response is only returned for the same version, a
+ * response of a newer version replaces all responses of older versions. Every
+ * response has an entity tag, so that clients can ask for a changed response
+ * with the If-None-Match header.
+ *
+ * @author agent
+ *
+ */
+public class HueResponseCache {
+
+    /**
+     * distinguishes the entity tags of different runs, as the versions start
+     * again at 0
+     */
+    private final String instance = Long.toHexString(System.currentTimeMillis());
+
+    private final Map<String, Response> responses = new HashMap<String, Response>();
+    private long version = -1;
+
+    /**
+     * @param key
+     *            the key of the response, e.g. the resource path
+     * @param version
+     *            the current version of the tagged items
+     * @return the response or null if there is no response for this version
+     */
+    public synchronized Response get(String key, long version) {
+        if (version != this.version) {
+            return null;
+        }
+        return responses.get(key);
+    }
+
+    /**
+     * Stores a response. A response of an outdated version is not stored.
+     *
+     * @param key
+     *            the key of the response, e.g. the resource path
+     * @param version
+     *            the version of the tagged items read before building the
+     *            response
+     * @param json
+     *            the serialized response
+     * @return the response with its entity tag
+     */
+    public synchronized Response put(String key, long version, String json) {
+        Response response = new Response(json, "\"" + instance + "-" + version + "\"");
+        if (version > this.version) {
+            responses.clear();
+            this.version = version;
+        }
+        if (version == this.version) {
+            responses.put(key, response);
+        }
+        return response;
+    }
+
+    /**
+     * Removes all responses.
+     */
+    public synchronized void clear() {
+        responses.clear();
+        version = -1;
+    }
+
+    /**
+     * @return the number of stored responses
+     */
+    public synchronized int size() {
+        return responses.size();
+    }
+
+    /**
+     * A serialized response and its entity tag
+     */
+    public static class Response {
+        private final String json;
+        private final String etag;
+
+        private Response(String json, String etag) {
+            this.json = json;
+            this.etag = etag;
+        }
+
+        public String getJson() {
+            return json;
+        }
+
+        public String getETag() {
+            return etag;
+        }
+
+        /**
+         * @param ifNoneMatch
+         *            the value of the If-None-Match header, may be null
+         * @return true if the client already has this response
+         */
+        public boolean isNotModified(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals(etag) || tag.equals("*")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.hueemulation.internal;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.smarthome.core.items.GenericItem;
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.items.ItemRegistry;
+import org.eclipse.smarthome.core.items.ItemRegistryChangeListener;
+import org.eclipse.smarthome.core.items.StateChangeListener;
+import org.eclipse.smarthome.core.types.State;
+
+/**
+ * Keeps the items which have one of the supported tags, so that API requests
+ * do not have to scan all items of the registry. The index is updated by the
+ * change events of the item registry.
+ *
+ * The items are indexed by their name, which is also used as id of the Hue
+ * device, so the ids do not change when other items are added or removed.
+ *
+ * The index also listens to the state changes of the tagged items and counts
+ * every change of a tagged item in its version, so that responses built from
+ * the tagged items can be reused as long as the version has not changed.
+ *
+ * @author agent
+ *
+ */
+public class TaggedItemIndex implements ItemRegistryChangeListener, StateChangeListener {
+
+    private final ItemRegistry itemRegistry;
+    private final Set<String> tags;
+
+    private final Map<String, Item> items = new ConcurrentHashMap<String, Item>();
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * @param itemRegistry
+     *            the registry to index
+     * @param tags
+     *            the tags of the items to index
+     */
+    public TaggedItemIndex(ItemRegistry itemRegistry, String... tags) {
+        this.itemRegistry = itemRegistry;
+        this.tags = new HashSet<String>(Arrays.asList(tags));
+    }
+
+    /**
+     * Builds the index and starts listening to changes of the registry
+     */
+    public void start() {
+        itemRegistry.addRegistryChangeListener(this);
+        rebuild();
+    }
+
+    /**
+     * Stops listening to changes of the registry and clears the index
+     */
+    public synchronized void stop() {
+        itemRegistry.removeRegistryChangeListener(this);
+        for (Item item : items.values()) {
+            unlisten(item);
+        }
+        items.clear();
+        version.incrementAndGet();
+    }
+
+    /**
+     * @return all tagged items
+     */
+    public Collection<Item> getItems() {
+        return Collections.unmodifiableCollection(items.values());
+    }
+
+    /**
+     * @param name
+     *            the item name
+     * @return the tagged item or null if there is no tagged item with this name
+     */
+    public Item getItem(String name) {
+        return items.get(name);
+    }
+
+    /**
+     * @return the number of tagged items
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * The version is incremented whenever a tagged item is added, removed,
+     * updated or changes its state.
+     *
+     * @return the current version of the tagged items
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    @Override
+    public synchronized void added(Item element) {
+        index(element);
+    }
+
+    @Override
+    public synchronized void removed(Item element) {
+        remove(element.getName());
+    }
+
+    @Override
+    public synchronized void updated(Item oldElement, Item element) {
+        if (!oldElement.getName().equals(element.getName())) {
+            remove(oldElement.getName());
+        }
+        index(element);
+    }
+
+    @Override
+    public void allItemsChanged(Collection<String> oldItemNames) {
+        rebuild();
+    }
+
+    @Override
+    public void stateChanged(Item item, State oldState, State newState) {
+        version.incrementAndGet();
+    }
+
+    @Override
+    public void stateUpdated(Item item, State state) {
+        // an update without change does not change the responses
+    }
+
+    private synchronized void rebuild() {
+        // replace the entries without clearing the index for concurrent requests
+        Set<String> names = new HashSet<String>();
+        for (Item item : itemRegistry.getItems()) {
+            if (isTagged(item)) {
+                put(item);
+                names.add(item.getName());
+            }
+        }
+        for (String name : new HashSet<String>(items.keySet())) {
+            if (!names.contains(name)) {
+                remove(name);
+            }
+        }
+        version.incrementAndGet();
+    }
+
+    private void index(Item item) {
+        if (isTagged(item)) {
+            put(item);
+        } else {
+            remove(item.getName());
+        }
+        version.incrementAndGet();
+    }
+
+    private void put(Item item) {
+        Item previous = items.put(item.getName(), item);
+        if (previous != item) {
+            if (previous != null) {
+                unlisten(previous);
+            }
+            if (item instanceof GenericItem) {
+                ((GenericItem) item).addStateChangeListener(this);
+            }
+        }
+    }
+
+    private void remove(String name) {
+        Item previous = items.remove(name);
+        if (previous != null) {
+            unlisten(previous);
+            version.incrementAndGet();
+        }
+    }
+
+    private void unlisten(Item item) {
+        if (item instanceof GenericItem) {
+            ((GenericItem) item).removeStateChangeListener(this);
+        }
+    }
+
+    private boolean isTagged(Item item) {
+        for (String tag : item.getTags()) {
+            if (tags.contains(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
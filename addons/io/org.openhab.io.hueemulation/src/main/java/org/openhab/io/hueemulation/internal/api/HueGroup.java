@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.hueemulation.internal.api;
+
+import java.util.List;
+
+/**
+ * Hue API group object
+ *
+ * @author agent
+ *
+ */
+public class HueGroup {
+    public String name;
+    public List<String> lights;
+    public String type = "LightGroup";
+    public HueState action;
+
+    public HueGroup(String name, List<String> lights, HueState action) {
+        super();
+        this.name = name;
+        this.lights = lights;
+        this.action = action;
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.myopenhab.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.socket.emitter.Emitter;
+
+/**
+ * Sends item updates through an {@link ItemUpdateBuffer} to an emitter which
+ * stands in for the Socket.IO connection to my.openHAB and counts the
+ * "itemupdate" messages, also while the connection is down.
+ *
+ * @author agent - Initial contribution
+ *
+ */
+public class ItemUpdateBufferTest {
+
+    private final Logger logger = LoggerFactory.getLogger(ItemUpdateBufferTest.class);
+
+    private static final int ITEMS = 20;
+    private static final int UPDATES = 1000;
+    private static final long MAX_SIZE = 1024 * 1024;
+
+    private Emitter socket;
+    private ScheduledExecutorService scheduler;
+    private Map<String, String> sentStates;
+    private int sentMessages;
+    private CountDownLatch sent;
+
+    @Before
+    public void setUp() {
+        socket = new Emitter();
+        sentStates = new LinkedHashMap<String, String>();
+        sent = new CountDownLatch(1);
+        socket.on("itemupdate", new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                JSONObject message = (JSONObject) args[0];
+                synchronized (sentStates) {
+                    try {
+                        sentStates.put(message.getString("itemName"), message.getString("itemStatus"));
+                    } catch (JSONException e) {
+                        fail(e.getMessage());
+                    }
+                    sentMessages++;
+                }
+                sent.countDown();
+            }
+        });
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void floodOfUpdatesIsCoalesced() {
+        ItemUpdateBuffer buffer = new ItemUpdateBuffer(socket, scheduler, TimeUnit.MINUTES.toMillis(1), 100,
+                MAX_SIZE);
+        buffer.setConnected(true);
+        for (int i = 0; i < UPDATES; i++) {
+            for (int item = 0; item < ITEMS; item++) {
+                buffer.add("Item" + item, String.valueOf(i));
+            }
+        }
+        buffer.flush();
+
+        logger.info("{} item updates sent as {} messages", ITEMS * UPDATES, sentMessages);
+        assertEquals(ITEMS, sentMessages);
+        for (int item = 0; item < ITEMS; item++) {
+            assertEquals(String.valueOf(UPDATES - 1), sentStates.get("Item" + item));
+        }
+    }
+
+    @Test
+    public void updatesAreSentWhenMaxItemsReached() {
+        ItemUpdateBuffer buffer = new ItemUpdateBuffer(socket, scheduler, TimeUnit.MINUTES.toMillis(1), 10,
+                MAX_SIZE);
+        buffer.setConnected(true);
+        for (int item = 0; item < 9; item++) {
+            buffer.add("Item" + item, "ON");
+        }
+        assertEquals(0, sentMessages);
+        buffer.add("Item9", "ON");
+        assertEquals(10, sentMessages);
+    }
+
+    @Test
+    public void updatesAreSentAfterInterval() throws InterruptedException {
+        ItemUpdateBuffer buffer = new ItemUpdateBuffer(socket, scheduler, 50, 100, MAX_SIZE);
+        buffer.setConnected(true);
+        buffer.add("Item", "OFF");
+        buffer.add("Item", "ON");
+        assertTrue(sent.await(5, TimeUnit.SECONDS));
+        synchronized (sentStates) {
+            assertEquals(1, sentMessages);
+            assertEquals("ON", sentStates.get("Item"));
+        }
+    }
+
+    @Test
+    public void clearedUpdatesAreNotSent() {
+        ItemUpdateBuffer buffer = new ItemUpdateBuffer(socket, scheduler, TimeUnit.MINUTES.toMillis(1), 100,
+                MAX_SIZE);
+        buffer.setConnected(true);
+        buffer.add("Item", "ON");
+        buffer.clear();
+        buffer.flush();
+        assertEquals(0, sentMessages);
+    }
+
+    @Test
+    public void keptUpdatesAreSentOnConnect() {
+        ItemUpdateBuffer buffer = new ItemUpdateBuffer(socket, scheduler, 50, 10, MAX_SIZE);
+        buffer.setConnected(true);
+        buffer.setConnected(false);
+        for (int i = 0; i < UPDATES; i++) {
+            for (int item = 0; item < ITEMS; item++) {
+                buffer.add("Item" + item, String.valueOf(i));
+            }
+        }
+        buffer.flush();
+        assertEquals(0, sentMessages);
+
+        buffer.setConnected(true);
+        logger.info("{} item updates while disconnected sent as {} messages on connect", ITEMS * UPDATES,
+                sentMessages);
+        assertEquals(ITEMS, sentMessages);
+        for (int item = 0; item < ITEMS; item++) {
+            assertEquals(String.valueOf(UPDATES - 1), sentStates.get("Item" + item));
+        }
+    }
+
+    @Test
+    public void updatesOfOldestItemsAreDroppedWhenFull() {
+        // every update of an item with a name of 6 characters and a state of 2 characters uses 80 bytes
+        ItemUpdateBuffer buffer = new ItemUpdateBuffer(socket, scheduler, 50, 100, 10 * 80);
+        for (int item = 10; item < 30; item++) {
+            buffer.add("Item" + item, "ON");
+        }
+        // the oldest item has been updated again
+        buffer.add("Item10", "ON");
+        buffer.setConnected(true);
+
+        assertEquals(10, sentMessages);
+        assertTrue(sentStates.containsKey("Item10"));
+        for (int item = 21; item < 30; item++) {
+            assertTrue(sentStates.containsKey("Item" + item));
+        }
+    }
+
+    @Test
+    public void offlineBufferSizeOfClientIsApplied() {
+        // the client reads the port of the local openHAB
+        if (System.getProperty("org.osgi.service.http.port") == null) {
+            System.setProperty("org.osgi.service.http.port", "8080");
+        }
+        MyOpenHABClient client = new MyOpenHABClient("uuid", "secret");
+        client.setOfflineBufferSize(1);
+        // every update of an item with a name of 7 characters and a state of 2 characters uses 82 bytes
+        for (int item = 100; item < 200; item++) {
+            client.sendItemUpdate("Item" + item, "ON");
+        }
+        ItemUpdateBuffer buffer = client.getItemUpdateBuffer();
+        buffer.setSocket(socket);
+        buffer.setConnected(true);
+
+        assertEquals(1024 / 82, sentMessages);
+        assertTrue(sentStates.containsKey("Item199"));
+
+        // the default size keeps all updates
+        client = new MyOpenHABClient("uuid", "secret");
+        for (int item = 100; item < 200; item++) {
+            client.sendItemUpdate("Item" + item, "ON");
+        }
+        assertEquals(100, client.getItemUpdateBuffer().getPendingCount());
+    }
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.myopenhab.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Submits and cancels requests of my.openHAB from several threads while other
+ * threads, which stand in for the Jetty client, complete them.
+ *
+ * @author agent - Initial contribution
+ *
+ */
+public class RequestQueueTest {
+
+    private final Logger logger = LoggerFactory.getLogger(RequestQueueTest.class);
+
+    private static final int MAX_RUNNING = 10;
+    private static final int SUBMITTERS = 4;
+    private static final int REQUESTS = 5000;
+
+    private RequestQueue queue;
+    private ExecutorService openHAB;
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private final AtomicInteger sent = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger rejected = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        openHAB = Executors.newFixedThreadPool(16);
+    }
+
+    @After
+    public void tearDown() {
+        openHAB.shutdownNow();
+    }
+
+    @Test
+    public void requestsAreNotLostUnderLoad() throws Exception {
+        queue = new RequestQueue(MAX_RUNNING, SUBMITTERS * REQUESTS);
+        final List<TestRequest> requests = new ArrayList<TestRequest>();
+        for (int i = 0; i < SUBMITTERS * REQUESTS; i++) {
+            requests.add(new TestRequest(i));
+        }
+        final CountDownLatch submitted = new CountDownLatch(SUBMITTERS);
+        for (int submitter = 0; submitter < SUBMITTERS; submitter++) {
+            final int first = submitter * REQUESTS;
+            new Thread() {
+                @Override
+                public void run() {
+                    Random random = new Random(first);
+                    for (int i = first; i < first + REQUESTS; i++) {
+                        queue.submit(i, requests.get(i));
+                        // cancel some of the requests, which may be queued or running
+                        if (random.nextInt(10) == 0) {
+                            queue.cancel(first + random.nextInt(i - first + 1));
+                        }
+                    }
+                    submitted.countDown();
+                }
+            }.start();
+        }
+        assertTrue(submitted.await(30, TimeUnit.SECONDS));
+
+        long deadline = System.currentTimeMillis() + 30000;
+        while ((queue.getRunningCount() > 0 || queue.getQueuedCount() > 0)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        int cancelled = 0;
+        for (TestRequest request : requests) {
+            if (!request.isSent.get()) {
+                cancelled++;
+            }
+        }
+        logger.info("{} requests: {} sent, {} completed, {} cancelled while queued, at most {} running",
+                requests.size(), sent.get(), completed.get(), cancelled, maxRunning.get());
+        assertEquals(0, queue.getRunningCount());
+        assertEquals(0, queue.getQueuedCount());
+        // every request which has been sent has completed exactly once, all others have been cancelled
+        assertEquals(sent.get(), completed.get());
+        assertEquals(requests.size(), sent.get() + cancelled);
+        assertEquals(0, rejected.get());
+        assertTrue(maxRunning.get() <= MAX_RUNNING);
+    }
+
+    @Test
+    public void requestsAreRejectedWhenQueueIsFull() {
+        queue = new RequestQueue(1, 1);
+        TestRequest held = new TestRequest(1);
+        held.hold = true;
+        queue.submit(1, held);
+        queue.submit(2, new TestRequest(2));
+        queue.submit(3, new TestRequest(3));
+
+        assertEquals(1, queue.getRunningCount());
+        assertEquals(1, queue.getQueuedCount());
+        assertEquals(1, rejected.get());
+    }
+
+    @Test
+    public void cancelledQueuedRequestIsNotSent() {
+        queue = new RequestQueue(1, 10);
+        TestRequest held = new TestRequest(1);
+        held.hold = true;
+        TestRequest queued = new TestRequest(2);
+        queue.submit(1, held);
+        queue.submit(2, queued);
+        queue.cancel(2);
+        queue.cancel(1);
+
+        assertTrue(held.isAborted.get());
+        assertFalse(queued.isSent.get());
+        assertEquals(0, queue.getRunningCount());
+        assertEquals(0, queue.getQueuedCount());
+    }
+
+    @Test
+    public void streamsDoNotBlockRequests() {
+        queue = new RequestQueue(1, 10, 2);
+        TestRequest[] streams = new TestRequest[3];
+        for (int i = 0; i < streams.length; i++) {
+            streams[i] = new TestRequest(10 + i);
+            streams[i].hold = true;
+            queue.submitStream(10 + i, streams[i]);
+        }
+        assertEquals(2, queue.getStreamCount());
+        assertEquals(1, rejected.get());
+        assertFalse(streams[2].isSent.get());
+
+        TestRequest held = new TestRequest(1);
+        held.hold = true;
+        queue.submit(1, held);
+        assertTrue(held.isSent.get());
+        assertEquals(1, queue.getRunningCount());
+
+        // a cancelled stream frees its slot without sending a queued request
+        TestRequest queued = new TestRequest(2);
+        queue.submit(2, queued);
+        queue.cancel(10);
+        assertTrue(streams[0].isAborted.get());
+        assertEquals(1, queue.getStreamCount());
+        assertFalse(queued.isSent.get());
+        assertEquals(1, queue.getQueuedCount());
+    }
+
+    /**
+     * A request which is completed by the stand-in for openHAB, or when it is aborted,
+     * like the Jetty client completes a request exactly once
+     */
+    private class TestRequest implements RequestQueue.QueuedRequest {
+        private final int id;
+        private final AtomicBoolean isSent = new AtomicBoolean();
+        private final AtomicBoolean isAborted = new AtomicBoolean();
+        private final AtomicBoolean isDone = new AtomicBoolean();
+        private boolean hold;
+
+        public TestRequest(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public void send() {
+            assertFalse(isSent.getAndSet(true));
+            sent.incrementAndGet();
+            int nowRunning = running.incrementAndGet();
+            int max = maxRunning.get();
+            while (nowRunning > max && !maxRunning.compareAndSet(max, nowRunning)) {
+                max = maxRunning.get();
+            }
+            if (!hold) {
+                openHAB.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        complete();
+                    }
+                });
+            }
+        }
+
+        @Override
+        public void abort() {
+            isAborted.set(true);
+            complete();
+        }
+
+        @Override
+        public void reject(String reason) {
+            rejected.incrementAndGet();
+        }
+
+        private void complete() {
+            if (isDone.compareAndSet(false, true)) {
+                running.decrementAndGet();
+                completed.incrementAndGet();
+                queue.complete(id);
+            }
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.myopenhab.internal;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.util.Callback;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.socket.emitter.Emitter;
+import io.socket.parser.Packet;
+import io.socket.parser.Parser;
+import io.socket.thread.EventThread;
+
+/**
+ * Proxies responses of several megabytes through a {@link ResponseContentSender}.
+ * The local openHAB is stood in for by a producer which hands the content in chunks
+ * and waits for every chunk to be completed, like the Jetty client does. my.openHAB
+ * is stood in for by an emitter which encodes the messages on the event thread, like
+ * the Socket.IO connection does.
+ *
+ * @author agent - Initial contribution
+ *
+ */
+public class ResponseContentSenderTest {
+
+    private final Logger logger = LoggerFactory.getLogger(ResponseContentSenderTest.class);
+
+    private static final int CONTENT_LENGTH = 8 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 4 * 1024;
+    private static final int FRAME_SIZE = 64 * 1024;
+
+    private byte[] content;
+    private CloudSocket socket;
+
+    @Before
+    public void setUp() {
+        content = new byte[CONTENT_LENGTH];
+        new Random(0).nextBytes(content);
+        socket = new CloudSocket();
+    }
+
+    @Test
+    public void contentIsSentInFrames() throws Exception {
+        // warm up both paths
+        proxyChunks();
+        proxyFrames(CONTENT_LENGTH);
+        socket = new CloudSocket();
+
+        long start = System.nanoTime();
+        proxyChunks();
+        long chunkTime = System.nanoTime() - start;
+        int chunkMessages = socket.messages.get();
+
+        socket = new CloudSocket();
+        start = System.nanoTime();
+        proxyFrames(CONTENT_LENGTH);
+        long frameTime = System.nanoTime() - start;
+
+        logger.info("{} MB sent as {} messages in {} ms before, as {} messages in {} ms with frames",
+                CONTENT_LENGTH / (1024 * 1024), chunkMessages, chunkTime / 1000000, socket.messages.get(),
+                frameTime / 1000000);
+        assertEquals(CONTENT_LENGTH / CHUNK_SIZE, chunkMessages);
+        assertEquals(CONTENT_LENGTH / FRAME_SIZE, socket.messages.get());
+        assertArrayEquals(content, socket.received.toByteArray());
+        assertEquals(FRAME_SIZE, socket.maxMessageSize);
+        // every message is encoded as a packet and its binary attachment
+        assertEquals(2 * socket.messages.get(), socket.encodedParts);
+    }
+
+    @Test
+    public void contentOfUnknownLengthIsSentPerChunk() throws Exception {
+        content = Arrays.copyOf(content, FRAME_SIZE * 2 + 10);
+        proxyFrames(-1);
+
+        assertEquals((content.length + CHUNK_SIZE - 1) / CHUNK_SIZE, socket.messages.get());
+        assertArrayEquals(content, socket.received.toByteArray());
+    }
+
+    @Test
+    public void eventIsSentBeforeStreamIsComplete() throws Exception {
+        ResponseContentSender sender = new ResponseContentSender(socket, 1, FRAME_SIZE, true);
+        sender.setContentLength(-1);
+        final Semaphore completed = new Semaphore(0);
+        sender.send(ByteBuffer.wrap(content, 0, 100), new Callback() {
+            @Override
+            public void succeeded() {
+                completed.release();
+            }
+
+            @Override
+            public void failed(Throwable x) {
+                fail(x.getMessage());
+            }
+        });
+        assertTrue(completed.tryAcquire(10, TimeUnit.SECONDS));
+        socket.awaitMessages();
+
+        // the stream is still open, flush() is only called on completion
+        assertEquals(1, socket.messages.get());
+        assertArrayEquals(Arrays.copyOf(content, 100), socket.received.toByteArray());
+    }
+
+    @Test
+    public void shortContentIsSentInOneFrame() throws Exception {
+        content = Arrays.copyOf(content, 100);
+        proxyFrames(content.length);
+
+        assertEquals(1, socket.messages.get());
+        assertArrayEquals(content, socket.received.toByteArray());
+    }
+
+    @Test
+    public void contentIsNotReadFasterThanSent() throws Exception {
+        socket.delay = 1;
+        content = Arrays.copyOf(content, FRAME_SIZE * 20);
+        proxyFrames(content.length);
+
+        assertArrayEquals(content, socket.received.toByteArray());
+        // the next frame is only filled when the previous one has been received
+        assertEquals(1, socket.maxQueuedMessages);
+    }
+
+    /**
+     * sends every chunk of the content like before the frames, the content is copied
+     * before it is emitted
+     */
+    private void proxyChunks() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+        for (int offset = 0; offset < content.length; offset += CHUNK_SIZE) {
+            buffer.clear();
+            buffer.put(content, offset, Math.min(CHUNK_SIZE, content.length - offset)).flip();
+            byte[] body = new byte[buffer.remaining()];
+            buffer.get(body);
+            JSONObject responseJson = new JSONObject();
+            responseJson.put("id", 1);
+            responseJson.put("body", body);
+            socket.emit("responseContentBinary", responseJson);
+        }
+        socket.awaitMessages();
+    }
+
+    private void proxyFrames(long contentLength) throws Exception {
+        ResponseContentSender sender = new ResponseContentSender(socket, 1, FRAME_SIZE);
+        sender.setContentLength(contentLength);
+        // the buffer is reused for the next chunk once the callback has been completed
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+        final Semaphore completed = new Semaphore(0);
+        Callback callback = new Callback() {
+            @Override
+            public void succeeded() {
+                completed.release();
+            }
+
+            @Override
+            public void failed(Throwable x) {
+                fail(x.getMessage());
+            }
+        };
+        for (int offset = 0; offset < content.length; offset += CHUNK_SIZE) {
+            buffer.clear();
+            buffer.put(content, offset, Math.min(CHUNK_SIZE, content.length - offset)).flip();
+            sender.send(buffer, callback);
+            assertTrue(completed.tryAcquire(10, TimeUnit.SECONDS));
+        }
+        sender.flush();
+        socket.awaitMessages();
+    }
+
+    /**
+     * Encodes the messages on the event thread and collects the content
+     */
+    private static class CloudSocket extends Emitter {
+        private final Parser.Encoder encoder = new Parser.Encoder();
+        private final AtomicInteger messages = new AtomicInteger();
+        private int encodedParts;
+        private final AtomicInteger queuedMessages = new AtomicInteger();
+        private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        private volatile int maxMessageSize;
+        private volatile int maxQueuedMessages;
+        private volatile long delay;
+
+        public CloudSocket() {
+            on("responseContentBinary", new Emitter.Listener() {
+                @Override
+                public void call(Object... args) {
+                    try {
+                        byte[] body = (byte[]) ((JSONObject) args[0]).get("body");
+                        received.write(body, 0, body.length);
+                        maxMessageSize = Math.max(maxMessageSize, body.length);
+                        if (delay > 0) {
+                            Thread.sleep(delay);
+                        }
+                    } catch (JSONException e) {
+                        fail(e.getMessage());
+                    } catch (InterruptedException e) {
+                        fail(e.getMessage());
+                    }
+                    messages.incrementAndGet();
+                }
+            });
+        }
+
+        @Override
+        public Emitter emit(final String event, final Object... args) {
+            maxQueuedMessages = Math.max(maxQueuedMessages, queuedMessages.incrementAndGet());
+            EventThread.exec(new Runnable() {
+                @Override
+                public void run() {
+                    JSONArray message = new JSONArray();
+                    message.put(event);
+                    for (Object arg : args) {
+                        message.put(arg);
+                    }
+                    encoder.encode(new Packet<JSONArray>(Parser.BINARY_EVENT, message), new Parser.Encoder.Callback() {
+                        @Override
+                        public void call(Object[] encoded) {
+                            encodedParts += encoded.length;
+                        }
+                    });
+                    CloudSocket.super.emit(event, args);
+                    queuedMessages.decrementAndGet();
+                }
+            });
+            return this;
+        }
+
+        public void awaitMessages() throws InterruptedException {
+            final Semaphore done = new Semaphore(0);
+            EventThread.nextTick(new Runnable() {
+                @Override
+                public void run() {
+                    done.release();
+                }
+            });
+            assertTrue(done.tryAcquire(10, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.myopenhab.internal;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.socket.emitter.Emitter;
+
+/**
+ * This class collects item updates before they are sent to my.openHAB. Only
+ * the latest state of every item is kept, so that an item which is updated
+ * several times within the collection interval results in a single message.
+ * The collected updates are sent after the interval, or as soon as updates
+ * for the given number of items have been collected.
+ *
+ * While the connection to my.openHAB is down, the updates are kept and sent
+ * at once when the connection is established again. The memory used by the
+ * kept updates is limited, if the limit is reached the updates of the items
+ * which have not been updated for the longest time are dropped.
+ *
+ * @author agent - Initial contribution
+ *
+ */
+
+public class ItemUpdateBuffer {
+    /*
+     * Logger for this class
+     */
+    private static Logger logger = LoggerFactory.getLogger(ItemUpdateBuffer.class);
+
+    /*
+     * This constant defines the approximate number of bytes used by an update in
+     * addition to the characters of the item name and state
+     */
+    private static final int UPDATE_OVERHEAD = 64;
+
+    /*
+     * This variable holds the socket which the updates are sent with
+     */
+    private Emitter socket;
+
+    /*
+     * This variable holds the scheduler which sends the collected updates
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /*
+     * This variable holds the time in milliseconds to collect updates before they are sent
+     */
+    private final long interval;
+
+    /*
+     * This variable holds the number of items which causes the updates to be sent immediately
+     */
+    private final int maxItems;
+
+    /*
+     * This variable holds the maximum number of bytes used by the updates which have not been sent yet
+     */
+    private long maxSize;
+
+    /*
+     * This map holds the latest state of every updated item which has not been sent yet
+     */
+    private final Map<String, String> pendingUpdates = new LinkedHashMap<String, String>();
+
+    /*
+     * This variable holds the scheduled sending of the collected updates, if any
+     */
+    private ScheduledFuture<?> pendingFlush;
+
+    /*
+     * This variable holds the approximate number of bytes used by the updates which have not been sent yet
+     */
+    private long size;
+
+    /*
+     * This variable holds the number of updates which have been dropped since the connection was established
+     */
+    private int droppedUpdates;
+
+    /*
+     * This variable indicates if the updates can be sent to my.openHAB
+     */
+    private boolean isConnected;
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * Constructor of ItemUpdateBuffer
+     *
+     * @param socket the socket to send the updates with, may be set later
+     * @param scheduler the scheduler to send the collected updates
+     * @param interval the time in milliseconds to collect updates
+     * @param maxItems the number of items which causes the updates to be sent immediately
+     * @param maxSize the maximum number of bytes used by the updates which have not been sent yet
+     *
+     */
+    public ItemUpdateBuffer(Emitter socket, ScheduledExecutorService scheduler, long interval, int maxItems,
+            long maxSize) {
+        this.socket = socket;
+        this.scheduler = scheduler;
+        this.interval = interval;
+        this.maxItems = maxItems;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Sets the socket which the updates are sent with, once it has been created
+     *
+     * @param socket the socket to send the updates with
+     *
+     */
+
+    public synchronized void setSocket(Emitter socket) {
+        this.socket = socket;
+    }
+
+    /**
+     * Sets the maximum size of the updates which have not been sent yet, dropping the
+     * updates of the oldest items if they do not fit anymore
+     *
+     * @param maxSize the maximum number of bytes used by the updates which have not been sent yet
+     *
+     */
+
+    public synchronized void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        if (size > maxSize) {
+            dropOldestUpdates();
+        }
+    }
+
+    /**
+     * Returns the number of items whose updates have not been sent yet
+     */
+
+    public synchronized int getPendingCount() {
+        return pendingUpdates.size();
+    }
+
+    /**
+     * Adds an item update, replacing an update of the same item which has not been sent yet
+     *
+     * @param itemName the name of the item
+     * @param itemState updated item state
+     *
+     */
+
+    public synchronized void add(String itemName, String itemState) {
+        // re-insert the item, so that the items are ordered by their last update
+        String previousState = pendingUpdates.remove(itemName);
+        if (previousState != null) {
+            size -= sizeOf(itemName, previousState);
+        }
+        pendingUpdates.put(itemName, itemState);
+        size += sizeOf(itemName, itemState);
+        if (size > maxSize) {
+            dropOldestUpdates();
+        }
+        if (!isConnected) {
+            return;
+        }
+        if (pendingUpdates.size() >= maxItems) {
+            flush();
+        } else if (pendingFlush == null) {
+            pendingFlush = scheduler.schedule(flushTask, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sets the state of the connection to my.openHAB. When the connection is established,
+     * all updates which have been kept while the connection was down are sent.
+     *
+     * @param isConnected true if the connection is established
+     *
+     */
+
+    public synchronized void setConnected(boolean isConnected) {
+        this.isConnected = isConnected;
+        if (isConnected) {
+            if (droppedUpdates > 0) {
+                logger.warn("Updates for {} items have been dropped because the update buffer was full",
+                        droppedUpdates);
+                droppedUpdates = 0;
+            }
+            flush();
+        } else {
+            cancelFlush();
+        }
+    }
+
+    /**
+     * Sends all collected updates
+     */
+
+    public synchronized void flush() {
+        cancelFlush();
+        if (!isConnected || socket == null || pendingUpdates.isEmpty()) {
+            return;
+        }
+        logger.debug("Sending updates for {} items", pendingUpdates.size());
+        for (Map.Entry<String, String> update : pendingUpdates.entrySet()) {
+            JSONObject itemUpdateMessage = new JSONObject();
+            try {
+                itemUpdateMessage.put("itemName", update.getKey());
+                itemUpdateMessage.put("itemStatus", update.getValue());
+                socket.emit("itemupdate", itemUpdateMessage);
+            } catch (JSONException e) {
+                logger.error(e.getMessage());
+            }
+        }
+        pendingUpdates.clear();
+        size = 0;
+    }
+
+    /**
+     * Discards all collected updates
+     */
+
+    public synchronized void clear() {
+        cancelFlush();
+        pendingUpdates.clear();
+        size = 0;
+    }
+
+    private void dropOldestUpdates() {
+        Iterator<Map.Entry<String, String>> iterator = pendingUpdates.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            Map.Entry<String, String> update = iterator.next();
+            size -= sizeOf(update.getKey(), update.getValue());
+            iterator.remove();
+            if (droppedUpdates++ == 0) {
+                logger.warn("Update buffer is full, dropping updates for items which have not changed recently");
+            }
+        }
+    }
+
+    private static long sizeOf(String itemName, String itemState) {
+        return UPDATE_OVERHEAD + 2 * (itemName.length() + itemState.length());
+    }
+
+    private void cancelFlush() {
+        if (pendingFlush != null) {
+            pendingFlush.cancel(false);
+            pendingFlush = null;
+        }
+    }
+}
@@ -14,24 +14,25 @@ import java.net.URISyntaxException;
 import java.net.URLEncoder;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Request.FailureListener;
 import org.eclipse.jetty.client.api.Response;
-import org.eclipse.jetty.client.api.Response.ContentListener;
+import org.eclipse.jetty.client.api.Response.AsyncContentListener;
 import org.eclipse.jetty.client.api.Response.HeadersListener;
 import org.eclipse.jetty.client.api.Result;
 import org.eclipse.jetty.client.util.BytesContentProvider;
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpMethod;
-import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.URIUtil;
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.openhab.core.OpenHAB;
@@ -67,12 +68,55 @@ public class MyOpenHABClient {
      */
     private static final int HTTP_CLIENT_MAX_CONNECTIONS_PER_DEST = 200;
 
+    /*
+     * This constant defines how many of these connections may be held by event streams,
+     * which stay open as long as the client of my.openHAB listens to them
+     */
+    private static final int HTTP_CLIENT_MAX_STREAMS = 50;
+
     /*
      * This constant defines HTTP request timeout. It should be kept at about
      * 30 seconds minimum to make it work for long polling requests
      */
     private static final int HTTP_CLIENT_TIMEOUT = 30000;
 
+    /*
+     * This constant defines the time in milliseconds without any response data after
+     * which a request to openHAB is aborted. It has to be longer than the long polling
+     * requests. Event streams have no timeout, they are cancelled by my.openHAB
+     */
+    private static final int HTTP_REQUEST_IDLE_TIMEOUT = 120000;
+
+    /*
+     * This constant defines the maximum number of requests to openHAB waiting for one of
+     * the HTTP connections, further requests are rejected
+     */
+    private static final int HTTP_CLIENT_MAX_QUEUED_REQUESTS = 1000;
+
+    /*
+     * This constant defines the time in milliseconds item updates are collected
+     * before they are sent to my.openHAB
+     */
+    private static final int ITEM_UPDATE_INTERVAL = 500;
+
+    /*
+     * This constant defines the number of updated items which causes the collected
+     * item updates to be sent to my.openHAB immediately
+     */
+    private static final int ITEM_UPDATE_MAX_ITEMS = 100;
+
+    /*
+     * This constant defines the default maximum size in kilobytes of the item updates
+     * which are kept while the connection to my.openHAB is down
+     */
+    public static final int DEFAULT_OFFLINE_BUFFER_SIZE = 1024;
+
+    /*
+     * This constant defines the default maximum size in kilobytes of the response content
+     * which is sent to my.openHAB in one message
+     */
+    public static final int DEFAULT_RESPONSE_FRAME_SIZE = 64;
+
     /*
      * This variable holds base URL for my.openHAB cloud connections, has a default
      * value but can be changed
@@ -99,9 +143,10 @@ public class MyOpenHABClient {
      */
     private HttpClient jettyClient;
     /*
-     * This hashmap holds HTTP requests to local openHAB which are currently running
+     * This queue holds HTTP requests to local openHAB which are currently running or waiting
+     * for a connection
      */
-    private HashMap<Integer, Request> runningRequests;
+    private RequestQueue runningRequests;
     /*
      * This variable indicates if connection to my.openHAB cloud is currently in an established state
      */
@@ -115,6 +160,21 @@ public class MyOpenHABClient {
      * with my.openHAB cloud
      */
     private Socket socket;
+    /*
+     * This variable holds the buffer which collects item updates before they are sent
+     * to my.openHAB cloud
+     */
+    private final ItemUpdateBuffer itemUpdateBuffer;
+    /*
+     * This variable holds the maximum size in kilobytes of the item updates which are kept while
+     * the connection to my.openHAB cloud is down
+     */
+    private int offlineBufferSize = DEFAULT_OFFLINE_BUFFER_SIZE;
+    /*
+     * This variable holds the maximum size in kilobytes of the response content which is sent
+     * to my.openHAB cloud in one message
+     */
+    private int responseFrameSize = DEFAULT_RESPONSE_FRAME_SIZE;
     /*
      * This variable holds instance of MyOHClientListener which provides callbacks to communicate
      * certain events from my.openHAB cloud back to openHAB
@@ -131,10 +191,14 @@ public class MyOpenHABClient {
     public MyOpenHABClient(String uuid, String secret) {
         this.uuid = uuid;
         this.secret = secret;
-        runningRequests = new HashMap<Integer, Request>();
+        runningRequests = new RequestQueue(HTTP_CLIENT_MAX_CONNECTIONS_PER_DEST - HTTP_CLIENT_MAX_STREAMS,
+                HTTP_CLIENT_MAX_QUEUED_REQUESTS, HTTP_CLIENT_MAX_STREAMS);
         jettyClient = new HttpClient();
         jettyClient.setMaxConnectionsPerDestination(HTTP_CLIENT_MAX_CONNECTIONS_PER_DEST);
         jettyClient.setConnectTimeout(HTTP_CLIENT_TIMEOUT);
+        // updates are kept until the socket has been created and connected
+        itemUpdateBuffer = new ItemUpdateBuffer(null, ThreadPoolManager.getScheduledPool("myopenhab"),
+                ITEM_UPDATE_INTERVAL, ITEM_UPDATE_MAX_ITEMS, offlineBufferSize * 1024L);
     }
 
     /**
@@ -147,6 +211,7 @@ public class MyOpenHABClient {
         } catch (URISyntaxException e) {
             logger.error("Error creating Socket.IO: {}", e.getMessage());
         }
+        itemUpdateBuffer.setSocket(socket);
         socket.io().on(Manager.EVENT_TRANSPORT, new Emitter.Listener() {
             @Override
             public void call(Object... args) {
@@ -220,6 +285,8 @@ public class MyOpenHABClient {
                 logger.error("Could not start Jetty client: {}", e.getMessage());
             }
         }
+        // Send the item updates which have been kept while disconnected
+        itemUpdateBuffer.setConnected(true);
     }
 
     /**
@@ -229,6 +296,11 @@ public class MyOpenHABClient {
     public void onDisconnect() {
         logger.info("Disconnected from my.openHAB service (UUID = {}, base URL = {})", this.uuid, this.localBaseUrl);
         isConnected = false;
+        // Clean up the list of running requests, so that no queued requests are sent when the
+        // running ones are aborted
+        if (runningRequests != null) {
+            runningRequests.clear();
+        }
         // On disconnect stop jetty client to shutdown all ongoing requests if there were any
         if (jettyClient != null) {
             try {
@@ -237,10 +309,8 @@ public class MyOpenHABClient {
                 logger.error("Could not stop Jetty client: {}", e.getMessage());
             }
         }
-        // And clean up the list of running requests
-        if (runningRequests != null) {
-            runningRequests.clear();
-        }
+        // Keep item updates until the connection is established again
+        itemUpdateBuffer.setConnected(false);
     }
 
     /**
@@ -320,11 +390,14 @@ public class MyOpenHABClient {
                 logger.error("Unsupported request method " + requestMethod);
                 return;
             }
-            ResponseListener listener = new ResponseListener(requestId);
-            request.onResponseHeaders(listener).onResponseContent(listener).onRequestFailure(listener).send(listener);
-            // If successfully submitted request to http client, add it to the list of currently
+            // Send the request when there is a free connection, the request is kept in the list of
             // running requests to be able to cancel it if needed
-            runningRequests.put(requestId, request);
+            if (isEventStream(requestHeadersJson)) {
+                runningRequests.submitStream(requestId, new ProxyRequest(requestId, request, true));
+            } else {
+                request.idleTimeout(HTTP_REQUEST_IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+                runningRequests.submit(requestId, new ProxyRequest(requestId, request, false));
+            }
         } catch (JSONException e) {
             logger.error(e.getMessage());
         } catch (IOException e) {
@@ -334,6 +407,19 @@ public class MyOpenHABClient {
         }
     }
 
+    private boolean isEventStream(JSONObject requestHeadersJson) {
+        @SuppressWarnings("unchecked")
+        Iterator<String> headersIterator = requestHeadersJson.keys();
+        while (headersIterator.hasNext()) {
+            String headerName = headersIterator.next();
+            if (headerName.equalsIgnoreCase("Accept")
+                    && requestHeadersJson.optString(headerName).contains("text/event-stream")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void setRequestHeaders(Request request, JSONObject requestHeadersJson) {
         @SuppressWarnings("unchecked")
         Iterator<String> headersIterator = requestHeadersJson.keys();
@@ -357,12 +443,8 @@ public class MyOpenHABClient {
         try {
             int requestId = data.getInt("id");
             logger.debug("Received cancel for request {}", requestId);
-            // Find and abort running request
-            if (runningRequests.containsKey(requestId)) {
-                Request request = runningRequests.get(requestId);
-                request.abort(new InterruptedException());
-                runningRequests.remove(requestId);
-            }
+            // Find and abort running request, or remove it from the queue
+            runningRequests.cancel(requestId);
         } catch (JSONException e) {
             logger.error(e.getMessage());
         }
@@ -489,17 +571,10 @@ public class MyOpenHABClient {
     public void sendItemUpdate(String itemName, String itemState) {
         if (isConnected()) {
             logger.debug("Sending update '{}' for item '{}'", itemState, itemName);
-            JSONObject itemUpdateMessage = new JSONObject();
-            try {
-                itemUpdateMessage.put("itemName", itemName);
-                itemUpdateMessage.put("itemStatus", itemState);
-                socket.emit("itemupdate", itemUpdateMessage);
-            } catch (JSONException e) {
-                logger.error(e.getMessage());
-            }
         } else {
-            logger.debug("No connection, Item update is not sent");
+            logger.debug("No connection, Item update is kept until connected");
         }
+        itemUpdateBuffer.add(itemName, itemState);
     }
 
     /**
@@ -516,6 +591,7 @@ public class MyOpenHABClient {
 
     public void shutdown() {
         logger.info("Shutting down my.openHAB service connection");
+        itemUpdateBuffer.flush();
         try {
             jettyClient.stop();
         } catch (Exception e) {
@@ -554,10 +630,80 @@ public class MyOpenHABClient {
         this.openHABVersion = openHABVersion;
     }
 
+    /**
+     * Set maximum size of the item updates which are kept while disconnected from my.openHAB
+     *
+     * @param offlineBufferSize maximum size in kilobytes
+     *
+     */
+
+    public void setOfflineBufferSize(int offlineBufferSize) {
+        this.offlineBufferSize = offlineBufferSize;
+        itemUpdateBuffer.setMaxSize(offlineBufferSize * 1024L);
+    }
+
+    /**
+     * Set maximum size of the response content which is sent to my.openHAB in one message
+     *
+     * @param responseFrameSize maximum size in kilobytes
+     *
+     */
+
+    public void setResponseFrameSize(int responseFrameSize) {
+        this.responseFrameSize = responseFrameSize;
+    }
+
     public void setListener(MyOpenHABClientListener listener) {
         this.listener = listener;
     }
 
+    ItemUpdateBuffer getItemUpdateBuffer() {
+        return itemUpdateBuffer;
+    }
+
+    /*
+     * An internal class which sends a request to openHAB when the request queue has a free
+     * connection for it
+     *
+     */
+
+    private class ProxyRequest implements RequestQueue.QueuedRequest {
+
+        private int mRequestId;
+        private Request mRequest;
+        private boolean mEventStream;
+
+        public ProxyRequest(int requestId, Request request, boolean eventStream) {
+            mRequestId = requestId;
+            mRequest = request;
+            mEventStream = eventStream;
+        }
+
+        @Override
+        public void send() {
+            ResponseListener listener = new ResponseListener(mRequestId, mEventStream);
+            mRequest.onResponseHeaders(listener).onResponseContentAsync(listener).onRequestFailure(listener)
+                    .send(listener);
+        }
+
+        @Override
+        public void abort() {
+            mRequest.abort(new InterruptedException());
+        }
+
+        @Override
+        public void reject(String reason) {
+            JSONObject responseJson = new JSONObject();
+            try {
+                responseJson.put("id", mRequestId);
+                responseJson.put("responseStatusText", "openHAB connection error: " + reason);
+                socket.emit("responseError", responseJson);
+            } catch (JSONException e) {
+                logger.error(e.getMessage());
+            }
+        }
+    }
+
     /*
      * An internal class which extends ContentExchange and forwards response
      * headers and data back to my.openHAB
@@ -565,13 +711,15 @@ public class MyOpenHABClient {
      */
 
     private class ResponseListener
-            implements Response.CompleteListener, HeadersListener, ContentListener, FailureListener {
+            implements Response.CompleteListener, HeadersListener, AsyncContentListener, FailureListener {
 
         private int mRequestId;
         private boolean mHeadersSent = false;
+        private ResponseContentSender mContentSender;
 
-        public ResponseListener(int requestId) {
+        public ResponseListener(int requestId, boolean eventStream) {
             mRequestId = requestId;
+            mContentSender = new ResponseContentSender(socket, requestId, responseFrameSize * 1024, eventStream);
         }
 
         public JSONObject getJSONHeaders(HttpFields httpFields) {
@@ -588,13 +736,13 @@ public class MyOpenHABClient {
 
         @Override
         public void onComplete(Result result) {
-            // Remove this request from list of running requests
-            runningRequests.remove(mRequestId);
+            // Remove this request from list of running requests and send the next queued one
+            runningRequests.complete(mRequestId);
             if (result.isFailed()) {
                 logger.warn("Jetty request {} failed: {}", mRequestId, result.getFailure().getMessage());
-                logger.warn(result.getRequestFailure().getMessage());
-                logger.warn(result.getResponseFailure().getMessage());
             }
+            // Send the rest of the content before finishing the response
+            mContentSender.flush();
             JSONObject responseJson = new JSONObject();
             try {
                 responseJson.put("id", mRequestId);
@@ -620,17 +768,9 @@ public class MyOpenHABClient {
         }
 
         @Override
-        public void onContent(Response response, ByteBuffer content) {
+        public void onContent(Response response, ByteBuffer content, Callback callback) {
             logger.debug("Jetty received response content of size " + String.valueOf(content.remaining()));
-            JSONObject responseJson = new JSONObject();
-            try {
-                responseJson.put("id", mRequestId);
-                responseJson.put("body", BufferUtil.toArray(content));
-                socket.emit("responseContentBinary", responseJson);
-                logger.debug("Sent content to request {}", mRequestId);
-            } catch (JSONException e) {
-                logger.error(e.getMessage());
-            }
+            mContentSender.send(content, callback);
         }
 
         @Override
@@ -645,6 +785,11 @@ public class MyOpenHABClient {
                     responseJson.put("responseStatusCode", response.getStatus());
                     responseJson.put("responseStatusText", "OK");
                     socket.emit("responseHeader", responseJson);
+                    try {
+                        mContentSender.setContentLength(response.getHeaders().getLongField("Content-Length"));
+                    } catch (NumberFormatException e) {
+                        logger.debug("Invalid content length of response to request {}", mRequestId);
+                    }
                     logger.debug("Sent headers to request {}", mRequestId);
                     logger.debug(responseJson.toString());
                 } catch (JSONException e) {
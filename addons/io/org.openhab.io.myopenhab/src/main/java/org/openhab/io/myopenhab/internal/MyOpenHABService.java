@@ -65,6 +65,8 @@ public class MyOpenHABService implements PersistenceService, ActionService, MyOp
     public static String myohVersion = null;
     private MyOpenHABClient myOHClient;
     private boolean persistenceEnabled = false;
+    private int offlineBufferSize = MyOpenHABClient.DEFAULT_OFFLINE_BUFFER_SIZE;
+    private int responseFrameSize = MyOpenHABClient.DEFAULT_RESPONSE_FRAME_SIZE;
     protected ItemRegistry itemRegistry = null;
     protected EventPublisher eventPublisher = null;
 
@@ -135,17 +137,41 @@ public class MyOpenHABService implements PersistenceService, ActionService, MyOp
     protected void modified(Map<String, ?> config) {
         if (config != null) {
             persistenceEnabled = "persistence".equals(config.get("mode"));
+            offlineBufferSize = getSize(config, "offlineBufferSize", MyOpenHABClient.DEFAULT_OFFLINE_BUFFER_SIZE);
+            responseFrameSize = getSize(config, "responseFrameSize", MyOpenHABClient.DEFAULT_RESPONSE_FRAME_SIZE);
         } else {
             logger.debug("config is null");
         }
         logger.debug("UUID = " + InstanceUUID.get() + ", secret = " + getSecret());
         myOHClient = new MyOpenHABClient(InstanceUUID.get(), getSecret());
         myOHClient.setOpenHABVersion(OpenHAB.getVersion());
+        myOHClient.setOfflineBufferSize(offlineBufferSize);
+        myOHClient.setResponseFrameSize(responseFrameSize);
         myOHClient.connect();
         myOHClient.setListener(this);
         MyOpenHABAction.myOpenHABService = this;
     }
 
+    /**
+     * Reads a size in kilobytes from the configuration
+     */
+
+    private int getSize(Map<String, ?> config, String name, int defaultSize) {
+        Object value = config.get(name);
+        if (value != null) {
+            try {
+                int size = Integer.parseInt(value.toString());
+                if (size > 0) {
+                    return size;
+                }
+            } catch (NumberFormatException e) {
+                // invalid sizes are logged below
+            }
+            logger.warn("Invalid {} '{}', using {} kB", name, value, defaultSize);
+        }
+        return defaultSize;
+    }
+
     @Override
     public String getActionClassName() {
         return MyOpenHABAction.class.getCanonicalName();
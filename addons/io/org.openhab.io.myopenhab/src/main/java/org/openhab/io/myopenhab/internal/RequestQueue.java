@@ -0,0 +1,247 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.myopenhab.internal;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class keeps track of the requests from my.openHAB which are proxied to the
+ * local openHAB. Only the given number of requests is running at the same time,
+ * further requests are queued until a running request has completed. Requests
+ * which do not fit into the queue are rejected.
+ *
+ * Event streams are kept open until my.openHAB cancels them, so they are
+ * counted separately and limited to their own maximum, instead of blocking the
+ * connections of the other requests. A stream which exceeds the maximum is
+ * rejected.
+ *
+ * The requests are submitted and cancelled by the Socket.IO event thread and
+ * completed by the threads of the Jetty client, so all methods are thread safe.
+ *
+ * @author agent - Initial contribution
+ *
+ */
+
+public class RequestQueue {
+    /*
+     * Logger for this class
+     */
+    private static Logger logger = LoggerFactory.getLogger(RequestQueue.class);
+
+    /**
+     * A request which can be queued
+     */
+    public interface QueuedRequest {
+        /**
+         * Sends the request to openHAB. When the request has completed, {@link RequestQueue#complete(int)}
+         * has to be called.
+         */
+        void send();
+
+        /**
+         * Aborts the request after it has been sent, which completes it
+         */
+        void abort();
+
+        /**
+         * Rejects the request without sending it
+         *
+         * @param reason the reason of the rejection
+         */
+        void reject(String reason);
+    }
+
+    /*
+     * This variable holds the maximum number of requests running at the same time
+     */
+    private final int maxRunning;
+
+    /*
+     * This variable holds the maximum number of requests waiting to be sent
+     */
+    private final int maxQueued;
+
+    /*
+     * This variable holds the maximum number of event streams running at the same time
+     */
+    private final int maxStreams;
+
+    /*
+     * This map holds the requests which have been sent and not completed yet
+     */
+    private final Map<Integer, QueuedRequest> runningRequests = new HashMap<Integer, QueuedRequest>();
+
+    /*
+     * This map holds the requests waiting to be sent in the order they have been submitted
+     */
+    private final Map<Integer, QueuedRequest> queuedRequests = new LinkedHashMap<Integer, QueuedRequest>();
+
+    /*
+     * This map holds the event streams which have been sent and not completed yet
+     */
+    private final Map<Integer, QueuedRequest> runningStreams = new HashMap<Integer, QueuedRequest>();
+
+    /**
+     * Constructor of RequestQueue without event streams
+     *
+     * @param maxRunning the maximum number of requests running at the same time
+     * @param maxQueued the maximum number of requests waiting to be sent
+     *
+     */
+    public RequestQueue(int maxRunning, int maxQueued) {
+        this(maxRunning, maxQueued, 0);
+    }
+
+    /**
+     * Constructor of RequestQueue
+     *
+     * @param maxRunning the maximum number of requests running at the same time
+     * @param maxQueued the maximum number of requests waiting to be sent
+     * @param maxStreams the maximum number of event streams running at the same time, in addition to the
+     *            requests
+     *
+     */
+    public RequestQueue(int maxRunning, int maxQueued, int maxStreams) {
+        this.maxRunning = maxRunning;
+        this.maxQueued = maxQueued;
+        this.maxStreams = maxStreams;
+    }
+
+    /**
+     * Sends a request, or queues it if the maximum number of requests is running
+     *
+     * @param requestId my.openHAB unique request id
+     * @param request the request
+     *
+     */
+
+    public void submit(int requestId, QueuedRequest request) {
+        boolean send = false;
+        boolean reject = false;
+        synchronized (this) {
+            if (runningRequests.size() < maxRunning) {
+                runningRequests.put(requestId, request);
+                send = true;
+            } else if (queuedRequests.size() < maxQueued) {
+                queuedRequests.put(requestId, request);
+                logger.debug("Queued request {}, {} requests are waiting", requestId, queuedRequests.size());
+            } else {
+                reject = true;
+            }
+        }
+        if (send) {
+            request.send();
+        } else if (reject) {
+            logger.warn("Rejected request {}, {} requests are waiting", requestId, maxQueued);
+            request.reject("Too many requests");
+        }
+    }
+
+    /**
+     * Sends an event stream, or rejects it if the maximum number of streams is running
+     *
+     * @param requestId my.openHAB unique request id
+     * @param request the request of the event stream
+     *
+     */
+
+    public void submitStream(int requestId, QueuedRequest request) {
+        boolean send = false;
+        synchronized (this) {
+            if (runningStreams.size() < maxStreams) {
+                runningStreams.put(requestId, request);
+                send = true;
+            }
+        }
+        if (send) {
+            request.send();
+        } else {
+            logger.warn("Rejected event stream {}, {} streams are running", requestId, maxStreams);
+            request.reject("Too many event streams");
+        }
+    }
+
+    /**
+     * Removes a completed request and sends the next queued request, if any
+     *
+     * @param requestId my.openHAB unique request id
+     *
+     */
+
+    public void complete(int requestId) {
+        QueuedRequest next = null;
+        synchronized (this) {
+            if (runningStreams.remove(requestId) != null || runningRequests.remove(requestId) == null) {
+                return;
+            }
+            Iterator<Map.Entry<Integer, QueuedRequest>> iterator = queuedRequests.entrySet().iterator();
+            if (iterator.hasNext()) {
+                Map.Entry<Integer, QueuedRequest> queued = iterator.next();
+                iterator.remove();
+                runningRequests.put(queued.getKey(), queued.getValue());
+                next = queued.getValue();
+            }
+        }
+        if (next != null) {
+            next.send();
+        }
+    }
+
+    /**
+     * Cancels a request. A queued request is removed, a running request is aborted.
+     *
+     * @param requestId my.openHAB unique request id
+     *
+     */
+
+    public void cancel(int requestId) {
+        QueuedRequest request;
+        synchronized (this) {
+            if (queuedRequests.remove(requestId) != null) {
+                logger.debug("Removed cancelled request {} from queue", requestId);
+                return;
+            }
+            request = runningRequests.get(requestId);
+            if (request == null) {
+                request = runningStreams.get(requestId);
+            }
+        }
+        if (request != null) {
+            request.abort();
+        }
+    }
+
+    /**
+     * Forgets all running and queued requests and streams, without sending any of the queued requests
+     */
+
+    public synchronized void clear() {
+        runningRequests.clear();
+        queuedRequests.clear();
+        runningStreams.clear();
+    }
+
+    public synchronized int getRunningCount() {
+        return runningRequests.size();
+    }
+
+    public synchronized int getQueuedCount() {
+        return queuedRequests.size();
+    }
+
+    public synchronized int getStreamCount() {
+        return runningStreams.size();
+    }
+}
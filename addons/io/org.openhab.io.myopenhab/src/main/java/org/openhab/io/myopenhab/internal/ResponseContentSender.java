@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.myopenhab.internal;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.eclipse.jetty.util.Callback;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.socket.emitter.Emitter;
+import io.socket.thread.EventThread;
+
+/**
+ * This class sends the content of a response to a proxied request to my.openHAB.
+ * The content chunks received from the local openHAB are copied into frames of
+ * the given size, and every frame is sent as a single "responseContentBinary"
+ * message.
+ *
+ * A chunk which fills a frame is only completed after the frame has been handed
+ * to the Socket.IO connection on its event thread, so that the local openHAB
+ * is not read faster than the content can be sent to my.openHAB.
+ *
+ * The content of event streams and of other responses without a known length
+ * is sent at the end of every chunk, so that an event is not held back until
+ * a frame is full.
+ *
+ * @author agent - Initial contribution
+ *
+ */
+
+public class ResponseContentSender {
+    /*
+     * Logger for this class
+     */
+    private static Logger logger = LoggerFactory.getLogger(ResponseContentSender.class);
+
+    /*
+     * This variable holds the socket which the content is sent with
+     */
+    private final Emitter socket;
+
+    /*
+     * This variable holds my.openHAB unique request id of the response
+     */
+    private final int requestId;
+
+    /*
+     * This variable holds the maximum number of bytes sent in one message
+     */
+    private final int frameSize;
+
+    /*
+     * This variable is true if the response is an event stream
+     */
+    private final boolean eventStream;
+
+    /*
+     * This variable holds the length of the content from the response headers, or -1 if unknown
+     */
+    private long contentLength = -1;
+
+    /*
+     * This variable holds the number of bytes which have been received
+     */
+    private long receivedLength;
+
+    /*
+     * This variable holds the frame which is currently filled, if any
+     */
+    private byte[] frame;
+
+    /*
+     * This variable holds the number of bytes in the current frame
+     */
+    private int frameLength;
+
+    /**
+     * Constructor of ResponseContentSender
+     *
+     * @param socket the socket to send the content with
+     * @param requestId my.openHAB unique request id
+     * @param frameSize the maximum number of bytes sent in one message
+     *
+     */
+    public ResponseContentSender(Emitter socket, int requestId, int frameSize) {
+        this(socket, requestId, frameSize, false);
+    }
+
+    /**
+     * Constructor of ResponseContentSender
+     *
+     * @param socket the socket to send the content with
+     * @param requestId my.openHAB unique request id
+     * @param frameSize the maximum number of bytes sent in one message
+     * @param eventStream true if the response is an event stream, whose chunks are sent without delay
+     *
+     */
+    public ResponseContentSender(Emitter socket, int requestId, int frameSize, boolean eventStream) {
+        this.socket = socket;
+        this.requestId = requestId;
+        this.frameSize = frameSize;
+        this.eventStream = eventStream;
+    }
+
+    /**
+     * Sets the length of the content, which is used to allocate frames of the right size
+     *
+     * @param contentLength the length of the content, or -1 if unknown
+     *
+     */
+
+    public synchronized void setContentLength(long contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * Adds a chunk of the content and sends every frame it fills. The callback is completed
+     * when the chunk has been copied and the filled frames have been sent.
+     *
+     * @param content the chunk of the content
+     * @param callback the callback to complete
+     *
+     */
+
+    public synchronized void send(ByteBuffer content, final Callback callback) {
+        boolean sent = false;
+        while (content.hasRemaining()) {
+            if (frame == null) {
+                frame = new byte[nextFrameSize()];
+                frameLength = 0;
+            }
+            int length = Math.min(content.remaining(), frame.length - frameLength);
+            content.get(frame, frameLength, length);
+            frameLength += length;
+            receivedLength += length;
+            if (frameLength == frame.length) {
+                sendFrame();
+                sent = true;
+            }
+        }
+        if ((eventStream || contentLength < 0) && frame != null && frameLength > 0) {
+            // do not wait for a full frame, the rest of the content may take a while
+            frame = Arrays.copyOf(frame, frameLength);
+            sendFrame();
+            sent = true;
+        }
+        if (sent) {
+            // the emitted frames are queued on the event thread before the callback
+            EventThread.nextTick(new Runnable() {
+                @Override
+                public void run() {
+                    callback.succeeded();
+                }
+            });
+        } else {
+            callback.succeeded();
+        }
+    }
+
+    /**
+     * Sends the content which has not filled a frame yet
+     */
+
+    public synchronized void flush() {
+        if (frame != null && frameLength > 0) {
+            frame = Arrays.copyOf(frame, frameLength);
+            sendFrame();
+        }
+        frame = null;
+    }
+
+    private int nextFrameSize() {
+        long remainingLength = contentLength - receivedLength;
+        if (remainingLength > 0 && remainingLength < frameSize) {
+            return (int) remainingLength;
+        }
+        return frameSize;
+    }
+
+    private void sendFrame() {
+        JSONObject responseJson = new JSONObject();
+        try {
+            responseJson.put("id", requestId);
+            responseJson.put("body", frame);
+            socket.emit("responseContentBinary", responseJson);
+            logger.debug("Sent {} bytes of content to request {}", frame.length, requestId);
+        } catch (JSONException e) {
+            logger.error(e.getMessage());
+        }
+        frame = null;
+    }
+}
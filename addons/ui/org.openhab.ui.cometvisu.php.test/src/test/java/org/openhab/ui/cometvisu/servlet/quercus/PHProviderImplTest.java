@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.servlet.quercus;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import javax.servlet.ServletContext;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.caucho.quercus.QuercusContext;
+import com.caucho.vfs.FilePath;
+import com.caucho.vfs.Path;
+
+/**
+ * Parses a PHP page through the {@link PHProviderImpl} like repeated requests
+ * to a CometVisu endpoint do, and logs the parse time of a new engine and of
+ * an engine which has already parsed the page. As every engine loads the
+ * Quercus runtime, the benchmark is only run with the system property
+ * openhab.benchmark=true.
+ *
+ * @author agent
+ */
+public class PHProviderImplTest {
+
+    private final Logger logger = LoggerFactory.getLogger(PHProviderImplTest.class);
+
+    private static final int FUNCTIONS = 200;
+    private static final int NEW_ENGINES = 10;
+    private static final int REQUESTS = 1000;
+
+    private File dir;
+    private File page;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("quercus").toFile();
+        page = new File(dir, "endpoint.php");
+        writePage(page);
+    }
+
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+
+    @Test
+    public void parsedPagesAreReusedBenchmark() throws IOException {
+        Assume.assumeTrue(Boolean.getBoolean("openhab.benchmark"));
+        Path path = new FilePath(page.getAbsolutePath());
+
+        // a new engine has to parse the page, like every request before
+        long newEngineTime = 0;
+        for (int i = 0; i < NEW_ENGINES; i++) {
+            QuercusContext quercus = createProvider().engine.getQuercus();
+            long start = System.nanoTime();
+            assertNotNull(quercus.parse(path));
+            newEngineTime += System.nanoTime() - start;
+            quercus.close();
+        }
+
+        QuercusContext quercus = createProvider().engine.getQuercus();
+        assertNotNull(quercus.parse(path));
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            assertNotNull(quercus.parse(path));
+        }
+        long reusedTime = System.nanoTime() - start;
+        quercus.close();
+
+        logger.info("page with {} functions: {} us per request with a new engine, {} us with a parsed page",
+                FUNCTIONS, newEngineTime / 1000 / NEW_ENGINES, reusedTime / 1000 / REQUESTS);
+    }
+
+    private PHProviderImpl createProvider() {
+        PHProviderImpl provider = new PHProviderImpl();
+        provider.createQuercusEngine();
+        provider.init(dir.getAbsolutePath(), System.getProperty("user.dir"), createServletContext());
+        return provider;
+    }
+
+    /**
+     * writes a page with functions which walk a configuration, like the
+     * editor endpoints of the CometVisu do
+     */
+    private static void writePage(File file) throws IOException {
+        StringBuilder php = new StringBuilder("<?php\n");
+        for (int i = 0; i < FUNCTIONS; i++) {
+            php.append("function walk").append(i).append("($config) {\n");
+            php.append("    $result = array();\n");
+            php.append("    foreach ($config as $key => $value) {\n");
+            php.append("        if (is_array($value)) {\n");
+            php.append("            $result[$key] = walk").append(i).append("($value);\n");
+            php.append("        } else {\n");
+            php.append("            $result[$key] = trim(str_replace('\"', '', $value));\n");
+            php.append("        }\n");
+            php.append("    }\n");
+            php.append("    return $result;\n");
+            php.append("}\n");
+        }
+        php.append("echo json_encode(walk0(array('pages' => array('page' => 'Home'))));\n");
+        php.append("?>\n");
+        Files.write(file.toPath(), php.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static ServletContext createServletContext() {
+        return (ServletContext) Proxy.newProxyInstance(PHProviderImplTest.class.getClassLoader(),
+                new Class<?>[] { ServletContext.class }, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getMajorVersion")) {
+                            return 3;
+                        }
+                        if (method.getName().equals("getMinorVersion")) {
+                            return 1;
+                        }
+                        return null;
+                    }
+                });
+    }
+}
@@ -63,12 +63,18 @@ public class PHProviderImpl implements PHProvider {
     private static final Logger logger = LoggerFactory.getLogger(PHProviderImpl.class);
     private static final L10N L = new L10N(PHProviderImpl.class);
 
+    // maximum number of parsed pages kept by Quercus
+    private static final int PAGE_CACHE_SIZE = 64;
+
     protected QuercusEngine engine;
     protected String defaultUserDir;
     protected ServletContext _servletContext;
 
     public void createQuercusEngine() {
         this.engine = new QuercusEngine();
+        // the page manager of Quercus reuses the parsed pages until their
+        // files change, bound it to the few pages of the CometVisu
+        engine.getQuercus().setPageCacheSize(PAGE_CACHE_SIZE);
     }
 
     /**
@@ -0,0 +1,188 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.backend;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.rrd4j.ConsolFun;
+import org.rrd4j.DsType;
+import org.rrd4j.core.FetchData;
+import org.rrd4j.core.RrdDb;
+import org.rrd4j.core.RrdDef;
+import org.rrd4j.core.Sample;
+
+/**
+ * Tests the chart series written by the {@link ChartResource}.
+ *
+ * @author agent
+ * @since 2.0.0
+ */
+public class ChartResourceTest {
+
+    private static final long STEP = 60;
+    private static final int ROWS = 500;
+    private static final int THREADS = 8;
+    private static final int REQUESTS = 50;
+
+    private static final Pattern ROW_PATTERN = Pattern.compile("\\[(\\d+),\\[([^\\]]*)\\]\\]");
+
+    private File folder;
+    private long end;
+    private FetchData temperature;
+    private FetchData humidity;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("rrd", "");
+        folder.delete();
+        folder.mkdirs();
+        end = System.currentTimeMillis() / 1000 / STEP * STEP;
+
+        // the second file starts later, its first rows are missing in the group
+        temperature = fetch(createRrd("Temperature", end - ROWS * STEP, 20));
+        humidity = fetch(createRrd("Humidity", end - ROWS * STEP / 2, 50));
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : folder.listFiles()) {
+            file.delete();
+        }
+        folder.delete();
+    }
+
+    @Test
+    public void singleSeries() throws IOException {
+        String json = write(Arrays.asList(temperature), 0);
+
+        assertTrue(json.startsWith("[[" + temperature.getTimestamps()[0] * 1000 + ",[\""));
+        assertTrue(json.endsWith("\"]]]"));
+        Matcher matcher = ROW_PATTERN.matcher(json);
+        long lastTime = 0;
+        int rows = 0;
+        while (matcher.find()) {
+            long time = Long.parseLong(matcher.group(1));
+            assertTrue(time > lastTime);
+            lastTime = time;
+            rows++;
+        }
+        assertEquals(temperature.getRowCount(), rows);
+    }
+
+    @Test
+    public void groupSeriesAreAligned() throws IOException {
+        String json = write(Arrays.asList(temperature, humidity), 0);
+
+        Matcher matcher = ROW_PATTERN.matcher(json);
+        int rows = 0;
+        int missing = 0;
+        while (matcher.find()) {
+            String[] values = matcher.group(2).split(",");
+            assertEquals(2, values.length);
+            if (values[1].equals("\"null\"")) {
+                missing++;
+            }
+            rows++;
+        }
+        assertEquals(temperature.getRowCount(), rows);
+        assertTrue(missing >= ROWS / 2);
+    }
+
+    @Test
+    public void downsampledSeries() throws IOException {
+        String json = write(Arrays.asList(temperature, humidity), 100);
+
+        Matcher matcher = ROW_PATTERN.matcher(json);
+        int rows = 0;
+        while (matcher.find()) {
+            rows++;
+        }
+        assertEquals(100, rows);
+    }
+
+    @Test
+    public void concurrentRequests() throws Exception {
+        final List<List<FetchData>> series = new ArrayList<List<FetchData>>();
+        series.add(Arrays.asList(temperature));
+        series.add(Arrays.asList(humidity));
+        series.add(Arrays.asList(temperature, humidity));
+        final List<String> expected = new ArrayList<String>();
+        for (List<FetchData> fetchData : series) {
+            expected.add(write(fetchData, 0));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < THREADS * REQUESTS; i++) {
+                final int index = i % series.size();
+                results.add(executor.submit(new Callable<Boolean>() {
+
+                    @Override
+                    public Boolean call() throws IOException {
+                        return expected.get(index).equals(write(series.get(index), 0));
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static String write(List<FetchData> fetchData, int maxPoints) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ChartResource.writeRrdSeries(output, fetchData, maxPoints);
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private FetchData fetch(String path) throws IOException {
+        RrdDb rrdDb = new RrdDb(path, true);
+        try {
+            return rrdDb.createFetchRequest(ConsolFun.AVERAGE, end - ROWS * STEP, end).fetchData();
+        } finally {
+            rrdDb.close();
+        }
+    }
+
+    private String createRrd(String name, long start, double offset) throws IOException {
+        String path = new File(folder, name + ".rrd").getPath();
+        RrdDef rrdDef = new RrdDef(path, start - 1, STEP);
+        rrdDef.addDatasource("state", DsType.GAUGE, STEP * 10, Double.NaN, Double.NaN);
+        rrdDef.addArchive(ConsolFun.AVERAGE, 0.5, 1, ROWS * 2);
+        RrdDb rrdDb = new RrdDb(rrdDef);
+        Sample sample = rrdDb.createSample();
+        for (long time = start; time <= end; time += STEP) {
+            sample.setTime(time);
+            sample.setValue(0, offset + Math.sin(time / 3600.0) * 1234.5678);
+            sample.update();
+        }
+        rrdDb.close();
+        return path;
+    }
+}
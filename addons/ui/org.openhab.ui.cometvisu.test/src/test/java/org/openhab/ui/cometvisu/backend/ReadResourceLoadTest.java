@@ -0,0 +1,350 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.backend;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.smarthome.core.items.ItemNotFoundException;
+import org.eclipse.smarthome.core.items.ItemRegistry;
+import org.eclipse.smarthome.core.library.items.NumberItem;
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.ui.cometvisu.internal.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Load test of the {@link ReadResource} with many concurrent read sessions.
+ *
+ * The resource runs in-process with an item registry of number items. Every
+ * client subscribes to a random set of items, a driver thread changes the
+ * item states at a fixed rate and the state change listeners of the items
+ * pass the changes to the resource, like in a running openHAB. The clients
+ * receive the serialized SSE events instead of writing them to a connection.
+ *
+ * The harness reports the delivered states per second, the latency from the
+ * state change to the serialized event and the heap use. The test only runs
+ * with the system property openhab.benchmark=true. The default settings keep
+ * it short, larger scenarios can be run with system properties:
+ *
+ * <pre>
+ * cometvisu.load.clients       - number of read sessions (200)
+ * cometvisu.load.items         - number of items (500)
+ * cometvisu.load.subscriptions - items per session (20)
+ * cometvisu.load.rate          - state changes per second (2000)
+ * cometvisu.load.duration      - duration of the state changes in ms (3000)
+ * cometvisu.load.batchWindow   - batch window in ms (configured default)
+ * </pre>
+ *
+ * @author agent
+ * @since 2.0.0
+ */
+public class ReadResourceLoadTest {
+
+    private final Logger logger = LoggerFactory.getLogger(ReadResourceLoadTest.class);
+
+    private static final Pattern STATE_PATTERN = Pattern.compile("\"([^\"]+)\":\"([^\"]*)\"");
+
+    private static final long DELIVERY_TIMEOUT = 30000;
+
+    private final int clientCount = Integer.getInteger("cometvisu.load.clients", 200);
+    private final int itemCount = Integer.getInteger("cometvisu.load.items", 500);
+    private final int subscriptions = Integer.getInteger("cometvisu.load.subscriptions", 20);
+    private final int rate = Integer.getInteger("cometvisu.load.rate", 2000);
+    private final long duration = Long.getLong("cometvisu.load.duration", 3000);
+
+    private long batchWindow;
+
+    private ReadResource resource;
+    private Map<String, NumberItem> items;
+    private List<LoadClient> clients;
+
+    /**
+     * time in nanoseconds of every state change, indexed by the state value
+     */
+    private AtomicLongArray changeTimes;
+
+    @Before
+    public void setUp() {
+        batchWindow = Config.COMETVISU_SSE_BATCH_WINDOW;
+        Config.COMETVISU_SSE_BATCH_WINDOW = Long.getLong("cometvisu.load.batchWindow", batchWindow);
+
+        items = new HashMap<String, NumberItem>();
+        for (int i = 0; i < itemCount; i++) {
+            NumberItem item = new NumberItem("Load_Item" + i);
+            items.put(item.getName(), item);
+        }
+        resource = new ReadResource();
+        resource.setItemRegistry(createItemRegistry(items));
+        changeTimes = new AtomicLongArray((int) (rate * duration / 1000) + 1);
+    }
+
+    @After
+    public void tearDown() {
+        resource.deactivate();
+        Config.COMETVISU_SSE_BATCH_WINDOW = batchWindow;
+    }
+
+    @Test
+    public void concurrentReadSessions() throws InterruptedException {
+        Assume.assumeTrue(Boolean.getBoolean("openhab.benchmark"));
+        MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long heapBefore = memoryBean.getHeapMemoryUsage().getUsed();
+
+        connectClients();
+        System.gc();
+        long heapConnected = memoryBean.getHeapMemoryUsage().getUsed();
+
+        final AtomicLong peakHeap = new AtomicLong(heapConnected);
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(new Runnable() {
+
+            @Override
+            public void run() {
+                long used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+                if (used > peakHeap.get()) {
+                    peakHeap.set(used);
+                }
+            }
+        }, 0, 50, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        int changes;
+        Map<String, String> finalStates;
+        try {
+            finalStates = new HashMap<String, String>();
+            changes = changeStates(finalStates);
+            assertTrue("not all states have been delivered", awaitDelivery(finalStates));
+        } finally {
+            sampler.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long states = 0;
+        long events = 0;
+        long bytes = 0;
+        long coalesced = 0;
+        LatencyRecorder latencies = new LatencyRecorder();
+        for (LoadClient client : clients) {
+            states += client.receivedStates;
+            events += client.getSentEvents();
+            bytes += client.getSentBytes();
+            coalesced += client.getCoalescedStates();
+            latencies.addAll(client.latencies);
+        }
+        assertEquals(clientCount, resource.getClients().size());
+        long[] percentiles = latencies.getPercentiles(50, 95, 99, 100);
+
+        logger.info("{} sessions with {} of {} items, {} changes at {}/s, batch window {} ms", clientCount,
+                subscriptions, itemCount, changes, rate, Config.COMETVISU_SSE_BATCH_WINDOW);
+        logger.info("delivered {} states/s in {} events/s ({} KB/s), {} states coalesced",
+                states * 1000000000L / elapsed, events * 1000000000L / elapsed,
+                bytes * 1000000000L / elapsed / 1024, coalesced);
+        logger.info("latency p50 {} ms, p95 {} ms, p99 {} ms, max {} ms", percentiles[0] / 1000000.0,
+                percentiles[1] / 1000000.0, percentiles[2] / 1000000.0, percentiles[3] / 1000000.0);
+        logger.info("heap {} MB before, {} MB with connected sessions, {} MB peak", heapBefore / 1048576,
+                heapConnected / 1048576, peakHeap.get() / 1048576);
+    }
+
+    private void connectClients() {
+        Random random = new Random(42);
+        List<String> itemNames = new ArrayList<String>(items.keySet());
+        clients = new ArrayList<LoadClient>();
+        for (int c = 0; c < clientCount; c++) {
+            List<String> names = new ArrayList<String>();
+            while (names.size() < Math.min(subscriptions, itemCount)) {
+                String name = itemNames.get(random.nextInt(itemNames.size()));
+                if (!names.contains(name)) {
+                    names.add(name);
+                }
+            }
+            LoadClient client = new LoadClient(names);
+            clients.add(client);
+            resource.addClient(client);
+        }
+    }
+
+    /**
+     * changes the item states at the configured rate, the state value is the
+     * index of the change
+     *
+     * @return the number of changes
+     */
+    private int changeStates(Map<String, String> finalStates) throws InterruptedException {
+        List<NumberItem> itemList = new ArrayList<NumberItem>(items.values());
+        Random random = new Random(7);
+        int total = changeTimes.length() - 1;
+        long start = System.nanoTime();
+        for (int change = 0; change < total; change++) {
+            long due = start + change * 1000000000L / rate;
+            long wait = due - System.nanoTime();
+            if (wait > 1000000) {
+                Thread.sleep(wait / 1000000);
+            }
+            NumberItem item = itemList.get(random.nextInt(itemList.size()));
+            DecimalType state = new DecimalType(change);
+            changeTimes.set(change, System.nanoTime());
+            item.setState(state);
+            finalStates.put(item.getName(), state.toString());
+        }
+        return total;
+    }
+
+    private boolean awaitDelivery(Map<String, String> finalStates) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + DELIVERY_TIMEOUT;
+        for (LoadClient client : clients) {
+            while (!client.hasReceived(finalStates)) {
+                if (System.currentTimeMillis() > timeout) {
+                    return false;
+                }
+                Thread.sleep(10);
+            }
+        }
+        return true;
+    }
+
+    private static ItemRegistry createItemRegistry(final Map<String, NumberItem> items) {
+        return (ItemRegistry) Proxy.newProxyInstance(ReadResourceLoadTest.class.getClassLoader(),
+                new Class<?>[] { ItemRegistry.class }, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("getItem")) {
+                            NumberItem item = items.get(args[0]);
+                            if (item == null) {
+                                throw new ItemNotFoundException((String) args[0]);
+                            }
+                            return item;
+                        }
+                        if (method.getName().equals("get")) {
+                            return items.get(args[0]);
+                        }
+                        if (method.getName().equals("getItems")) {
+                            return items.values();
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    /**
+     * client measuring the latency of every received state instead of writing
+     * the events to a SSE connection
+     */
+    private class LoadClient extends SseClient {
+        private final Map<String, String> latestStates = new HashMap<String, String>();
+        private final LatencyRecorder latencies = new LatencyRecorder();
+        private long receivedStates = 0;
+
+        LoadClient(List<String> itemNames) {
+            super(null, itemNames);
+        }
+
+        @Override
+        protected void write(String data) throws IOException {
+            long now = System.nanoTime();
+            synchronized (this) {
+                Matcher matcher = STATE_PATTERN.matcher(data);
+                while (matcher.find()) {
+                    String value = matcher.group(2);
+                    latestStates.put(matcher.group(1), value);
+                    receivedStates++;
+                    int change = parseChange(value);
+                    if (change >= 0 && change < changeTimes.length()) {
+                        latencies.add(now - changeTimes.get(change));
+                    }
+                }
+            }
+        }
+
+        synchronized boolean hasReceived(Map<String, String> finalStates) {
+            for (String itemName : getItemNames()) {
+                String expected = finalStates.get(itemName);
+                if (expected != null && !expected.equals(latestStates.get(itemName))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private int parseChange(String value) {
+            try {
+                return (int) Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                // initial state
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * growing list of latencies in nanoseconds
+     */
+    private static class LatencyRecorder {
+        private long[] values = new long[1024];
+        private int size = 0;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(LatencyRecorder other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        long[] getPercentiles(int... percentiles) {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            long[] result = new long[percentiles.length];
+            for (int i = 0; i < percentiles.length && sorted.length > 0; i++) {
+                int index = (int) Math.ceil(percentiles[i] / 100.0 * sorted.length) - 1;
+                result[i] = sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,394 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.backend;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.smarthome.core.items.ItemNotFoundException;
+import org.eclipse.smarthome.core.items.ItemRegistry;
+import org.eclipse.smarthome.core.library.items.NumberItem;
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.ui.cometvisu.backend.beans.StateBean;
+import org.openhab.ui.cometvisu.internal.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests the per client subscriptions, the batching of state changes and the
+ * heartbeat of the {@link ReadResource}.
+ *
+ * @author agent
+ * @since 2.0.0
+ */
+public class ReadResourceTest {
+
+    private final Logger logger = LoggerFactory.getLogger(ReadResourceTest.class);
+
+    private static final int CLIENTS = 50;
+    private static final int ITEMS_PER_CLIENT = 4;
+    private static final int UPDATES = 5;
+
+    private static final Pattern ADDRESS_PATTERN = Pattern.compile("\"([^\"]+)\":\"([^\"]*)\"");
+
+    private static final int BURST_UPDATES = 1000;
+
+    private ReadResource resource;
+    private List<NumberItem> items;
+    private List<CapturingClient> clients;
+
+    private long batchWindow;
+
+    @Before
+    public void setUp() {
+        // send every change on its own unless a test enables batching
+        batchWindow = Config.COMETVISU_SSE_BATCH_WINDOW;
+        Config.COMETVISU_SSE_BATCH_WINDOW = 0;
+
+        resource = new ReadResource();
+        items = new ArrayList<NumberItem>();
+        clients = new ArrayList<CapturingClient>();
+
+        for (int c = 0; c < CLIENTS; c++) {
+            List<String> names = new ArrayList<String>();
+            for (int i = 0; i < ITEMS_PER_CLIENT; i++) {
+                NumberItem item = new NumberItem("Client" + c + "_Item" + i);
+                items.add(item);
+                names.add(i % 2 == 0 ? item.getName() : "number:" + item.getName());
+            }
+            CapturingClient client = new CapturingClient(names, ITEMS_PER_CLIENT * UPDATES);
+            clients.add(client);
+            resource.addClient(client);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        resource.deactivate();
+        Config.COMETVISU_SSE_BATCH_WINDOW = batchWindow;
+    }
+
+    @Test
+    public void clientsOnlyReceiveSubscribedItems() throws InterruptedException {
+        updateAll();
+
+        for (int c = 0; c < CLIENTS; c++) {
+            CapturingClient client = clients.get(c);
+            assertTrue(client.await());
+            assertEquals(ITEMS_PER_CLIENT * UPDATES, client.messages.size());
+            for (String message : client.messages) {
+                Matcher matcher = ADDRESS_PATTERN.matcher(message);
+                assertTrue(message, matcher.find());
+                do {
+                    String itemName = matcher.group(1).replaceFirst("^number:", "");
+                    assertTrue(message, itemName.startsWith("Client" + c + "_Item"));
+                } while (matcher.find());
+            }
+        }
+    }
+
+    @Test
+    public void eachChangeIsSentOnce() throws InterruptedException {
+        updateAll();
+
+        long events = 0;
+        long bytes = 0;
+        long messageLength = 0;
+        for (CapturingClient client : clients) {
+            assertTrue(client.await());
+            events += client.getSentEvents();
+            bytes += client.getSentBytes();
+            for (String message : client.messages) {
+                messageLength += message.length();
+            }
+        }
+
+        // a shared broadcaster would have sent every change to all clients
+        assertEquals((long) items.size() * UPDATES, events);
+        assertEquals(messageLength, bytes);
+    }
+
+    @Test
+    public void closedClientsAreRemoved() throws InterruptedException {
+        CapturingClient closed = clients.get(0);
+        closed.closed = true;
+
+        updateAll();
+        for (int c = 1; c < CLIENTS; c++) {
+            assertTrue(clients.get(c).await());
+        }
+
+        assertFalse(resource.getClients().contains(closed));
+        assertEquals(CLIENTS - 1, resource.getClients().size());
+        assertTrue(closed.messages.isEmpty());
+    }
+
+    @Test
+    public void idleClosedClientsAreRemovedByHeartbeat() {
+        CapturingClient closed = clients.get(0);
+        closed.closed = true;
+
+        resource.removeClosedClients();
+
+        assertFalse(resource.getClients().contains(closed));
+        assertEquals(CLIENTS - 1, resource.getClients().size());
+        assertEquals(0, closed.heartbeats.get());
+        assertEquals(1, clients.get(1).heartbeats.get());
+    }
+
+    @Test
+    public void initialStatesAreSentBeforeChanges() throws InterruptedException {
+        NumberItem item = new NumberItem("Initial");
+        item.setState(new DecimalType(1));
+        resource.setItemRegistry(createItemRegistry(item));
+        CapturingClient client = new CapturingClient(Arrays.asList("Initial"), 2);
+
+        resource.addClient(client);
+        item.setState(new DecimalType(2));
+
+        assertTrue(client.await());
+        assertEquals(Arrays.asList("{\"d\":{\"Initial\":\"1\"}}", "{\"d\":{\"Initial\":\"2\"}}"),
+                client.messages);
+    }
+
+    @Test
+    public void listenerIsKeptForRemainingClients() throws InterruptedException {
+        NumberItem item = new NumberItem("Shared");
+        item.setState(new DecimalType(1));
+        resource.setItemRegistry(createItemRegistry(item));
+        CapturingClient removed = new CapturingClient(Arrays.asList("Shared"), 1);
+        CapturingClient remaining = new CapturingClient(Arrays.asList("Shared"), 2);
+        resource.addClient(removed);
+        resource.addClient(remaining);
+        assertTrue(removed.await());
+
+        resource.removeClient(removed);
+        item.setState(new DecimalType(2));
+
+        assertTrue(remaining.await());
+        assertEquals("{\"d\":{\"Shared\":\"2\"}}", remaining.messages.get(1));
+        assertEquals(1, removed.messages.size());
+    }
+
+    @Test
+    public void deactivateClosesClients() {
+        resource.deactivate();
+
+        assertTrue(resource.getClients().isEmpty());
+        for (CapturingClient client : clients) {
+            assertTrue(client.isClosed());
+        }
+    }
+
+    @Test
+    public void burstIsCoalesced() throws InterruptedException {
+        Config.COMETVISU_SSE_BATCH_WINDOW = 50;
+        CapturingClient client = clients.get(1);
+        Map<String, String> expected = new HashMap<String, String>();
+
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        long cpuStart = threadBean.getCurrentThreadCpuTime();
+        for (int u = 0; u < BURST_UPDATES; u++) {
+            NumberItem item = items.get(ITEMS_PER_CLIENT + u % ITEMS_PER_CLIENT);
+            item.setState(new DecimalType(u));
+            resource.broadcastItemState(item, false);
+            expected.put(item.getName(), String.valueOf(u));
+        }
+        long cpuTime = threadBean.getCurrentThreadCpuTime() - cpuStart;
+
+        long timeout = System.currentTimeMillis() + 10000;
+        while (!expected.equals(latestStates(client)) && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, latestStates(client));
+        assertTrue(client.messages.size() < BURST_UPDATES / 10);
+        assertTrue(clients.get(0).messages.isEmpty());
+        logger.info("burst of {} changes sent in {} messages, {} us cpu time for queueing", BURST_UPDATES,
+                client.messages.size(), cpuTime / 1000);
+    }
+
+    @Test
+    public void queueKeepsLatestState() {
+        CapturingClient client = new CapturingClient(Arrays.asList("A", "B"), 1, 10);
+        assertTrue(client.queue(Arrays.asList(state("A", "1"), state("B", "1"))));
+        assertFalse(client.queue(Arrays.asList(state("A", "2"))));
+
+        assertTrue(client.flush());
+        assertEquals(1, client.messages.size());
+        assertEquals("{\"d\":{\"B\":\"1\",\"A\":\"2\"}}", client.messages.get(0));
+        assertEquals(1, client.getCoalescedStates());
+    }
+
+    @Test
+    public void uncoalescedChangesAreSentInOrder() {
+        CapturingClient client = new CapturingClient(Arrays.asList("A"), 2, 10);
+        assertTrue(client.queue(Arrays.asList(state("A", "1")), false));
+        assertFalse(client.queue(Arrays.asList(state("A", "2")), false));
+
+        assertTrue(client.flush());
+        assertEquals(Arrays.asList("{\"d\":{\"A\":\"1\"}}", "{\"d\":{\"A\":\"2\"}}"), client.messages);
+        assertEquals(0, client.getCoalescedStates());
+    }
+
+    @Test
+    public void overflowingClientIsClosed() {
+        CapturingClient client = new CapturingClient(Arrays.asList("A", "B", "C"), 1, 2);
+        client.queue(Arrays.asList(state("A", "1"), state("B", "1")));
+        // superseded states do not fill the queue
+        client.queue(Arrays.asList(state("A", "2"), state("B", "2")));
+        assertFalse(client.isOverflowed());
+        client.queue(Arrays.asList(state("C", "1")));
+        assertTrue(client.isOverflowed());
+
+        // no states are silently lost, the client resyncs when it reconnects
+        assertFalse(client.flush());
+        assertTrue(client.isClosed());
+        assertTrue(client.messages.isEmpty());
+    }
+
+    @Test
+    public void slowClientDoesNotDelayOthers() throws InterruptedException {
+        CapturingClient slow = clients.get(0);
+        slow.blocked = new CountDownLatch(1);
+        try {
+            updateAll();
+            for (int c = 1; c < CLIENTS; c++) {
+                assertTrue(clients.get(c).await());
+            }
+            assertTrue(slow.messages.isEmpty());
+        } finally {
+            slow.blocked.countDown();
+        }
+        assertTrue(slow.await());
+        assertEquals(ITEMS_PER_CLIENT * UPDATES, slow.messages.size());
+    }
+
+    private static StateBean state(String name, String value) {
+        StateBean stateBean = new StateBean();
+        stateBean.name = name;
+        stateBean.state = value;
+        return stateBean;
+    }
+
+    /**
+     * merges all received messages into the latest state per item
+     */
+    private static Map<String, String> latestStates(CapturingClient client) {
+        Map<String, String> states = new HashMap<String, String>();
+        for (String message : client.messages) {
+            Matcher matcher = ADDRESS_PATTERN.matcher(message);
+            while (matcher.find()) {
+                states.put(matcher.group(1).replaceFirst("^number:", ""), matcher.group(2));
+            }
+        }
+        return states;
+    }
+
+    private static ItemRegistry createItemRegistry(final NumberItem item) {
+        return (ItemRegistry) Proxy.newProxyInstance(ReadResourceTest.class.getClassLoader(),
+                new Class<?>[] { ItemRegistry.class }, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("getItem")) {
+                            if (!item.getName().equals(args[0])) {
+                                throw new ItemNotFoundException((String) args[0]);
+                            }
+                            return item;
+                        }
+                        if (method.getName().equals("get")) {
+                            return item.getName().equals(args[0]) ? item : null;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private void updateAll() {
+        for (int u = 0; u < UPDATES; u++) {
+            for (NumberItem item : items) {
+                item.setState(new DecimalType(u));
+                resource.broadcastItemState(item, false);
+            }
+        }
+    }
+
+    /**
+     * client recording the sent messages instead of writing them to a SSE
+     * connection
+     */
+    private static class CapturingClient extends SseClient {
+        private final List<String> messages = new CopyOnWriteArrayList<String>();
+        private final CountDownLatch latch;
+        private volatile boolean closed = false;
+        private volatile CountDownLatch blocked;
+        private final AtomicInteger heartbeats = new AtomicInteger();
+
+        CapturingClient(List<String> cvItemNames, int expectedMessages) {
+            this(cvItemNames, expectedMessages, Config.COMETVISU_SSE_BUFFER_SIZE);
+        }
+
+        CapturingClient(List<String> cvItemNames, int expectedMessages, int maxPendingStates) {
+            super(null, cvItemNames, maxPendingStates);
+            this.latch = new CountDownLatch(expectedMessages);
+        }
+
+        @Override
+        protected void write(String data) throws IOException {
+            if (blocked != null) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            messages.add(data);
+            latch.countDown();
+        }
+
+        @Override
+        protected void writeHeartbeat() throws IOException {
+            heartbeats.incrementAndGet();
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        boolean await() throws InterruptedException {
+            return latch.await(10, TimeUnit.SECONDS);
+        }
+    }
+}
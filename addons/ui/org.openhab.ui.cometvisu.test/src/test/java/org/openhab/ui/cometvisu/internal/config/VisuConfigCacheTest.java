@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.config;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.smarthome.model.sitemap.Sitemap;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.ui.cometvisu.internal.Config;
+import org.openhab.ui.cometvisu.servlet.CometVisuApp;
+import org.osgi.service.cm.ConfigurationException;
+
+/**
+ * Tests the {@link VisuConfigCache}.
+ *
+ * @author agent
+ * @since 2.0.0
+ */
+public class VisuConfigCacheTest {
+
+    private static final String SCHEMA = "../visu_config.xsd";
+    private static final String XML = "<pages/>";
+
+    private VisuConfigCache cache;
+    private Sitemap sitemap;
+
+    @Before
+    public void setUp() {
+        cache = new VisuConfigCache();
+        sitemap = createSitemap("demo");
+    }
+
+    @Test
+    public void configIsCached() {
+        assertNull(cache.get(sitemap, SCHEMA));
+        assertTrue(cache.put(sitemap, SCHEMA, XML, cache.getGeneration()));
+
+        assertSame(XML, cache.get(sitemap, SCHEMA));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void schemaLocationIsPartOfTheKey() {
+        cache.put(sitemap, SCHEMA, XML, cache.getGeneration());
+
+        assertNull(cache.get(sitemap, "visu_config.xsd"));
+    }
+
+    @Test
+    public void invalidateRemovesConfigs() {
+        cache.put(sitemap, SCHEMA, XML, cache.getGeneration());
+        cache.put(createSitemap("other"), SCHEMA, XML, cache.getGeneration());
+        cache.invalidate();
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get(sitemap, SCHEMA));
+    }
+
+    @Test
+    public void reloadedSitemapIsNotServedFromCache() {
+        cache.put(sitemap, SCHEMA, XML, cache.getGeneration());
+        Sitemap reloaded = createSitemap("demo");
+
+        assertNull(cache.get(reloaded, SCHEMA));
+        assertTrue(cache.put(reloaded, SCHEMA, "<pages></pages>", cache.getGeneration()));
+        assertEquals("<pages></pages>", cache.get(reloaded, SCHEMA));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void configGeneratedDuringInvalidationIsNotCached() {
+        long generation = cache.getGeneration();
+        // items change while the config is generated
+        cache.invalidate();
+
+        assertFalse(cache.put(sitemap, SCHEMA, XML, generation));
+        assertNull(cache.get(sitemap, SCHEMA));
+    }
+
+    @Test
+    public void emptyConfigIsNotCached() {
+        assertFalse(cache.put(sitemap, SCHEMA, "", cache.getGeneration()));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void modifiedIconMappingInvalidatesConfigs() throws ConfigurationException {
+        ConfigurableApp app = new ConfigurableApp();
+        VisuConfigCache appCache = app.getConfigCache();
+        appCache.put(sitemap, SCHEMA, XML, appCache.getGeneration());
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(Config.COMETVISU_ICON_MAPPING_CONFIG + ">light", "light_light");
+        try {
+            app.modified(properties);
+
+            assertEquals(0, appCache.size());
+            assertNull(appCache.get(sitemap, SCHEMA));
+        } finally {
+            Config.iconMappings.remove("light");
+        }
+    }
+
+    /**
+     * makes the configuration update of the SCR callable from the test
+     */
+    private static class ConfigurableApp extends CometVisuApp {
+        @Override
+        protected void modified(Map<String, Object> configProps) throws ConfigurationException {
+            super.modified(configProps);
+        }
+    }
+
+    private static Sitemap createSitemap(final String name) {
+        return (Sitemap) Proxy.newProxyInstance(VisuConfigCacheTest.class.getClassLoader(),
+                new Class<?>[] { Sitemap.class }, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getName")) {
+                            return name;
+                        }
+                        if (method.getName().equals("hashCode")) {
+                            return System.identityHashCode(proxy);
+                        }
+                        if (method.getName().equals("equals")) {
+                            return proxy == args[0];
+                        }
+                        return null;
+                    }
+                });
+    }
+}
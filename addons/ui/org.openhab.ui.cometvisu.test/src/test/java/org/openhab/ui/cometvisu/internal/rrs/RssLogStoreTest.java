@@ -0,0 +1,240 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.rrs;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.smarthome.core.library.items.StringItem;
+import org.eclipse.smarthome.core.library.types.StringType;
+import org.junit.Test;
+import org.openhab.ui.cometvisu.internal.rrs.beans.Entry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests the {@link RssLogStore} and logs the query time for growing logs.
+ *
+ * @author agent
+ * @since 2.0.0
+ */
+public class RssLogStoreTest {
+
+    private final Logger logger = LoggerFactory.getLogger(RssLogStoreTest.class);
+
+    private static final long DAY = 24 * 3600000L;
+    private static final int QUERIES = 10000;
+
+    @Test
+    public void entriesAreParsed() {
+        Entry entry = RssLogStore.createEntry("Log", 1000, "Title|Message|1|Log");
+
+        assertEquals("Log", entry.tags);
+        assertEquals("Title", entry.title);
+        assertEquals("Message", entry.content);
+        assertEquals("1", entry.state);
+        assertEquals(1000, entry.publishedDate);
+        assertEquals("Message", RssLogStore.createEntry("Log", 1000, "Message").content);
+    }
+
+    @Test
+    public void newestEntriesFirst() {
+        RssLogStore store = new RssLogStore(10, 0);
+        StringItem item = new StringItem("Log");
+        List<Entry> history = createHistory("Log", 0, 5);
+        Collections.shuffle(history);
+        store.track(item, history);
+
+        List<Entry> entries = store.getEntries("Log", 3);
+
+        assertEquals(3, entries.size());
+        assertEquals(4, entries.get(0).publishedDate);
+        assertEquals(3, entries.get(1).publishedDate);
+        assertEquals(2, entries.get(2).publishedDate);
+    }
+
+    @Test
+    public void oldestEntriesAreRemoved() {
+        RssLogStore store = new RssLogStore(10, 0);
+        store.track(new StringItem("Log"), createHistory("Log", 0, 25));
+
+        List<Entry> entries = store.getEntries("Log", 100);
+
+        assertEquals(10, store.size("Log"));
+        assertEquals(10, entries.size());
+        assertEquals(24, entries.get(0).publishedDate);
+        assertEquals(15, entries.get(9).publishedDate);
+    }
+
+    @Test
+    public void entriesAreFilteredByItem() {
+        RssLogStore store = new RssLogStore(100, 0);
+        store.track(new StringItem("Log"), createHistory("Log", 0, 50));
+        store.track(new StringItem("Other"), createHistory("Other", 0, 40));
+
+        List<Entry> entries = store.getEntries("Log", 100);
+
+        assertEquals(50, entries.size());
+        for (Entry entry : entries) {
+            assertEquals("Log", entry.tags);
+        }
+        assertTrue(store.getEntries("Unknown", 100).isEmpty());
+    }
+
+    @Test
+    public void entriesOlderThanRetentionAreIgnored() {
+        RssLogStore store = new RssLogStore(100, DAY);
+        long now = System.currentTimeMillis();
+        List<Entry> history = new ArrayList<Entry>();
+        history.add(RssLogStore.createEntry("Log", now - 2 * DAY, "old"));
+        history.add(RssLogStore.createEntry("Log", now - 1000, "new"));
+        store.track(new StringItem("Log"), history);
+
+        List<Entry> entries = store.getEntries("Log", 100);
+
+        assertEquals(1, entries.size());
+        assertEquals("new", entries.get(0).content);
+    }
+
+    @Test
+    public void entriesAreFilteredByTime() {
+        RssLogStore store = new RssLogStore(100, DAY);
+        long now = System.currentTimeMillis();
+        List<Entry> history = createHistory("Log", now - 10000, 10);
+        history.add(RssLogStore.createEntry("Log", now - 2 * DAY, "old"));
+        store.track(new StringItem("Log"), history);
+
+        List<Entry> entries = store.getEntries("Log", now - 9995, 100);
+
+        assertEquals(5, entries.size());
+        assertEquals(now - 9991, entries.get(0).publishedDate);
+        assertEquals(now - 9995, entries.get(4).publishedDate);
+        // the retention still applies to older times
+        assertEquals(10, store.getEntries("Log", now - 3 * DAY, 100).size());
+    }
+
+    @Test
+    public void invalidLimitReturnsNoEntries() {
+        RssLogStore store = new RssLogStore(10, 0);
+        store.track(new StringItem("Log"), createHistory("Log", 0, 5));
+
+        assertTrue(store.getEntries("Log", -1).isEmpty());
+        assertTrue(store.getEntries("Log", 0).isEmpty());
+        assertEquals(5, store.getEntries("Log", Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    public void changedConfigurationIsApplied() {
+        RssLogStore store = new RssLogStore(10, 0);
+        long now = System.currentTimeMillis();
+        StringItem item = new StringItem("Log");
+        store.track(item, createHistory("Log", now - 2 * DAY, 5));
+
+        store.configure(10, 0);
+        assertTrue(store.isTracked(item));
+
+        // the history is loaded again with the new size and retention
+        store.configure(20, DAY);
+        assertFalse(store.isTracked(item));
+        store.track(item, createHistory("Log", now - 2 * DAY, 5));
+        assertTrue(store.getEntries("Log", 10).isEmpty());
+        store.track(item, createHistory("Log", now - 1000, 30));
+        assertEquals(20, store.size("Log"));
+    }
+
+    @Test
+    public void outOfOrderEntryIsSorted() {
+        RssLogStore store = new RssLogStore(10, 0);
+        store.track(new StringItem("Log"), createHistory("Log", 10, 5));
+        store.add("Log", RssLogStore.createEntry("Log", 12, "late"));
+
+        List<Entry> entries = store.getEntries("Log", 10);
+
+        assertEquals(6, entries.size());
+        for (int i = 1; i < entries.size(); i++) {
+            assertTrue(entries.get(i - 1).publishedDate >= entries.get(i).publishedDate);
+        }
+    }
+
+    @Test
+    public void stateUpdatesAreAppended() {
+        RssLogStore store = new RssLogStore(10, DAY);
+        StringItem item = new StringItem("Log");
+        store.track(item, new ArrayList<Entry>());
+        item.setState(new StringType("Alarm|Window open|1|Log"));
+        item.setState(new StringType("Alarm|Window open|1|Log"));
+
+        List<Entry> entries = store.getEntries("Log", 10);
+
+        assertEquals(2, entries.size());
+        assertEquals("Window open", entries.get(0).content);
+    }
+
+    @Test
+    public void replacedItemIsTrackedAgain() {
+        RssLogStore store = new RssLogStore(10, DAY);
+        StringItem item = new StringItem("Log");
+        store.track(item, new ArrayList<Entry>());
+        StringItem replacement = new StringItem("Log");
+
+        assertTrue(store.isTracked(item));
+        assertFalse(store.isTracked(replacement));
+
+        store.track(replacement, new ArrayList<Entry>());
+        item.setState(new StringType("ignored"));
+        replacement.setState(new StringType("message"));
+
+        List<Entry> entries = store.getEntries("Log", 10);
+        assertEquals(1, entries.size());
+        assertEquals("message", entries.get(0).content);
+    }
+
+    @Test
+    public void clearStopsListening() {
+        RssLogStore store = new RssLogStore(10, DAY);
+        StringItem item = new StringItem("Log");
+        store.track(item, new ArrayList<Entry>());
+        store.clear();
+        item.setState(new StringType("message"));
+
+        assertFalse(store.isTracked(item));
+        assertEquals(0, store.size("Log"));
+    }
+
+    @Test
+    public void queryTimeIsConstantBenchmark() {
+        for (int logSize = 1000; logSize <= 1000000; logSize *= 10) {
+            RssLogStore store = new RssLogStore(100, 0);
+            store.track(new StringItem("Log"), new ArrayList<Entry>());
+            for (int i = 0; i < logSize; i++) {
+                store.add("Log", RssLogStore.createEntry("Log", i, "Title|Message " + i + "|0|Log"));
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                assertEquals(25, store.getEntries("Log", 25).size());
+            }
+            long time = System.nanoTime() - start;
+
+            assertEquals(100, store.size("Log"));
+            logger.info("log with {} entries: {} us per query", logSize, time / 1000 / QUERIES);
+        }
+    }
+
+    private static List<Entry> createHistory(String itemName, long start, int count) {
+        List<Entry> history = new ArrayList<Entry>();
+        for (int i = 0; i < count; i++) {
+            history.add(RssLogStore.createEntry(itemName, start + i, "Title|Message " + i + "|0|" + itemName));
+        }
+        return history;
+    }
+}
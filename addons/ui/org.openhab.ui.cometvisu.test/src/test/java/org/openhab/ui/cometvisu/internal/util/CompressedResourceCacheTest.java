@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.util;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests the {@link CompressedResourceCache} and compares repeated requests of
+ * a script file with compressing it on every request.
+ *
+ * @author agent
+ * @since 2.0.0
+ */
+public class CompressedResourceCacheTest {
+
+    private final Logger logger = LoggerFactory.getLogger(CompressedResourceCacheTest.class);
+
+    private static final int SCRIPT_SIZE = 300 * 1024;
+    private static final int REQUESTS = 200;
+
+    private File folder;
+    private File script;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("static", "");
+        folder.delete();
+        folder.mkdirs();
+        script = createScript("cometvisu.js", SCRIPT_SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : folder.listFiles()) {
+            file.delete();
+        }
+        folder.delete();
+    }
+
+    @Test
+    public void compressedContent() throws IOException {
+        CompressedResourceCache cache = new CompressedResourceCache(1024 * 1024, 1024 * 1024);
+        byte[] compressed = cache.getCompressed(script);
+
+        assertTrue(compressed.length < script.length());
+        assertArrayEquals(read(script), decompress(compressed));
+    }
+
+    @Test
+    public void contentIsCompressedOnce() throws IOException {
+        CompressedResourceCache cache = new CompressedResourceCache(1024 * 1024, 1024 * 1024);
+        byte[] first = cache.getCompressed(script);
+        byte[] second = cache.getCompressed(script);
+
+        assertSame(first, second);
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void modifiedFileIsCompressedAgain() throws IOException {
+        CompressedResourceCache cache = new CompressedResourceCache(1024 * 1024, 1024 * 1024);
+        byte[] first = cache.getCompressed(script);
+        createScript("cometvisu.js", SCRIPT_SIZE / 2);
+        assertTrue(script.setLastModified(script.lastModified() + 2000));
+        byte[] second = cache.getCompressed(script);
+
+        assertNotSame(first, second);
+        assertArrayEquals(read(script), decompress(second));
+        assertEquals(second.length, cache.getSize());
+    }
+
+    @Test
+    public void largeFilesAreNotCached() throws IOException {
+        CompressedResourceCache cache = new CompressedResourceCache(1024 * 1024, SCRIPT_SIZE - 1);
+
+        assertNull(cache.getCompressed(script));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void cacheIsBounded() throws IOException {
+        CompressedResourceCache cache = new CompressedResourceCache(
+                CompressedResourceCache.compress(script).length * 2, 1024 * 1024);
+        for (int i = 0; i < 5; i++) {
+            cache.getCompressed(createScript("script" + i + ".js", SCRIPT_SIZE));
+        }
+
+        assertTrue(cache.getSize() <= CompressedResourceCache.compress(script).length * 2);
+        assertTrue(cache.getSize() > 0);
+    }
+
+    @Test
+    public void repeatedRequestsBenchmark() throws IOException {
+        long start = System.nanoTime();
+        long uncachedBytes = 0;
+        for (int i = 0; i < REQUESTS; i++) {
+            uncachedBytes += CompressedResourceCache.compress(script).length;
+        }
+        long uncached = System.nanoTime() - start;
+
+        CompressedResourceCache cache = new CompressedResourceCache(1024 * 1024, 1024 * 1024);
+        start = System.nanoTime();
+        long cachedBytes = 0;
+        for (int i = 0; i < REQUESTS; i++) {
+            cachedBytes += cache.getCompressed(script).length;
+        }
+        long cached = System.nanoTime() - start;
+
+        assertEquals(uncachedBytes, cachedBytes);
+        assertEquals(REQUESTS - 1, cache.getHits());
+        logger.info("{} requests of a {} KB script: {} requests/s compressing each time, {} requests/s cached",
+                REQUESTS, SCRIPT_SIZE / 1024, REQUESTS * 1000000000L / Math.max(1, uncached),
+                REQUESTS * 1000000000L / Math.max(1, cached));
+    }
+
+    private File createScript(String name, int size) throws IOException {
+        File file = new File(folder, name);
+        StringBuilder sb = new StringBuilder(size);
+        int line = 0;
+        while (sb.length() < size) {
+            sb.append("  var widget").append(line).append(" = templateEngine.create('widget', ").append(line++ % 97)
+                    .append(");\n");
+        }
+        OutputStream output = new FileOutputStream(file);
+        try {
+            output.write(sb.substring(0, size).getBytes(StandardCharsets.UTF_8));
+        } finally {
+            output.close();
+        }
+        return file;
+    }
+
+    private static byte[] read(File file) throws IOException {
+        return Files.readAllBytes(file.toPath());
+    }
+
+    private static byte[] decompress(byte[] compressed) throws IOException {
+        GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = input.read(buffer)) > 0) {
+            output.write(buffer, 0, read);
+        }
+        input.close();
+        return output.toByteArray();
+    }
+}
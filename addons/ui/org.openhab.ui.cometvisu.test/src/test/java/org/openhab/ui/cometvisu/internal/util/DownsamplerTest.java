@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.util;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.openhab.ui.cometvisu.internal.util.MinMaxDownsampler.PointWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests the {@link LttbDownsampler} and the {@link MinMaxDownsampler} and
+ * logs size and generation time of a one year series with one point per
+ * minute.
+ *
+ * @author agent
+ * @since 2.0.0
+ */
+public class DownsamplerTest {
+
+    private final Logger logger = LoggerFactory.getLogger(DownsamplerTest.class);
+
+    private static final int YEAR_OF_MINUTES = 365 * 24 * 60;
+    private static final int MAX_POINTS = 800;
+
+    /**
+     * approximate size of a row in the JSON response: [1451606400000,["2.1000000000E01"]]
+     */
+    private static final int ROW_SIZE = 38;
+
+    @Test
+    public void lttbKeepsShortSeries() {
+        long[] timestamps = { 1, 2, 3, 4 };
+        double[][] values = { { 1, 2, 3, 4 } };
+
+        assertEquals(4, LttbDownsampler.selectRows(timestamps, values, 10).length);
+        assertEquals(4, LttbDownsampler.selectRows(timestamps, values, 0).length);
+    }
+
+    @Test
+    public void lttbKeepsEndsAndPeaks() {
+        int rows = 10000;
+        long[] timestamps = new long[rows];
+        double[][] values = new double[2][rows];
+        for (int i = 0; i < rows; i++) {
+            timestamps[i] = i * 60000L;
+            values[0][i] = 20;
+            values[1][i] = Double.NaN;
+        }
+        values[0][4321] = 100;
+
+        int[] selected = LttbDownsampler.selectRows(timestamps, values, 100);
+
+        assertEquals(100, selected.length);
+        assertEquals(0, selected[0]);
+        assertEquals(rows - 1, selected[selected.length - 1]);
+        boolean peak = false;
+        for (int i = 0; i < selected.length; i++) {
+            if (i > 0) {
+                assertTrue(selected[i] > selected[i - 1]);
+            }
+            peak |= selected[i] == 4321;
+        }
+        assertTrue(peak);
+    }
+
+    @Test
+    public void lttbWritesRowsWhileAdding() throws IOException {
+        int rows = 10000;
+        final List<Integer> written = new ArrayList<Integer>();
+        LttbDownsampler downsampler = new LttbDownsampler(rows, 100, new LttbDownsampler.RowWriter() {
+
+            @Override
+            public void write(int index, long time, double[] values) {
+                written.add(index);
+            }
+        });
+        for (int i = 0; i < rows / 2; i++) {
+            downsampler.add(i * 60000L, new double[] { Math.sin(i / 100.0) });
+        }
+        // the buckets of the first half are selected before the rest is known
+        assertTrue(written.size() >= 48);
+        for (int i = rows / 2; i < rows; i++) {
+            downsampler.add(i * 60000L, new double[] { Math.sin(i / 100.0) });
+        }
+
+        assertEquals(100, written.size());
+        assertEquals(rows - 1, (int) written.get(written.size() - 1));
+    }
+
+    @Test
+    public void minMaxPassesSparseSeries() throws IOException {
+        List<Long> times = new ArrayList<Long>();
+        MinMaxDownsampler downsampler = new MinMaxDownsampler(0, 1000, 100, collect(times, null));
+        for (long time = 0; time < 1000; time += 100) {
+            downsampler.add(time, time);
+        }
+        downsampler.flush();
+
+        assertEquals(10, times.size());
+    }
+
+    @Test
+    public void minMaxKeepsPeaksInOrder() throws IOException {
+        List<Long> times = new ArrayList<Long>();
+        List<Double> values = new ArrayList<Double>();
+        MinMaxDownsampler downsampler = new MinMaxDownsampler(0, 1000, 2, collect(times, values));
+        for (long time = 0; time < 1000; time++) {
+            double value = time == 200 ? 50 : time == 700 ? -50 : 0;
+            downsampler.add(time, value);
+        }
+        downsampler.flush();
+
+        assertEquals(2, times.size());
+        assertEquals(200L, (long) times.get(0));
+        assertEquals(50, values.get(0), 0);
+        assertEquals(700L, (long) times.get(1));
+        assertEquals(-50, values.get(1), 0);
+    }
+
+    @Test
+    public void yearBenchmark() throws IOException {
+        long start = 1451606400000L;
+        long end = start + YEAR_OF_MINUTES * 60000L;
+        long[] timestamps = new long[YEAR_OF_MINUTES];
+        double[][] values = new double[1][YEAR_OF_MINUTES];
+        for (int i = 0; i < YEAR_OF_MINUTES; i++) {
+            timestamps[i] = start + i * 60000L;
+            values[0][i] = 20 + 5 * Math.sin(i / 720.0) + Math.random();
+        }
+
+        long time = System.nanoTime();
+        int[] selected = LttbDownsampler.selectRows(timestamps, values, MAX_POINTS);
+        long lttbTime = System.nanoTime() - time;
+        assertEquals(MAX_POINTS, selected.length);
+
+        List<Long> times = new ArrayList<Long>();
+        time = System.nanoTime();
+        MinMaxDownsampler downsampler = new MinMaxDownsampler(start, end, MAX_POINTS, collect(times, null));
+        for (int i = 0; i < YEAR_OF_MINUTES; i++) {
+            downsampler.add(timestamps[i], values[0][i]);
+        }
+        downsampler.flush();
+        long minMaxTime = System.nanoTime() - time;
+        assertTrue(times.size() <= MAX_POINTS);
+
+        logger.info("one year series: {} KB with all {} points, {} KB with LTTB in {} ms, {} KB with min/max in {} ms",
+                (long) YEAR_OF_MINUTES * ROW_SIZE / 1024, YEAR_OF_MINUTES, (long) selected.length * ROW_SIZE / 1024,
+                lttbTime / 1000000, (long) times.size() * ROW_SIZE / 1024, minMaxTime / 1000000);
+    }
+
+    private static PointWriter collect(final List<Long> times, final List<Double> values) {
+        return new PointWriter() {
+
+            @Override
+            public void write(long time, double value) {
+                if (!times.isEmpty()) {
+                    assertTrue(time > times.get(times.size() - 1));
+                }
+                times.add(time);
+                if (values != null) {
+                    values.add(value);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.rrd4j.ConsolFun;
+import org.rrd4j.DsType;
+import org.rrd4j.core.FetchData;
+import org.rrd4j.core.RrdDb;
+import org.rrd4j.core.RrdDef;
+import org.rrd4j.core.Sample;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests the {@link RrdDbCache} and compares the time of a dashboard sized
+ * batch of chart fetches with and without cached handles.
+ *
+ * @author agent
+ * @since 2.0.0
+ */
+public class RrdDbCacheTest {
+
+    private final Logger logger = LoggerFactory.getLogger(RrdDbCacheTest.class);
+
+    private static final int CHARTS = 12;
+    private static final int ROUNDS = 20;
+    private static final long STEP = 60;
+    private static final int ROWS = 1440;
+
+    private File folder;
+    private List<String> paths;
+    private long end;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("rrd", "");
+        folder.delete();
+        folder.mkdirs();
+
+        end = System.currentTimeMillis() / 1000 / STEP * STEP;
+        paths = new ArrayList<String>();
+        for (int i = 0; i < CHARTS; i++) {
+            paths.add(createRrd("Item" + i));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : folder.listFiles()) {
+            file.delete();
+        }
+        folder.delete();
+    }
+
+    @Test
+    public void handleIsReused() throws IOException {
+        RrdDbCache cache = new RrdDbCache(CHARTS, 60000);
+        RrdDb first = cache.acquire(paths.get(0));
+        cache.release(first);
+        RrdDb second = cache.acquire(paths.get(0));
+        cache.release(second);
+
+        assertSame(first, second);
+        assertFalse(first.isClosed());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void leastRecentlyUsedHandleIsClosed() throws IOException {
+        RrdDbCache cache = new RrdDbCache(2, 60000);
+        RrdDb first = cache.acquire(paths.get(0));
+        cache.release(first);
+        RrdDb second = cache.acquire(paths.get(1));
+        cache.release(second);
+        cache.release(cache.acquire(paths.get(0)));
+
+        RrdDb third = cache.acquire(paths.get(2));
+        cache.release(third);
+
+        assertEquals(2, cache.size());
+        assertFalse(first.isClosed());
+        assertTrue(second.isClosed());
+        assertFalse(third.isClosed());
+    }
+
+    @Test
+    public void handleInUseIsClosedOnRelease() throws IOException {
+        RrdDbCache cache = new RrdDbCache(CHARTS, 60000);
+        RrdDb rrdDb = cache.acquire(paths.get(0));
+        cache.invalidate(paths.get(0));
+
+        assertFalse(rrdDb.isClosed());
+        assertEquals(0, cache.size());
+
+        cache.release(rrdDb);
+        assertTrue(rrdDb.isClosed());
+    }
+
+    @Test
+    public void modifiedFileIsReopened() throws IOException {
+        RrdDbCache cache = new RrdDbCache(CHARTS, 60000);
+        RrdDb first = cache.acquire(paths.get(0));
+        cache.release(first);
+
+        File file = new File(paths.get(0));
+        assertTrue(file.setLastModified(file.lastModified() - 10000));
+        RrdDb second = cache.acquire(paths.get(0));
+        cache.release(second);
+
+        assertNotSame(first, second);
+        assertTrue(first.isClosed());
+    }
+
+    @Test
+    public void expiredHandleIsReopened() throws IOException {
+        RrdDbCache cache = new RrdDbCache(CHARTS, 0);
+        RrdDb first = cache.acquire(paths.get(0));
+        cache.release(first);
+        RrdDb second = cache.acquire(paths.get(0));
+        cache.release(second);
+
+        assertNotSame(first, second);
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void missingFile() throws IOException {
+        new RrdDbCache(CHARTS, 60000).acquire(new File(folder, "missing.rrd").getPath());
+    }
+
+    @Test
+    public void dashboardBenchmark() throws IOException {
+        long uncachedRows = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (String path : paths) {
+                RrdDb rrdDb = new RrdDb(path, true);
+                uncachedRows += fetch(rrdDb).getRowCount();
+                rrdDb.close();
+            }
+        }
+        long uncached = System.nanoTime() - start;
+
+        RrdDbCache cache = new RrdDbCache(CHARTS, 60000);
+        long cachedRows = 0;
+        start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (String path : paths) {
+                RrdDb rrdDb = cache.acquire(path);
+                try {
+                    cachedRows += fetch(rrdDb).getRowCount();
+                } finally {
+                    cache.release(rrdDb);
+                }
+            }
+        }
+        long cached = System.nanoTime() - start;
+        cache.clear();
+
+        assertEquals(uncachedRows, cachedRows);
+        assertEquals(CHARTS, cache.getMisses());
+        assertEquals(CHARTS * (ROUNDS - 1), cache.getHits());
+        logger.info("{} batches of {} chart fetches took {} ms uncached and {} ms cached", ROUNDS, CHARTS,
+                uncached / 1000000, cached / 1000000);
+    }
+
+    private FetchData fetch(RrdDb rrdDb) throws IOException {
+        return rrdDb.createFetchRequest(ConsolFun.AVERAGE, end - ROWS * STEP, end).fetchData();
+    }
+
+    private String createRrd(String name) throws IOException {
+        String path = new File(folder, name + ".rrd").getPath();
+        long start = end - ROWS * STEP;
+        RrdDef rrdDef = new RrdDef(path, start - 1, STEP);
+        rrdDef.addDatasource("state", DsType.GAUGE, STEP * 10, Double.NaN, Double.NaN);
+        rrdDef.addArchive(ConsolFun.AVERAGE, 0.5, 1, ROWS);
+        RrdDb rrdDb = new RrdDb(rrdDef);
+        Sample sample = rrdDb.createSample();
+        for (long time = start; time <= end; time += STEP) {
+            sample.setTime(time);
+            sample.setValue(0, Math.sin(time / 3600.0));
+            sample.update();
+        }
+        rrdDb.close();
+        return path;
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.servlet;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.ui.cometvisu.internal.Config;
+import org.osgi.service.cm.ConfigurationException;
+
+/**
+ * Tests the numeric properties of the {@link CometVisuApp} configuration.
+ *
+ * @author agent
+ */
+public class CometVisuAppTest {
+
+    private long batchWindow;
+    private int bufferSize;
+    private int chartMaxPoints;
+    private int rssLogSize;
+    private int rssLogRetention;
+
+    private CometVisuApp app;
+    private Map<String, Object> properties;
+
+    @Before
+    public void setUp() {
+        batchWindow = Config.COMETVISU_SSE_BATCH_WINDOW;
+        bufferSize = Config.COMETVISU_SSE_BUFFER_SIZE;
+        chartMaxPoints = Config.COMETVISU_CHART_MAX_POINTS;
+        rssLogSize = Config.COMETVISU_RSSLOG_SIZE;
+        rssLogRetention = Config.COMETVISU_RSSLOG_RETENTION;
+        app = new CometVisuApp();
+        properties = new HashMap<>();
+    }
+
+    @After
+    public void tearDown() {
+        Config.COMETVISU_SSE_BATCH_WINDOW = batchWindow;
+        Config.COMETVISU_SSE_BUFFER_SIZE = bufferSize;
+        Config.COMETVISU_CHART_MAX_POINTS = chartMaxPoints;
+        Config.COMETVISU_RSSLOG_SIZE = rssLogSize;
+        Config.COMETVISU_RSSLOG_RETENTION = rssLogRetention;
+    }
+
+    @Test
+    public void validValuesAreApplied() throws ConfigurationException {
+        properties.put(Config.COMETVISU_SSE_BATCH_WINDOW_PROPERTY, "250");
+        properties.put(Config.COMETVISU_SSE_BUFFER_SIZE_PROPERTY, "1000");
+        properties.put(Config.COMETVISU_CHART_MAX_POINTS_PROPERTY, "2000");
+        properties.put(Config.COMETVISU_RSSLOG_SIZE_PROPERTY, "50");
+        properties.put(Config.COMETVISU_RSSLOG_RETENTION_PROPERTY, "30");
+        app.modified(properties);
+
+        assertEquals(250, Config.COMETVISU_SSE_BATCH_WINDOW);
+        assertEquals(1000, Config.COMETVISU_SSE_BUFFER_SIZE);
+        assertEquals(2000, Config.COMETVISU_CHART_MAX_POINTS);
+        assertEquals(50, Config.COMETVISU_RSSLOG_SIZE);
+        assertEquals(30, Config.COMETVISU_RSSLOG_RETENTION);
+    }
+
+    @Test
+    public void zeroDisablesBatchingDownsamplingAndRetention() throws ConfigurationException {
+        properties.put(Config.COMETVISU_SSE_BATCH_WINDOW_PROPERTY, "0");
+        properties.put(Config.COMETVISU_CHART_MAX_POINTS_PROPERTY, "0");
+        properties.put(Config.COMETVISU_RSSLOG_RETENTION_PROPERTY, "0");
+        app.modified(properties);
+
+        assertEquals(0, Config.COMETVISU_SSE_BATCH_WINDOW);
+        assertEquals(0, Config.COMETVISU_CHART_MAX_POINTS);
+        assertEquals(0, Config.COMETVISU_RSSLOG_RETENTION);
+    }
+
+    @Test
+    public void invalidValuesAreRejected() throws ConfigurationException {
+        properties.put(Config.COMETVISU_SSE_BATCH_WINDOW_PROPERTY, "-1");
+        properties.put(Config.COMETVISU_SSE_BUFFER_SIZE_PROPERTY, "0");
+        properties.put(Config.COMETVISU_CHART_MAX_POINTS_PROPERTY, "many");
+        properties.put(Config.COMETVISU_RSSLOG_SIZE_PROPERTY, "0");
+        properties.put(Config.COMETVISU_RSSLOG_RETENTION_PROPERTY, "-7");
+        app.modified(properties);
+
+        assertEquals(batchWindow, Config.COMETVISU_SSE_BATCH_WINDOW);
+        assertEquals(bufferSize, Config.COMETVISU_SSE_BUFFER_SIZE);
+        assertEquals(chartMaxPoints, Config.COMETVISU_CHART_MAX_POINTS);
+        assertEquals(rssLogSize, Config.COMETVISU_RSSLOG_SIZE);
+        assertEquals(rssLogRetention, Config.COMETVISU_RSSLOG_RETENTION);
+    }
+}
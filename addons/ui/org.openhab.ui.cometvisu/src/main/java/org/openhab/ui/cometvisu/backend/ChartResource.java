@@ -11,17 +11,18 @@ package org.openhab.ui.cometvisu.backend;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
@@ -31,8 +32,10 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
 import org.eclipse.smarthome.core.items.GroupItem;
 import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.items.ItemNotFoundException;
@@ -45,6 +48,11 @@ import org.eclipse.smarthome.core.persistence.PersistenceService;
 import org.eclipse.smarthome.core.persistence.QueryablePersistenceService;
 import org.eclipse.smarthome.io.rest.RESTResource;
 import org.openhab.ui.cometvisu.internal.Config;
+import org.openhab.ui.cometvisu.internal.util.ChartSeriesWriter;
+import org.openhab.ui.cometvisu.internal.util.LttbDownsampler;
+import org.openhab.ui.cometvisu.internal.util.MinMaxDownsampler;
+import org.openhab.ui.cometvisu.internal.util.MinMaxDownsampler.PointWriter;
+import org.openhab.ui.cometvisu.internal.util.RrdDbCache;
 import org.rrd4j.ConsolFun;
 import org.rrd4j.core.FetchData;
 import org.rrd4j.core.FetchRequest;
@@ -65,27 +73,35 @@ import org.slf4j.LoggerFactory;
 public class ChartResource implements RESTResource {
     private static final Logger logger = LoggerFactory.getLogger(ChartResource.class);
 
-    // pattern RRDTool uses to format doubles in XML files
-    static final String PATTERN = "0.0000000000E00";
-
-    static final DecimalFormat df;
-
     protected final static String RRD_FOLDER = org.eclipse.smarthome.config.core.ConfigConstants.getUserDataFolder()
             + File.separator + "persistence" + File.separator + "rrd4j";
 
-    static {
-        df = (DecimalFormat) NumberFormat.getNumberInstance(Locale.ENGLISH);
-        df.applyPattern(PATTERN);
-        // df.setPositivePrefix("+");
-    }
+    /**
+     * maximum number of RRD files kept open for chart requests
+     */
+    static final int RRD_CACHE_SIZE = 64;
+
+    /**
+     * time in milliseconds after which a cached RRD file is reopened to read
+     * the data written by the persistence service in the meantime
+     */
+    static final long RRD_CACHE_MAX_AGE = 10000;
+
+    private static final String THREAD_POOL_NAME = "cometvisu-charts";
 
     static protected Map<String, QueryablePersistenceService> persistenceServices = new HashMap<String, QueryablePersistenceService>();
 
     private ItemRegistry itemRegistry;
 
+    private final RrdDbCache rrdDbCache = new RrdDbCache(RRD_CACHE_SIZE, RRD_CACHE_MAX_AGE);
+
     @Context
     private UriInfo uriInfo;
 
+    protected void deactivate() {
+        rrdDbCache.clear();
+    }
+
     public void addPersistenceService(PersistenceService service) {
         if (service instanceof QueryablePersistenceService) {
             persistenceServices.put(service.getId(), (QueryablePersistenceService) service);
@@ -112,11 +128,13 @@ public class ChartResource implements RESTResource {
     @Produces({ MediaType.APPLICATION_JSON })
     public Response getChartSeries(@Context HttpHeaders headers, @QueryParam("rrd") String itemName,
             @QueryParam("ds") String consFunction, @QueryParam("start") String start, @QueryParam("end") String end,
-            @QueryParam("res") long resolution) {
+            @QueryParam("res") long resolution, @QueryParam("points") int points) {
         if (logger.isDebugEnabled()) {
             logger.debug("Received GET request at '{}' for rrd '{}'.", uriInfo.getPath(), itemName);
         }
         String responseType = MediaType.APPLICATION_JSON;
+        // maximum number of points the client gets, the series are downsampled if they are longer
+        int maxPoints = points > 0 ? points : Config.COMETVISU_CHART_MAX_POINTS;
 
         // RRD specific: no equivalent in PersistenceService known
         ConsolFun consilidationFunction = ConsolFun.valueOf(consFunction);
@@ -157,11 +175,12 @@ public class ChartResource implements RESTResource {
                     throw new IllegalArgumentException("No Persistence service found.");
                 }
             }
-            Object data = null;
+            StreamingOutput data = null;
             if (persistenceService.getId().equals("rrd4j")) {
-                data = getRrdSeries(persistenceService, item, consilidationFunction, startTime, endTime, resolution);
+                data = getRrdSeries(persistenceService, item, consilidationFunction, startTime, endTime, resolution,
+                        maxPoints);
             } else {
-                data = getPersistenceSeries(persistenceService, item, startTime, endTime, resolution);
+                data = getPersistenceSeries(persistenceService, item, startTime, endTime, resolution, maxPoints);
             }
             return Response.ok(data, responseType).build();
         } catch (ItemNotFoundException e1) {
@@ -171,36 +190,71 @@ public class ChartResource implements RESTResource {
         return Response.serverError().build();
     }
 
-    public Object getPersistenceSeries(QueryablePersistenceService persistenceService, Item item, Date timeBegin,
-            Date timeEnd, long resolution) {
-        Map<Long, ArrayList<String>> data = new HashMap<Long, ArrayList<String>>();
+    public StreamingOutput getPersistenceSeries(QueryablePersistenceService persistenceService, Item item,
+            Date timeBegin, Date timeEnd, long resolution) {
+        return getPersistenceSeries(persistenceService, item, timeBegin, timeEnd, resolution,
+                Config.COMETVISU_CHART_MAX_POINTS);
+    }
 
+    /**
+     * returns the series of a persistence service reduced to the minimum and
+     * maximum values of <code>maxPoints / 2</code> time slots. The series is
+     * read from the persistence service while it is written to the response.
+     *
+     * @param persistenceService
+     * @param item
+     * @param timeBegin
+     * @param timeEnd
+     * @param resolution
+     * @param maxPoints
+     *            - maximum number of points, 0 returns all points
+     * @return
+     */
+    public StreamingOutput getPersistenceSeries(final QueryablePersistenceService persistenceService, Item item,
+            final Date timeBegin, final Date timeEnd, long resolution, final int maxPoints) {
         // Define the data filter
-        FilterCriteria filter = new FilterCriteria();
+        final FilterCriteria filter = new FilterCriteria();
         filter.setBeginDate(timeBegin);
         filter.setEndDate(timeEnd);
         filter.setItemName(item.getName());
         filter.setOrdering(Ordering.ASCENDING);
 
-        // Get the data from the persistence store
-        Iterable<HistoricItem> result = persistenceService.query(filter);
-        Iterator<HistoricItem> it = result.iterator();
-
-        // Iterate through the data
-        int dataCounter = 0;
-        while (it.hasNext()) {
-            dataCounter++;
-            HistoricItem historicItem = it.next();
-            org.eclipse.smarthome.core.types.State state = historicItem.getState();
-            if (state instanceof DecimalType) {
-                ArrayList<String> vals = new ArrayList<String>();
-                vals.add(formatDouble(((DecimalType) state).doubleValue(), "null", true));
-                data.put(historicItem.getTimestamp().getTime(), vals);
+        return new StreamingOutput() {
+
+            @Override
+            public void write(OutputStream output) throws IOException {
+                final ChartSeriesWriter writer = new ChartSeriesWriter(output);
+                MinMaxDownsampler downsampler = new MinMaxDownsampler(timeBegin.getTime(), timeEnd.getTime(),
+                        maxPoints, new PointWriter() {
+
+                            @Override
+                            public void write(long time, double value) throws IOException {
+                                writer.writeRow(time, value);
+                            }
+                        });
+
+                // Get the data from the persistence store
+                Iterable<HistoricItem> result = persistenceService.query(filter);
+                Iterator<HistoricItem> it = result.iterator();
+
+                // Iterate through the data
+                int dataCounter = 0;
+                while (it.hasNext()) {
+                    dataCounter++;
+                    HistoricItem historicItem = it.next();
+                    org.eclipse.smarthome.core.types.State state = historicItem.getState();
+                    if (state instanceof DecimalType) {
+                        downsampler.add(historicItem.getTimestamp().getTime(),
+                                ((DecimalType) state).doubleValue());
+                    }
+                }
+                downsampler.flush();
+                writer.end();
+                logger.debug("'{}' querying item '{}' from '{}' to '{}' => '{}' results, '{}' sent",
+                        persistenceService.getId(), filter.getItemName(), filter.getBeginDate(),
+                        filter.getEndDate(), dataCounter, writer.getRows());
             }
-        }
-        logger.debug("'{}' querying item '{}' from '{}' to '{}' => '{}' results", persistenceService.getId(),
-                filter.getItemName(), filter.getBeginDate(), filter.getEndDate(), dataCounter);
-        return convertToRrd(data);
+        };
     }
 
     /**
@@ -214,9 +268,30 @@ public class ChartResource implements RESTResource {
      * @param resolution
      * @return
      */
-    public Object getRrdSeries(QueryablePersistenceService persistenceService, Item item,
+    public StreamingOutput getRrdSeries(QueryablePersistenceService persistenceService, Item item,
             ConsolFun consilidationFunction, Date timeBegin, Date timeEnd, long resolution) {
-        Map<Long, ArrayList<String>> data = new TreeMap<Long, ArrayList<String>>();
+        return getRrdSeries(persistenceService, item, consilidationFunction, timeBegin, timeEnd, resolution,
+                Config.COMETVISU_CHART_MAX_POINTS);
+    }
+
+    /**
+     * returns a rrd series data reduced to maxPoints rows with the LTTB
+     * algorithm, an array of [[timestamp,data1,data2,...]]
+     *
+     * @param persistenceService
+     * @param item
+     * @param consilidationFunction
+     * @param timeBegin
+     * @param timeEnd
+     * @param resolution
+     * @param maxPoints
+     *            - maximum number of rows, 0 returns all rows
+     * @return
+     */
+    public StreamingOutput getRrdSeries(QueryablePersistenceService persistenceService, Item item,
+            final ConsolFun consilidationFunction, final Date timeBegin, final Date timeEnd, final long resolution,
+            final int maxPoints) {
+        final List<FetchData> fetchData = new ArrayList<FetchData>();
         try {
             List<String> itemNames = new ArrayList<String>();
 
@@ -228,72 +303,142 @@ public class ChartResource implements RESTResource {
             } else {
                 itemNames.add(item.getName());
             }
-            for (String itemName : itemNames) {
-                addRrdData(data, itemName, consilidationFunction, timeBegin, timeEnd, resolution);
+
+            if (itemNames.size() == 1) {
+                fetchData.add(fetchRrdData(itemNames.get(0), consilidationFunction, timeBegin, timeEnd, resolution));
+            } else {
+                // fetch the group members concurrently, but keep their order in the result
+                ExecutorService executor = ThreadPoolManager.getPool(THREAD_POOL_NAME);
+                List<Future<FetchData>> results = new ArrayList<Future<FetchData>>();
+                for (final String itemName : itemNames) {
+                    results.add(executor.submit(new Callable<FetchData>() {
+
+                        @Override
+                        public FetchData call() throws IOException {
+                            return fetchRrdData(itemName, consilidationFunction, timeBegin, timeEnd, resolution);
+                        }
+                    }));
+                }
+                for (Future<FetchData> result : results) {
+                    try {
+                        fetchData.add(result.get());
+                    } catch (ExecutionException e) {
+                        if (e.getCause() instanceof IOException) {
+                            throw (IOException) e.getCause();
+                        }
+                        throw e;
+                    }
+                }
             }
 
         } catch (FileNotFoundException e) {
             // rrd file does not exist, fallback to generic persistance service
             logger.debug("no rrd file found '{}'", (RRD_FOLDER + File.separator + item.getName() + ".rrd"));
-            return getPersistenceSeries(persistenceService, item, timeBegin, timeEnd, resolution);
+            return getPersistenceSeries(persistenceService, item, timeBegin, timeEnd, resolution, maxPoints);
         } catch (Exception e) {
             logger.error(e.getLocalizedMessage() + ": fallback to generic persistance service");
-            return getPersistenceSeries(persistenceService, item, timeBegin, timeEnd, resolution);
+            return getPersistenceSeries(persistenceService, item, timeBegin, timeEnd, resolution, maxPoints);
         }
-        return convertToRrd(data);
+
+        return new StreamingOutput() {
+
+            @Override
+            public void write(OutputStream output) throws IOException {
+                writeRrdSeries(output, fetchData, maxPoints);
+            }
+        };
     }
 
-    private ArrayList<Object> convertToRrd(Map<Long, ArrayList<String>> data) {
-        // sort data by key
-        Map<Long, ArrayList<String>> treeMap = new TreeMap<Long, ArrayList<String>>(data);
-        ArrayList<Object> rrd = new ArrayList<Object>();
-        for (Long time : treeMap.keySet()) {
-            Object[] entry = new Object[2];
-            entry[0] = time;
-            entry[1] = data.get(time);
-            rrd.add(entry);
+    /**
+     * Writes the rows of the fetched rrd data in time order. The columns of
+     * several rrd files are joined by their timestamps, missing values are
+     * written as null. Each row is written as soon as it is joined, or
+     * selected by the downsampling.
+     *
+     * @param output
+     *            - the stream to write to
+     * @param fetchData
+     *            - the data of each rrd file
+     * @param maxPoints
+     *            - maximum number of rows, 0 writes all rows
+     */
+    static void writeRrdSeries(OutputStream output, List<FetchData> fetchData, int maxPoints) throws IOException {
+        int columns = 0;
+        for (FetchData data : fetchData) {
+            columns += data.getColumnCount();
         }
-        return rrd;
+        int rows = joinRows(fetchData, columns, null);
+        logger.debug("RRD fetch returned '{}' rows and '{}' columns", rows, columns);
+
+        final ChartSeriesWriter writer = new ChartSeriesWriter(output);
+        joinRows(fetchData, columns, new LttbDownsampler(rows, maxPoints, new LttbDownsampler.RowWriter() {
+
+            @Override
+            public void write(int index, long time, double[] values) throws IOException {
+                // change to milliseconds
+                writer.writeRow(time * 1000, values);
+            }
+        }));
+        writer.end();
+        logger.debug("RRD series reduced from '{}' to '{}' rows", rows, writer.getRows());
     }
 
-    private Map<Long, ArrayList<String>> addRrdData(Map<Long, ArrayList<String>> data, String itemName,
-            ConsolFun consilidationFunction, Date timeBegin, Date timeEnd, long resolution) throws IOException {
-        RrdDb rrdDb = new RrdDb(RRD_FOLDER + File.separator + itemName + ".rrd");
-        FetchRequest fetchRequest = rrdDb.createFetchRequest(consilidationFunction, Util.getTimestamp(timeBegin),
-                Util.getTimestamp(timeEnd), resolution);
-        FetchData fetchData = fetchRequest.fetchData();
-        // logger.info(fetchData.toString());
-        long[] timestamps = fetchData.getTimestamps();
-        double[][] values = fetchData.getValues();
-
-        logger.debug("RRD fetch returned '{}' rows and '{}' columns", fetchData.getRowCount(),
-                fetchData.getColumnCount());
-
-        for (int row = 0; row < fetchData.getRowCount(); row++) {
-            // change to microseconds
-            long time = timestamps[row] * 1000;
-
-            if (!data.containsKey(time)) {
-                data.put(time, new ArrayList<String>());
+    /**
+     * Joins the rows of all rrd files by their timestamps, with a cursor per
+     * file.
+     *
+     * @param downsampler
+     *            - receives the joined rows in ascending order of time, null
+     *            only counts them
+     * @return the number of joined rows
+     */
+    private static int joinRows(List<FetchData> fetchData, int columns, LttbDownsampler downsampler)
+            throws IOException {
+        int[] positions = new int[fetchData.size()];
+        double[] row = new double[columns];
+        int count = 0;
+        while (true) {
+            long next = Long.MAX_VALUE;
+            for (int i = 0; i < fetchData.size(); i++) {
+                long[] timestamps = fetchData.get(i).getTimestamps();
+                if (positions[i] < timestamps.length) {
+                    next = Math.min(next, timestamps[positions[i]]);
+                }
             }
-            ArrayList<String> vals = data.get(time);
-            int indexOffset = vals.size();
-            for (int dsIndex = 0; dsIndex < fetchData.getColumnCount(); dsIndex++) {
-                vals.add(dsIndex + indexOffset, formatDouble(values[dsIndex][row], "null", true));
+            if (next == Long.MAX_VALUE) {
+                return count;
             }
+            int column = 0;
+            for (int i = 0; i < fetchData.size(); i++) {
+                FetchData data = fetchData.get(i);
+                long[] timestamps = data.getTimestamps();
+                boolean found = positions[i] < timestamps.length && timestamps[positions[i]] == next;
+                if (downsampler != null) {
+                    double[][] values = data.getValues();
+                    for (int dsIndex = 0; dsIndex < data.getColumnCount(); dsIndex++) {
+                        row[column++] = found ? values[dsIndex][positions[i]] : Double.NaN;
+                    }
+                }
+                if (found) {
+                    positions[i]++;
+                }
+            }
+            if (downsampler != null) {
+                downsampler.add(next, row);
+            }
+            count++;
         }
-        rrdDb.close();
-
-        return data;
     }
 
-    static String formatDouble(double x, String nanString, boolean forceExponents) {
-        if (Double.isNaN(x)) {
-            return nanString;
-        }
-        if (forceExponents) {
-            return df.format(x);
+    private FetchData fetchRrdData(String itemName, ConsolFun consilidationFunction, Date timeBegin, Date timeEnd,
+            long resolution) throws IOException {
+        RrdDb rrdDb = rrdDbCache.acquire(RRD_FOLDER + File.separator + itemName + ".rrd");
+        try {
+            FetchRequest fetchRequest = rrdDb.createFetchRequest(consilidationFunction, Util.getTimestamp(timeBegin),
+                    Util.getTimestamp(timeEnd), resolution);
+            return fetchRequest.fetchData();
+        } finally {
+            rrdDbCache.release(rrdDb);
         }
-        return "" + x;
     }
 }
@@ -11,12 +11,15 @@ package org.openhab.ui.cometvisu.backend;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -32,21 +35,20 @@ import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.items.ItemFactory;
 import org.eclipse.smarthome.core.items.ItemNotFoundException;
 import org.eclipse.smarthome.core.items.ItemRegistry;
-import org.eclipse.smarthome.core.types.State;
 import org.eclipse.smarthome.io.rest.RESTResource;
 import org.glassfish.jersey.media.sse.EventOutput;
-import org.glassfish.jersey.media.sse.SseBroadcaster;
 import org.glassfish.jersey.media.sse.SseFeature;
 import org.openhab.ui.cometvisu.backend.beans.StateBean;
 import org.openhab.ui.cometvisu.internal.Config;
 import org.openhab.ui.cometvisu.internal.listeners.StateEventListener;
-import org.openhab.ui.cometvisu.internal.util.SseUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * handles read request from the CometVisu client every request initializes a
- * SSE communication
+ * SSE communication. Each connection only receives the state changes of the
+ * items it has requested. A heartbeat is sent to idle connections, so that
+ * closed connections are removed even if their items do not change.
  *
  * @author Tobias Bräutigam
  * @since 2.0.0
@@ -55,17 +57,34 @@ import org.slf4j.LoggerFactory;
 public class ReadResource implements EventBroadcaster, RESTResource {
     private static final Logger logger = LoggerFactory.getLogger(ReadResource.class);
 
-    private SseBroadcaster broadcaster = new SseBroadcaster();
+    /**
+     * interval in seconds of the heartbeat which detects closed connections
+     */
+    private static final long HEARTBEAT_INTERVAL = 30;
+
+    /**
+     * the connected clients, each one with its own set of subscribed items
+     */
+    private final List<SseClient> clients = new CopyOnWriteArrayList<SseClient>();
+
+    private final ScheduledExecutorService executorService;
 
-    private final ExecutorService executorService;
+    /**
+     * writes the queued states, a thread is used per busy client so that a
+     * slow client does not delay the others
+     */
+    private final ExecutorService writeExecutorService;
+
+    /**
+     * guards the clients together with the state change listeners of their
+     * items, so that a listener is not removed while a client subscribes
+     */
+    private final Object subscriptionLock = new Object();
 
     private ItemRegistry itemRegistry;
 
     private StateEventListener stateEventListener;
 
-    private List<String> itemNames = new ArrayList<String>();
-    private Map<Item, Map<String, Class<? extends State>>> items = new HashMap<Item, Map<String, Class<? extends State>>>();
-
     @Context
     private UriInfo uriInfo;
 
@@ -78,9 +97,36 @@ public class ReadResource implements EventBroadcaster, RESTResource {
     private Collection<ItemFactory> itemFactories = new CopyOnWriteArrayList<ItemFactory>();
 
     public ReadResource() {
-        this.executorService = Executors.newSingleThreadExecutor();
+        this.executorService = Executors.newSingleThreadScheduledExecutor();
+        this.writeExecutorService = Executors.newCachedThreadPool();
         this.stateEventListener = new StateEventListener();
         this.stateEventListener.setEventBroadcaster(this);
+        this.executorService.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                writeExecutorService.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        removeClosedClients();
+                    }
+                });
+            }
+        }, HEARTBEAT_INTERVAL, HEARTBEAT_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * stops the heartbeat and the writers and closes the connections of all
+     * clients
+     */
+    protected void deactivate() {
+        executorService.shutdownNow();
+        writeExecutorService.shutdownNow();
+        for (SseClient client : clients) {
+            removeClient(client);
+            client.close();
+        }
     }
 
     protected void setItemRegistry(ItemRegistry itemRegistry) {
@@ -114,58 +160,105 @@ public class ReadResource implements EventBroadcaster, RESTResource {
     public Object getStates(@QueryParam("a") List<String> itemNames, @QueryParam("i") long index,
             @QueryParam("t") long time) throws IOException, InterruptedException {
         final EventOutput eventOutput = new EventOutput();
+        addClient(new SseClient(eventOutput, itemNames));
+        return eventOutput;
+    }
 
-        this.itemNames = itemNames;
-
-        broadcaster.add(eventOutput);
-
-        // get all requested items and send their states to the client
-        items = new HashMap<Item, Map<String, Class<? extends State>>>();
-        // send the current states of all items to the client
-        if (this.itemRegistry != null) {
-            List<StateBean> states = new ArrayList<StateBean>();
-            for (String cvItemName : itemNames) {
+    /**
+     * Adds a new client, listens to state changes of all requested items and
+     * queues their current states as the first event of the client.
+     *
+     * @param client
+     *            - the newly connected client
+     */
+    public void addClient(SseClient client) {
+        List<Item> items = new ArrayList<Item>();
+        synchronized (subscriptionLock) {
+            clients.add(client);
+            if (this.itemRegistry == null) {
+                return;
+            }
+            for (String itemName : client.getItemNames()) {
                 try {
-                    String[] parts = cvItemName.split(":");
-                    String ohItemName = cvItemName;
-                    Class<? extends State> stateClass = null;
-                    if (parts.length == 2) {
-                        String classPrefix = parts[0].toLowerCase();
-                        if (Config.itemTypeMapper.containsKey(classPrefix)) {
-                            stateClass = Config.itemTypeMapper.get(classPrefix);
-                            classPrefix += ":";
-                        } else {
-                            logger.debug("no type found for '{}'", classPrefix);
-                            classPrefix = "";
-                        }
-                        ohItemName = parts[1];
-                    }
-                    Item item = this.itemRegistry.getItem(ohItemName);
-                    if (!items.containsKey(item)) {
-                        items.put(item, new HashMap<String, Class<? extends State>>());
+                    Item item = this.itemRegistry.getItem(itemName);
+                    // listen before reading the state, so that no change is missed
+                    if (item instanceof GenericItem) {
+                        ((GenericItem) item).addStateChangeListener(stateEventListener);
                     }
-                    items.get(item).put(cvItemName, stateClass);
-                    StateBean itemState = new StateBean();
-                    itemState.name = cvItemName;
-
-                    if (stateClass != null) {
-                        itemState.state = item.getStateAs(stateClass).toString();
-                        logger.trace("get state of '{}' as '{}' == '{}'", item, stateClass, itemState.state);
-                    } else {
-                        itemState.state = item.getState().toString();
-                    }
-                    states.add(itemState);
+                    items.add(item);
                 } catch (ItemNotFoundException e) {
                     logger.error(e.getLocalizedMessage());
                 }
             }
-            logger.debug("initially broadcasting " + states.size() + "/" + itemNames.size() + " item states");
-            broadcaster.broadcast(SseUtil.buildEvent(states));
         }
-        // listen to state changes of the requested items
-        registerItems();
 
-        return eventOutput;
+        List<StateBean> states = new ArrayList<StateBean>();
+        boolean flush;
+        // a change queued in between is sent after the states read before it
+        synchronized (client) {
+            for (Item item : items) {
+                states.addAll(client.getStates(item, false));
+            }
+            flush = client.queue(states, false);
+        }
+        logger.debug("initially sending {}/{} item states", states.size(), client.getItemNames().size());
+        if (flush) {
+            writeExecutorService.execute(createFlush(client));
+        }
+    }
+
+    /**
+     * Removes a client and stops listening to the items no other client has
+     * subscribed to.
+     *
+     * @param client
+     *            - the client to remove
+     */
+    public void removeClient(SseClient client) {
+        synchronized (subscriptionLock) {
+            if (!clients.remove(client)) {
+                return;
+            }
+            if (this.itemRegistry == null) {
+                return;
+            }
+            for (String itemName : client.getItemNames()) {
+                if (!isSubscribed(itemName)) {
+                    Item item = this.itemRegistry.get(itemName);
+                    if (item instanceof GenericItem) {
+                        ((GenericItem) item).removeStateChangeListener(stateEventListener);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends a heartbeat to every client and removes the clients whose
+     * connection has been closed.
+     */
+    public void removeClosedClients() {
+        for (SseClient client : clients) {
+            if (!client.heartbeat()) {
+                removeClient(client);
+            }
+        }
+    }
+
+    /**
+     * @return the currently connected clients
+     */
+    public List<SseClient> getClients() {
+        return Collections.unmodifiableList(clients);
+    }
+
+    private boolean isSubscribed(String itemName) {
+        for (SseClient client : clients) {
+            if (client.isSubscribed(itemName)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -173,7 +266,15 @@ public class ReadResource implements EventBroadcaster, RESTResource {
      */
     @Override
     public void registerItems() {
-        for (Item item : items.keySet()) {
+        if (this.itemRegistry == null) {
+            return;
+        }
+        Set<String> itemNames = new HashSet<String>();
+        for (SseClient client : clients) {
+            itemNames.addAll(client.getItemNames());
+        }
+        for (String itemName : itemNames) {
+            Item item = this.itemRegistry.get(itemName);
             if (item instanceof GenericItem) {
                 ((GenericItem) item).addStateChangeListener(stateEventListener);
             }
@@ -189,52 +290,77 @@ public class ReadResource implements EventBroadcaster, RESTResource {
      */
     @Override
     public void registerItem(Item item) {
-        if (item == null || items.containsKey(item) || !itemNames.contains(item.getName()))
+        if (item == null || !isSubscribed(item.getName())) {
             return;
+        }
         if (item instanceof GenericItem) {
             ((GenericItem) item).addStateChangeListener(stateEventListener);
         }
     }
 
     /**
-     * listens to state changes of the given item, if it is part of the
-     * requested items
+     * stops listening to state changes of the given item
      *
      * @param item
-     *            - the new item, that should be listened to
+     *            - the item, that should not be listened to anymore
      */
     @Override
     public void unregisterItem(Item item) {
-        if (item == null || items.containsKey(item) || !itemNames.contains(item.getName()))
-            return;
         if (item instanceof GenericItem) {
             ((GenericItem) item).removeStateChangeListener(stateEventListener);
-            items.remove(item);
         }
     }
 
     /**
-     * Broadcasts an event described by the given parameters to all currently
-     * listening clients.
+     * Sends the state of the given item to every client which has subscribed
+     * to it. Other clients are not notified. If a batch window is configured
+     * the states are queued and sent together with all other changes within
+     * the window, otherwise each change is sent as an event of its own.
      *
      * @param item
      *            - the item which has changed
-     * @param eventObject
-     *            - bean that can be converted to a JSON object.
+     * @param typedOnly
+     *            - only notify the addresses with an explicit state type
      */
     @Override
-    public void broadcastEvent(final Object eventObject) {
-        executorService.execute(new Runnable() {
+    public void broadcastItemState(final Item item, final boolean typedOnly) {
+        final long batchWindow = Config.COMETVISU_SSE_BATCH_WINDOW;
+        for (final SseClient client : clients) {
+            if (!client.isSubscribed(item.getName())) {
+                continue;
+            }
+            List<StateBean> states = client.getStates(item, typedOnly);
+            if (states.isEmpty() || !client.queue(states, batchWindow > 0)) {
+                continue;
+            }
+            final Runnable flush = createFlush(client);
+            if (batchWindow <= 0) {
+                writeExecutorService.execute(flush);
+            } else {
+                executorService.schedule(new Runnable() {
 
-            @Override
-            public void run() {
-                broadcaster.broadcast(SseUtil.buildEvent(eventObject));
+                    @Override
+                    public void run() {
+                        writeExecutorService.execute(flush);
+                    }
+                }, batchWindow, TimeUnit.MILLISECONDS);
             }
-        });
+        }
     }
 
-    @Override
-    public Map<String, Class<? extends State>> getClientItems(Item item) {
-        return items.get(item);
+    /**
+     * @return a task sending the queued states of the client, which removes
+     *         the client if its connection has been closed
+     */
+    private Runnable createFlush(final SseClient client) {
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                if (!client.flush()) {
+                    removeClient(client);
+                }
+            }
+        };
     }
 }
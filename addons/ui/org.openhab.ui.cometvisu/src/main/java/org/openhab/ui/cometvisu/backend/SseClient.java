@@ -0,0 +1,381 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.backend;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.types.State;
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.openhab.ui.cometvisu.backend.beans.StateBean;
+import org.openhab.ui.cometvisu.internal.Config;
+import org.openhab.ui.cometvisu.internal.StateBeanMessageBodyWriter;
+import org.openhab.ui.cometvisu.internal.util.SseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single SSE connection of a CometVisu client together with the items it
+ * has subscribed to. State changes are only sent to the clients which
+ * requested the changed item.
+ *
+ * Changes are queued and sent by one thread at a time, so that a slow client
+ * only delays its own messages. Changes which are batched are sent as one
+ * message, in which only the latest state of each address is kept. The
+ * queue is bounded to protect the server against clients which do not keep
+ * up, such a client is closed instead of silently losing states and
+ * receives all states again when it reconnects.
+ *
+ * @author agent
+ * @since 2.0.0
+ */
+public class SseClient {
+    private static final Logger logger = LoggerFactory.getLogger(SseClient.class);
+
+    private final EventOutput eventOutput;
+
+    /**
+     * maps the openHAB item names to the requested CometVisu addresses and
+     * their state types
+     */
+    private final Map<String, Map<String, Class<? extends State>>> subscriptions = new HashMap<String, Map<String, Class<? extends State>>>();
+
+    private final StateBeanMessageBodyWriter writer = new StateBeanMessageBodyWriter();
+
+    private final AtomicLong sentEvents = new AtomicLong();
+    private final AtomicLong sentBytes = new AtomicLong();
+    private final AtomicLong coalescedStates = new AtomicLong();
+
+    /**
+     * pending events, each one with its states by address in the order of
+     * their last change
+     */
+    private final LinkedList<LinkedHashMap<String, StateBean>> pendingEvents = new LinkedList<LinkedHashMap<String, StateBean>>();
+
+    private final int maxPendingStates;
+
+    private int pendingStates = 0;
+
+    private boolean flushScheduled = false;
+
+    private boolean overflowed = false;
+
+    /**
+     * @param eventOutput
+     *            - the SSE output of the connection
+     * @param cvItemNames
+     *            - the item addresses requested by the client, optionally
+     *            prefixed with a state type (e.g. <code>number:Temperature</code>)
+     */
+    public SseClient(EventOutput eventOutput, List<String> cvItemNames) {
+        // the initial states of all addresses are queued in addition to the changes
+        this(eventOutput, cvItemNames, Config.COMETVISU_SSE_BUFFER_SIZE + cvItemNames.size());
+    }
+
+    /**
+     * @param eventOutput
+     *            - the SSE output of the connection
+     * @param cvItemNames
+     *            - the item addresses requested by the client, optionally
+     *            prefixed with a state type (e.g. <code>number:Temperature</code>)
+     * @param maxPendingStates
+     *            - maximum number of queued states not yet sent to the client
+     */
+    public SseClient(EventOutput eventOutput, List<String> cvItemNames, int maxPendingStates) {
+        this.eventOutput = eventOutput;
+        this.maxPendingStates = Math.max(1, maxPendingStates);
+        for (String cvItemName : cvItemNames) {
+            String[] parts = cvItemName.split(":");
+            String ohItemName = cvItemName;
+            Class<? extends State> stateClass = null;
+            if (parts.length == 2) {
+                String classPrefix = parts[0].toLowerCase();
+                if (Config.itemTypeMapper.containsKey(classPrefix)) {
+                    stateClass = Config.itemTypeMapper.get(classPrefix);
+                } else {
+                    logger.debug("no type found for '{}'", classPrefix);
+                }
+                ohItemName = parts[1];
+            }
+            Map<String, Class<? extends State>> addresses = subscriptions.get(ohItemName);
+            if (addresses == null) {
+                addresses = new HashMap<String, Class<? extends State>>();
+                subscriptions.put(ohItemName, addresses);
+            }
+            addresses.put(cvItemName, stateClass);
+        }
+    }
+
+    /**
+     * @return the names of all openHAB items this client has subscribed to
+     */
+    public Set<String> getItemNames() {
+        return Collections.unmodifiableSet(subscriptions.keySet());
+    }
+
+    /**
+     * @param itemName
+     *            - name of the openHAB item
+     * @return true if this client listens to changes of the item
+     */
+    public boolean isSubscribed(String itemName) {
+        return subscriptions.containsKey(itemName);
+    }
+
+    /**
+     * Builds the state beans of the given item for every address this
+     * client requested it with.
+     *
+     * @param item
+     *            - the item to get the states from
+     * @param typedOnly
+     *            - only include addresses with an explicit state type
+     * @return the states in the CometVisu format, empty if the client has not
+     *         subscribed to the item
+     */
+    public List<StateBean> getStates(Item item, boolean typedOnly) {
+        Map<String, Class<? extends State>> addresses = subscriptions.get(item.getName());
+        if (addresses == null) {
+            return Collections.emptyList();
+        }
+        List<StateBean> states = new ArrayList<StateBean>(addresses.size());
+        for (Map.Entry<String, Class<? extends State>> address : addresses.entrySet()) {
+            Class<? extends State> stateClass = address.getValue();
+            if (typedOnly && stateClass == null) {
+                continue;
+            }
+            StateBean stateBean = new StateBean();
+            stateBean.name = address.getKey();
+            if (stateClass != null) {
+                stateBean.state = item.getStateAs(stateClass).toString();
+            } else {
+                stateBean.state = item.getState().toString();
+            }
+            states.add(stateBean);
+        }
+        return states;
+    }
+
+    /**
+     * Queues the given states to be sent as one event with the next
+     * {@link #flush()}. A pending state of the same address is replaced.
+     *
+     * @param states
+     *            - the changed states
+     * @return true if a flush has to be scheduled, false if one is already
+     *         pending
+     */
+    public boolean queue(List<StateBean> states) {
+        return queue(states, true);
+    }
+
+    /**
+     * Queues the given states to be sent with the next {@link #flush()}. If
+     * the queue is full the client is marked to be closed by the flush.
+     *
+     * @param states
+     *            - the changed states
+     * @param coalesce
+     *            - add the states to the pending event, replacing pending
+     *            states of the same address, instead of sending them as an
+     *            event of their own
+     * @return true if a flush has to be scheduled, false if one is already
+     *         pending
+     */
+    public synchronized boolean queue(List<StateBean> states, boolean coalesce) {
+        if (overflowed) {
+            return false;
+        }
+        LinkedHashMap<String, StateBean> event = coalesce ? pendingEvents.peekLast() : null;
+        if (event == null) {
+            event = new LinkedHashMap<String, StateBean>();
+            pendingEvents.add(event);
+        }
+        for (StateBean state : states) {
+            // re-insert to keep the map ordered by the time of the last change
+            if (event.remove(state.name) != null) {
+                coalescedStates.incrementAndGet();
+                pendingStates--;
+            }
+            event.put(state.name, state);
+            pendingStates++;
+        }
+        if (pendingStates > maxPendingStates) {
+            logger.warn("closing SSE connection, which has not kept up with {} pending states", pendingStates);
+            overflowed = true;
+            pendingEvents.clear();
+            pendingStates = 0;
+        }
+        if (flushScheduled) {
+            return false;
+        }
+        flushScheduled = true;
+        return true;
+    }
+
+    /**
+     * Sends all queued events to this client. States which are queued while
+     * sending are sent by the same flush, so that only one thread at a time
+     * writes to the connection.
+     *
+     * @return false if the connection has been closed and the client should
+     *         be removed
+     */
+    public boolean flush() {
+        while (true) {
+            List<StateBean> states;
+            synchronized (this) {
+                if (overflowed) {
+                    flushScheduled = false;
+                    close();
+                    return false;
+                }
+                LinkedHashMap<String, StateBean> event = pendingEvents.poll();
+                if (event == null) {
+                    flushScheduled = false;
+                    return !isClosed();
+                }
+                pendingStates -= event.size();
+                states = new ArrayList<StateBean>(event.values());
+            }
+            if (!send(states)) {
+                synchronized (this) {
+                    flushScheduled = false;
+                    pendingEvents.clear();
+                    pendingStates = 0;
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Sends the given states to this client as one SSE event.
+     *
+     * @param states
+     *            - the states to send
+     * @return false if the connection has been closed and the client should
+     *         be removed
+     */
+    public boolean send(List<StateBean> states) {
+        if (isClosed()) {
+            return false;
+        }
+        String data = writer.serialize(states);
+        try {
+            write(data);
+            sentEvents.incrementAndGet();
+            sentBytes.addAndGet(data.getBytes(StandardCharsets.UTF_8).length);
+            return true;
+        } catch (IOException e) {
+            logger.debug("closing SSE connection after write failure: {}", e.getMessage());
+            close();
+            return false;
+        }
+    }
+
+    /**
+     * Sends a comment to this client, so that a connection closed by the
+     * client is detected without waiting for a state change. No comment is
+     * sent while a flush is pending, as the flush detects a closed connection
+     * itself.
+     *
+     * @return false if the connection has been closed and the client should
+     *         be removed
+     */
+    public boolean heartbeat() {
+        synchronized (this) {
+            if (flushScheduled) {
+                return !isClosed();
+            }
+        }
+        if (isClosed()) {
+            return false;
+        }
+        try {
+            writeHeartbeat();
+            return true;
+        } catch (IOException e) {
+            logger.debug("closing SSE connection after heartbeat failure: {}", e.getMessage());
+            close();
+            return false;
+        }
+    }
+
+    /**
+     * Writes a heartbeat comment to the SSE connection.
+     *
+     * @throws IOException
+     */
+    protected void writeHeartbeat() throws IOException {
+        eventOutput.write(SseUtil.buildHeartbeatEvent());
+    }
+
+    /**
+     * Writes the serialized states to the SSE connection.
+     *
+     * @param data
+     *            - the states in the CometVisu JSON format
+     * @throws IOException
+     */
+    protected void write(String data) throws IOException {
+        eventOutput.write(SseUtil.buildJsonEvent(data));
+    }
+
+    public boolean isClosed() {
+        return eventOutput.isClosed();
+    }
+
+    public void close() {
+        try {
+            eventOutput.close();
+        } catch (IOException e) {
+            logger.debug("error closing SSE connection: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return the number of events sent to this client
+     */
+    public long getSentEvents() {
+        return sentEvents.get();
+    }
+
+    /**
+     * @return the number of payload bytes sent to this client
+     */
+    public long getSentBytes() {
+        return sentBytes.get();
+    }
+
+    /**
+     * @return the number of queued states replaced by a later state of the
+     *         same address before they were sent
+     */
+    public long getCoalescedStates() {
+        return coalescedStates.get();
+    }
+
+    /**
+     * @return true if the client has been closed because it did not keep up
+     */
+    public synchronized boolean isOverflowed() {
+        return overflowed;
+    }
+}
@@ -46,6 +46,46 @@ public class Config {
 
     public static String COMETVISU_WEBAPP_USERFILE_FOLDER = File.separator + "cometvisu";
 
+    /**
+     * time in milliseconds state changes are collected before they are sent to
+     * a client as one message, 0 sends every change immediately
+     */
+    public static final String COMETVISU_SSE_BATCH_WINDOW_PROPERTY = "sseBatchWindow";
+
+    public static long COMETVISU_SSE_BATCH_WINDOW = 100;
+
+    /**
+     * maximum number of pending item states per client, a client which
+     * cannot keep up is closed
+     */
+    public static final String COMETVISU_SSE_BUFFER_SIZE_PROPERTY = "sseBufferSize";
+
+    public static int COMETVISU_SSE_BUFFER_SIZE = 500;
+
+    /**
+     * maximum number of points of a chart series, longer series are
+     * downsampled, 0 returns all points
+     */
+    public static final String COMETVISU_CHART_MAX_POINTS_PROPERTY = "chartMaxPoints";
+
+    public static int COMETVISU_CHART_MAX_POINTS = 1000;
+
+    /**
+     * maximum number of log entries per item kept in memory for the rsslog
+     * plugin
+     */
+    public static final String COMETVISU_RSSLOG_SIZE_PROPERTY = "rssLogSize";
+
+    public static int COMETVISU_RSSLOG_SIZE = 100;
+
+    /**
+     * number of days the entries of the rsslog plugin are shown, 0 shows all
+     * kept entries
+     */
+    public static final String COMETVISU_RSSLOG_RETENTION_PROPERTY = "rssLogRetention";
+
+    public static int COMETVISU_RSSLOG_RETENTION = 7;
+
     /*
      * path of the cometvisu backend (automatically prefixed by /rest/)
      * all the backend aliases must not be changed as they are hard coded in the CometVisu client
@@ -92,6 +92,15 @@ public class VisuConfig {
 
     private ObjectFactory factory = new ObjectFactory();
 
+    /**
+     * the JAXB context and the schema are thread safe and expensive to create,
+     * so they are shared by all configs
+     */
+    private static JAXBContext jaxbContext;
+    private static Schema schema;
+    private static String schemaPath;
+    private static long schemaLastModified;
+
     public VisuConfig(Sitemap sitemap, CometVisuApp app, File rootFolder) {
         this.sitemap = sitemap;
         this.app = app;
@@ -104,14 +113,6 @@ public class VisuConfig {
      * @return valid XML config
      */
     public String getConfigXml(HttpServletRequest req) {
-        SchemaPages pagesBean = new SchemaPages();
-        pagesBean.setDesign("metal");
-        pagesBean.setMaxMobileScreenWidth(new BigDecimal(480));
-        pagesBean.setBindClickToWidget(true);
-
-        pagesBean.setLibVersion(BigInteger.valueOf(LibVersion.no));
-        pagesBean.setScrollSpeed(new BigDecimal(0));
-
         // set relative path to XSD file
         int requestFolders = req.getPathInfo().substring(1).split("/").length;
         logger.debug("requestPath '{}' has '{}' parts", req.getPathInfo(), requestFolders);
@@ -119,7 +120,27 @@ public class VisuConfig {
         for (int i = 1; i < requestFolders; i++) {
             relXsd += "../";
         }
-        pagesBean.setNoNamespaceSchemaLocation(relXsd + schemaFile);
+        String schemaLocation = relXsd + schemaFile;
+
+        VisuConfigCache cache = app.getConfigCache();
+        long generation = 0;
+        if (cache != null) {
+            String xml = cache.get(sitemap, schemaLocation);
+            if (xml != null) {
+                logger.debug("serving cached config for sitemap '{}'", sitemap.getName());
+                return xml;
+            }
+            generation = cache.getGeneration();
+        }
+
+        SchemaPages pagesBean = new SchemaPages();
+        pagesBean.setDesign("metal");
+        pagesBean.setMaxMobileScreenWidth(new BigDecimal(480));
+        pagesBean.setBindClickToWidget(true);
+
+        pagesBean.setLibVersion(BigInteger.valueOf(LibVersion.no));
+        pagesBean.setScrollSpeed(new BigDecimal(0));
+        pagesBean.setNoNamespaceSchemaLocation(schemaLocation);
 
         Meta meta = new Meta();
         pagesBean.setMeta(meta);
@@ -127,18 +148,18 @@ public class VisuConfig {
         configHelper = new ConfigHelper(pagesBean, app, sitemap.getName());
         createPages(pagesBean);
 
-        return marshal(pagesBean, rootFolder.getAbsolutePath() + File.separator + schemaFile);
+        String xml = marshal(pagesBean, rootFolder.getAbsolutePath() + File.separator + schemaFile);
+        if (cache != null) {
+            cache.put(sitemap, schemaLocation, xml, generation);
+        }
+        return xml;
     }
 
     private String marshal(Pages bean, String xsdSchema) {
         String res = "";
         try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(bean.getClass());
-            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-            Schema schema = (xsdSchema == null || xsdSchema.trim().length() == 0) ? null
-                    : schemaFactory.newSchema(new File(xsdSchema));
-            Marshaller marshaller = jaxbContext.createMarshaller();
-            marshaller.setSchema(schema);
+            Marshaller marshaller = getJaxbContext().createMarshaller();
+            marshaller.setSchema(getSchema(xsdSchema));
             marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
             marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
             StringWriter sw = new StringWriter();
@@ -152,6 +173,31 @@ public class VisuConfig {
         return res;
     }
 
+    private static synchronized JAXBContext getJaxbContext() throws JAXBException {
+        if (jaxbContext == null) {
+            jaxbContext = JAXBContext.newInstance(SchemaPages.class);
+        }
+        return jaxbContext;
+    }
+
+    /**
+     * @return the schema loaded from the XSD file, which is loaded again when
+     *         the file has been modified
+     */
+    private static synchronized Schema getSchema(String xsdSchema) throws SAXException {
+        if (xsdSchema == null || xsdSchema.trim().length() == 0) {
+            return null;
+        }
+        long lastModified = new File(xsdSchema).lastModified();
+        if (schema == null || !xsdSchema.equals(schemaPath) || lastModified != schemaLastModified) {
+            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            schema = schemaFactory.newSchema(new File(xsdSchema));
+            schemaPath = xsdSchema;
+            schemaLastModified = lastModified;
+        }
+        return schema;
+    }
+
     private Pages createPages(Pages pagesBean) {
         Page rootPage = new Page();
         rootPage.setName(sitemap.getName());
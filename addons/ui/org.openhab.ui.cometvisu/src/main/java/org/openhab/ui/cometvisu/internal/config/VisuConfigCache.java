@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.smarthome.model.sitemap.Sitemap;
+
+/**
+ * Keeps the config files generated by the {@link VisuConfig}, so that a
+ * sitemap is only converted again after it or the items have changed.
+ *
+ * An entry belongs to the sitemap instance it has been generated from. A
+ * reloaded sitemap is a new instance and therefore never matches an old entry.
+ * Changes of the items have to be reported by calling {@link #invalidate()}.
+ *
+ * A config which has been generated while the cache has been invalidated is
+ * not stored, because it might already be outdated. To detect this the
+ * generation has to be read by {@link #getGeneration()} before the config is
+ * generated and passed to {@link #put(Sitemap, String, String, long)}.
+ *
+ * @author agent
+ * @since 2.0.0
+ */
+public class VisuConfigCache {
+
+    private final Map<String, CacheEntry> cache = new HashMap<String, CacheEntry>();
+
+    private long generation = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param sitemap
+     *            - the sitemap the config is generated from
+     * @param schemaLocation
+     *            - the relative location of the XSD schema used in the config
+     * @return the cached config or null if there is none for this sitemap
+     */
+    public synchronized String get(Sitemap sitemap, String schemaLocation) {
+        CacheEntry entry = cache.get(getKey(sitemap, schemaLocation));
+        if (entry != null && entry.sitemap == sitemap) {
+            hits++;
+            return entry.xml;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * @param sitemap
+     *            - the sitemap the config has been generated from
+     * @param schemaLocation
+     *            - the relative location of the XSD schema used in the config
+     * @param xml
+     *            - the generated config
+     * @param generation
+     *            - the generation read before the config has been generated
+     * @return true if the config has been stored
+     */
+    public synchronized boolean put(Sitemap sitemap, String schemaLocation, String xml, long generation) {
+        if (generation != this.generation || xml == null || xml.isEmpty()) {
+            return false;
+        }
+        cache.put(getKey(sitemap, schemaLocation), new CacheEntry(sitemap, xml));
+        return true;
+    }
+
+    /**
+     * @return the current generation, which changes on every invalidation
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Removes all configs, must be called when items or sitemaps have
+     * changed.
+     */
+    public synchronized void invalidate() {
+        cache.clear();
+        generation++;
+    }
+
+    /**
+     * @return the number of cached configs
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return the number of requests served from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of requests which had to generate the config
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private static String getKey(Sitemap sitemap, String schemaLocation) {
+        return sitemap.getName() + "|" + schemaLocation;
+    }
+
+    private static class CacheEntry {
+        private final Sitemap sitemap;
+        private final String xml;
+
+        private CacheEntry(Sitemap sitemap, String xml) {
+            this.sitemap = sitemap;
+            this.xml = xml;
+        }
+    }
+}
@@ -8,14 +8,11 @@
  */
 package org.openhab.ui.cometvisu.internal.listeners;
 
-import java.util.Map;
-
 import org.eclipse.smarthome.core.items.GroupItem;
 import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.items.StateChangeListener;
 import org.eclipse.smarthome.core.types.State;
 import org.openhab.ui.cometvisu.backend.EventBroadcaster;
-import org.openhab.ui.cometvisu.backend.beans.StateBean;
 
 /**
  * listens to state changes on items and send them to an EventBroadcaster
@@ -37,25 +34,7 @@ public class StateEventListener implements StateChangeListener {
 
     @Override
     public void stateChanged(Item item, State oldState, State newState) {
-        Map<String, Class<? extends State>> clientItems = eventBroadcaster.getClientItems(item);
-        if (clientItems != null && clientItems.size() > 0) {
-            for (String cvItemName : clientItems.keySet()) {
-                Class<? extends State> stateClass = clientItems.get(cvItemName);
-                StateBean stateBean = new StateBean();
-                stateBean.name = cvItemName;
-                if (stateClass != null)
-                    stateBean.state = item.getStateAs(stateClass).toString();
-                else
-                    stateBean.state = item.getState().toString();
-                eventBroadcaster.broadcastEvent(stateBean);
-            }
-        } else {
-            StateBean stateBean = new StateBean();
-            stateBean.name = item.getName();
-            stateBean.state = newState.toString();
-            eventBroadcaster.broadcastEvent(stateBean);
-        }
-
+        eventBroadcaster.broadcastItemState(item, false);
     }
 
     @Override
@@ -64,19 +43,7 @@ public class StateEventListener implements StateChangeListener {
 
             // group item update could be relevant for the client, although the state of switch group does not change
             // wenn more the one are on, the number-groupFunction changes
-            Map<String, Class<? extends State>> clientItems = eventBroadcaster.getClientItems(item);
-            if (clientItems != null && clientItems.size() > 0) {
-                for (String cvItemName : clientItems.keySet()) {
-                    Class<? extends State> stateClass = clientItems.get(cvItemName);
-                    if (stateClass != null) {
-                        StateBean stateBean = new StateBean();
-                        stateBean.name = cvItemName;
-                        stateBean.state = item.getStateAs(stateClass).toString();
-
-                        eventBroadcaster.broadcastEvent(stateBean);
-                    }
-                }
-            }
+            eventBroadcaster.broadcastItemState(item, true);
         }
     }
 }
@@ -0,0 +1,290 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.rrs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.eclipse.smarthome.core.items.GenericItem;
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.items.StateChangeListener;
+import org.eclipse.smarthome.core.types.State;
+import org.openhab.ui.cometvisu.internal.rrs.beans.Entry;
+
+/**
+ * Keeps the latest log entries of the items used by the CometVisu rsslog
+ * plugin in memory, so that a request does not have to query the persistence
+ * services.
+ *
+ * The history of an item is loaded once by {@link #track(Item, List)}, after
+ * that the store listens to the state updates of the item and appends them to
+ * the log. The entries of every item are kept in a ring buffer of a fixed
+ * size, entries older than the maximum age are ignored. Querying the newest
+ * entries of an item therefore only depends on the number of requested
+ * entries and not on the size of the log.
+ *
+ * @author agent
+ * @since 2.0.0
+ */
+public class RssLogStore implements StateChangeListener {
+
+    /**
+     * separates title, content, state and tags in the state of a log item
+     */
+    public static final String MESSAGE_SEPARATOR = "|";
+
+    private static final Pattern MESSAGE_SEPARATOR_PATTERN = Pattern.compile(Pattern.quote(MESSAGE_SEPARATOR));
+
+    private static final Comparator<Entry> ASCENDING = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry o1, Entry o2) {
+            return Long.compare(o1.publishedDate, o2.publishedDate);
+        }
+    };
+
+    private int maxEntries;
+    private long maxAge;
+
+    private final Map<String, Log> logs = new HashMap<String, Log>();
+
+    /**
+     * @param maxEntries
+     *            - maximum number of entries kept per item
+     * @param maxAge
+     *            - maximum age of an entry in milliseconds, 0 keeps all
+     *            entries
+     */
+    public RssLogStore(int maxEntries, long maxAge) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Changes the size and the retention of the logs. All logs are removed
+     * if the configuration has changed, so that their history is loaded
+     * again with the new size and retention.
+     *
+     * @param maxEntries
+     *            - maximum number of entries kept per item
+     * @param maxAge
+     *            - maximum age of an entry in milliseconds, 0 keeps all
+     *            entries
+     */
+    public synchronized void configure(int maxEntries, long maxAge) {
+        maxEntries = Math.max(1, maxEntries);
+        if (this.maxEntries != maxEntries || this.maxAge != maxAge) {
+            clear();
+            this.maxEntries = maxEntries;
+            this.maxAge = maxAge;
+        }
+    }
+
+    /**
+     * @return true if the log of this item instance is kept in the store
+     */
+    public synchronized boolean isTracked(Item item) {
+        Log log = logs.get(item.getName());
+        return log != null && log.item == item;
+    }
+
+    /**
+     * Starts to keep the log of an item. A log of a former instance of the
+     * item is replaced.
+     *
+     * @param item
+     *            - the log item
+     * @param history
+     *            - the persisted entries of the item in any order
+     */
+    public synchronized void track(Item item, List<Entry> history) {
+        untrack(item.getName());
+        Log log = new Log(item, maxEntries);
+        List<Entry> sorted = new ArrayList<Entry>(history);
+        Collections.sort(sorted, ASCENDING);
+        for (Entry entry : sorted) {
+            log.add(entry);
+        }
+        logs.put(item.getName(), log);
+        if (item instanceof GenericItem) {
+            ((GenericItem) item).addStateChangeListener(this);
+        }
+    }
+
+    /**
+     * Stops keeping the log of an item.
+     */
+    public synchronized void untrack(String itemName) {
+        Log log = logs.remove(itemName);
+        if (log != null && log.item instanceof GenericItem) {
+            ((GenericItem) log.item).removeStateChangeListener(this);
+        }
+    }
+
+    /**
+     * Removes all logs.
+     */
+    public synchronized void clear() {
+        for (String itemName : new ArrayList<String>(logs.keySet())) {
+            untrack(itemName);
+        }
+    }
+
+    /**
+     * Appends an entry to the log of an item, entries of untracked items are
+     * ignored.
+     */
+    public synchronized void add(String itemName, Entry entry) {
+        Log log = logs.get(itemName);
+        if (log != null) {
+            log.add(entry);
+        }
+    }
+
+    /**
+     * @param itemName
+     *            - the name of the log item
+     * @param limit
+     *            - maximum number of entries
+     * @return the newest entries of the item within the maximum age, newest
+     *         first
+     */
+    public List<Entry> getEntries(String itemName, int limit) {
+        return getEntries(itemName, 0, limit);
+    }
+
+    /**
+     * @param itemName
+     *            - the name of the log item
+     * @param since
+     *            - time in milliseconds of the oldest requested entry
+     * @param limit
+     *            - maximum number of entries
+     * @return the newest entries of the item since the given time and
+     *         within the maximum age, newest first
+     */
+    public synchronized List<Entry> getEntries(String itemName, long since, int limit) {
+        Log log = logs.get(itemName);
+        if (log == null || limit < 1) {
+            return Collections.emptyList();
+        }
+        if (maxAge > 0) {
+            since = Math.max(since, System.currentTimeMillis() - maxAge);
+        }
+        return log.getNewest(since, limit);
+    }
+
+    /**
+     * @return the number of entries kept for the item
+     */
+    public synchronized int size(String itemName) {
+        Log log = logs.get(itemName);
+        return log == null ? 0 : log.size;
+    }
+
+    @Override
+    public void stateChanged(Item item, State oldState, State newState) {
+        // every change is also reported as update
+    }
+
+    @Override
+    public void stateUpdated(Item item, State state) {
+        if (state == null || state.toString().isEmpty()) {
+            return;
+        }
+        Entry entry = createEntry(item.getName(), System.currentTimeMillis(), state.toString());
+        synchronized (this) {
+            Log log = logs.get(item.getName());
+            if (log != null && log.item == item) {
+                log.add(entry);
+            }
+        }
+    }
+
+    /**
+     * creates a log entry from a state of a log item, the state may contain
+     * title, content and state separated by {@link #MESSAGE_SEPARATOR}
+     */
+    public static Entry createEntry(String itemName, long publishedDate, String value) {
+        Entry entry = new Entry();
+        entry.publishedDate = publishedDate;
+        entry.tags = itemName;
+        String[] content = MESSAGE_SEPARATOR_PATTERN.split(value);
+        if (content.length == 0) {
+            entry.content = value;
+        } else if (content.length == 1) {
+            entry.content = content[0];
+        } else if (content.length == 2) {
+            entry.title = content[0];
+            entry.content = content[1];
+        } else if (content.length >= 3) {
+            entry.title = content[0];
+            entry.content = content[1];
+            entry.state = content[2];
+            // ignore tags in content[3] as is is already known by item name
+        }
+        return entry;
+    }
+
+    /**
+     * ring buffer of the entries of one item in ascending order
+     */
+    private static class Log {
+        private final Item item;
+        private final Entry[] entries;
+        private int head = 0;
+        private int size = 0;
+
+        private Log(Item item, int capacity) {
+            this.item = item;
+            this.entries = new Entry[capacity];
+        }
+
+        private void add(Entry entry) {
+            int index = (head + size) % entries.length;
+            if (size == entries.length) {
+                if (entry.publishedDate < entries[head].publishedDate) {
+                    // older than everything kept
+                    return;
+                }
+                head = (head + 1) % entries.length;
+            } else {
+                size++;
+            }
+            entries[index] = entry;
+            // keep the order if the entry is older than the newest ones
+            for (int i = size - 1; i > 0; i--) {
+                int current = (head + i) % entries.length;
+                int previous = (head + i - 1) % entries.length;
+                if (entries[previous].publishedDate <= entries[current].publishedDate) {
+                    break;
+                }
+                Entry swap = entries[previous];
+                entries[previous] = entries[current];
+                entries[current] = swap;
+            }
+        }
+
+        private List<Entry> getNewest(long since, int limit) {
+            List<Entry> result = new ArrayList<Entry>(Math.min(limit, size));
+            for (int i = size - 1; i >= 0 && result.size() < limit; i--) {
+                Entry entry = entries[(head + i) % entries.length];
+                if (entry.publishedDate < since) {
+                    break;
+                }
+                result.add(entry);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+/**
+ * Writes chart series in the format expected by the CometVisu diagram plugin
+ * directly to an output stream: <code>[[timestamp,["value1","value2",...]],...]</code>.
+ * Unknown values are written as <code>"null"</code>.
+ *
+ * The rows have to be written in ascending time order. Every writer has its
+ * own number format, so it must not be shared between threads.
+ *
+ * @author agent
+ * @since 2.0.0
+ */
+public class ChartSeriesWriter {
+
+    // pattern RRDTool uses to format doubles in XML files
+    public static final String PATTERN = "0.0000000000E00";
+
+    private static final String NAN_STRING = "null";
+
+    private final Writer writer;
+
+    private final DecimalFormat df;
+
+    private long rows = 0;
+
+    /**
+     * @param outputStream
+     *            - the stream to write to, it is flushed but not closed by
+     *            {@link #end()}
+     */
+    public ChartSeriesWriter(OutputStream outputStream) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        this.df = (DecimalFormat) NumberFormat.getNumberInstance(Locale.ENGLISH);
+        this.df.applyPattern(PATTERN);
+        writer.write('[');
+    }
+
+    /**
+     * @param time
+     *            - timestamp in milliseconds
+     * @param values
+     *            - the values of the row
+     */
+    public void writeRow(long time, double... values) throws IOException {
+        if (rows > 0) {
+            writer.write(',');
+        }
+        writer.write('[');
+        writer.write(Long.toString(time));
+        writer.write(",[");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write('"');
+            writer.write(formatDouble(values[i]));
+            writer.write('"');
+        }
+        writer.write("]]");
+        rows++;
+    }
+
+    /**
+     * Finishes the series and flushes the output stream.
+     */
+    public void end() throws IOException {
+        writer.write(']');
+        writer.flush();
+    }
+
+    /**
+     * @return the number of rows written
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    public String formatDouble(double x) {
+        if (Double.isNaN(x)) {
+            return NAN_STRING;
+        }
+        return df.format(x);
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the GZIP compressed content of static files, so that they are
+ * compressed only once and not on every request. Entries are identified by the
+ * path, the modification time and the size of the file, a changed file is
+ * compressed again on the next request.
+ *
+ * The cache is bounded by the total size of the compressed content, the least
+ * recently used files are removed first. Files larger than the maximum file
+ * size are not cached.
+ *
+ * @author agent
+ * @since 2.0.0
+ */
+public class CompressedResourceCache {
+
+    private static final int BUFFER_SIZE = 10240;
+
+    private final long maxSize;
+    private final long maxFileSize;
+
+    private final LinkedHashMap<String, CacheEntry> cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+
+    private long size = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param maxSize
+     *            - maximum number of compressed bytes kept in memory
+     * @param maxFileSize
+     *            - maximum size of a file to be cached
+     */
+    public CompressedResourceCache(long maxSize, long maxFileSize) {
+        this.maxSize = maxSize;
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * @param file
+     *            - the static file
+     * @return the GZIP compressed content of the file or null if the file is
+     *         too large to be cached
+     * @throws IOException
+     *             if the file could not be read
+     */
+    public byte[] getCompressed(File file) throws IOException {
+        long lastModified = file.lastModified();
+        long length = file.length();
+        if (length > maxFileSize) {
+            return null;
+        }
+        String key = file.getAbsolutePath();
+
+        synchronized (this) {
+            CacheEntry entry = cache.get(key);
+            if (entry != null && entry.lastModified == lastModified && entry.length == length) {
+                hits++;
+                return entry.content;
+            }
+            misses++;
+        }
+
+        // compress without blocking requests for other files
+        byte[] content = compress(file);
+
+        synchronized (this) {
+            CacheEntry entry = new CacheEntry(lastModified, length, content);
+            CacheEntry previous = cache.put(key, entry);
+            if (previous != null) {
+                size -= previous.content.length;
+            }
+            size += content.length;
+            Iterator<CacheEntry> iterator = cache.values().iterator();
+            while (size > maxSize && iterator.hasNext()) {
+                CacheEntry eldest = iterator.next();
+                if (eldest == entry) {
+                    continue;
+                }
+                size -= eldest.content.length;
+                iterator.remove();
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        cache.clear();
+        size = 0;
+    }
+
+    /**
+     * @return the number of compressed bytes in the cache
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of requests served from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of requests which compressed the file
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    static byte[] compress(File file) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream((int) Math.min(file.length() / 3 + 64, 1 << 20));
+        InputStream input = new FileInputStream(file);
+        try {
+            GZIPOutputStream gzip = new GZIPOutputStream(output, BUFFER_SIZE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                gzip.write(buffer, 0, read);
+            }
+            gzip.close();
+        } finally {
+            input.close();
+        }
+        return output.toByteArray();
+    }
+
+    private static class CacheEntry {
+        private final long lastModified;
+        private final long length;
+        private final byte[] content;
+
+        private CacheEntry(long lastModified, long length, byte[] content) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.content = content;
+        }
+    }
+}
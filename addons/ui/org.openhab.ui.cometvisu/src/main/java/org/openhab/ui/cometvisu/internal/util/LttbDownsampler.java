@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reduces a chart series to a given number of rows with the
+ * "Largest-Triangle-Three-Buckets" algorithm (Sveinn Steinarsson, 2013), which
+ * keeps the visual shape of the series.
+ *
+ * Series with several columns (e.g. the members of a group) are reduced to
+ * common rows, so the rows stay aligned. The triangle areas of all columns
+ * are summed up to select the row of each bucket, unknown values (NaN) are
+ * ignored.
+ *
+ * The rows are added one by one and only the rows of the current and the
+ * next bucket are kept, so a selected row is written as soon as the rows of
+ * the next bucket have been added.
+ *
+ * @author agent
+ * @since 2.0.0
+ */
+public class LttbDownsampler {
+
+    /**
+     * receives the selected rows
+     */
+    public interface RowWriter {
+        void write(int index, long time, double[] values) throws IOException;
+    }
+
+    private final RowWriter writer;
+    private final int rows;
+    private final int threshold;
+    private final double bucketSize;
+
+    /**
+     * rows of the current and the next bucket
+     */
+    private final List<Row> window = new ArrayList<Row>();
+    private Row selected;
+    private int bucket = 0;
+    private int index = 0;
+
+    /**
+     * @param rows
+     *            - the number of rows which will be added
+     * @param threshold
+     *            - the maximum number of rows to keep, values below 3 disable
+     *            the downsampling
+     * @param writer
+     *            - receives the selected rows
+     */
+    public LttbDownsampler(int rows, int threshold, RowWriter writer) {
+        this.writer = writer;
+        this.rows = rows;
+        this.threshold = threshold < 3 || threshold >= rows ? 0 : threshold;
+        this.bucketSize = this.threshold > 0 ? (double) (rows - 2) / (threshold - 2) : 0;
+    }
+
+    /**
+     * @param time
+     *            - time of the row, not lower than the one of the previous
+     *            row
+     * @param values
+     *            - the values of the row, the array may be reused by the
+     *            caller
+     */
+    public void add(long time, double[] values) throws IOException {
+        int row = index++;
+        if (threshold == 0) {
+            writer.write(row, time, values);
+            return;
+        }
+        Row current = new Row(row, time, Arrays.copyOf(values, values.length));
+        if (row == 0) {
+            // the first row is always kept
+            writer.write(row, time, values);
+            selected = current;
+            return;
+        }
+        window.add(current);
+        // a bucket is complete once all rows of the next bucket are known
+        while (bucket < threshold - 2 && row >= Math.min(bucketStart(bucket + 2), rows) - 1) {
+            selectRow();
+        }
+        if (row == rows - 1) {
+            // the last row is always kept
+            writer.write(row, time, values);
+        }
+    }
+
+    /**
+     * Selects the row of the current bucket which spans the largest triangle
+     * with the previously selected row and the average of the next bucket.
+     */
+    private void selectRow() throws IOException {
+        int rangeEnd = bucketStart(bucket + 1);
+        int avgEnd = Math.min(bucketStart(bucket + 2), rows);
+
+        // average point of the next bucket
+        int columns = selected.values.length;
+        double avgX = 0;
+        int avgRows = 0;
+        double[] sumY = new double[columns];
+        int[] countY = new int[columns];
+        for (Row row : window) {
+            if (row.index < rangeEnd || row.index >= avgEnd) {
+                continue;
+            }
+            avgX += row.time;
+            avgRows++;
+            for (int column = 0; column < columns; column++) {
+                if (!Double.isNaN(row.values[column])) {
+                    sumY[column] += row.values[column];
+                    countY[column]++;
+                }
+            }
+        }
+        avgX /= avgRows;
+        double[] avgY = new double[columns];
+        for (int column = 0; column < columns; column++) {
+            avgY[column] = countY[column] > 0 ? sumY[column] / countY[column] : Double.NaN;
+        }
+
+        // row of the current bucket spanning the largest triangle
+        double maxArea = -1;
+        Row maxRow = null;
+        for (Row row : window) {
+            if (row.index >= rangeEnd) {
+                break;
+            }
+            double area = 0;
+            for (int column = 0; column < columns; column++) {
+                double ay = selected.values[column];
+                double y = row.values[column];
+                if (Double.isNaN(ay) || Double.isNaN(y) || Double.isNaN(avgY[column])) {
+                    continue;
+                }
+                area += Math.abs((selected.time - avgX) * (y - ay) - (selected.time - row.time)
+                        * (avgY[column] - ay));
+            }
+            if (area > maxArea) {
+                maxArea = area;
+                maxRow = row;
+            }
+        }
+        writer.write(maxRow.index, maxRow.time, maxRow.values);
+        selected = maxRow;
+
+        // the rows of the next bucket stay in the window
+        int keep = 0;
+        while (keep < window.size() && window.get(keep).index < rangeEnd) {
+            keep++;
+        }
+        window.subList(0, keep).clear();
+        bucket++;
+    }
+
+    /**
+     * @return the index of the first row of the given bucket
+     */
+    private int bucketStart(int bucket) {
+        return (int) Math.floor(bucket * bucketSize) + 1;
+    }
+
+    /**
+     * Selects the rows to keep.
+     *
+     * @param timestamps
+     *            - the ascending timestamps of the rows
+     * @param values
+     *            - the values as <code>values[column][row]</code>
+     * @param threshold
+     *            - the maximum number of rows to keep, values below 3 disable
+     *            the downsampling
+     * @return the ascending indexes of the selected rows
+     */
+    public static int[] selectRows(long[] timestamps, double[][] values, int threshold) {
+        final int[] selected = new int[timestamps.length];
+        final int[] count = new int[1];
+        LttbDownsampler downsampler = new LttbDownsampler(timestamps.length, threshold, new RowWriter() {
+
+            @Override
+            public void write(int index, long time, double[] row) {
+                selected[count[0]++] = index;
+            }
+        });
+        double[] row = new double[values.length];
+        try {
+            for (int i = 0; i < timestamps.length; i++) {
+                for (int column = 0; column < values.length; column++) {
+                    row[column] = values[column][i];
+                }
+                downsampler.add(timestamps[i], row);
+            }
+        } catch (IOException e) {
+            // not thrown by the writer
+            throw new IllegalStateException(e);
+        }
+        return Arrays.copyOf(selected, count[0]);
+    }
+
+    private static class Row {
+        private final int index;
+        private final long time;
+        private final double[] values;
+
+        private Row(int index, long time, double[] values) {
+            this.index = index;
+            this.time = time;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.util;
+
+import java.io.IOException;
+
+/**
+ * Reduces a stream of ascending points to a given number of points by
+ * splitting the time range into buckets and keeping the minimum and the
+ * maximum of each bucket in their original order. Peaks are preserved and
+ * only the current bucket is kept in memory, so it can be used for series of
+ * any length. Sparse series with at most one point per bucket are passed
+ * through unchanged.
+ *
+ * Call {@link #add(long, double)} for every point and {@link #flush()} at the
+ * end of the series.
+ *
+ * @author agent
+ * @since 2.0.0
+ */
+public class MinMaxDownsampler {
+
+    /**
+     * receives the selected points
+     */
+    public interface PointWriter {
+        void write(long time, double value) throws IOException;
+    }
+
+    private final PointWriter writer;
+    private final long start;
+    private final int buckets;
+    private final double bucketWidth;
+
+    private long bucket = -1;
+    private int bucketCount = 0;
+    private long minTime;
+    private double minValue;
+    private long maxTime;
+    private double maxValue;
+
+    /**
+     * @param start
+     *            - start of the time range
+     * @param end
+     *            - end of the time range
+     * @param maxPoints
+     *            - maximum number of points to write, values below 2 disable
+     *            the downsampling
+     * @param writer
+     *            - receives the selected points
+     */
+    public MinMaxDownsampler(long start, long end, int maxPoints, PointWriter writer) {
+        this.writer = writer;
+        this.start = start;
+        this.buckets = maxPoints / 2;
+        this.bucketWidth = buckets > 0 && end > start ? (double) (end - start) / buckets : 0;
+    }
+
+    /**
+     * @param time
+     *            - time of the point, not lower than the one of the previous
+     *            point
+     * @param value
+     *            - value of the point
+     */
+    public void add(long time, double value) throws IOException {
+        if (bucketWidth <= 0) {
+            writer.write(time, value);
+            return;
+        }
+        // points at the very end of the range belong to the last bucket
+        long pointBucket = Math.min((long) ((time - start) / bucketWidth), buckets - 1);
+        if (pointBucket != bucket) {
+            flush();
+            bucket = pointBucket;
+        }
+        if (bucketCount == 0 || value < minValue) {
+            minTime = time;
+            minValue = value;
+        }
+        if (bucketCount == 0 || value > maxValue) {
+            maxTime = time;
+            maxValue = value;
+        }
+        bucketCount++;
+    }
+
+    /**
+     * Writes the points of the current bucket.
+     */
+    public void flush() throws IOException {
+        if (bucketCount == 0) {
+            return;
+        }
+        if (bucketCount == 1 || minTime == maxTime) {
+            writer.write(minTime, minValue);
+        } else if (minTime < maxTime) {
+            writer.write(minTime, minValue);
+            writer.write(maxTime, maxValue);
+        } else {
+            writer.write(maxTime, maxValue);
+            writer.write(minTime, minValue);
+        }
+        bucketCount = 0;
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.util;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.rrd4j.core.RrdDb;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded cache of read-only {@link RrdDb} handles used to serve chart
+ * requests. The RRD files are written by the rrd4j persistence service, so
+ * cached handles are reopened when the file has been modified or when they
+ * are older than the configured maximum age.
+ *
+ * Handles are reference counted: a handle evicted from the cache is closed
+ * as soon as the last user has released it.
+ *
+ * @author agent
+ * @since 2.0.0
+ */
+public class RrdDbCache {
+    private static final Logger logger = LoggerFactory.getLogger(RrdDbCache.class);
+
+    private final int maxSize;
+    private final long maxAge;
+
+    /**
+     * cached entries by path in access order
+     */
+    private final LinkedHashMap<String, CacheEntry> cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+
+    /**
+     * all handles currently cached or in use
+     */
+    private final Map<RrdDb, CacheEntry> handles = new IdentityHashMap<RrdDb, CacheEntry>();
+
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param maxSize
+     *            - maximum number of cached handles
+     * @param maxAge
+     *            - time in milliseconds after which a handle is reopened
+     */
+    public RrdDbCache(int maxSize, long maxAge) {
+        this.maxSize = Math.max(1, maxSize);
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Returns a read-only handle of the given RRD file. Every acquired
+     * handle must be given back with {@link #release(RrdDb)} and must not be
+     * closed by the caller.
+     *
+     * @param path
+     *            - path of the RRD file
+     * @return the read-only handle
+     * @throws FileNotFoundException
+     *             if the file does not exist
+     * @throws IOException
+     *             if the file could not be opened
+     */
+    public RrdDb acquire(String path) throws IOException {
+        File file = new File(path);
+        if (!file.isFile()) {
+            throw new FileNotFoundException(path);
+        }
+        long lastModified = file.lastModified();
+        long length = file.length();
+
+        synchronized (this) {
+            CacheEntry entry = cache.get(path);
+            if (entry != null) {
+                if (entry.isValid(lastModified, length)) {
+                    hits++;
+                    entry.users++;
+                    return entry.rrdDb;
+                }
+                evict(path);
+            }
+            misses++;
+        }
+
+        // opening reads the header, do not block other requests meanwhile
+        RrdDb rrdDb = new RrdDb(path, true);
+
+        synchronized (this) {
+            CacheEntry entry = cache.get(path);
+            if (entry != null && entry.isValid(lastModified, length)) {
+                // opened concurrently by another request
+                closeQuietly(rrdDb);
+                entry.users++;
+                return entry.rrdDb;
+            }
+            if (entry != null) {
+                evict(path);
+            }
+            entry = new CacheEntry(rrdDb, lastModified, length);
+            entry.users++;
+            cache.put(path, entry);
+            handles.put(rrdDb, entry);
+            while (cache.size() > maxSize) {
+                evict(cache.keySet().iterator().next());
+            }
+            return rrdDb;
+        }
+    }
+
+    /**
+     * Gives back a handle returned by {@link #acquire(String)}.
+     *
+     * @param rrdDb
+     *            - the handle which is not used anymore
+     */
+    public synchronized void release(RrdDb rrdDb) {
+        CacheEntry entry = handles.get(rrdDb);
+        if (entry == null) {
+            logger.debug("released unknown RRD handle '{}'", rrdDb.getPath());
+            return;
+        }
+        entry.users--;
+        closeIfUnused(entry);
+    }
+
+    /**
+     * Removes the handle of the given file from the cache, it is closed as
+     * soon as it is not used anymore.
+     *
+     * @param path
+     *            - path of the RRD file
+     */
+    public synchronized void invalidate(String path) {
+        if (cache.containsKey(path)) {
+            evict(path);
+        }
+    }
+
+    /**
+     * Removes all handles from the cache.
+     */
+    public synchronized void clear() {
+        List<String> paths = new ArrayList<String>(cache.keySet());
+        for (String path : paths) {
+            evict(path);
+        }
+    }
+
+    /**
+     * @return the number of cached handles
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return the number of requests served from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of requests which had to open the file
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private void evict(String path) {
+        CacheEntry entry = cache.remove(path);
+        if (entry != null) {
+            entry.evicted = true;
+            closeIfUnused(entry);
+        }
+    }
+
+    private void closeIfUnused(CacheEntry entry) {
+        if (entry.evicted && entry.users <= 0) {
+            handles.remove(entry.rrdDb);
+            closeQuietly(entry.rrdDb);
+        }
+    }
+
+    private static void closeQuietly(RrdDb rrdDb) {
+        try {
+            rrdDb.close();
+        } catch (IOException e) {
+            logger.debug("error closing RRD file '{}': {}", rrdDb.getPath(), e.getMessage());
+        }
+    }
+
+    private class CacheEntry {
+        private final RrdDb rrdDb;
+        private final long lastModified;
+        private final long length;
+        private final long opened = System.currentTimeMillis();
+        private int users = 0;
+        private boolean evicted = false;
+
+        private CacheEntry(RrdDb rrdDb, long lastModified, long length) {
+            this.rrdDb = rrdDb;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        private boolean isValid(long lastModified, long length) {
+            return this.lastModified == lastModified && this.length == length
+                    && System.currentTimeMillis() - opened < maxAge;
+        }
+    }
+}
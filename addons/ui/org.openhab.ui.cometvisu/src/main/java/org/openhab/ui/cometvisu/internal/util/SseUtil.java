@@ -36,17 +36,38 @@ public class SseUtil {
      * @return a new OutboundEvent.
      */
     public static OutboundEvent buildEvent(Object eventObject) {
+        StateBeanMessageBodyWriter writer = new StateBeanMessageBodyWriter();
+        return buildJsonEvent(writer.serialize(eventObject));
+    }
+
+    /**
+     * Creates a new {@link OutboundEvent} object containing already
+     * serialized state updates.
+     *
+     * @param json
+     *            - the state updates in the CometVisu JSON format
+     * @return a new OutboundEvent.
+     */
+    public static OutboundEvent buildJsonEvent(String json) {
 
         OutboundEvent.Builder eventBuilder = new OutboundEvent.Builder();
-        StateBeanMessageBodyWriter writer = new StateBeanMessageBodyWriter();
-        // OutboundEvent event = eventBuilder.mediaType(MediaType.APPLICATION_JSON_TYPE).data(eventObject).build();
         java.util.Date date = new java.util.Date();
-        OutboundEvent event = eventBuilder.mediaType(MediaType.APPLICATION_JSON_TYPE)
-                .data(writer.serialize(eventObject)).id(String.valueOf(date.getTime())).build();
+        OutboundEvent event = eventBuilder.mediaType(MediaType.APPLICATION_JSON_TYPE).data(json)
+                .id(String.valueOf(date.getTime())).build();
 
         return event;
     }
 
+    /**
+     * Creates a new {@link OutboundEvent} object containing only a comment,
+     * which is ignored by the client.
+     *
+     * @return a new OutboundEvent.
+     */
+    public static OutboundEvent buildHeartbeatEvent() {
+        return new OutboundEvent.Builder().comment("heartbeat").build();
+    }
+
     /**
      * Used to mark our current thread(request processing) that SSE blocking
      * should be enabled.
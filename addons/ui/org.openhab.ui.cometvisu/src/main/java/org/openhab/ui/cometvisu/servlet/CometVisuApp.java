@@ -9,6 +9,7 @@
 package org.openhab.ui.cometvisu.servlet;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -20,13 +21,16 @@ import java.util.Set;
 import javax.servlet.ServletException;
 
 import org.eclipse.smarthome.core.events.EventPublisher;
+import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.items.ItemRegistry;
+import org.eclipse.smarthome.core.items.ItemRegistryChangeListener;
 import org.eclipse.smarthome.core.persistence.PersistenceService;
 import org.eclipse.smarthome.core.persistence.QueryablePersistenceService;
 import org.eclipse.smarthome.model.sitemap.SitemapProvider;
 import org.eclipse.smarthome.ui.icon.IconProvider;
 import org.eclipse.smarthome.ui.items.ItemUIRegistry;
 import org.openhab.ui.cometvisu.internal.Config;
+import org.openhab.ui.cometvisu.internal.config.VisuConfigCache;
 import org.openhab.ui.cometvisu.php.PHProvider;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.cm.ConfigurationException;
@@ -61,6 +65,35 @@ public class CometVisuApp {
 
     private PHProvider phpProvider;
 
+    private final VisuConfigCache configCache = new VisuConfigCache();
+
+    /**
+     * the configs generated from the sitemaps contain item types and labels, so
+     * they are outdated after any change of the items
+     */
+    private final ItemRegistryChangeListener configCacheInvalidator = new ItemRegistryChangeListener() {
+
+        @Override
+        public void added(Item element) {
+            configCache.invalidate();
+        }
+
+        @Override
+        public void removed(Item element) {
+            configCache.invalidate();
+        }
+
+        @Override
+        public void updated(Item oldElement, Item element) {
+            configCache.invalidate();
+        }
+
+        @Override
+        public void allItemsChanged(Collection<String> oldItemNames) {
+            configCache.invalidate();
+        }
+    };
+
     static protected Map<String, QueryablePersistenceService> persistenceServices = new HashMap<String, QueryablePersistenceService>();
 
     protected void setEventPublisher(EventPublisher eventPublisher) {
@@ -103,6 +136,8 @@ public class CometVisuApp {
 
     protected void setItemRegistry(ItemRegistry itemRegistry) {
         this.itemRegistry = itemRegistry;
+        this.itemRegistry.addRegistryChangeListener(configCacheInvalidator);
+        configCache.invalidate();
     }
 
     public ItemRegistry getItemRegistry() {
@@ -110,23 +145,29 @@ public class CometVisuApp {
     }
 
     protected void unsetItemRegistry(ItemRegistry itemRegistry) {
+        this.itemRegistry.removeRegistryChangeListener(configCacheInvalidator);
         this.itemRegistry = null;
+        configCache.invalidate();
     }
 
     public void setItemUIRegistry(ItemUIRegistry itemUIRegistry) {
         this.itemUIRegistry = itemUIRegistry;
+        configCache.invalidate();
     }
 
     public void unsetItemUIRegistry(ItemUIRegistry itemUIRegistry) {
         this.itemUIRegistry = null;
+        configCache.invalidate();
     }
 
     public void addSitemapProvider(SitemapProvider provider) {
         sitemapProviders.add(provider);
+        configCache.invalidate();
     }
 
     public void removeSitemapProvider(SitemapProvider provider) {
         sitemapProviders.remove(provider);
+        configCache.invalidate();
     }
 
     public ItemUIRegistry getItemUIRegistry() {
@@ -137,6 +178,13 @@ public class CometVisuApp {
         return sitemapProviders;
     }
 
+    /**
+     * @return the cache of the configs generated from the sitemaps
+     */
+    public VisuConfigCache getConfigCache() {
+        return configCache;
+    }
+
     protected void setHttpService(HttpService httpService) {
         this.httpService = httpService;
     }
@@ -171,6 +219,17 @@ public class CometVisuApp {
             if (properties.get(Config.COMETVISU_WEBAPP_ALIAS_PROPERTY) != null) {
                 Config.COMETVISU_WEBAPP_ALIAS = (String) properties.get(Config.COMETVISU_WEBAPP_ALIAS_PROPERTY);
             }
+            // a batch window, point limit or retention of 0 disables it
+            Config.COMETVISU_SSE_BATCH_WINDOW = parseLongProperty(properties,
+                    Config.COMETVISU_SSE_BATCH_WINDOW_PROPERTY, Config.COMETVISU_SSE_BATCH_WINDOW, 0);
+            Config.COMETVISU_SSE_BUFFER_SIZE = parseIntProperty(properties, Config.COMETVISU_SSE_BUFFER_SIZE_PROPERTY,
+                    Config.COMETVISU_SSE_BUFFER_SIZE, 1);
+            Config.COMETVISU_CHART_MAX_POINTS = parseIntProperty(properties,
+                    Config.COMETVISU_CHART_MAX_POINTS_PROPERTY, Config.COMETVISU_CHART_MAX_POINTS, 0);
+            Config.COMETVISU_RSSLOG_SIZE = parseIntProperty(properties, Config.COMETVISU_RSSLOG_SIZE_PROPERTY,
+                    Config.COMETVISU_RSSLOG_SIZE, 1);
+            Config.COMETVISU_RSSLOG_RETENTION = parseIntProperty(properties,
+                    Config.COMETVISU_RSSLOG_RETENTION_PROPERTY, Config.COMETVISU_RSSLOG_RETENTION, 0);
             for (String key : properties.keySet()) {
                 String[] parts = key.split(">");
                 String propKey = parts.length > 1 ? parts[1] : parts[0];
@@ -183,7 +242,49 @@ public class CometVisuApp {
                     }
                 }
             }
+            // the generated configs contain the icon mappings
+            configCache.invalidate();
+        }
+    }
+
+    /**
+     * @return the value of the given property, or the default value if the
+     *         property is not set or is not a number of at least minValue
+     */
+    private int parseIntProperty(Map<String, Object> properties, String key, int defaultValue, int minValue) {
+        Object value = properties.get(key);
+        if (value != null) {
+            try {
+                int result = Integer.parseInt(value.toString().trim());
+                if (result >= minValue) {
+                    return result;
+                }
+            } catch (NumberFormatException e) {
+                // the invalid value is logged below
+            }
+            logger.warn("invalid value for {}: {}, using {}", key, value, defaultValue);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * @return the value of the given property, or the default value if the
+     *         property is not set or is not a number of at least minValue
+     */
+    private long parseLongProperty(Map<String, Object> properties, String key, long defaultValue, long minValue) {
+        Object value = properties.get(key);
+        if (value != null) {
+            try {
+                long result = Long.parseLong(value.toString().trim());
+                if (result >= minValue) {
+                    return result;
+                }
+            } catch (NumberFormatException e) {
+                // the invalid value is logged below
+            }
+            logger.warn("invalid value for {}: {}, using {}", key, value, defaultValue);
         }
+        return defaultValue;
     }
 
     /**
@@ -254,6 +355,8 @@ public class CometVisuApp {
         if (configProps.containsKey(Config.COMETVISU_WEBFOLDER_PROPERTY)
                 || configProps.containsKey(Config.COMETVISU_WEBAPP_ALIAS_PROPERTY)) {
             registerServlet();
+        } else if (servlet != null) {
+            servlet.updateRssLogConfiguration();
         }
     }
 
@@ -27,7 +27,6 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map.Entry;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.GZIPOutputStream;
@@ -58,7 +57,9 @@ import org.openhab.ui.cometvisu.internal.config.ConfigHelper.Transform;
 import org.openhab.ui.cometvisu.internal.config.VisuConfig;
 import org.openhab.ui.cometvisu.internal.editor.dataprovider.beans.DataBean;
 import org.openhab.ui.cometvisu.internal.editor.dataprovider.beans.ItemBean;
+import org.openhab.ui.cometvisu.internal.rrs.RssLogStore;
 import org.openhab.ui.cometvisu.internal.rrs.beans.Feed;
+import org.openhab.ui.cometvisu.internal.util.CompressedResourceCache;
 import org.openhab.ui.cometvisu.php.PHProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -82,11 +83,19 @@ public class CometVisuServlet extends HttpServlet {
                                                                 // week.
     private static final String MULTIPART_BOUNDARY = "MULTIPART_BYTERANGES";
 
+    // compressed static files kept in memory
+    private static final long COMPRESSED_CACHE_SIZE = 16 * 1024 * 1024L; // ..bytes = 16MB.
+    private static final long COMPRESSED_CACHE_MAX_FILE_SIZE = 4 * 1024 * 1024L; // ..bytes = 4MB.
+
     private Pattern sitemapPattern = Pattern.compile(".*/visu_config_(oh_)?([^\\.]+)\\.xml");
     private Pattern configStorePattern = Pattern.compile("config/visu_config_oh_([a-z0-9_]+)\\.xml");
 
+    // default number of log entries per item in a rsslog response
+    private static final int RSS_LOG_PAGE_SIZE = 25;
+    // history loaded from persistence if the retention is unlimited
+    private static final int RSS_LOG_MAX_HISTORY_DAYS = 365;
+
     private String rrsLogPath = "/plugins/rsslog/rsslog_oh.php";
-    private final String rssLogMessageSeparator = "\\|";
     private DateFormat rssPubDateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss Z", Locale.ENGLISH);
 
     protected String root;
@@ -102,6 +111,12 @@ public class CometVisuServlet extends HttpServlet {
 
     private CometVisuApp cometVisuApp;
 
+    private final RssLogStore rssLogStore = new RssLogStore(Config.COMETVISU_RSSLOG_SIZE,
+            Config.COMETVISU_RSSLOG_RETENTION * 24 * 3600000L);
+
+    private final CompressedResourceCache compressedResourceCache = new CompressedResourceCache(COMPRESSED_CACHE_SIZE,
+            COMPRESSED_CACHE_MAX_FILE_SIZE);
+
     public CometVisuServlet(String filesystemDir, CometVisuApp cometVisuApp) {
         root = filesystemDir;
         rootFolder = new File(root);
@@ -155,6 +170,19 @@ public class CometVisuServlet extends HttpServlet {
         }
     }
 
+    /**
+     * applies the configured size and retention of the rsslog entries
+     */
+    public void updateRssLogConfiguration() {
+        rssLogStore.configure(Config.COMETVISU_RSSLOG_SIZE, Config.COMETVISU_RSSLOG_RETENTION * 24 * 3600000L);
+    }
+
+    @Override
+    public void destroy() {
+        rssLogStore.clear();
+        super.destroy();
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -231,7 +259,8 @@ public class CometVisuServlet extends HttpServlet {
         } else if (requestedFile.getName().endsWith(".php")) {
             processPhpRequest(requestedFile, req, resp);
         } else {
-            processStaticRequest(requestedFile, req, resp, true);
+            // HEAD requests are passed to doGet by the servlet
+            processStaticRequest(requestedFile, req, resp, !"HEAD".equals(req.getMethod()));
         }
     }
 
@@ -317,8 +346,9 @@ public class CometVisuServlet extends HttpServlet {
                     String message = request.getParameter("c");
                     String state = request.getParameter("state");
                     // Build message
-                    Command command = new StringType(title + rssLogMessageSeparator + message + rssLogMessageSeparator
-                            + state + rssLogMessageSeparator + items.get(0).getName());
+                    Command command = new StringType(title + RssLogStore.MESSAGE_SEPARATOR + message
+                            + RssLogStore.MESSAGE_SEPARATOR + state + RssLogStore.MESSAGE_SEPARATOR
+                            + items.get(0).getName());
                     // Use the event publisher to store the item in the defined
                     // persistance services
                     cometVisuApp.getEventPublisher()
@@ -357,88 +387,44 @@ public class CometVisuServlet extends HttpServlet {
                 feed.author = "";
                 feed.description = "RSS supplied logs";
                 feed.type = "rss20";
-                // Define the data filter
-                FilterCriteria filter = new FilterCriteria();
-                Calendar start = Calendar.getInstance();
-                // retrieve only the historic states from the last 7 days + BeginDate is required for RRD4j service
-                start.add(Calendar.DAY_OF_YEAR, -7);
-                // Date end = new Date();
-                filter.setBeginDate(start.getTime());
-                // filter.setEndDate(end);
-                filter.setPageSize(25);
-                filter.setOrdering(Ordering.DESCENDING);
-
-                for (Item item : items) {
-                    filter.setItemName(item.getName());
-                    Iterator<Entry<String, QueryablePersistenceService>> pit = CometVisuApp.getPersistenceServices()
-                            .entrySet().iterator();
-                    QueryablePersistenceService persistenceService = pit.next().getValue();
-                    // Get the data from the persistence store
-                    Iterable<HistoricItem> result = persistenceService.query(filter);
-                    Iterator<HistoricItem> it = result.iterator();
-                    boolean forceStop = false;
-                    while (!forceStop && !it.hasNext()) {
-                        if (pit.hasNext()) {
-                            persistenceService = pit.next().getValue();
-                            result = persistenceService.query(filter);
-                        } else {
-                            // no persisted data found for this item in any of
-                            // the available persistence services
-                            forceStop = true;
-                        }
+                int limit = RSS_LOG_PAGE_SIZE;
+                if (request.getParameter("limit") != null) {
+                    try {
+                        limit = Integer.parseInt(request.getParameter("limit"));
+                    } catch (NumberFormatException e) {
+                        logger.debug("invalid limit '{}'", request.getParameter("limit"));
                     }
-                    if (it.hasNext()) {
-                        logger.debug("persisted data for item {} found in service {}", item.getName(),
-                                persistenceService.getId());
+                    if (limit < 1) {
+                        logger.debug("invalid limit '{}'", request.getParameter("limit"));
+                        limit = RSS_LOG_PAGE_SIZE;
                     }
-
-                    // Iterate through the data
-                    int i = 0;
-                    while (it.hasNext()) {
-                        i++;
-                        HistoricItem historicItem = it.next();
-                        if (historicItem.getState() == null || historicItem.getState().toString().isEmpty()) {
-                            continue;
-                        }
-                        org.openhab.ui.cometvisu.internal.rrs.beans.Entry entry = new org.openhab.ui.cometvisu.internal.rrs.beans.Entry();
-                        entry.publishedDate = historicItem.getTimestamp().getTime();
-                        logger.info(rssPubDateFormat.format(entry.publishedDate) + ": " + historicItem.getState());
-                        entry.tags = historicItem.getName();
-                        String[] content = historicItem.getState().toString().split(rssLogMessageSeparator);
-                        if (content.length == 0) {
-                            entry.content = historicItem.getState().toString();
-                        } else if (content.length == 1) {
-                            entry.content = content[0];
-                        } else if (content.length == 2) {
-                            entry.title = content[0];
-                            entry.content = content[1];
-                        } else if (content.length == 3) {
-                            entry.title = content[0];
-                            entry.content = content[1];
-                            entry.state = content[2];
-                        } else if (content.length == 4) {
-                            entry.title = content[0];
-                            entry.content = content[1];
-                            entry.state = content[2];
-                            // ignore tags in content[3] as is is already known
-                            // by item name
-                        }
-                        feed.entries.add(entry);
+                }
+                // the store does not keep more entries per item
+                limit = Math.min(limit, Math.max(1, Config.COMETVISU_RSSLOG_SIZE));
+                // optional time in milliseconds of the oldest entry
+                long since = 0;
+                if (request.getParameter("since") != null) {
+                    try {
+                        since = Long.parseLong(request.getParameter("since"));
+                    } catch (NumberFormatException e) {
+                        logger.debug("invalid since '{}'", request.getParameter("since"));
                     }
-                    if ("rrd4j".equals(persistenceService.getId())
-                            && FilterCriteria.Ordering.DESCENDING.equals(filter.getOrdering())) {
-                        // the RRD4j PersistenceService does not support descending ordering so we do it manually
-                        Collections.sort(feed.entries,
-                                new Comparator<org.openhab.ui.cometvisu.internal.rrs.beans.Entry>() {
-                                    @Override
-                                    public int compare(org.openhab.ui.cometvisu.internal.rrs.beans.Entry o1,
-                                            org.openhab.ui.cometvisu.internal.rrs.beans.Entry o2) {
-                                        return Long.compare(o2.publishedDate, o1.publishedDate);
-                                    }
-                                });
+                }
+
+                for (Item item : items) {
+                    if (!rssLogStore.isTracked(item)) {
+                        rssLogStore.track(item, queryRssLogHistory(item));
                     }
-                    logger.debug("querying {} item from {} to {} => {} results on service {}", filter.getItemName(),
-                            filter.getBeginDate(), filter.getEndDate(), i, persistenceService.getId());
+                    feed.entries.addAll(rssLogStore.getEntries(item.getName(), since, limit));
+                }
+                if (items.size() > 1) {
+                    Collections.sort(feed.entries, new Comparator<org.openhab.ui.cometvisu.internal.rrs.beans.Entry>() {
+                        @Override
+                        public int compare(org.openhab.ui.cometvisu.internal.rrs.beans.Entry o1,
+                                org.openhab.ui.cometvisu.internal.rrs.beans.Entry o2) {
+                            return Long.compare(o2.publishedDate, o1.publishedDate);
+                        }
+                    });
                 }
                 if (request.getParameter("j") != null) {
                     // request data in JSON format
@@ -475,6 +461,50 @@ public class CometVisuServlet extends HttpServlet {
 
     }
 
+    /**
+     * reads the persisted log entries of an item from the first persistence
+     * service which has data for it
+     *
+     * @param item
+     *            - the log item
+     * @return the entries in the retention period, newest first
+     */
+    private List<org.openhab.ui.cometvisu.internal.rrs.beans.Entry> queryRssLogHistory(Item item) {
+        List<org.openhab.ui.cometvisu.internal.rrs.beans.Entry> entries = new ArrayList<org.openhab.ui.cometvisu.internal.rrs.beans.Entry>();
+        // Define the data filter
+        FilterCriteria filter = new FilterCriteria();
+        Calendar start = Calendar.getInstance();
+        // retrieve only the historic states in the retention period + BeginDate is required for RRD4j service
+        start.add(Calendar.DAY_OF_YEAR, Config.COMETVISU_RSSLOG_RETENTION > 0 ? -Config.COMETVISU_RSSLOG_RETENTION
+                : -RSS_LOG_MAX_HISTORY_DAYS);
+        filter.setBeginDate(start.getTime());
+        filter.setPageSize(Config.COMETVISU_RSSLOG_SIZE);
+        filter.setOrdering(Ordering.DESCENDING);
+        filter.setItemName(item.getName());
+
+        for (QueryablePersistenceService persistenceService : CometVisuApp.getPersistenceServices().values()) {
+            // Get the data from the persistence store
+            Iterator<HistoricItem> it = persistenceService.query(filter).iterator();
+            if (!it.hasNext()) {
+                continue;
+            }
+            logger.debug("persisted data for item {} found in service {}", item.getName(),
+                    persistenceService.getId());
+            while (it.hasNext()) {
+                HistoricItem historicItem = it.next();
+                if (historicItem.getState() == null || historicItem.getState().toString().isEmpty()) {
+                    continue;
+                }
+                entries.add(RssLogStore.createEntry(historicItem.getName(), historicItem.getTimestamp().getTime(),
+                        historicItem.getState().toString()));
+            }
+            logger.debug("querying {} item from {} to {} => {} results on service {}", filter.getItemName(),
+                    filter.getBeginDate(), filter.getEndDate(), entries.size(), persistenceService.getId());
+            break;
+        }
+        return entries;
+    }
+
     /**
      * Process the actual request.
      *
@@ -533,15 +563,23 @@ public class CometVisuServlet extends HttpServlet {
         String eTag = fileName + "_" + length + "_" + lastModified;
         long expires = System.currentTimeMillis() + DEFAULT_EXPIRE_TIME;
 
+        // The compressed content is a representation of its own and needs an
+        // ETag of its own. HEAD requests are never compressed.
+        String contentType = getServletContext().getMimeType(fileName);
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        boolean acceptsGzip = content && contentType != null && isCompressible(contentType)
+                && acceptEncoding != null && accepts(acceptEncoding, "gzip");
+        String gzipETag = eTag + "-gzip";
+
         // Validate request headers for caching
         // ---------------------------------------------------
 
         // If-None-Match header should contain "*" or ETag. If so, then return
         // 304.
         String ifNoneMatch = request.getHeader("If-None-Match");
-        if (ifNoneMatch != null && matches(ifNoneMatch, eTag)) {
+        if (ifNoneMatch != null && (matches(ifNoneMatch, eTag) || matches(ifNoneMatch, gzipETag))) {
             response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-            response.setHeader("ETag", eTag); // Required in 304.
+            response.setHeader("ETag", matches(ifNoneMatch, eTag) ? eTag : gzipETag); // Required in 304.
             response.setDateHeader("Expires", expires); // Postpone cache with 1
                                                         // week.
             return;
@@ -553,7 +591,7 @@ public class CometVisuServlet extends HttpServlet {
         long ifModifiedSince = request.getDateHeader("If-Modified-Since");
         if (ifNoneMatch == null && ifModifiedSince != -1 && ifModifiedSince + 1000 > lastModified) {
             response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-            response.setHeader("ETag", eTag); // Required in 304.
+            response.setHeader("ETag", acceptsGzip ? gzipETag : eTag); // Required in 304.
             response.setDateHeader("Expires", expires); // Postpone cache with 1
                                                         // week.
             return;
@@ -564,7 +602,7 @@ public class CometVisuServlet extends HttpServlet {
 
         // If-Match header should contain "*" or ETag. If not, then return 412.
         String ifMatch = request.getHeader("If-Match");
-        if (ifMatch != null && !matches(ifMatch, eTag)) {
+        if (ifMatch != null && !matches(ifMatch, eTag) && !matches(ifMatch, gzipETag)) {
             response.sendError(HttpServletResponse.SC_PRECONDITION_FAILED);
             return;
         }
@@ -653,10 +691,7 @@ public class CometVisuServlet extends HttpServlet {
         // Prepare and initialize response
         // --------------------------------------------------------
 
-        // Get content type by file name and set default GZIP support and
-        // content disposition.
-        String contentType = getServletContext().getMimeType(fileName);
-        boolean acceptsGzip = false;
+        // Set default content disposition.
         String disposition = "inline";
 
         // If content type is unknown, then set the default value.
@@ -667,21 +702,17 @@ public class CometVisuServlet extends HttpServlet {
             contentType = "application/octet-stream";
         }
 
-        // If content type is text, then determine whether GZIP content encoding
-        // is supported by
-        // the browser and expand content type with the one and right character
-        // encoding.
+        // If content type is text, then expand content type with the one and
+        // right character encoding.
         if (contentType.startsWith("text")) {
-            String acceptEncoding = request.getHeader("Accept-Encoding");
-            acceptsGzip = acceptEncoding != null && accepts(acceptEncoding, "gzip");
             contentType += ";charset=UTF-8";
         }
 
-        // Else, expect for images, determine content disposition. If content
-        // type is supported by
+        // Else, expect for images and other text based files, determine
+        // content disposition. If content type is supported by
         // the browser, then set to inline, else attachment which will pop a
         // 'save as' dialogue.
-        else if (!contentType.startsWith("image")) {
+        else if (!contentType.startsWith("image") && !isCompressible(contentType)) {
             String accept = request.getHeader("Accept");
             disposition = accept != null && accepts(accept, contentType) ? "inline" : "attachment";
         }
@@ -689,13 +720,39 @@ public class CometVisuServlet extends HttpServlet {
         response.setBufferSize(DEFAULT_BUFFER_SIZE);
         response.setHeader("Content-Disposition", disposition + ";filename=\"" + fileName + "\"");
         response.setHeader("Accept-Ranges", "bytes");
-        response.setHeader("ETag", eTag);
+        // Only the full file is compressed.
+        boolean gzip = acceptsGzip && (ranges.isEmpty() || ranges.get(0) == full);
+        response.setHeader("ETag", gzip ? gzipETag : eTag);
         response.setDateHeader("Last-Modified", lastModified);
         response.setDateHeader("Expires", expires);
+        if (isCompressible(contentType)) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
 
         // Send requested file (part(s)) to client
         // ------------------------------------------------
 
+        // The compressed full file is served from the cache without opening
+        // the file again.
+        if (gzip) {
+            byte[] compressed = compressedResourceCache.getCompressed(file);
+            if (compressed != null) {
+                response.setContentType(contentType);
+                response.setHeader("Content-Range", "bytes " + full.start + "-" + full.end + "/" + full.total);
+                response.setHeader("Content-Encoding", "gzip");
+                response.setHeader("Content-Length", String.valueOf(compressed.length));
+                if (content) {
+                    OutputStream output = response.getOutputStream();
+                    try {
+                        output.write(compressed);
+                    } finally {
+                        close(output);
+                    }
+                }
+                return;
+            }
+        }
+
         // Prepare streams.
         RandomAccessFile input = null;
         OutputStream output = null;
@@ -713,7 +770,7 @@ public class CometVisuServlet extends HttpServlet {
                 response.setHeader("Content-Range", "bytes " + r.start + "-" + r.end + "/" + r.total);
 
                 if (content) {
-                    if (acceptsGzip) {
+                    if (gzip) {
                         // The browser accepts GZIP, so GZIP the content.
                         response.setHeader("Content-Encoding", "gzip");
                         output = new GZIPOutputStream(output, DEFAULT_BUFFER_SIZE);
@@ -930,6 +987,20 @@ public class CometVisuServlet extends HttpServlet {
         return gson.toJson(bean);
     }
 
+    /**
+     * Returns true if the given content type is text based and worth to be
+     * compressed.
+     *
+     * @param contentType
+     *            The content type of the file.
+     * @return True if the content should be compressed.
+     */
+    private static boolean isCompressible(String contentType) {
+        return contentType.startsWith("text") || contentType.startsWith("application/javascript")
+                || contentType.startsWith("application/x-javascript") || contentType.startsWith("application/json")
+                || contentType.startsWith("application/xml") || contentType.startsWith("image/svg+xml");
+    }
+
     /**
      * Returns true if the given accept header accepts the given value.
      *